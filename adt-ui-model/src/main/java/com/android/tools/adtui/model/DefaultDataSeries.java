@@ -15,21 +15,29 @@
  */
 package com.android.tools.adtui.model;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import org.jetbrains.annotations.NotNull;
-
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
-
+import org.jetbrains.annotations.NotNull;
 
+/**
+ * A {@link DataSeries} backed by a sorted {@code long[]} column of x values and a parallel column of y values. Data must be added in
+ * increasing x order. Lookups do not allocate and the lists returned by {@link #getDataForRange(Range)} are views over the columns rather
+ * than copies. See {@link LongDataSeries} for a version that stores primitive values.
+ */
 public class DefaultDataSeries<E> implements DataSeries<E> {
-  @NotNull protected final List<SeriesData<E>> mSeriesList = new ArrayList<>();
+  @NotNull private long[] myXs = new long[0];
+  @NotNull private Object[] myValues = new Object[0];
+  private int mySize;
 
   @NotNull
   private List<SeriesData<E>> getDataSubList(final int fromIndex, final int toIndex) {
-    return IntStream.range(fromIndex, toIndex).mapToObj(index -> mSeriesList.get(index)).collect(Collectors.toList());
+    if (fromIndex >= toIndex) {
+      return Collections.emptyList();
+    }
+    Object[] values = myValues;
+    //noinspection unchecked
+    return new SeriesDataColumns.View<>(myXs, index -> (E)values[index], fromIndex, toIndex);
   }
 
   @Override
@@ -52,36 +60,41 @@ public class DefaultDataSeries<E> implements DataSeries<E> {
    * Implementations need to store both the x, and y values. For a given index the X value should correspond to the Y value.
    */
   public void add(long x, E y) {
-    mSeriesList.add(new SeriesData<>(x, y));
+    if (mySize == myXs.length) {
+      int capacity = SeriesDataColumns.grow(mySize);
+      myXs = Arrays.copyOf(myXs, capacity);
+      myValues = Arrays.copyOf(myValues, capacity);
+    }
+    myXs[mySize] = x;
+    myValues[mySize] = y;
+    mySize++;
   }
 
   public int size() {
-    return mSeriesList.size();
+    return mySize;
   }
 
   public long getX(int index) {
-    return mSeriesList.get(index).x;
+    checkIndex(index);
+    return myXs[index];
   }
 
   /**
    * Returns the value of Y at a given index.
    */
   public E getY(int index) {
-    return mSeriesList.get(index).value;
+    checkIndex(index);
+    //noinspection unchecked
+    return (E)myValues[index];
   }
 
   public int getNearestXIndex(long x) {
-    int index = Collections.binarySearch(mSeriesList.stream().map(data -> data.x).collect(Collectors.toList()), x);
+    return SeriesDataColumns.nearestIndex(myXs, mySize, x);
+  }
 
-    if (index < 0) {
-      // No exact match, returns position to the left of the insertion point.
-      // NOTE: binarySearch returns -(insertion point + 1) if not found.
-      // Example: Value = 2.5, data = 0,1,2,3,4.
-      //    BinarySearch will return -4 = -(3 + 1) as 3 is the insertion point.
-      //    Given our usage of the data we want to round down not up as such we step to 1 before the insertion point.
-      index = -index - 2;
+  private void checkIndex(int index) {
+    if (index < 0 || index >= mySize) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + mySize);
     }
-
-    return Math.max(0, Math.min(index, size() - 1));
   }
 }
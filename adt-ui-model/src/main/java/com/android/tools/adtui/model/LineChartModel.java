@@ -38,6 +38,11 @@ public class LineChartModel extends AspectModel<LineChartModel.Aspect> implement
    */
   private boolean myFirstUpdate = true;
 
+  /**
+   * Number of data points per series the chart needs, or 0 for the data at full resolution. See {@link RangedSeries#getSeries(int)}.
+   */
+  private int myResolution = 0;
+
   @Override
   public void update(long elapsedNs) {
     Map<Range, Double> maxPerRangeObject = new HashMap<>();
@@ -47,7 +52,7 @@ public class LineChartModel extends AspectModel<LineChartModel.Aspect> implement
       Range range = ranged.getYRange();
       double yMax = -Double.MAX_VALUE;
 
-      List<SeriesData<Long>> seriesList = ranged.getSeries();
+      List<SeriesData<Long>> seriesList = ranged.getSeries(myResolution);
       if (seriesList.isEmpty()) {
         continue;
       }
@@ -104,4 +109,19 @@ public class LineChartModel extends AspectModel<LineChartModel.Aspect> implement
   public List<RangedContinuousSeries> getSeries() {
     return mySeries;
   }
+
+  /**
+   * Sets the display resolution (typically the width in pixels of the chart) at which the series data is requested. The reduced data
+   * keeps the minimum and maximum values, so the y ranges are the same as with the full resolution data.
+   */
+  public void setResolution(int resolution) {
+    if (myResolution != resolution) {
+      myResolution = resolution;
+      changed(Aspect.LINE_CHART);
+    }
+  }
+
+  public int getResolution() {
+    return myResolution;
+  }
 }
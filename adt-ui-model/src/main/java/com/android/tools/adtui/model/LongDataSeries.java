@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.model;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A {@link DataSeries} of long values stored in two primitive columns, for the counters and usage samples shown by the profiler monitors.
+ * Data must be added in increasing x order. Unlike {@link DefaultDataSeries}, values are only boxed when read through the
+ * {@link DataSeries} interface; {@link #getY(int)} and {@link #getNearestXIndex(long)} never allocate.
+ */
+public final class LongDataSeries implements DataSeries<Long> {
+  @NotNull private long[] myXs = new long[0];
+  @NotNull private long[] myValues = new long[0];
+  private int mySize;
+
+  @Override
+  public List<SeriesData<Long>> getDataForRange(Range range) {
+    if (mySize == 0 || range.isEmpty()) {
+      return Collections.emptyList();
+    }
+    int fromIndex = getNearestXIndex((long)range.getMin());
+    int toIndex = getNearestXIndex((long)range.getMax()) + 1;
+    return getDataSubList(fromIndex, toIndex);
+  }
+
+  @NotNull
+  public List<SeriesData<Long>> getAllData() {
+    return getDataSubList(0, mySize);
+  }
+
+  public void add(long x, long y) {
+    if (mySize == myXs.length) {
+      int capacity = SeriesDataColumns.grow(mySize);
+      myXs = Arrays.copyOf(myXs, capacity);
+      myValues = Arrays.copyOf(myValues, capacity);
+    }
+    myXs[mySize] = x;
+    myValues[mySize] = y;
+    mySize++;
+  }
+
+  public int size() {
+    return mySize;
+  }
+
+  public long getX(int index) {
+    checkIndex(index);
+    return myXs[index];
+  }
+
+  public long getY(int index) {
+    checkIndex(index);
+    return myValues[index];
+  }
+
+  /**
+   * @return the index of the given x, or of the closest x before it if there is no exact match.
+   */
+  public int getNearestXIndex(long x) {
+    return SeriesDataColumns.nearestIndex(myXs, mySize, x);
+  }
+
+  @NotNull
+  private List<SeriesData<Long>> getDataSubList(int fromIndex, int toIndex) {
+    if (fromIndex >= toIndex) {
+      return Collections.emptyList();
+    }
+    long[] values = myValues;
+    return new SeriesDataColumns.View<>(myXs, index -> values[index], fromIndex, toIndex);
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= mySize) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + mySize);
+    }
+  }
+}
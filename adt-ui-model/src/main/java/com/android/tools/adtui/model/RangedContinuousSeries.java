@@ -16,6 +16,7 @@
 
 package com.android.tools.adtui.model;
 
+import java.util.List;
 import org.jetbrains.annotations.NotNull;
 
 /**
@@ -47,6 +48,38 @@ public class RangedContinuousSeries extends RangedSeries<Long> {
     this(name, xRange, yRange, series, new Range(-Double.MAX_VALUE, Double.MAX_VALUE));
   }
 
+  /**
+   * Keeps the first, minimum, maximum and last values of the bucket, in x order. This is enough to draw the same line at the bucket's
+   * resolution and preserves the peaks used to compute the y range.
+   */
+  @Override
+  protected void reduceBucket(@NotNull List<SeriesData<Long>> bucket, @NotNull List<SeriesData<Long>> output) {
+    int lastIndex = bucket.size() - 1;
+    int minIndex = 0;
+    int maxIndex = 0;
+    for (int i = 1; i <= lastIndex; i++) {
+      long value = bucket.get(i).value;
+      if (value < bucket.get(minIndex).value) {
+        minIndex = i;
+      }
+      if (value > bucket.get(maxIndex).value) {
+        maxIndex = i;
+      }
+    }
+    output.add(bucket.get(0));
+    int firstExtremum = Math.min(minIndex, maxIndex);
+    int secondExtremum = Math.max(minIndex, maxIndex);
+    if (firstExtremum != 0 && firstExtremum != lastIndex) {
+      output.add(bucket.get(firstExtremum));
+    }
+    if (secondExtremum != firstExtremum && secondExtremum != 0 && secondExtremum != lastIndex) {
+      output.add(bucket.get(secondExtremum));
+    }
+    if (lastIndex > 0) {
+      output.add(bucket.get(lastIndex));
+    }
+  }
+
   @NotNull
   public Range getYRange() {
     return myYRange;
@@ -15,18 +15,30 @@
  */
 package com.android.tools.adtui.model;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.List;
 
 /**
  * This class is the default implementation of a ranged series. It provides access to the DataSeries
  * scoped by a given Range or the intersection of two given ranges.
+ * <p>
+ * Charts that know their size in pixels can use {@link #getSeries(int)} to get the data reduced to the display resolution. The reduced
+ * data is cached per resolution and, when the range scrolls forward by less than its length (e.g. while streaming), only the newly
+ * visible part of the range is fetched and reduced again.
  *
  * @param <E> This should be the type of data this RangedSeries represents.
  */
 public class RangedSeries<E> {
+  /**
+   * Number of resolutions for which the reduced data is cached, e.g. the same series shown by charts of different widths.
+   */
+  private static final int MAX_CACHED_RESOLUTIONS = 4;
 
   @NotNull
   protected final Range myRange;
@@ -40,6 +52,17 @@ public class RangedSeries<E> {
   @NotNull private Range myLastQueriedRange = new Range();
   @NotNull private List<SeriesData<E>> myLastQueriedSeries = Collections.emptyList();
 
+  /**
+   * Caches of {@link #getSeries(int)}, per resolution, in least recently used order.
+   */
+  @NotNull private final Map<Integer, ReducedSeriesCache> myReducedCaches =
+    new LinkedHashMap<Integer, ReducedSeriesCache>(MAX_CACHED_RESOLUTIONS, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Integer, ReducedSeriesCache> eldest) {
+        return size() > MAX_CACHED_RESOLUTIONS;
+      }
+    };
+
   /**
    * Creates a new RangedSeries with the {@link DataSeries} object scoped by view and data {@link Range} objects. getSeries will return
    * a series that is the intersection of our view and data ranges.
@@ -88,6 +111,45 @@ public class RangedSeries<E> {
     return myLastQueriedSeries;
   }
 
+  /**
+   * Same as {@link #getSeries()}, but with the data reduced to the given resolution: the range is split into {@code resolution} buckets of
+   * equal width and each bucket is reduced by {@link #reduceBucket(List, List)}. The bucket grid is aligned to multiples of the bucket
+   * width, so buckets that stay in range when the range scrolls are reused as is.
+   * <p>
+   * The data is returned at full resolution if {@code resolution} is not positive, if the range is unbounded, or if the buckets would be
+   * at most one unit of the x axis wide.
+   *
+   * @param resolution The number of buckets to reduce the range to, typically the width in pixels of the chart.
+   */
+  @NotNull
+  public List<SeriesData<E>> getSeries(int resolution) {
+    Range queryRange = myRange.getIntersection(myIntersectRange);
+    if (resolution <= 0 || queryRange.isEmpty() ||
+        queryRange.getMax() == Long.MAX_VALUE || queryRange.getMax() == Double.MAX_VALUE || queryRange.getMin() == -Double.MAX_VALUE) {
+      return getSeries();
+    }
+    // Rounding (instead of taking the ceiling) keeps the bucket width stable while streaming, when the range length can vary slightly.
+    long bucketWidth = Math.round(queryRange.getLength() / resolution);
+    if (bucketWidth <= 1) {
+      return getSeries();
+    }
+    return myReducedCaches.computeIfAbsent(resolution, key -> new ReducedSeriesCache()).get(queryRange, bucketWidth);
+  }
+
+  /**
+   * Reduces the data of one bucket of {@link #getSeries(int)} and adds the result to {@code output}. The default implementation keeps the
+   * first and last data of the bucket, which preserves the value at each bucket boundary for state-like data.
+   *
+   * @param bucket The data of the bucket, in x order. Never empty.
+   * @param output The list to add the reduced data to, in x order.
+   */
+  protected void reduceBucket(@NotNull List<SeriesData<E>> bucket, @NotNull List<SeriesData<E>> output) {
+    output.add(bucket.get(0));
+    if (bucket.size() > 1) {
+      output.add(bucket.get(bucket.size() - 1));
+    }
+  }
+
   /**
    * @param range The range to which the data will be scoped.
    * @return A new, immutable {@link SeriesDataList} that allows the caller to get items in the DataStore scoped to the given range.
@@ -111,4 +173,93 @@ public class RangedSeries<E> {
   public Range getXRange() {
     return myRange;
   }
+
+  /**
+   * The data of {@link #getSeries(int)} for one resolution. Buckets are final once data after their end has been seen, since data is
+   * added in x order. The reduced data of final buckets is kept and only the buckets after them are fetched and reduced again.
+   */
+  private final class ReducedSeriesCache {
+    private long myBucketWidth;
+    /**
+     * Start of the first cached bucket.
+     */
+    private long myStart;
+    /**
+     * End of the last final bucket, which is also the start of the first non-final one.
+     */
+    private long myFinalEnd;
+    /**
+     * Last data before {@link #myStart}, so lines can be drawn from the left edge of the range.
+     */
+    @Nullable private SeriesData<E> myLead;
+    @NotNull private final List<SeriesData<E>> myFinalData = new ArrayList<>();
+
+    @NotNull private Range myLastQueriedRange = new Range();
+    @NotNull private List<SeriesData<E>> myLastQueriedSeries = Collections.emptyList();
+
+    @NotNull
+    List<SeriesData<E>> get(@NotNull Range queryRange, long bucketWidth) {
+      if (myBucketWidth == bucketWidth && myLastQueriedRange.isSameAs(queryRange)) {
+        return myLastQueriedSeries;
+      }
+
+      long start = Math.floorDiv((long)queryRange.getMin(), bucketWidth) * bucketWidth;
+      long end = (long)queryRange.getMax();
+      if (myBucketWidth != bucketWidth || start < myStart || start > myFinalEnd || end < myFinalEnd) {
+        // Not a forward scroll of the cached range, start over.
+        myBucketWidth = bucketWidth;
+        myStart = start;
+        myFinalEnd = start;
+        myLead = null;
+        myFinalData.clear();
+      }
+      else if (start > myStart) {
+        // Drop the buckets that scrolled out of the range. The last dropped data, which is the last one of its bucket, becomes the lead.
+        int dropped = 0;
+        while (dropped < myFinalData.size() && myFinalData.get(dropped).x < start) {
+          dropped++;
+        }
+        if (dropped > 0) {
+          myLead = myFinalData.get(dropped - 1);
+          myFinalData.subList(0, dropped).clear();
+        }
+        myStart = start;
+      }
+
+      List<SeriesData<E>> result = new ArrayList<>(myFinalData.size() + 8);
+      List<SeriesData<E>> bucket = new ArrayList<>();
+      long bucketIndex = 0;
+      boolean isNewCache = myFinalData.isEmpty() && myLead == null;
+      // Start the query right before the final buckets, so the data series also returns the last data before them.
+      for (SeriesData<E> data : getSeriesForRange(new Range(myFinalEnd - 1, end))) {
+        if (data.x < myFinalEnd) {
+          // The last data before the final buckets is already cached, unless the cache is new.
+          if (isNewCache) {
+            myLead = data;
+          }
+          continue;
+        }
+        long index = Math.floorDiv(data.x, bucketWidth);
+        if (!bucket.isEmpty() && index != bucketIndex) {
+          // There is data after the bucket, so it is final.
+          reduceBucket(bucket, myFinalData);
+          myFinalEnd = (bucketIndex + 1) * bucketWidth;
+          bucket.clear();
+        }
+        bucketIndex = index;
+        bucket.add(data);
+      }
+
+      if (myLead != null) {
+        result.add(myLead);
+      }
+      result.addAll(myFinalData);
+      if (!bucket.isEmpty()) {
+        reduceBucket(bucket, result);
+      }
+      myLastQueriedRange = queryRange;
+      myLastQueriedSeries = Collections.unmodifiableList(result);
+      return myLastQueriedSeries;
+    }
+  }
 }
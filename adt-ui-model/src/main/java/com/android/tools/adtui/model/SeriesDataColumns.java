@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.model;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+import java.util.function.IntFunction;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Helpers shared by the data series that store their x values in a sorted, append-only {@code long[]} column.
+ */
+final class SeriesDataColumns {
+  static final int INITIAL_CAPACITY = 16;
+
+  private SeriesDataColumns() {
+  }
+
+  /**
+   * @return the capacity to grow a column of the given capacity to, so that appends are amortized O(1).
+   */
+  static int grow(int capacity) {
+    return Math.max(INITIAL_CAPACITY, capacity + (capacity >> 1));
+  }
+
+  /**
+   * @return the index of the given x in the first {@code size} elements of {@code xs}, or the index to the left of where it would be if
+   * there is no exact match. The result is clamped to [0, size - 1].
+   */
+  static int nearestIndex(@NotNull long[] xs, int size, long x) {
+    int index = Arrays.binarySearch(xs, 0, size, x);
+    if (index < 0) {
+      // No exact match, returns position to the left of the insertion point.
+      // NOTE: binarySearch returns -(insertion point + 1) if not found.
+      // Example: Value = 2.5, data = 0,1,2,3,4.
+      //    BinarySearch will return -4 = -(3 + 1) as 3 is the insertion point.
+      //    Given our usage of the data we want to round down not up as such we step to 1 before the insertion point.
+      index = -index - 2;
+    }
+    return Math.max(0, Math.min(index, size - 1));
+  }
+
+  /**
+   * An immutable view of a range of the columns. Since the columns are append-only and replaced (not modified) when they grow, the view
+   * stays valid and unchanged while new data is added to the series. {@link SeriesData} objects are created on access.
+   */
+  static final class View<E> extends AbstractList<SeriesData<E>> implements RandomAccess {
+    @NotNull private final long[] myXs;
+    @NotNull private final IntFunction<E> myValues;
+    private final int myFromIndex;
+    private final int mySize;
+
+    /**
+     * @param values reads the value at an index of the columns. It must only capture the current value column, not the series.
+     */
+    View(@NotNull long[] xs, @NotNull IntFunction<E> values, int fromIndex, int toIndex) {
+      myXs = xs;
+      myValues = values;
+      myFromIndex = fromIndex;
+      mySize = toIndex - fromIndex;
+    }
+
+    @Override
+    public SeriesData<E> get(int index) {
+      if (index < 0 || index >= mySize) {
+        throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + mySize);
+      }
+      int columnIndex = myFromIndex + index;
+      return new SeriesData<>(myXs[columnIndex], myValues.apply(columnIndex));
+    }
+
+    @Override
+    public int size() {
+      return mySize;
+    }
+  }
+}
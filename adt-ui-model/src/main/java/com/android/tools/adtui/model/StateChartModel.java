@@ -29,6 +29,11 @@ public class StateChartModel<E> extends AspectModel<StateChartModel.Aspect> {
   @NotNull
   private final List<RangedSeries<E>> mSeriesList;
 
+  /**
+   * Number of data points per series the chart needs, or 0 for the data at full resolution. See {@link RangedSeries#getSeries(int)}.
+   */
+  private int myResolution = 0;
+
   public StateChartModel() {
     mSeriesList = new ArrayList<>();
   }
@@ -42,4 +47,26 @@ public class StateChartModel<E> extends AspectModel<StateChartModel.Aspect> {
     series.getXRange().addDependency(this).onChange(Range.Aspect.RANGE, () -> changed(Aspect.MODEL_CHANGED));
     changed(Aspect.MODEL_CHANGED);
   }
+
+  /**
+   * Sets the display resolution (typically the width in pixels of the chart) at which the series data is requested.
+   */
+  public void setResolution(int resolution) {
+    if (myResolution != resolution) {
+      myResolution = resolution;
+      changed(Aspect.MODEL_CHANGED);
+    }
+  }
+
+  public int getResolution() {
+    return myResolution;
+  }
+
+  /**
+   * @return the data of the given series at the resolution of this model.
+   */
+  @NotNull
+  public List<SeriesData<E>> getSeriesData(@NotNull RangedSeries<E> series) {
+    return series.getSeries(myResolution);
+  }
 }
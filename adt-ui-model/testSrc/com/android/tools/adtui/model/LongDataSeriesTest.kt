@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.model
+
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+
+class LongDataSeriesTest {
+  @Test
+  fun testGetDataForRange() {
+    val series = LongDataSeries()
+    for (i in 0L until 100L) {
+      series.add(i * 10, i)
+    }
+    assertThat(series.size()).isEqualTo(100)
+    // The range is extended to the closest sample before each end, matching DefaultDataSeries.
+    assertThat(series.getDataForRange(Range(15.0, 42.0))).containsExactly(SeriesData(10L, 1L),
+                                                                          SeriesData(20L, 2L),
+                                                                          SeriesData(30L, 3L),
+                                                                          SeriesData(40L, 4L)).inOrder()
+    assertThat(series.getDataForRange(Range())).isEmpty()
+    assertThat(LongDataSeries().getDataForRange(Range(0.0, 10.0))).isEmpty()
+  }
+
+  @Test
+  fun testGetNearestXIndex() {
+    val series = LongDataSeries()
+    series.add(0, 0)
+    series.add(10, 1)
+    series.add(20, 2)
+    assertThat(series.getNearestXIndex(-5)).isEqualTo(0)
+    assertThat(series.getNearestXIndex(10)).isEqualTo(1)
+    assertThat(series.getNearestXIndex(15)).isEqualTo(1)
+    assertThat(series.getNearestXIndex(100)).isEqualTo(2)
+    assertThat(series.getY(2)).isEqualTo(2)
+  }
+
+  @Test
+  fun testViewIsNotAffectedByAppends() {
+    val series = LongDataSeries()
+    for (i in 0L until 16L) {
+      series.add(i, i)
+    }
+    val view = series.getAllData()
+    // Force the columns to grow.
+    for (i in 16L until 100L) {
+      series.add(i, i)
+    }
+    assertThat(view).hasSize(16)
+    assertThat(view.last()).isEqualTo(SeriesData(15L, 15L))
+    assertThat(series.getAllData()).hasSize(100)
+  }
+
+  @Test
+  fun testMatchesDefaultDataSeries() {
+    val longSeries = LongDataSeries()
+    val defaultSeries = DefaultDataSeries<Long>()
+    for (i in 0L until 1000L) {
+      longSeries.add(i * 3, i * i)
+      defaultSeries.add(i * 3, i * i)
+    }
+    for (min in 0 until 3000 step 137) {
+      val range = Range(min.toDouble(), min + 500.0)
+      assertThat(longSeries.getDataForRange(range)).containsExactlyElementsIn(defaultSeries.getDataForRange(range)).inOrder()
+    }
+  }
+}
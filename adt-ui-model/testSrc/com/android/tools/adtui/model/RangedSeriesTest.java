@@ -17,6 +17,8 @@ package com.android.tools.adtui.model;
 
 import static com.google.common.truth.Truth.assertThat;
 
+import java.util.Collections;
+import java.util.List;
 import org.junit.Test;
 
 public class RangedSeriesTest {
@@ -67,4 +69,76 @@ public class RangedSeriesTest {
     }
     assertThat(rangedSeries.getSeries()).hasSize(100);
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testReducedSeriesKeepsExtremes() {
+    DefaultDataSeries<Long> testSeries = new DefaultDataSeries<>();
+    for (int i = 0; i < 10000; i++) {
+      testSeries.add(i, (long)(i * 7919 % 1000));
+    }
+    RangedContinuousSeries rangedSeries = new RangedContinuousSeries("test", new Range(0, 10000), new Range(0, 1000), testSeries);
+
+    List<SeriesData<Long>> reduced = rangedSeries.getSeries(100);
+    // At most the first, min, max and last data of each bucket.
+    assertThat(reduced.size()).isAtMost(100 * 4 + 1);
+    assertThat(reduced.get(0).x).isEqualTo(0);
+    assertThat(reduced.get(reduced.size() - 1).x).isEqualTo(9999);
+    assertThat(maxValue(reduced)).isEqualTo(maxValue(testSeries.getAllData()));
+    assertThat(minValue(reduced)).isEqualTo(minValue(testSeries.getAllData()));
+    // Same range and resolution reuses the cached result.
+    assertThat(rangedSeries.getSeries(100)).isSameAs(reduced);
+  }
+
+  @Test
+  public void testReducedSeriesStreamingMatchesFullQuery() {
+    Range viewRange = new Range(0, 1000);
+    DefaultDataSeries<Long> testSeries = new DefaultDataSeries<>();
+    RangedContinuousSeries streamingSeries = new RangedContinuousSeries("test", viewRange, new Range(0, 1000), testSeries);
+    int time = 0;
+    for (int step = 0; step < 50; step++) {
+      for (int i = 0; i < 97; i++, time += 3) {
+        testSeries.add(time, (long)(time * 7919 % 1000));
+      }
+      viewRange.set(time - 1000, time);
+      RangedContinuousSeries freshSeries = new RangedContinuousSeries("test", new Range(time - 1000, time), new Range(0, 1000), testSeries);
+      assertThat(streamingSeries.getSeries(50)).containsExactlyElementsIn(freshSeries.getSeries(50)).inOrder();
+    }
+  }
+
+  @Test
+  public void testReducedSeriesFallsBackToFullResolution() {
+    Range queryRange = new Range(0, 100);
+    DefaultDataSeries<Long> testSeries = new DefaultDataSeries<>();
+    for (int i = 0; i < 100; i++) {
+      testSeries.add(i, (long)i);
+    }
+    RangedSeries<Long> rangedSeries = new RangedSeries<>(queryRange, testSeries);
+    assertThat(rangedSeries.getSeries(0)).hasSize(100);
+    // Buckets narrower than 2 units are not reduced.
+    assertThat(rangedSeries.getSeries(100)).hasSize(100);
+    queryRange.setMax(Long.MAX_VALUE);
+    assertThat(rangedSeries.getSeries(10)).hasSize(100);
+  }
+
+  @Test
+  public void testReducedStateSeriesKeepsBucketBoundaries() {
+    DefaultDataSeries<Long> testSeries = new DefaultDataSeries<>();
+    for (int i = 0; i < 100; i++) {
+      testSeries.add(i, (long)i);
+    }
+    RangedSeries<Long> rangedSeries = new RangedSeries<>(new Range(0, 100), testSeries);
+    List<SeriesData<Long>> reduced = rangedSeries.getSeries(10);
+    assertThat(reduced).hasSize(20);
+    assertThat(reduced.get(0)).isEqualTo(new SeriesData<>(0, 0L));
+    assertThat(reduced.get(1)).isEqualTo(new SeriesData<>(9, 9L));
+    assertThat(reduced.get(19)).isEqualTo(new SeriesData<>(99, 99L));
+  }
+
+  private static long maxValue(List<SeriesData<Long>> data) {
+    return Collections.max(data, (a, b) -> Long.compare(a.value, b.value)).value;
+  }
+
+  private static long minValue(List<SeriesData<Long>> data) {
+    return Collections.min(data, (a, b) -> Long.compare(a.value, b.value)).value;
+  }
+}
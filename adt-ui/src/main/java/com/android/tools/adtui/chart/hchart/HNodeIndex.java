@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.chart.hchart;
+
+import com.android.tools.adtui.model.HNode;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A spatial index of the nodes of a tree, used by {@link HTreeChart} so that rendering a viewport only visits the nodes inside it.
+ * <p>
+ * Nodes are grouped by depth. Each depth is an interval index: its nodes sorted by start, along with the running maximum of their ends,
+ * which lets a query binary search for the first node that can overlap a range even if intervals of the same depth overlap. Runs of
+ * consecutive nodes that fall inside a single pixel are skipped with another binary search and reported as one node, so a query costs
+ * time proportional to the number of pixels drawn rather than the number of nodes in the tree.
+ * <p>
+ * The index is a snapshot of the tree at construction time; it has to be rebuilt if the tree changes.
+ */
+final class HNodeIndex<N extends HNode<N>> {
+  /**
+   * Receives the nodes of a query, in increasing start order.
+   */
+  interface Visitor<N> {
+    /**
+     * @param end the end of the node, or of the last node merged into it if it stands for a run of nodes within the same pixel.
+     */
+    void visit(@NotNull N node, long start, long end);
+  }
+
+  private static final Comparator<HNode<?>> START_COMPARATOR = Comparator.comparingLong(HNode::getStart);
+
+  @NotNull private final List<Row<N>> myRows = new ArrayList<>();
+  private int myMinDepth;
+  private int myMaxDepth = -1;
+  private int myNodeCount;
+
+  /**
+   * @param includeRoot whether the root itself is indexed. Its depth counts towards {@link #getMaxDepth()} either way.
+   */
+  HNodeIndex(@Nullable N root, boolean includeRoot) {
+    if (root == null) {
+      return;
+    }
+    List<List<N>> nodesByDepth = new ArrayList<>();
+    myMinDepth = root.getDepth();
+    Deque<N> stack = new ArrayDeque<>();
+    stack.push(root);
+    while (!stack.isEmpty()) {
+      N node = stack.pop();
+      // Push the children in reverse so that they are visited, and thus added to their depth, from left to right.
+      for (int i = node.getChildCount() - 1; i >= 0; --i) {
+        stack.push(node.getChildAt(i));
+      }
+      myMaxDepth = Math.max(myMaxDepth, node.getDepth());
+      if (node == root && !includeRoot) {
+        continue;
+      }
+      int row = node.getDepth() - myMinDepth;
+      if (row < 0) {
+        // Nodes are not expected above the root, but make room for them if they are.
+        for (int i = row; i < 0; ++i) {
+          nodesByDepth.add(0, new ArrayList<>());
+        }
+        myMinDepth = node.getDepth();
+        row = 0;
+      }
+      while (nodesByDepth.size() <= row) {
+        nodesByDepth.add(new ArrayList<>());
+      }
+      nodesByDepth.get(row).add(node);
+      myNodeCount++;
+    }
+    for (List<N> nodes : nodesByDepth) {
+      myRows.add(nodes.isEmpty() ? null : new Row<>(nodes));
+    }
+  }
+
+  /**
+   * @return the deepest depth of the tree, or -1 if the tree is empty.
+   */
+  int getMaxDepth() {
+    return myMaxDepth;
+  }
+
+  int getNodeCount() {
+    return myNodeCount;
+  }
+
+  /**
+   * Visits the nodes of the given depth that intersect [rangeMin, rangeMax], when that range is drawn {@code widthPx} pixels wide. A node
+   * whose start and end fall in the same pixel is reported once, together with the following nodes that end in that same pixel.
+   */
+  void visit(int depth, double rangeMin, double rangeMax, double widthPx, @NotNull Visitor<N> visitor) {
+    int rowIndex = depth - myMinDepth;
+    if (rowIndex < 0 || rowIndex >= myRows.size() || myRows.get(rowIndex) == null || rangeMax <= rangeMin) {
+      return;
+    }
+    Row<N> row = myRows.get(rowIndex);
+    double scale = widthPx / (rangeMax - rangeMin);
+    int size = row.myNodes.length;
+
+    int i = row.firstIndexEndingAtOrAfter(rangeMin);
+    while (i < size && row.myStarts[i] <= rangeMax) {
+      long start = row.myStarts[i];
+      long end = row.myEnds[i];
+      if (end < rangeMin) {
+        // Only possible when this node is overlapped by a longer node before it.
+        ++i;
+        continue;
+      }
+      double pixel = Math.floor((end - rangeMin) * scale);
+      if (Math.floor((start - rangeMin) * scale) < pixel) {
+        visitor.visit(row.myNodes[i], start, end);
+        ++i;
+        continue;
+      }
+      // The node is inside a single pixel: merge it with all the nodes after it that end in the same pixel.
+      double nextPixelStart = rangeMin + (pixel + 1) / scale;
+      int last = row.lastIndexEndingBefore(i, nextPixelStart);
+      long mergedEnd = row.myMaxEnds[last] < nextPixelStart ? Math.max(end, row.myMaxEnds[last]) : end;
+      visitor.visit(row.myNodes[i], start, mergedEnd);
+      i = last + 1;
+    }
+  }
+
+  private static final class Row<N extends HNode<N>> {
+    @NotNull private final N[] myNodes;
+    @NotNull private final long[] myStarts;
+    @NotNull private final long[] myEnds;
+    /**
+     * myMaxEnds[i] is the maximum end of the nodes [0, i], so it is sorted even if the intervals overlap.
+     */
+    @NotNull private final long[] myMaxEnds;
+
+    private Row(@NotNull List<N> nodes) {
+      // Nodes are collected in tree order, which is normally already sorted by start, so the (stable) sort is linear.
+      nodes.sort(START_COMPARATOR);
+      //noinspection unchecked
+      myNodes = (N[])nodes.toArray(new HNode[0]);
+      int size = myNodes.length;
+      myStarts = new long[size];
+      myEnds = new long[size];
+      myMaxEnds = new long[size];
+      long maxEnd = Long.MIN_VALUE;
+      for (int i = 0; i < size; ++i) {
+        myStarts[i] = myNodes[i].getStart();
+        myEnds[i] = myNodes[i].getEnd();
+        maxEnd = Math.max(maxEnd, myEnds[i]);
+        myMaxEnds[i] = maxEnd;
+      }
+    }
+
+    /**
+     * @return the first index whose running maximum end is at least {@code value}, or the size of the row if there is none.
+     */
+    private int firstIndexEndingAtOrAfter(double value) {
+      int low = 0;
+      int high = myMaxEnds.length;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (myMaxEnds[mid] < value) {
+          low = mid + 1;
+        }
+        else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+
+    /**
+     * @return the last index at or after {@code from} whose running maximum end is less than {@code value}, or {@code from} if there is
+     * none.
+     */
+    private int lastIndexEndingBefore(int from, double value) {
+      int low = from;
+      int high = myMaxEnds.length - 1;
+      while (low < high) {
+        int mid = (low + high + 1) >>> 1;
+        if (myMaxEnds[mid] < value) {
+          low = mid;
+        }
+        else {
+          high = mid - 1;
+        }
+      }
+      return low;
+    }
+  }
+}
@@ -43,9 +43,7 @@ import java.awt.event.*;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Queue;
 import javax.swing.AbstractAction;
 import javax.swing.KeyStroke;
 import org.jetbrains.annotations.NotNull;
@@ -92,11 +90,11 @@ public final class HTreeChart<N extends HNode<N>> extends AnimatedComponent {
   @NotNull
   private final Range myYRange;
 
+  /**
+   * Index of the nodes of {@link #myRoot}, so that a redraw only visits the nodes visible in the viewport.
+   */
   @NotNull
-  private final List<Rectangle2D.Float> myRectangles;
-
-  @NotNull
-  private final List<N> myNodes;
+  private HNodeIndex<N> myIndex;
 
   private boolean myRootVisible;
 
@@ -114,6 +112,12 @@ public final class HTreeChart<N extends HNode<N>> extends AnimatedComponent {
   @NotNull
   private final List<N> myDrawnNodes;
 
+  /**
+   * Rectangles reused across redraws for {@link #myDrawnRectangles}, which only holds the ones in use.
+   */
+  @NotNull
+  private final List<Rectangle2D.Float> myRectanglePool;
+
   @NotNull
   private final HTreeChartReducer<N> myReducer;
 
@@ -156,10 +160,10 @@ public final class HTreeChart<N extends HNode<N>> extends AnimatedComponent {
     myNodeYPaddingPx = builder.myNodeYPaddingPx;
 
     myYRange = new Range(INITIAL_Y_POSITION, INITIAL_Y_POSITION);
-    myRectangles = new ArrayList<>();
-    myNodes = new ArrayList<>();
+    myIndex = new HNodeIndex<>(myRoot, myRootVisible);
     myDrawnNodes = new ArrayList<>();
     myDrawnRectangles = new ArrayList<>();
+    myRectanglePool = new ArrayList<>();
     mySelectedNode = null;
 
     setFocusable(true);
@@ -213,11 +217,6 @@ public final class HTreeChart<N extends HNode<N>> extends AnimatedComponent {
   @Override
   protected void draw(Graphics2D g, Dimension dim) {
     long startTime = System.nanoTime();
-    if (myDataUpdated) {
-      // Nulling out the canvas will trigger a render pass, below
-      updateNodesAndClearCanvas();
-      myDataUpdated = false;
-    }
     g.setFont(getFont());
 
     if (myRoot == null || myRoot.getChildCount() == 0) {
@@ -232,17 +231,20 @@ public final class HTreeChart<N extends HNode<N>> extends AnimatedComponent {
       return;
     }
 
-    if (myCanvas == null || ImageUtil.getUserHeight(myCanvas) != dim.height || ImageUtil.getUserWidth(myCanvas) != dim.width) {
+    if (myDataUpdated ||
+        myCanvas == null || ImageUtil.getUserHeight(myCanvas) != dim.height || ImageUtil.getUserWidth(myCanvas) != dim.width) {
       redrawToCanvas(dim);
+      myDataUpdated = false;
     }
     UIUtil.drawImage(g, myCanvas, 0, 0, null);
     addDebugInfo("Draw time %.2fms", (System.nanoTime() - startTime) / 1e6);
-    addDebugInfo("# of nodes %d", myNodes.size());
+    addDebugInfo("# of nodes %d", myIndex.getNodeCount());
     addDebugInfo("# of reduced nodes %d", myDrawnNodes.size());
   }
 
   private void redrawToCanvas(@NotNull Dimension dim) {
-    if (myCanvas == null || (ImageUtil.getUserWidth(myCanvas) < dim.width || ImageUtil.getUserHeight(myCanvas) < dim.height)) {
+    // The canvas is reused while the size doesn't change, so panning and zooming don't allocate a new image on every frame.
+    if (myCanvas == null || ImageUtil.getUserWidth(myCanvas) != dim.width || ImageUtil.getUserHeight(myCanvas) != dim.height) {
       // Note: We intentionally create an RGB image, not an ARGB image, because this allows nodes
       // to render their text clearly (ARGB prevents LCD rendering from working).
       myCanvas = ImageUtil.createImage(dim.width, dim.height, BufferedImage.TYPE_INT_RGB);
@@ -254,25 +256,7 @@ public final class HTreeChart<N extends HNode<N>> extends AnimatedComponent {
     UISettings.setupAntialiasing(g);
     g.setFont(getFont());
 
-    myDrawnNodes.clear();
-    myDrawnNodes.addAll(myNodes);
-
-    myDrawnRectangles.clear();
-    // Transform
-    for (Rectangle2D.Float rect : myRectangles) {
-      Rectangle2D.Float newRect = new Rectangle2D.Float();
-      newRect.x = rect.x * (float)dim.getWidth();
-      newRect.y = rect.y;
-      newRect.width = Math.max(0, rect.width * (float)dim.getWidth() - myNodeXPaddingPx);
-      newRect.height = rect.height;
-
-      if (myOrientation == HTreeChart.Orientation.BOTTOM_UP) {
-        newRect.y = (float)(dim.getHeight() - newRect.y - newRect.getHeight());
-      }
-
-      myDrawnRectangles.add(newRect);
-    }
-
+    updateDrawnNodes(dim);
     myReducer.reduce(myDrawnRectangles, myDrawnNodes);
 
     assert myDrawnRectangles.size() == myDrawnNodes.size();
@@ -291,51 +275,42 @@ public final class HTreeChart<N extends HNode<N>> extends AnimatedComponent {
     g.dispose();
   }
 
-  private void updateNodesAndClearCanvas() {
-    myNodes.clear();
-    myRectangles.clear();
-    myCanvas = null;
-    if (myRoot == null) {
-      return;
-    }
-
-    if (inRange(myRoot)) {
-      myNodes.add(myRoot);
-      myRectangles.add(createRectangle(myRoot));
-    }
-
-    int head = 0;
-    while (head < myNodes.size()) {
-      N curNode = myNodes.get(head++);
-
-      for (int i = 0; i < curNode.getChildCount(); ++i) {
-        N child = curNode.getChildAt(i);
-        if (inRange(child)) {
-          myNodes.add(child);
-          myRectangles.add(createRectangle(child));
-        }
+  /**
+   * Collects the nodes, and their rectangles in pixels, of the rows visible in the given dimension and within the X range. Only the visible
+   * part of the tree is visited, and runs of nodes narrower than a pixel are collected as a single node.
+   */
+  private void updateDrawnNodes(@NotNull Dimension dim) {
+    myDrawnNodes.clear();
+    myDrawnRectangles.clear();
+    int nodeHeight = getNodeHeight();
+    int rowHeight = nodeHeight + myNodeYPaddingPx;
+    // Rows are laid out from the top; bottom-up charts mirror them, which doesn't change which rows are visible.
+    for (int depth = 0; depth <= myIndex.getMaxDepth(); ++depth) {
+      float y = (float)(rowHeight * depth - myYRange.getMin());
+      if (y + nodeHeight <= 0 || y >= dim.height) {
+        continue;
       }
+      float drawnY = myOrientation == Orientation.BOTTOM_UP ? (float)(dim.getHeight() - y - nodeHeight) : y;
+      myIndex.visit(depth, myXRange.getMin(), myXRange.getMax(), dim.getWidth(), (node, start, end) -> {
+        Rectangle2D.Float rect = obtainRectangle(myDrawnRectangles.size());
+        float left = (float)((start - myXRange.getMin()) / myXRange.getLength());
+        float right = (float)((end - myXRange.getMin()) / myXRange.getLength());
+        rect.x = left * (float)dim.getWidth();
+        rect.y = drawnY;
+        rect.width = Math.max(0, (right - left) * (float)dim.getWidth() - myNodeXPaddingPx);
+        rect.height = nodeHeight;
+        myDrawnRectangles.add(rect);
+        myDrawnNodes.add(node);
+      });
     }
-    if (!myRootVisible && !myNodes.isEmpty()) {
-      myNodes.remove(0);
-      myRectangles.remove(0);
-    }
-  }
-
-  private boolean inRange(@NotNull N node) {
-    return node.getStart() <= myXRange.getMax() && node.getEnd() >= myXRange.getMin();
   }
 
   @NotNull
-  private Rectangle2D.Float createRectangle(@NotNull N node) {
-    float left = (float)((node.getStart() - myXRange.getMin()) / myXRange.getLength());
-    float right = (float)((node.getEnd() - myXRange.getMin()) / myXRange.getLength());
-    Rectangle2D.Float rect = new Rectangle2D.Float();
-    rect.x = left;
-    rect.y = (float)((getNodeHeight() + myNodeYPaddingPx) * node.getDepth() - getYRange().getMin());
-    rect.width = right - left;
-    rect.height = getNodeHeight();
-    return rect;
+  private Rectangle2D.Float obtainRectangle(int index) {
+    if (index == myRectanglePool.size()) {
+      myRectanglePool.add(new Rectangle2D.Float());
+    }
+    return myRectanglePool.get(index);
   }
 
   private double positionToRange(double x) {
@@ -344,6 +319,7 @@ public final class HTreeChart<N extends HNode<N>> extends AnimatedComponent {
 
   public void setHTree(@Nullable N root) {
     this.myRoot = root;
+    myIndex = new HNodeIndex<>(root, myRootVisible);
     changed();
   }
 
@@ -518,22 +494,7 @@ public final class HTreeChart<N extends HNode<N>> extends AnimatedComponent {
       return 0;
     }
 
-    int maxDepth = -1;
-    Queue<N> queue = new LinkedList<>();
-    queue.add(myRoot);
-
-    while (!queue.isEmpty()) {
-      N n = queue.poll();
-      assert n != null;
-      if (n.getDepth() > maxDepth) {
-        maxDepth = n.getDepth();
-      }
-
-      for (int i = 0; i < n.getChildCount(); ++i) {
-        queue.add(n.getChildAt(i));
-      }
-    }
-    maxDepth += 1;
+    int maxDepth = myIndex.getMaxDepth() + 1;
     // The HEIGHT_PADDING is for the chart's toe (the innermost frame on call stacks).
     // We have this because the padding near the chart's head (the outermost frame on call stacks)
     // is there because the root node of the tree is invisible.
@@ -17,12 +17,20 @@ package com.android.tools.adtui.chart.linechart;
 
 import com.android.tools.adtui.model.SeriesData;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.awt.geom.AffineTransform;
 import java.awt.geom.Path2D;
 import java.awt.geom.PathIterator;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
+/**
+ * Default {@link LineChartReducer}. Paths are reduced on primitive coordinate buffers that are reused from one frame to the next, so
+ * the only allocation per reduced path is the resulting {@link Path2D}, sized to the reduced number of points. Instances are not thread
+ * safe and are expected to be used by a single {@link LineChart}.
+ */
 class DefaultLineChartReducer implements LineChartReducer {
   private static final float EPS  = 1e-6f;
 
@@ -31,6 +39,23 @@ class DefaultLineChartReducer implements LineChartReducer {
    */
   private static int PATH_ITERATOR_COORDS_COUNT = 6;
 
+  private static final int INITIAL_BUFFER_SIZE = 256;
+
+  private final float[] myCoords = new float[PATH_ITERATOR_COORDS_COUNT];
+
+  /**
+   * Points of the path to reduce.
+   */
+  @NotNull private float[] myInputXs = new float[INITIAL_BUFFER_SIZE];
+  @NotNull private float[] myInputYs = new float[INITIAL_BUFFER_SIZE];
+
+  /**
+   * Points of the reduced path.
+   */
+  @NotNull private float[] myOutputXs = new float[INITIAL_BUFFER_SIZE];
+  @NotNull private float[] myOutputYs = new float[INITIAL_BUFFER_SIZE];
+  private int myOutputCount;
+
   /**
    * A simple reducer which reduces when,
    * 1. When the data is for a stepped line and if two consecutive values are equal (except for the last two points),
@@ -38,6 +63,8 @@ class DefaultLineChartReducer implements LineChartReducer {
    *    For example, if it has data [(1, 2) (5, 2) (10, 5)] and the assumption of the stepped line is: values in range [1, 10) is 2,
    *    so (5, 2) is redundant.
    * 2. When the data is not for a stepped line and if three consecutive value are equal, the middle of them is unnecessary.
+   *
+   * If no data can be removed, the given list is returned as is.
    */
   @Override
   public List<SeriesData<Long>> reduceData(@NotNull List<SeriesData<Long>> dataList, @NotNull LineConfig config) {
@@ -48,24 +75,41 @@ class DefaultLineChartReducer implements LineChartReducer {
       return dataList;
     }
 
-    List<SeriesData<Long>> reduced = new ArrayList<>();
-    for (SeriesData<Long> data: dataList) {
-      while (reduced.size() >= 2) {
-        SeriesData<Long> preLast = reduced.get(reduced.size() - 2);
-        SeriesData<Long> last = reduced.get(reduced.size() - 1);
+    int size = dataList.size();
+    int keptCount = 0;
+    for (int i = 0; i < size; i++) {
+      if (isKept(dataList, i, config.isStepped())) {
+        keptCount++;
+      }
+    }
+    if (keptCount == size) {
+      return dataList;
+    }
 
-        if (preLast.value.equals(last.value) &&
-            (config.isStepped() || last.value.equals(data.value))) {
-          reduced.remove(reduced.size() - 1);
-        } else {
-          break;
-        }
+    List<SeriesData<Long>> reduced = new ArrayList<>(keptCount);
+    for (int i = 0; i < size; i++) {
+      if (isKept(dataList, i, config.isStepped())) {
+        reduced.add(dataList.get(i));
       }
-      reduced.add(data);
     }
     return reduced;
   }
 
+  /**
+   * In a run of equal values, a stepped line only needs the first one while other lines need the first and the last ones. The first and
+   * last data of the list are always needed.
+   */
+  private static boolean isKept(@NotNull List<SeriesData<Long>> dataList, int index, boolean isStepped) {
+    if (index == 0 || index == dataList.size() - 1) {
+      return true;
+    }
+    long value = dataList.get(index).value;
+    if (value != dataList.get(index - 1).value) {
+      return true;
+    }
+    return !isStepped && value != dataList.get(index + 1).value;
+  }
+
   /**
   * The basic idea behind this algorithm is to reduce number of points to available pixels.
   * For every pixel it draws 4 points: the first point, the last point,
@@ -78,25 +122,33 @@ class DefaultLineChartReducer implements LineChartReducer {
     if (path.getCurrentPoint() == null) {
       return path;
     }
+    return reducePath(path, null, config);
+  }
+
+  /**
+   * Same as {@link #reducePath(Path2D, LineConfig)}, but the points are transformed while being read from the path, so a transformed copy
+   * of the full path is never built.
+   */
+  @NotNull
+  @Override
+  public Path2D reducePath(@NotNull Path2D path, @Nullable AffineTransform transform, @NotNull LineConfig config) {
+    int inputCount = readPoints(path, transform);
+    myOutputCount = 0;
+    if (inputCount == 0) {
+      return new Path2D.Float();
+    }
 
-    Path2D resultPath = new Path2D.Float();
-    float[] coords = new float[PATH_ITERATOR_COORDS_COUNT];
     float pixel = -1;
     float minX = -1, minY = -1;
     float maxX = -1, maxY = -1;
     float curX = -1, curY = -1;
     int minIndex = -1, maxIndex = -1;
-    int curIndex = 0;
-
-    PathIterator iterator = path.getPathIterator(null);
-    while (!iterator.isDone()) {
-      int segType = iterator.currentSegment(coords);
-      assert segType == PathIterator.SEG_MOVETO || segType == PathIterator.SEG_LINETO;
 
+    for (int curIndex = 0; curIndex < inputCount; curIndex++) {
       float previousX = curX;
       float previousY = curY;
-      curX = coords[0];
-      curY = coords[1];
+      curX = myInputXs[curIndex];
+      curY = myInputYs[curIndex];
 
       if (curIndex > 0 && curX < previousX) {
         // This can happen only for a filled line
@@ -108,10 +160,10 @@ class DefaultLineChartReducer implements LineChartReducer {
 
         if (curIndex > 0) {
           // Add min and max points from the previous pixel
-          addMinMaxPoints(resultPath, config, minIndex, minX, minY, maxIndex, maxX, maxY);
+          addMinMaxPoints(config, minIndex, minX, minY, maxIndex, maxX, maxY);
 
           // Add the last point from the previous pixel
-          addToResultPath(resultPath, config, previousX, previousY);
+          addToResult(config, previousX, previousY);
         }
 
         pixel = (float)Math.floor(curX) + 1;
@@ -120,7 +172,7 @@ class DefaultLineChartReducer implements LineChartReducer {
         minIndex = maxIndex = curIndex;
 
         // Add the first point from the current pixel
-        addToResultPath(resultPath, config, curX, curY);
+        addToResult(config, curX, curY);
       } else {
         // We are in the same pixel
 
@@ -136,66 +188,93 @@ class DefaultLineChartReducer implements LineChartReducer {
           maxY = curY;
         }
       }
-
-      iterator.next();
-      curIndex++;
     }
 
-    addMinMaxPoints(resultPath, config, minIndex, minX, minY, maxIndex, maxX, maxY);
-    addToResultPath(resultPath, config, curX, curY);
+    addMinMaxPoints(config, minIndex, minX, minY, maxIndex, maxX, maxY);
+    addToResult(config, curX, curY);
 
     if (config.isStepped()) {
       // The last point won't be added if Y value is the same with previous point, so let's add it
-      if (resultPath.getCurrentPoint() == null || equals((float)resultPath.getCurrentPoint().getY(), curY)) {
-        addToPath(resultPath, curX, curY);
+      if (myOutputCount == 0 || equals(myOutputYs[myOutputCount - 1], curY)) {
+        addPoint(curX, curY);
       }
     }
+
+    Path2D resultPath = new Path2D.Float(Path2D.WIND_NON_ZERO, myOutputCount);
+    resultPath.moveTo(myOutputXs[0], myOutputYs[0]);
+    for (int i = 1; i < myOutputCount; i++) {
+      resultPath.lineTo(myOutputXs[i], myOutputYs[i]);
+    }
     return resultPath;
   }
 
-  private static void addMinMaxPoints(@NotNull Path2D path,
-                               @NotNull LineConfig config,
+  /**
+   * Copies the points of the path, transformed by the given transform if any, to the input buffers.
+   *
+   * @return the number of points
+   */
+  private int readPoints(@NotNull Path2D path, @Nullable AffineTransform transform) {
+    int count = 0;
+    PathIterator iterator = path.getPathIterator(transform);
+    while (!iterator.isDone()) {
+      int segType = iterator.currentSegment(myCoords);
+      assert segType == PathIterator.SEG_MOVETO || segType == PathIterator.SEG_LINETO;
+      if (count == myInputXs.length) {
+        myInputXs = Arrays.copyOf(myInputXs, count * 2);
+        myInputYs = Arrays.copyOf(myInputYs, count * 2);
+      }
+      myInputXs[count] = myCoords[0];
+      myInputYs[count] = myCoords[1];
+      count++;
+      iterator.next();
+    }
+    return count;
+  }
+
+  private void addMinMaxPoints(@NotNull LineConfig config,
                                int minIndex, float minX, float minY,
                                int maxIndex, float maxX, float maxY) {
     if (minIndex < maxIndex) {
-      addToResultPath(path, config, minX, minY, maxX, maxY);
+      addToResult(config, minX, minY);
+      addToResult(config, maxX, maxY);
     } else {
-      addToResultPath(path, config, maxX, maxY, minX, minY);
+      addToResult(config, maxX, maxY);
+      addToResult(config, minX, minY);
     }
   }
 
-  private static void addToResultPath(@NotNull Path2D path, @NotNull LineConfig config, float ...coords) {
-    assert coords.length % 2 == 0;
-    for (int i = 0; i < coords.length; i += 2) {
-      float x = coords[i], y = coords[i + 1];
-      if (config.isStepped()) {
-        addToSteppedLinePath(path, x, y);
-      } else {
-        addToPath(path, x, y);
-      }
+  private void addToResult(@NotNull LineConfig config, float x, float y) {
+    if (config.isStepped()) {
+      addSteppedPoint(x, y);
+    } else {
+      addPoint(x, y);
     }
   }
 
-  private static void addToSteppedLinePath(@NotNull Path2D path, float x, float y) {
-    if (path.getCurrentPoint() == null) {
-      path.moveTo(x, y);
+  private void addSteppedPoint(float x, float y) {
+    if (myOutputCount == 0) {
+      addPoint(x, y);
     } else {
-      if (!equals(y, (float)path.getCurrentPoint().getY())) {
-        addToPath(path, x, (float)path.getCurrentPoint().getY());
-        addToPath(path, x, y);
+      float currentY = myOutputYs[myOutputCount - 1];
+      if (!equals(y, currentY)) {
+        addPoint(x, currentY);
+        addPoint(x, y);
       }
     }
   }
 
-  private static void addToPath(@NotNull Path2D path, float x, float y) {
-    if (path.getCurrentPoint() == null) {
-      path.moveTo(x, y);
-    } else {
+  private void addPoint(float x, float y) {
+    if (myOutputCount > 0 && equals(myOutputXs[myOutputCount - 1], x) && equals(myOutputYs[myOutputCount - 1], y)) {
       // Don't repeat the current point
-      if (!equals((float)path.getCurrentPoint().getX(), x) || !equals((float)path.getCurrentPoint().getY(), y)) {
-        path.lineTo(x, y);
-      }
+      return;
+    }
+    if (myOutputCount == myOutputXs.length) {
+      myOutputXs = Arrays.copyOf(myOutputXs, myOutputCount * 2);
+      myOutputYs = Arrays.copyOf(myOutputYs, myOutputCount * 2);
     }
+    myOutputXs[myOutputCount] = x;
+    myOutputYs[myOutputCount] = y;
+    myOutputCount++;
   }
 
   private static boolean equals(float a, float b) {
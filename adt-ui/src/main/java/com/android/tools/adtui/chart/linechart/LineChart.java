@@ -29,6 +29,8 @@ import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics2D;
 import java.awt.RenderingHints;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Path2D;
 import java.awt.geom.PathIterator;
@@ -133,6 +135,13 @@ public class LineChart extends AnimatedComponent {
     myRedraw = true;
     myModel.addDependency(myAspectObserver)
       .onChange(LineChartModel.Aspect.LINE_CHART, this::modelChanged);
+    addComponentListener(new ComponentAdapter() {
+      @Override
+      public void componentResized(ComponentEvent e) {
+        // Request the data at the resolution of the chart, one bucket per pixel.
+        myModel.setResolution(getWidth());
+      }
+    });
   }
 
   public LineChart(@NotNull LineChartModel model) {
@@ -193,7 +202,10 @@ public class LineChart extends AnimatedComponent {
       }
       final LineConfig config = getLineConfig(ranged);
 
-      List<SeriesData<Long>> seriesList = ranged.getSeries();
+      // Stacked lines add up the values of aligned data points and stepped or bar lines draw every data point, so they need the data at
+      // full resolution.
+      boolean needsFullResolution = config.isStacked() || config.isStepped() || config.getDataBucketInterval() != 0;
+      List<SeriesData<Long>> seriesList = needsFullResolution ? ranged.getSeries() : ranged.getSeries(myModel.getResolution());
       if (config.isStacked()) {
         if (lastStackedSeries == null) {
           // Create a new list of SeriesData to prevent modifying the backing data series, which could be cached.
@@ -228,6 +240,9 @@ public class LineChart extends AnimatedComponent {
       double xBucketBarWidth = xBucketInterval * BUCKET_BAR_PERCENTAGE;
       // If we are a stepped chart or bar chart, we don't need to worry about start and end points' Y value.
       boolean optimizeYZooming = !config.isStepped() && xBucketInterval == 0;
+      // Track the current point of the path ourselves, Path2D#getCurrentPoint allocates a new point on every call.
+      boolean isPathEmpty = true;
+      double currentY = 0;
       for (int i = 0; i < seriesList.size(); i++) {
         SeriesData<Long> data = seriesList.get(i);
         SeriesData<Long> dataNext = seriesList.get(i + 1 == seriesList.size() ? i : i + 1);
@@ -287,23 +302,25 @@ public class LineChart extends AnimatedComponent {
           xd = 1;
         }
 
-        if (path.getCurrentPoint() == null) {
+        if (isPathEmpty) {
+          isPathEmpty = false;
           firstXd = xd;
           firstX = data.x;
           // If for bucket data, because the previous ending x value is next data point's starting
           // x value, i.e. (xd + interval, 1), move the path start point to (xd, 1).
           // Otherwise, move the path start point to (xd, yd).
           path.moveTo(xd, xBucketInterval != 0 ? 1 : yd);
+          currentY = (float)(xBucketInterval != 0 ? 1 : yd);
         }
         else if (xBucketInterval == 0) {
           // If the chart is stepped, a horizontal line should be drawn from the current
           // point (e.g. (x0, y0)) to the destination's X value (e.g. (x1, y0)) before
           // drawing a line to the destination point itself (e.g. (x1, y1)).
           if (config.isStepped()) {
-            float y = (float)path.getCurrentPoint().getY();
-            path.lineTo(xd, y);
+            path.lineTo(xd, currentY);
           }
           path.lineTo(xd, yd);
+          currentY = (float)yd;
         }
 
         if (xBucketInterval != 0) {
@@ -411,10 +428,9 @@ public class LineChart extends AnimatedComponent {
     List<LineConfig> configs = new ArrayList<>(myLinePaths.size());
 
     for (int i = 0; i < myLinePaths.size(); ++i) {
-      Path2D scaledPath = new Path2D.Float(myLinePaths.get(i), scale);
       LineConfig config = getLineConfig(myLinePathSeries.get(i));
       configs.add(config);
-      scaledPath = myReducer.reducePath(scaledPath, config);
+      Path2D scaledPath = myReducer.reducePath(myLinePaths.get(i), scale, config);
       transformedPaths.add(scaledPath);
 
       if (isDrawDebugInfo()) {
@@ -17,6 +17,7 @@ package com.android.tools.adtui.chart.linechart;
 
 import com.android.tools.adtui.model.SeriesData;
 
+import java.awt.geom.AffineTransform;
 import java.awt.geom.Path2D;
 import java.util.List;
 
@@ -36,4 +37,12 @@ public interface LineChartReducer {
    * The result shouldn't affect the looking of the line when it's drawn.
    */
   Path2D reducePath(Path2D path, LineConfig config);
+
+  /**
+   * Transforms the given path to screen space and reduces it in a pixel level. Implementations can override this to avoid building the
+   * transformed path before reducing it.
+   */
+  default Path2D reducePath(Path2D path, AffineTransform transform, LineConfig config) {
+    return reducePath(new Path2D.Float(path, transform), config);
+  }
 }
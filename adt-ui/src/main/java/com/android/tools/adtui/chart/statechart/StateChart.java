@@ -33,6 +33,8 @@ import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.RenderingHints;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
 import java.awt.event.MouseEvent;
 import java.awt.geom.Rectangle2D;
 import java.util.ArrayList;
@@ -146,6 +148,13 @@ public final class StateChart<T> extends AnimatedComponent {
     setModel(model);
     setHeightGap(myConfig.getHeightGap());
     registerMouseEvents();
+    addComponentListener(new ComponentAdapter() {
+      @Override
+      public void componentResized(ComponentEvent e) {
+        // Request the data at the resolution of the chart, one bucket per pixel.
+        myModel.setResolution(getWidth());
+      }
+    });
   }
 
   public void setModel(@NotNull StateChartModel<T> model) {
@@ -153,6 +162,7 @@ public final class StateChart<T> extends AnimatedComponent {
       myModel.removeDependencies(myAspectObserver);
     }
     myModel = model;
+    myModel.setResolution(getWidth());
     myModel.addDependency(myAspectObserver).onChange(StateChartModel.Aspect.MODEL_CHANGED, this::modelChanged);
     modelChanged();
   }
@@ -237,7 +247,7 @@ public final class StateChart<T> extends AnimatedComponent {
       final double invRange = 1.0 / (max - min);
       float startHeight = 1.0f - (rectHeight * (seriesIndex + 1));
 
-      List<SeriesData<T>> seriesDataList = data.getSeries();
+      List<SeriesData<T>> seriesDataList = myModel.getSeriesData(data);
       if (seriesDataList.isEmpty()) {
         continue;
       }
@@ -494,7 +504,7 @@ public final class StateChart<T> extends AnimatedComponent {
     // intersect the left side of the pixel.
     final double mouseXDouble = (double)mousePoint.x;
     final double modelMouseXLeft = mouseXDouble / scaleX * range + min;
-    List<SeriesData<T>> seriesDataList = data.getSeries();
+    List<SeriesData<T>> seriesDataList = myModel.getSeriesData(data);
     if (seriesDataList.isEmpty()) {
       return null;
     }
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.chart.hchart
+
+import com.android.tools.adtui.model.DefaultHNode
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+
+class HNodeIndexTest {
+  private fun node(name: String, start: Long, end: Long, depth: Int) = DefaultHNode(name, start, end).also { it.depth = depth }
+
+  private fun HNodeIndex<DefaultHNode<String>>.query(depth: Int, min: Double, max: Double, width: Double): List<Triple<String, Long, Long>> {
+    val result = mutableListOf<Triple<String, Long, Long>>()
+    visit(depth, min, max, width) { node, start, end -> result.add(Triple(node.data, start, end)) }
+    return result
+  }
+
+  @Test
+  fun onlyNodesInRangeAreVisited() {
+    val root = node("root", 0, 100, 0)
+    for (i in 0 until 10L) {
+      root.addChild(node("child$i", i * 10, i * 10 + 10, 1))
+    }
+    val index = HNodeIndex(root, true)
+    assertThat(index.maxDepth).isEqualTo(1)
+    assertThat(index.nodeCount).isEqualTo(11)
+
+    assertThat(index.query(1, 25.0, 45.0, 1000.0).map { it.first }).containsExactly("child2", "child3", "child4").inOrder()
+    assertThat(index.query(0, 25.0, 45.0, 1000.0).map { it.first }).containsExactly("root")
+    assertThat(index.query(2, 0.0, 100.0, 1000.0)).isEmpty()
+    assertThat(index.query(1, 200.0, 300.0, 1000.0)).isEmpty()
+  }
+
+  @Test
+  fun rootCanBeExcluded() {
+    val root = node("root", 0, 100, 0)
+    root.addChild(node("child", 0, 100, 1))
+    val index = HNodeIndex(root, false)
+    assertThat(index.maxDepth).isEqualTo(1)
+    assertThat(index.nodeCount).isEqualTo(1)
+    assertThat(index.query(0, 0.0, 100.0, 100.0)).isEmpty()
+    assertThat(index.query(1, 0.0, 100.0, 100.0).map { it.first }).containsExactly("child")
+  }
+
+  @Test
+  fun nodesInsideAPixelAreMerged() {
+    val root = node("root", 0, 10000, 0)
+    // 1000 nodes of 10 units each: 100 nodes per pixel when 10000 units are drawn 10 pixels wide.
+    for (i in 0 until 1000L) {
+      root.addChild(node("child$i", i * 10, i * 10 + 9, 1))
+    }
+    root.addChild(node("wide", 10000, 12000, 1))
+    val index = HNodeIndex(root, true)
+
+    val merged = index.query(1, 0.0, 12000.0, 12.0)
+    assertThat(merged).hasSize(11)
+    assertThat(merged[0]).isEqualTo(Triple("child0", 0L, 999L))
+    assertThat(merged[9]).isEqualTo(Triple("child900", 9000L, 9999L))
+    assertThat(merged[10]).isEqualTo(Triple("wide", 10000L, 12000L))
+
+    // Once zoomed in enough, the nodes are no longer merged.
+    assertThat(index.query(1, 0.0, 100.0, 1000.0).map { it.first })
+      .containsExactlyElementsIn((0..10).map { "child$it" }).inOrder()
+  }
+
+  @Test
+  fun overlappingNodesOfTheSameDepth() {
+    val root = node("root", 0, 100, 0)
+    root.addChild(node("long", 0, 100, 1))
+    root.addChild(node("short", 12, 18, 1))
+    root.addChild(node("late", 50, 60, 1))
+    val index = HNodeIndex(root, true)
+
+    // "short" ends before the range, but is reached because "long" before it overlaps the range. It must be skipped.
+    assertThat(index.query(1, 40.0, 70.0, 300.0).map { it.first }).containsExactly("long", "late").inOrder()
+    // A node inside a pixel must not be merged up to the end of a longer node overlapping it.
+    assertThat(index.query(1, 0.0, 100.0, 10.0)).containsExactly(Triple("long", 0L, 100L),
+                                                                  Triple("short", 12L, 18L),
+                                                                  Triple("late", 50L, 60L)).inOrder()
+  }
+}
@@ -21,6 +21,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.awt.*;
+import java.awt.geom.AffineTransform;
 import java.awt.geom.Path2D;
 import java.awt.geom.PathIterator;
 import java.awt.geom.Point2D;
@@ -188,6 +189,43 @@ public class DefaultLineChartReducerTest {
     assertPointsEquals(expected, result);
   }
 
+  @Test
+  public void reduceDataReturnsSameListWhenNothingToReduce() {
+    List<SeriesData<Long>> data = new ImmutableList.Builder<SeriesData<Long>>()
+      .add(new SeriesData<>(0, 10L))
+      .add(new SeriesData<>(1, 10L))
+      .add(new SeriesData<>(2, 13L))
+      .add(new SeriesData<>(3, 5L)).build();
+    assertThat(myReducer.reduceData(data, myConfig)).isSameAs(data);
+  }
+
+  @Test
+  public void reduceTransformedPath() {
+    float[][] given = {{0, 0}, {0.01f, 0.1f}, {0.02f, 0.6f}, {0.03f, 0.4f}, {0.1f, 0.2f}, {0.11f, 0.5f}};
+    AffineTransform transform = new AffineTransform(10, 0, 0, 10, 0, 0);
+    Path2D path = convertToPath(given);
+
+    float[][] expected = convertToArray(myReducer.reducePath(new Path2D.Float(path, transform), myConfig));
+    float[][] result = convertToArray(myReducer.reducePath(path, transform, myConfig));
+    assertPointsEquals(expected, result);
+  }
+
+  @Test
+  public void reducePathWithManyPoints() {
+    // More points than the initial size of the reducer buffers, one pixel wide per 10 points.
+    int count = 10000;
+    float[][] given = new float[count][2];
+    for (int i = 0; i < count; i++) {
+      given[i][0] = i / 10f;
+      given[i][1] = i % 10 == 5 ? 100 : 0;
+    }
+    float[][] result = convertToArray(myReducer.reducePath(convertToPath(given), myConfig));
+    // Each pixel is reduced to its first point, its peak and its last point.
+    assertThat(result.length).isEqualTo(count / 10 * 3);
+    // Reducing a second time reuses the buffers and gives the same result.
+    assertPointsEquals(result, convertToArray(myReducer.reducePath(convertToPath(given), myConfig)));
+  }
+
   private static void convertToScreenCoordinates(float[][] points) {
     for (int i = 0; i < points.length; ++i) {
       points[i][1] = FAKE_HEIGHT - points[i][1];
@@ -35,11 +35,17 @@ import com.android.tools.idea.res.LocalResourceRepository;
 import com.android.tools.idea.res.ResourceRepositoryManager;
 import com.android.utils.SparseArray;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Table;
 import com.intellij.openapi.application.ReadAction;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import org.jetbrains.android.sdk.AndroidPlatform;
@@ -47,15 +53,43 @@ import org.jetbrains.android.sdk.AndroidTargetData;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-/** Cache for resolved resources. */
+/**
+ * Cache for resolved resources.
+ *
+ * <p>All caches are bounded and keep the most recently used entries. Configured framework resources are shared
+ * between all caches in the process using the same framework resource repository. When app resources change,
+ * configured app resources are updated only for the resource types that have changed.
+ */
 // TODO(namespaces): Cache AAR contents if namespaces are used.
 public class ResourceResolverCache {
+  /** Maximum number of cached resource resolvers. */
+  private static final int MAX_RESOLVERS = 64;
+  /** Maximum number of configurations with cached configured framework resources per cache. */
+  private static final int MAX_FRAMEWORK_CONFIGURATIONS = 32;
+  /** Maximum total number of resource values in configured app resources cached per cache. */
+  private static final long MAX_APP_RESOURCE_VALUES = 500_000;
+  /** Maximum total number of resource values in configured framework resources shared by all caches, per framework repository. */
+  private static final long MAX_SHARED_FRAMEWORK_RESOURCE_VALUES = 2_000_000;
+  /** Maximum number of framework resource repositories with configured resources shared by all caches. */
+  private static final int MAX_SHARED_FRAMEWORK_REPOSITORIES = 4;
+
+  /**
+   * Configured framework resources shared by all caches in the process, keyed by the location of the platform whose framework resource
+   * repository they were configured from. The key doesn't refer to the repository, which configured resource values may refer to.
+   * An entry is replaced when the repository of its platform is replaced, e.g. when more languages are loaded or the SDK is reloaded,
+   * and dropped when its repository is garbage collected or when more recently used platforms take its place, so that the cache
+   * doesn't keep the framework resources of an SDK or target that is no longer used.
+   */
+  private static final Cache<String, SharedFrameworkResources> ourSharedFrameworkResources =
+      CacheBuilder.newBuilder().maximumSize(MAX_SHARED_FRAMEWORK_REPOSITORIES).build();
+
   /** The configuration manager this cache corresponds to. */
   private final ConfigurationManager myManager;
 
   /** Map from theme and full configuration to the corresponding resource resolver. */
   @VisibleForTesting
-  final Map<String, ResourceResolver> myResolverMap = new HashMap<>();
+  final Map<String, ResourceResolver> myResolverMap =
+      CacheBuilder.newBuilder().maximumSize(MAX_RESOLVERS).<String, ResourceResolver>build().asMap();
 
   /**
    * Map of configured app resources. These are cached separately from the final resource
@@ -64,14 +98,20 @@ public class ResourceResolverCache {
    * resolvers also includes the theme.
    */
   @VisibleForTesting
-  final Map<String, Table<ResourceNamespace, ResourceType, ResourceValueMap>> myAppResourceMap = new HashMap<>();
+  final Map<String, ConfiguredAppResources> myAppResourceMap =
+      CacheBuilder.newBuilder()
+          .maximumWeight(MAX_APP_RESOURCE_VALUES)
+          .weigher((String key, ConfiguredAppResources value) -> value.weight)
+          .<String, ConfiguredAppResources>build()
+          .asMap();
 
   /**
    * Map of configured resources from Android framework. These are cached separately from the final resource
    * resolver since they can be shared between different layouts that only vary by theme.
    */
   @VisibleForTesting
-  final Map<String, Map<ResourceType, ResourceValueMap>> myFrameworkResourceMap = new HashMap<>();
+  final Map<String, Map<ResourceType, ResourceValueMap>> myFrameworkResourceMap =
+      CacheBuilder.newBuilder().maximumSize(MAX_FRAMEWORK_CONFIGURATIONS).<String, Map<ResourceType, ResourceValueMap>>build().asMap();
 
   /** The generation timestamp of our most recently cached app resources, used to invalidate on edits. */
   private long myCachedGeneration;
@@ -101,8 +141,8 @@ public class ResourceResolverCache {
     }
     LocalResourceRepository resources = repositoryManager.getAppResources();
     if (myCachedGeneration != resources.getModificationCount()) {
+      // Configured app resources are brought up to date when they are requested, see getConfiguredAppResources.
       myResolverMap.clear();
-      myAppResourceMap.clear();
     }
 
     // Store the modification count as soon as possible. This ensures that if there is any modification of resources while the
@@ -130,12 +170,8 @@ public class ResourceResolverCache {
           target == null ? Collections.emptyMap() : getConfiguredFrameworkResources(target, fullConfiguration);
 
       // App resources
-      Table<ResourceNamespace, ResourceType, ResourceValueMap> configuredAppRes = myAppResourceMap.get(qualifierString);
-      if (configuredAppRes == null) {
-        // Get the project resource values based on the current config.
-        configuredAppRes = ReadAction.compute(() -> ResourceRepositoryUtil.getConfiguredResources(resources, fullConfiguration));
-        myAppResourceMap.put(qualifierString, configuredAppRes);
-      }
+      Table<ResourceNamespace, ResourceType, ResourceValueMap> configuredAppRes =
+          getConfiguredAppResources(resources, qualifierString, fullConfiguration);
 
       // Resource Resolver
       Map<ResourceNamespace, Map<ResourceType, ResourceValueMap>> allResources =
@@ -181,12 +217,96 @@ public class ResourceResolverCache {
     // Get the framework resource values based on the current config.
     Map<ResourceType, ResourceValueMap> frameworkResources = myFrameworkResourceMap.get(qualifierString);
     if (frameworkResources == null) {
-      frameworkResources = ResourceRepositoryUtil.getConfiguredResources(resourceRepository, fullConfiguration).row(ResourceNamespace.ANDROID);
+      Cache<String, Map<ResourceType, ResourceValueMap>> sharedFrameworkResources =
+          getSharedFrameworkResources(target.getLocation(), resourceRepository);
+      frameworkResources = sharedFrameworkResources.getIfPresent(qualifierString);
+      if (frameworkResources == null) {
+        frameworkResources =
+            ResourceRepositoryUtil.getConfiguredResources(resourceRepository, fullConfiguration).row(ResourceNamespace.ANDROID);
+        sharedFrameworkResources.put(qualifierString, frameworkResources);
+      }
       myFrameworkResourceMap.put(qualifierString, frameworkResources);
     }
     return frameworkResources;
   }
 
+  /**
+   * Returns the shared configured framework resources of the given repository. Entries of the same key that were configured from
+   * another repository, and entries whose repository has been garbage collected, are dropped.
+   */
+  @NotNull
+  private static Cache<String, Map<ResourceType, ResourceValueMap>> getSharedFrameworkResources(@NotNull String key,
+                                                                                                @NotNull ResourceRepository repository) {
+    synchronized (ourSharedFrameworkResources) {
+      ourSharedFrameworkResources.asMap().values().removeIf(shared -> shared.repository.get() == null);
+      SharedFrameworkResources shared = ourSharedFrameworkResources.getIfPresent(key);
+      if (shared == null || shared.repository.get() != repository) {
+        shared = new SharedFrameworkResources(repository);
+        ourSharedFrameworkResources.put(key, shared);
+      }
+      return shared.configuredResources;
+    }
+  }
+
+  /**
+   * Returns the app resources configured for the given configuration. If the resources were configured before, only
+   * the resource types that have changed since then are configured again.
+   */
+  @NotNull
+  private Table<ResourceNamespace, ResourceType, ResourceValueMap> getConfiguredAppResources(
+      @NotNull LocalResourceRepository resources, @NotNull String qualifierString, @NotNull FolderConfiguration fullConfiguration) {
+    // Get the modification counts before configuring resources. This ensures that if there is any modification of resources
+    // while they are being configured, the affected resource types will be configured again next time.
+    long[] typeGenerations = new long[ResourceType.values().length];
+    for (ResourceType type : ResourceType.values()) {
+      typeGenerations[type.ordinal()] = resources.getModificationCount(type);
+    }
+
+    ConfiguredAppResources cached = myAppResourceMap.get(qualifierString);
+    if (cached != null && cached.repository == resources && Arrays.equals(cached.typeGenerations, typeGenerations)) {
+      return cached.resources;
+    }
+
+    Table<ResourceNamespace, ResourceType, ResourceValueMap> configured;
+    if (cached == null || cached.repository != resources) {
+      // Get the project resource values based on the current config.
+      configured = ReadAction.compute(() -> ResourceRepositoryUtil.getConfiguredResources(resources, fullConfiguration));
+    }
+    else {
+      // The cached table may be in use by existing resource resolvers, so the changed types are updated in a copy.
+      Table<ResourceNamespace, ResourceType, ResourceValueMap> updated = HashBasedTable.create(cached.resources);
+      ReadAction.run(() -> {
+        Set<ResourceNamespace> namespaces = new HashSet<>(updated.rowKeySet());
+        namespaces.addAll(resources.getNamespaces());
+        for (ResourceType type : ResourceType.values()) {
+          if (cached.typeGenerations[type.ordinal()] != typeGenerations[type.ordinal()]) {
+            for (ResourceNamespace namespace : namespaces) {
+              ResourceValueMap values = ResourceRepositoryUtil.getConfiguredResources(resources, namespace, type, fullConfiguration);
+              if (values.isEmpty()) {
+                updated.remove(namespace, type);
+              }
+              else {
+                updated.put(namespace, type, values);
+              }
+            }
+          }
+        }
+      });
+      configured = updated;
+    }
+
+    myAppResourceMap.put(qualifierString, new ConfiguredAppResources(resources, configured, typeGenerations));
+    return configured;
+  }
+
+  private static int countValues(@NotNull Collection<ResourceValueMap> maps) {
+    int count = 0;
+    for (ResourceValueMap map : maps) {
+      count += map.size();
+    }
+    return count;
+  }
+
   @NotNull
   private static String getResolverKey(@NotNull String themeStyle, @NotNull String qualifierString) {
     return qualifierString.isEmpty() ? themeStyle : themeStyle + SdkConstants.RES_QUALIFIER_SEP + qualifierString;
@@ -252,4 +372,45 @@ public class ResourceResolverCache {
     myCustomConfigurationKey = qualifierString;
     myCustomResolverKey = newCustomResolverKey;
   }
+
+  /** Framework resources configured from a framework resource repository, shared by all caches. */
+  private static final class SharedFrameworkResources {
+    /**
+     * The repository the resources were configured from. Weakly referenced, since the configured resource values may refer to it and the
+     * entry should not keep it.
+     */
+    @NotNull final WeakReference<ResourceRepository> repository;
+    /** Configured resources keyed by configuration qualifiers. Softly referenced, since they can be configured again. */
+    @NotNull final Cache<String, Map<ResourceType, ResourceValueMap>> configuredResources =
+        CacheBuilder.newBuilder()
+            .maximumWeight(MAX_SHARED_FRAMEWORK_RESOURCE_VALUES)
+            .weigher((String key, Map<ResourceType, ResourceValueMap> value) -> countValues(value.values()))
+            .softValues()
+            .build();
+
+    SharedFrameworkResources(@NotNull ResourceRepository repository) {
+      this.repository = new WeakReference<>(repository);
+    }
+  }
+
+  /** App resources configured for a particular configuration. */
+  @VisibleForTesting
+  static final class ConfiguredAppResources {
+    /** The app resource repository the resources were configured from. */
+    @NotNull final LocalResourceRepository repository;
+    @NotNull final Table<ResourceNamespace, ResourceType, ResourceValueMap> resources;
+    /** Modification counts of the resource types in {@link #repository} at the time the resources were configured. */
+    @NotNull final long[] typeGenerations;
+    /** Total number of resource values used to bound the cache. */
+    final int weight;
+
+    ConfiguredAppResources(@NotNull LocalResourceRepository repository,
+                           @NotNull Table<ResourceNamespace, ResourceType, ResourceValueMap> resources,
+                           @NotNull long[] typeGenerations) {
+      this.repository = repository;
+      this.resources = resources;
+      this.typeGenerations = typeGenerations;
+      this.weight = countValues(resources.values());
+    }
+  }
 }
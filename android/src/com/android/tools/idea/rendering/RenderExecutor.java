@@ -0,0 +1,380 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.rendering;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.intellij.openapi.diagnostic.Logger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import javax.annotation.concurrent.GuardedBy;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Scheduler for layoutlib render actions. The executor runs a fixed number of render workers, each one backed by a single thread.
+ * <p/>
+ * Layoutlib keeps state in thread locals (e.g. the render session) so all the actions for a given affinity object (typically a
+ * {@link RenderTask}) are always dispatched to the same worker. Actions without an affinity run on the first worker, which preserves the
+ * behaviour of the old single render thread for callers that do not know which session they belong to.
+ * <p/>
+ * Within a worker, the actions of each affinity always run in submission order, since a session expects e.g. inflate, render and a
+ * property read to happen in the order they were requested. {@link Priority} only decides which affinity runs next: an affinity has the
+ * highest priority of its pending actions, so visible previews jump ahead of offscreen ones and a synchronous action speeds up the
+ * actions queued before it instead of overtaking them. Actions submitted with {@link #runAsyncCancellableAction} that have not started
+ * yet can be cancelled with {@link #cancelPending(Object)} when their results become stale. Other actions, like the clean-up of a
+ * session, always run.
+ */
+public final class RenderExecutor {
+  private static final Logger LOG = Logger.getInstance(RenderExecutor.class);
+
+  /** Base name of the render worker threads. */
+  static final String THREAD_NAME = "Layoutlib Render Thread";
+
+  /**
+   * Priority of a render action. The affinities with higher priority actions pending are served first.
+   */
+  public enum Priority {
+    /** Synchronous actions and previews currently visible to the user. */
+    HIGH,
+    NORMAL,
+    /** Previews that are not currently visible. */
+    LOW
+  }
+
+  private final Worker[] myWorkers;
+  private final AtomicLong mySequence = new AtomicLong(0);
+
+  RenderExecutor(int workerCount) {
+    if (workerCount < 1) {
+      throw new IllegalArgumentException("workerCount must be at least 1, was " + workerCount);
+    }
+    myWorkers = new Worker[workerCount];
+    for (int i = 0; i < workerCount; i++) {
+      myWorkers[i] = new Worker(i == 0 ? THREAD_NAME : THREAD_NAME + " #" + i);
+    }
+  }
+
+  public int getWorkerCount() {
+    return myWorkers.length;
+  }
+
+  /**
+   * Returns the number of actions waiting to be executed across all the workers.
+   */
+  public int getPendingCount() {
+    int count = 0;
+    for (Worker worker : myWorkers) {
+      count += worker.getPendingCount();
+    }
+    return count;
+  }
+
+  @NotNull
+  private Worker workerFor(@Nullable Object affinity) {
+    if (affinity == null || myWorkers.length == 1) {
+      return myWorkers[0];
+    }
+    return myWorkers[Math.floorMod(System.identityHashCode(affinity), myWorkers.length)];
+  }
+
+  @NotNull
+  private <T> RenderRequest<T> enqueue(@Nullable Object affinity,
+                                       @NotNull Priority priority,
+                                       boolean cancellable,
+                                       @NotNull Callable<T> callable) {
+    RenderRequest<T> request = new RenderRequest<>(affinity, priority, mySequence.getAndIncrement(), cancellable, callable);
+    workerFor(affinity).enqueue(request);
+    return request;
+  }
+
+  /**
+   * Runs the given action asynchronously in the worker assigned to the given affinity.
+   */
+  @NotNull
+  public <T> CompletableFuture<T> runAsyncAction(@Nullable Object affinity, @NotNull Priority priority, @NotNull Supplier<T> supplier) {
+    return enqueue(affinity, priority, false, supplier::get).myFuture;
+  }
+
+  /**
+   * Same as {@link #runAsyncAction(Object, Priority, Supplier)} but the action can be dropped by {@link #cancelPending(Object)} if it has
+   * not started yet. Only use it for actions whose result can become stale, like inflating or rendering, and never for clean-up.
+   */
+  @NotNull
+  public <T> CompletableFuture<T> runAsyncCancellableAction(@Nullable Object affinity,
+                                                            @NotNull Priority priority,
+                                                            @NotNull Supplier<T> supplier) {
+    return enqueue(affinity, priority, true, supplier::get).myFuture;
+  }
+
+  /**
+   * Runs the given action in the worker assigned to the given affinity and waits at most {@code timeoutMs} for it to finish.
+   * If the action times out, the thrown {@link TimeoutException} carries the stack trace of the worker thread running it.
+   */
+  public <T> T runAction(@Nullable Object affinity, @NotNull Callable<T> callable, long timeoutMs) throws Exception {
+    Worker worker = workerFor(affinity);
+    RenderRequest<T> request = null;
+    try {
+      // If the number of timeouts exceeds a certain threshold, stop waiting so the caller doesn't block. We try to submit a task that
+      // clean-up the timeout counter instead. If it goes through, it means the queue is free.
+      if (worker.myTimeoutExceptionCounter.get() > 3) {
+        enqueue(affinity, Priority.HIGH, false, () -> {
+          worker.myTimeoutExceptionCounter.set(0);
+          return null;
+        }).myFuture.get(50, TimeUnit.MILLISECONDS);
+      }
+
+      request = enqueue(affinity, Priority.HIGH, false, callable);
+      T result = request.myFuture.get(timeoutMs, TimeUnit.MILLISECONDS);
+      // The executor seems to be taking tasks so reset the counter
+      worker.myTimeoutExceptionCounter.set(0);
+
+      return result;
+    }
+    catch (TimeoutException e) {
+      worker.myTimeoutExceptionCounter.incrementAndGet();
+
+      Thread renderingThread = request != null ? request.myRunningThread : null;
+      if (renderingThread == null) {
+        // The request has not started yet, the worker is blocked by a previous action.
+        renderingThread = worker.myThread.get();
+      }
+      TimeoutException timeoutException = new TimeoutException("Preview timed out while rendering the layout.\n" +
+                                                               "This typically happens when there is an infinite loop or unbounded recursion in one of the custom views.");
+      if (renderingThread != null) {
+        timeoutException.setStackTrace(renderingThread.getStackTrace());
+      }
+
+      throw timeoutException;
+    }
+  }
+
+  /**
+   * Cancels the cancellable actions for the given affinity that have not started running yet. The futures of the cancelled actions
+   * complete with a {@link java.util.concurrent.CancellationException}. Actions that were not submitted as cancellable stay queued.
+   *
+   * @return the number of cancelled actions
+   */
+  public int cancelPending(@NotNull Object affinity) {
+    List<RenderRequest<?>> cancelled = workerFor(affinity).removePending(affinity, true);
+    cancelled.forEach(request -> request.myFuture.cancel(false));
+    if (!cancelled.isEmpty()) {
+      LOG.debug("Cancelled " + cancelled.size() + " stale render actions");
+    }
+    return cancelled.size();
+  }
+
+  void shutdownNow() {
+    for (Worker worker : myWorkers) {
+      worker.myExecutor.shutdownNow();
+      worker.removePending(null, false);
+      Thread currentThread = worker.myThread.getAndSet(null);
+      if (currentThread != null) {
+        currentThread.interrupt();
+      }
+    }
+  }
+
+  @VisibleForTesting
+  boolean awaitTermination(long timeout, @NotNull TimeUnit unit) throws InterruptedException {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    for (Worker worker : myWorkers) {
+      if (!worker.myExecutor.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * A single render thread. The executor queue only holds tokens, one per enqueued request; each token runs the request that is next
+   * according to the ordering described in {@link RenderExecutor}.
+   */
+  private static final class Worker {
+    /** Key used in {@link #myPending} for the actions without an affinity. */
+    private static final Object NO_AFFINITY = new Object();
+
+    private final AtomicReference<Thread> myThread = new AtomicReference<>();
+    private final AtomicInteger myTimeoutExceptionCounter = new AtomicInteger(0);
+    private final ThreadPoolExecutor myExecutor;
+    /** Pending requests of each affinity, in submission order. */
+    @GuardedBy("myPending")
+    private final Map<Object, ArrayDeque<RenderRequest<?>>> myPending = new IdentityHashMap<>();
+
+    private Worker(@NotNull String threadName) {
+      myExecutor = new ThreadPoolExecutor(1, 1,
+                                          0, TimeUnit.MILLISECONDS,
+                                          new LinkedBlockingQueue<>(),
+                                          (Runnable r) -> {
+                                            Thread renderingThread = new Thread(null, r, threadName);
+                                            renderingThread.setDaemon(true);
+                                            myThread.set(renderingThread);
+
+                                            return renderingThread;
+                                          });
+    }
+
+    private void enqueue(@NotNull RenderRequest<?> request) {
+      synchronized (myPending) {
+        myPending.computeIfAbsent(keyOf(request.myAffinity), k -> new ArrayDeque<>()).add(request);
+      }
+      myExecutor.execute(this::runNext);
+    }
+
+    private void runNext() {
+      RenderRequest<?> next = null;
+      synchronized (myPending) {
+        Object nextKey = null;
+        Priority nextPriority = null;
+        for (Map.Entry<Object, ArrayDeque<RenderRequest<?>>> entry : myPending.entrySet()) {
+          ArrayDeque<RenderRequest<?>> requests = entry.getValue();
+          Priority priority = highestPriority(requests);
+          if (next == null ||
+              priority.compareTo(nextPriority) < 0 ||
+              priority == nextPriority && requests.peekFirst().mySequence < next.mySequence) {
+            next = requests.peekFirst();
+            nextKey = entry.getKey();
+            nextPriority = priority;
+          }
+        }
+        if (next == null) {
+          // The request this token was enqueued for has been cancelled.
+          return;
+        }
+        ArrayDeque<RenderRequest<?>> requests = myPending.get(nextKey);
+        requests.pollFirst();
+        if (requests.isEmpty()) {
+          myPending.remove(nextKey);
+        }
+      }
+      next.run();
+    }
+
+    /**
+     * Removes the pending requests of the given affinity, or of all of them if the affinity is null. If {@code cancellableOnly} is true,
+     * the requests that were not submitted as cancellable are kept in their original order.
+     */
+    @NotNull
+    private List<RenderRequest<?>> removePending(@Nullable Object affinity, boolean cancellableOnly) {
+      List<RenderRequest<?>> removed = new ArrayList<>();
+      synchronized (myPending) {
+        Iterator<Map.Entry<Object, ArrayDeque<RenderRequest<?>>>> iterator = myPending.entrySet().iterator();
+        while (iterator.hasNext()) {
+          Map.Entry<Object, ArrayDeque<RenderRequest<?>>> entry = iterator.next();
+          if (affinity != null && entry.getKey() != affinity) {
+            continue;
+          }
+          ArrayDeque<RenderRequest<?>> requests = entry.getValue();
+          Iterator<RenderRequest<?>> requestIterator = requests.iterator();
+          while (requestIterator.hasNext()) {
+            RenderRequest<?> request = requestIterator.next();
+            if (!cancellableOnly || request.myCancellable) {
+              removed.add(request);
+              requestIterator.remove();
+            }
+          }
+          if (requests.isEmpty()) {
+            iterator.remove();
+          }
+        }
+      }
+      return removed;
+    }
+
+    private int getPendingCount() {
+      int count = 0;
+      synchronized (myPending) {
+        for (ArrayDeque<RenderRequest<?>> requests : myPending.values()) {
+          count += requests.size();
+        }
+      }
+      return count;
+    }
+
+    @NotNull
+    private static Object keyOf(@Nullable Object affinity) {
+      return affinity == null ? NO_AFFINITY : affinity;
+    }
+
+    @NotNull
+    private static Priority highestPriority(@NotNull ArrayDeque<RenderRequest<?>> requests) {
+      Priority result = Priority.LOW;
+      for (RenderRequest<?> request : requests) {
+        if (request.myPriority.compareTo(result) < 0) {
+          result = request.myPriority;
+        }
+      }
+      return result;
+    }
+  }
+
+  /**
+   * A single queued render action.
+   */
+  private static final class RenderRequest<T> implements Runnable {
+    @Nullable private final Object myAffinity;
+    @NotNull private final Priority myPriority;
+    private final long mySequence;
+    /** Whether {@link RenderExecutor#cancelPending(Object)} can drop this request. */
+    private final boolean myCancellable;
+    @NotNull private final Callable<T> myCallable;
+    @NotNull private final CompletableFuture<T> myFuture = new CompletableFuture<>();
+    @Nullable private volatile Thread myRunningThread;
+
+    private RenderRequest(@Nullable Object affinity,
+                          @NotNull Priority priority,
+                          long sequence,
+                          boolean cancellable,
+                          @NotNull Callable<T> callable) {
+      myAffinity = affinity;
+      myPriority = priority;
+      mySequence = sequence;
+      myCancellable = cancellable;
+      myCallable = callable;
+    }
+
+    @Override
+    public void run() {
+      if (myFuture.isDone()) {
+        // Cancelled before it had the chance to run
+        return;
+      }
+      myRunningThread = Thread.currentThread();
+      try {
+        myFuture.complete(myCallable.call());
+      }
+      catch (Throwable t) {
+        myFuture.completeExceptionally(t);
+      }
+      finally {
+        myRunningThread = null;
+      }
+    }
+  }
+}
@@ -52,15 +52,10 @@ import com.intellij.psi.xml.XmlTag;
 import com.intellij.util.IncorrectOperationException;
 import com.intellij.util.concurrency.AppExecutorUtil;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Supplier;
 import org.jetbrains.android.facet.AndroidFacet;
 import org.jetbrains.android.maven.AndroidMavenUtil;
@@ -83,9 +78,12 @@ public class RenderService implements Disposable {
                                                                               : 6));
   @VisibleForTesting
   public static long ourRenderThreadTimeoutMs = DEFAULT_RENDER_THREAD_TIMEOUT_MS;
-  private static final AtomicReference<Thread> ourRenderingThread = new AtomicReference<>();
-  private static ExecutorService ourRenderingExecutor;
-  private static final AtomicInteger ourTimeoutExceptionCounter = new AtomicInteger(0);
+  /**
+   * Number of layoutlib render workers. Layoutlib keeps part of its state in static fields so this defaults to a single worker; it can be
+   * raised for layoutlib versions that isolate that state per thread.
+   */
+  private static final int RENDER_WORKER_COUNT = Math.max(1, Integer.getInteger("layoutlib.render.workers", 1));
+  private static RenderExecutor ourRenderingExecutor;
 
   /**
    * {@link Key} used to keep the RenderService instance project association. They key is also used as synchronization object to guard the
@@ -103,16 +101,7 @@ public class RenderService implements Disposable {
   private final Project myProject;
 
   private static void innerInitializeRenderExecutor() {
-    ourRenderingExecutor = new ThreadPoolExecutor(1, 1,
-                             0, TimeUnit.MILLISECONDS,
-                             new LinkedBlockingQueue<>(),
-                             (Runnable r) -> {
-                               Thread renderingThread = new Thread(null, r, "Layoutlib Render Thread");
-                               renderingThread.setDaemon(true);
-                               ourRenderingThread.set(renderingThread);
-
-                               return renderingThread;
-                             });
+    ourRenderingExecutor = new RenderExecutor(RENDER_WORKER_COUNT);
   }
 
   @TestOnly
@@ -124,10 +113,6 @@ public class RenderService implements Disposable {
 
   private static void shutdownRenderExecutor() {
     ourRenderingExecutor.shutdownNow();
-    Thread currentThread = ourRenderingThread.getAndSet(null);
-    if (currentThread != null) {
-      currentThread.interrupt();
-    }
   }
 
   /**
@@ -273,37 +258,30 @@ public class RenderService implements Disposable {
    * method.
    */
   public static <T> T runRenderAction(@NotNull Callable<T> callable) throws Exception {
-    try {
-      // If the number of timeouts exceeds a certain threshold, stop waiting so the caller doesn't block. We try to submit a task that
-      // clean-up the timeout counter instead. If it goes through, it means the queue is free.
-      if (ourTimeoutExceptionCounter.get() > 3) {
-        ourRenderingExecutor.submit(() -> ourTimeoutExceptionCounter.set(0)).get(50, TimeUnit.MILLISECONDS);
-      }
-      long timeout = ourRenderThreadTimeoutMs;
-      if (isFirstCall) {
-        // The initial call might be significantly slower since there is a lot of initialization done on the resource management side.
-        // This covers that case.
-        isFirstCall = false;
-        timeout *= 2;
-      }
-      T result = ourRenderingExecutor.submit(callable).get(timeout, TimeUnit.MILLISECONDS);
-      // The executor seems to be taking tasks so reset the counter
-      ourTimeoutExceptionCounter.set(0);
+    return runRenderAction(null, callable);
+  }
 
-      return result;
-    }
-    catch (TimeoutException e) {
-      ourTimeoutExceptionCounter.incrementAndGet();
-
-      Thread renderingThread = ourRenderingThread.get();
-      TimeoutException timeoutException = new TimeoutException("Preview timed out while rendering the layout.\n" +
-                                                               "This typically happens when there is an infinite loop or unbounded recursion in one of the custom views.");
-      if (renderingThread != null) {
-        timeoutException.setStackTrace(renderingThread.getStackTrace());
-      }
+  /**
+   * Runs a action that requires the rendering lock in the render worker assigned to the given affinity object. All the actions that
+   * share an affinity (e.g. the ones belonging to the same {@link RenderTask}) run on the same worker thread.
+   */
+  public static void runRenderAction(@Nullable Object affinity, @NotNull Runnable runnable) throws Exception {
+    runRenderAction(affinity, Executors.callable(runnable));
+  }
 
-      throw timeoutException;
+  /**
+   * Runs a action that requires the rendering lock in the render worker assigned to the given affinity object. All the actions that
+   * share an affinity (e.g. the ones belonging to the same {@link RenderTask}) run on the same worker thread.
+   */
+  public static <T> T runRenderAction(@Nullable Object affinity, @NotNull Callable<T> callable) throws Exception {
+    long timeout = ourRenderThreadTimeoutMs;
+    if (isFirstCall) {
+      // The initial call might be significantly slower since there is a lot of initialization done on the resource management side.
+      // This covers that case.
+      isFirstCall = false;
+      timeout *= 2;
     }
+    return ourRenderingExecutor.runAction(affinity, callable, timeout);
   }
 
   /**
@@ -314,7 +292,29 @@ public class RenderService implements Disposable {
    */
   @NotNull
   public static <T> CompletableFuture<T> runAsyncRenderAction(@NotNull Supplier<T> callable) {
-    return CompletableFuture.supplyAsync(callable, ourRenderingExecutor);
+    return runAsyncRenderAction(null, RenderExecutor.Priority.NORMAL, callable);
+  }
+
+  /**
+   * Runs an action that requires the rendering lock asynchronously in the render worker assigned to the given affinity object. Pending
+   * actions with a higher {@link RenderExecutor.Priority} run first.
+   */
+  @NotNull
+  public static <T> CompletableFuture<T> runAsyncRenderAction(@Nullable Object affinity,
+                                                              @NotNull RenderExecutor.Priority priority,
+                                                              @NotNull Supplier<T> callable) {
+    return ourRenderingExecutor.runAsyncAction(affinity, priority, callable);
+  }
+
+  /**
+   * Same as {@link #runAsyncRenderAction(Object, RenderExecutor.Priority, Supplier)} but the action is dropped by
+   * {@link #cancelPendingRenderActions(Object)} if it has not started yet. Clean-up actions must not use this method.
+   */
+  @NotNull
+  public static <T> CompletableFuture<T> runAsyncCancellableRenderAction(@Nullable Object affinity,
+                                                                         @NotNull RenderExecutor.Priority priority,
+                                                                         @NotNull Supplier<T> callable) {
+    return ourRenderingExecutor.runAsyncCancellableAction(affinity, priority, callable);
   }
 
   /**
@@ -324,7 +324,33 @@ public class RenderService implements Disposable {
    * This method will run the passed action asynchronously
    */
   public static void runAsyncRenderAction(@NotNull Runnable runnable) {
-    ourRenderingExecutor.execute(runnable);
+    runAsyncRenderAction(null, RenderExecutor.Priority.NORMAL, runnable);
+  }
+
+  /**
+   * Runs an action that requires the rendering lock asynchronously in the render worker assigned to the given affinity object.
+   */
+  public static void runAsyncRenderAction(@Nullable Object affinity,
+                                          @NotNull RenderExecutor.Priority priority,
+                                          @NotNull Runnable runnable) {
+    ourRenderingExecutor.runAsyncAction(affinity, priority, () -> {
+      runnable.run();
+      return null;
+    }).whenComplete((result, t) -> {
+      if (t != null && !(t instanceof CancellationException)) {
+        Logger.getInstance(RenderService.class).warn(t);
+      }
+    });
+  }
+
+  /**
+   * Cancels the cancellable render actions for the given affinity object that have not started yet. Used to drop renders whose result
+   * has become stale because a newer request for the same surface was issued. Clean-up actions still run.
+   *
+   * @return the number of cancelled actions
+   */
+  public static int cancelPendingRenderActions(@NotNull Object affinity) {
+    return ourRenderingExecutor.cancelPending(affinity);
   }
 
   /**
@@ -429,6 +455,7 @@ public class RenderService implements Disposable {
     private boolean useHighQualityShadows = StudioFlags.NELE_RENDER_HIGH_QUALITY_SHADOW.get();
     private SessionParams.RenderingMode myRenderingMode = null;
     private boolean useTransparentBackground = false;
+    @NotNull private RenderExecutor.Priority myPriority = RenderExecutor.Priority.NORMAL;
 
     private RenderTaskBuilder(@NotNull RenderService service,
                               @NotNull AndroidFacet facet,
@@ -551,6 +578,15 @@ public class RenderService implements Disposable {
       return this;
     }
 
+    /**
+     * @see RenderTask#setPriority(RenderExecutor.Priority)
+     */
+    @NotNull
+    public RenderTaskBuilder withPriority(@NotNull RenderExecutor.Priority priority) {
+      myPriority = priority;
+      return this;
+    }
+
     /**
      * Builds a new {@link RenderTask}. The returned future always completes successfully but the value might be null if the RenderTask
      * can not be created.
@@ -615,7 +651,8 @@ public class RenderService implements Disposable {
             .setDecorations(showDecorations)
             .setHighQualityShadows(useHighQualityShadows)
             .setShadowEnabled(isShadowEnabled)
-            .setShowWithToolsAttributes(showWithToolsAttributes);
+            .setShowWithToolsAttributes(showWithToolsAttributes)
+            .setPriority(myPriority);
 
           if (myMaxRenderWidth != -1 && myMaxRenderHeight != -1) {
             task.setMaxRenderSize(myMaxRenderWidth, myMaxRenderHeight);
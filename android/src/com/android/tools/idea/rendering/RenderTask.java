@@ -168,6 +168,7 @@ public class RenderTask {
   private final boolean isSecurityManagerEnabled;
   @NotNull private CrashReporter myCrashReporter;
   private final List<CompletableFuture<?>> myRunningFutures = new LinkedList<>();
+  @NotNull private volatile RenderExecutor.Priority myPriority = RenderExecutor.Priority.NORMAL;
   @NotNull private final AtomicBoolean isDisposed = new AtomicBoolean(false);
   @Nullable private XmlFile myXmlFile;
 
@@ -300,7 +301,7 @@ public class RenderTask {
       gapWorkerField.setAccessible(true);
 
       // Because we are clearing-up a ThreadLocal, the code must run on the Layoutlib Thread
-      RenderService.runAsyncRenderAction(() -> {
+      RenderService.runAsyncRenderAction(this, myPriority, () -> {
         try {
           ThreadLocal<?> gapWorkerFieldValue = (ThreadLocal<?>)gapWorkerField.get(null);
           gapWorkerFieldValue.set(null);
@@ -321,7 +322,7 @@ public class RenderTask {
       Class<?> handlerDelegateClass = myLayoutlibCallback.findClass("android.os.Handler_Delegate");
       Field runnablesMapField = handlerDelegateClass.getDeclaredField("sRunnablesMap");
       runnablesMapField.setAccessible(true);
-      RenderService.runAsyncRenderAction(() -> {
+      RenderService.runAsyncRenderAction(this, myPriority, () -> {
         try {
           WeakHashMap runnablesMap = (WeakHashMap)runnablesMapField.get(null);
           runnablesMap.clear();
@@ -351,7 +352,7 @@ public class RenderTask {
       viewGroupRootField.setAccessible(true);
 
       // Because we are clearing-up a ThreadLocal, the code must run on the Layoutlib Thread
-      RenderService.runAsyncRenderAction(() -> {
+      RenderService.runAsyncRenderAction(this, myPriority, () -> {
         try {
           WeakHashMap emittable = (WeakHashMap)emittableRootField.get(null);
           emittable.clear();
@@ -396,7 +397,7 @@ public class RenderTask {
       myLayoutlibCallback.setLogger(IRenderLogger.NULL_LOGGER);
       if (myRenderSession != null) {
         try {
-          RenderService.runAsyncRenderAction(myRenderSession::dispose);
+          RenderService.runAsyncRenderAction(this, myPriority, myRenderSession::dispose);
           myRenderSession = null;
         }
         catch (Exception ignored) {
@@ -469,6 +470,35 @@ public class RenderTask {
     return this;
   }
 
+  /**
+   * Sets the priority of the render actions issued by this task. Tasks for previews that are visible to the user should use
+   * {@link RenderExecutor.Priority#HIGH} so they are rendered before offscreen ones.
+   *
+   * @return this (such that chains of setters can be stringed together)
+   */
+  @SuppressWarnings("UnusedReturnValue")
+  @NotNull
+  public RenderTask setPriority(@NotNull RenderExecutor.Priority priority) {
+    myPriority = priority;
+    return this;
+  }
+
+  @NotNull
+  public RenderExecutor.Priority getPriority() {
+    return myPriority;
+  }
+
+  /**
+   * Cancels the inflate, render and measure actions of this task that have not started yet. This can be used to drop stale renders when a
+   * newer one is about to be requested. Queued clean-up actions, like disposing a session, are not cancelled. The futures of the
+   * cancelled actions complete with a {@link java.util.concurrent.CancellationException}.
+   *
+   * @return the number of cancelled actions
+   */
+  public int cancelPendingActions() {
+    return RenderService.cancelPendingRenderActions(this);
+  }
+
   /**
    * Sets the transparent background to be used.
    *
@@ -765,8 +795,9 @@ public class RenderTask {
 
   /**
    * Executes the passed {@link Callable} as an async render action and keeps track of it. If {@link #dispose()} is called, the call will
-   * wait until all the async actions have finished running.
-   * See {@link RenderService#runAsyncRenderAction(Supplier)}.
+   * wait until all the async actions have finished running. The action is dropped by {@link #cancelPendingActions()} if it has not
+   * started yet.
+   * See {@link RenderService#runAsyncCancellableRenderAction(Object, RenderExecutor.Priority, Supplier)}.
    */
   @VisibleForTesting
   @NotNull
@@ -776,7 +807,7 @@ public class RenderTask {
     }
 
     synchronized (myRunningFutures) {
-      CompletableFuture<V> newFuture = RenderService.runAsyncRenderAction(callable);
+      CompletableFuture<V> newFuture = RenderService.runAsyncCancellableRenderAction(this, myPriority, callable);
       myRunningFutures.add(newFuture);
       newFuture
         .whenCompleteAsync((result, ex) -> {
@@ -904,7 +935,7 @@ public class RenderTask {
         }).whenComplete((result, ex) -> {
           // After render clean-up. Dispose the GapWorker cache and the Choreographer queued tasks.
           clearGapWorkerCache();
-          RenderService.runAsyncRenderAction(() -> {
+          RenderService.runAsyncRenderAction(this, myPriority, () -> {
             android.view.Choreographer.releaseInstance();
           });
         });
@@ -1049,7 +1080,7 @@ public class RenderTask {
     params.setFlag(RenderParamsFlags.FLAG_KEY_RENDER_ALL_DRAWABLE_STATES, Boolean.TRUE);
 
     try {
-      Result result = RenderService.runRenderAction(() -> myLayoutLib.renderDrawable(params));
+      Result result = RenderService.runRenderAction(this, () -> myLayoutLib.renderDrawable(params));
 
       if (result != null && result.isSuccess()) {
         Object data = result.getData();
@@ -1102,7 +1133,7 @@ public class RenderTask {
   public CompletableFuture<Map<XmlTag, ViewInfo>> measureChildren(@NotNull XmlTag parent, @Nullable AttributeFilter filter) {
     ILayoutPullParser modelParser = LayoutPsiPullParser.create(filter, parent, myLogger);
     Map<XmlTag, ViewInfo> map = new HashMap<>();
-    return RenderService.runAsyncRenderAction(() -> measure(modelParser))
+    return runAsyncRenderAction(() -> measure(modelParser))
         .thenComposeAsync(session -> {
           if (session != null) {
             try {
@@ -1123,7 +1154,7 @@ public class RenderTask {
               return CompletableFuture.completedFuture(map);
             }
             finally {
-              RenderService.runAsyncRenderAction(session::dispose);
+              RenderService.runAsyncRenderAction(this, myPriority, session::dispose);
             }
           }
 
@@ -28,7 +28,10 @@ import com.intellij.util.lang.UrlClassLoader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import javax.annotation.concurrent.GuardedBy;
@@ -61,12 +64,21 @@ public abstract class RenderClassLoader extends ClassLoader {
    */
   private static final Function<ClassVisitor, ClassVisitor> DEFAULT_TRANSFORMS = visitor ->
     new ViewMethodWrapperTransform(new VersionClassTransform(visitor, getCurrentClassVersion(), 0));
+  /**
+   * Identifies {@link #DEFAULT_TRANSFORMS} in the {@link TransformedClassCache}. The version must be incremented whenever any of the
+   * transformations changes its output.
+   */
+  private static final String DEFAULT_TRANSFORMS_ID = "ViewMethodWrapperTransform+VersionClassTransform:1:" + getCurrentClassVersion();
 
   private final Object myJarClassLoaderLock = new Object();
   @GuardedBy("myJarClassLoaderLock")
   private Supplier<UrlClassLoader> myJarClassLoader = Suppliers.memoize(() -> createJarClassLoader(getExternalJars()));
   protected boolean myInsideJarClassLoader;
 
+  private final LongAdder myLoadedClassCount = new LongAdder();
+  /** Time spent reading and rewriting the loaded classes, not including the time spent by the JVM to define them. */
+  private final LongAdder myClassPreparationTimeNs = new LongAdder();
+
   public RenderClassLoader(@Nullable ClassLoader parent) {
     super(parent);
   }
@@ -100,6 +112,7 @@ public abstract class RenderClassLoader extends ClassLoader {
     }
 
     myInsideJarClassLoader = true;
+    long start = System.nanoTime();
     try (InputStream is = jarClassLoaders.getResourceAsStream(name.replace('.', '/') + SdkConstants.DOT_CLASS)) {
       if (is == null) {
         throw new ClassNotFoundException(name);
@@ -109,7 +122,7 @@ public abstract class RenderClassLoader extends ClassLoader {
       if (!isValidClassFile(data)) {
         throw new ClassFormatError(name);
       }
-      byte[] rewritten = ClassConverter.rewriteClass(data, DEFAULT_TRANSFORMS);
+      byte[] rewritten = rewriteClass(data, start);
       return defineClassAndPackage(name, rewritten, 0, rewritten.length);
     }
     catch (IOException | ClassNotFoundException e) {
@@ -126,7 +139,9 @@ public abstract class RenderClassLoader extends ClassLoader {
   @Nullable
   protected Class<?> loadClassFile(String fqcn, @NotNull VirtualFile classFile) {
     try {
+      long start = System.nanoTime();
       byte[] data = classFile.contentsToByteArray();
+      myClassPreparationTimeNs.add(System.nanoTime() - start);
       return loadClass(fqcn, data);
     }
     catch (IOException e) {
@@ -142,7 +157,7 @@ public abstract class RenderClassLoader extends ClassLoader {
       throw new ClassFormatError(fqcn);
     }
 
-    byte[] rewritten = ClassConverter.rewriteClass(data, DEFAULT_TRANSFORMS);
+    byte[] rewritten = rewriteClass(data, System.nanoTime());
     try {
       if (LOG.isDebugEnabled()) {
         LOG.debug(String.format("Defining class '%s' from disk file", anonymizeClassName(fqcn)));
@@ -156,6 +171,43 @@ public abstract class RenderClassLoader extends ClassLoader {
     }
   }
 
+  /**
+   * Applies {@link #DEFAULT_TRANSFORMS} to the given class file, reusing the result of a previous rewrite of the same class file if
+   * there is one in the {@link TransformedClassCache}.
+   *
+   * @param data the class file contents
+   * @param start the {@link System#nanoTime()} at which the preparation of the class started
+   */
+  @NotNull
+  private byte[] rewriteClass(@NotNull byte[] data, long start) {
+    byte[] rewritten = TransformedClassCache.getInstance().getTransformed(data, DEFAULT_TRANSFORMS, DEFAULT_TRANSFORMS_ID);
+    myClassPreparationTimeNs.add(System.nanoTime() - start);
+    myLoadedClassCount.increment();
+    return rewritten;
+  }
+
+  /**
+   * Adds the given class files to the {@link TransformedClassCache}, so that class loaders created later do not have to rewrite them.
+   * The class files are rewritten in parallel, on the calling thread and the threads of the common fork-join pool.
+   */
+  public static void preTransform(@NotNull Collection<VirtualFile> classFiles) {
+    TransformedClassCache.getInstance().preTransform(classFiles, DEFAULT_TRANSFORMS, DEFAULT_TRANSFORMS_ID);
+  }
+
+  /**
+   * Returns the number of classes loaded by this class loader.
+   */
+  public long getLoadedClassCount() {
+    return myLoadedClassCount.sum();
+  }
+
+  /**
+   * Returns the time spent reading and rewriting the classes loaded by this class loader, in milliseconds.
+   */
+  public long getClassPreparationTimeMs() {
+    return TimeUnit.NANOSECONDS.toMillis(myClassPreparationTimeNs.sum());
+  }
+
   @NotNull
   protected Class<?> defineClassAndPackage(@NotNull String name, @NotNull byte[] b, int offset, int len) {
     int i = name.lastIndexOf('.');
@@ -0,0 +1,314 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.rendering.classloading;
+
+import static com.android.tools.idea.rendering.classloading.ClassConverter.isValidClassFile;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.hash.Hashing;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtilRt;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.org.objectweb.asm.ClassVisitor;
+
+/**
+ * On-disk cache of class files rewritten by {@link ClassConverter#rewriteClass}. Entries are keyed by a hash of the original class
+ * file contents and of an identifier of the applied transformations, so a class that did not change since the previous build is not
+ * rewritten again when a new class loader loads it.
+ *
+ * <p>The cache is shared by all class loaders in the process and is thread-safe. Failures to read or write the cache are not fatal;
+ * the class is rewritten in memory in that case.
+ *
+ * <p>Entries are touched when they are used, so that their modification time is the time they were last used. Entries unused for
+ * {@link #MAX_ENTRY_AGE_MS} are removed, and so are the least recently used entries while the cache is larger than its size cap.
+ */
+public final class TransformedClassCache {
+  private static final Logger LOG = Logger.getInstance(TransformedClassCache.class);
+  private static final String CACHE_DIRECTORY = "rendering/transformed-classes";
+  /** Entries that were not used for this long are removed when the cache is opened. */
+  private static final long MAX_ENTRY_AGE_MS = TimeUnit.DAYS.toMillis(30);
+  /** Default size cap of the cache. Classes of both project outputs and external jars are cached, so it can grow with every build. */
+  private static final long DEFAULT_MAX_SIZE_BYTES = 256L * 1024 * 1024;
+
+  @NotNull private final Path myRootDir;
+  private final long myMaxSizeBytes;
+  private final LongAdder myHits = new LongAdder();
+  private final LongAdder myMisses = new LongAdder();
+  private final LongAdder myRewriteTimeNs = new LongAdder();
+  /** Bytes stored since the last time entries were removed, used to enforce the size cap while the IDE is running. */
+  private final AtomicLong myBytesStoredSinceCleanUp = new AtomicLong();
+
+  @VisibleForTesting
+  TransformedClassCache(@NotNull Path rootDir) {
+    this(rootDir, DEFAULT_MAX_SIZE_BYTES);
+  }
+
+  @VisibleForTesting
+  TransformedClassCache(@NotNull Path rootDir, long maxSizeBytes) {
+    myRootDir = rootDir;
+    myMaxSizeBytes = maxSizeBytes;
+  }
+
+  @NotNull
+  public static TransformedClassCache getInstance() {
+    return InstanceHolder.INSTANCE;
+  }
+
+  /**
+   * Returns the class file obtained by applying the given transformations to the given class file.
+   *
+   * @param classData the original class file contents
+   * @param transformations the transformations to apply
+   * @param transformationsId an identifier of the transformations that changes whenever their output may change
+   */
+  @NotNull
+  public byte[] getTransformed(@NotNull byte[] classData,
+                               @NotNull Function<ClassVisitor, ClassVisitor> transformations,
+                               @NotNull String transformationsId) {
+    Path entry = getEntryFile(classData, transformationsId);
+    try {
+      byte[] cached = Files.readAllBytes(entry);
+      if (isValidClassFile(cached)) {
+        myHits.increment();
+        touch(entry);
+        return cached;
+      }
+    }
+    catch (NoSuchFileException ignored) {
+    }
+    catch (IOException e) {
+      LOG.debug(e);
+    }
+
+    return rewriteAndStore(entry, classData, transformations);
+  }
+
+  /**
+   * Adds the given class files to the cache, rewriting them in parallel. Class files that are already in the cache are not rewritten.
+   * Meant to be called when a build finishes, so that a new class loader created for the next render finds the classes ready.
+   */
+  public void preTransform(@NotNull Collection<VirtualFile> classFiles,
+                           @NotNull Function<ClassVisitor, ClassVisitor> transformations,
+                           @NotNull String transformationsId) {
+    long start = System.nanoTime();
+    classFiles.parallelStream().forEach(classFile -> {
+      try {
+        byte[] classData = classFile.contentsToByteArray();
+        if (isValidClassFile(classData)) {
+          Path entry = getEntryFile(classData, transformationsId);
+          if (Files.exists(entry)) {
+            touch(entry);
+          }
+          else {
+            rewriteAndStore(entry, classData, transformations);
+          }
+        }
+      }
+      catch (IOException e) {
+        // The file may have been deleted by the build.
+        LOG.debug(e);
+      }
+      catch (RuntimeException e) {
+        // The class will be rewritten again, and the error reported, if it is ever loaded.
+        LOG.debug(e);
+      }
+    });
+    if (LOG.isDebugEnabled()) {
+      LOG.debug(String.format("Pre-transformed %d classes in %d ms", classFiles.size(),
+                              TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+    }
+  }
+
+  /**
+   * Returns the number of classes found in the cache.
+   */
+  public long getHitCount() {
+    return myHits.sum();
+  }
+
+  /**
+   * Returns the number of classes that had to be rewritten.
+   */
+  public long getMissCount() {
+    return myMisses.sum();
+  }
+
+  /**
+   * Returns the total time spent rewriting classes that were not found in the cache, in milliseconds.
+   */
+  public long getRewriteTimeMs() {
+    return TimeUnit.NANOSECONDS.toMillis(myRewriteTimeNs.sum());
+  }
+
+  @NotNull
+  private byte[] rewriteAndStore(@NotNull Path entry,
+                                 @NotNull byte[] classData,
+                                 @NotNull Function<ClassVisitor, ClassVisitor> transformations) {
+    myMisses.increment();
+    long start = System.nanoTime();
+    byte[] rewritten = ClassConverter.rewriteClass(classData, transformations);
+    myRewriteTimeNs.add(System.nanoTime() - start);
+    store(entry, rewritten);
+    return rewritten;
+  }
+
+  @NotNull
+  private Path getEntryFile(@NotNull byte[] classData, @NotNull String transformationsId) {
+    String hash = Hashing.sha256().newHasher()
+      .putString(transformationsId, StandardCharsets.UTF_8)
+      .putInt(classData.length)
+      .putBytes(classData)
+      .hash()
+      .toString();
+    return myRootDir.resolve(hash.substring(0, 2)).resolve(hash.substring(2) + ".class");
+  }
+
+  private void store(@NotNull Path entry, @NotNull byte[] classData) {
+    // Write to a temporary file first, then rename it to the final name, so that concurrent readers never see a partial entry.
+    Path tempFile = null;
+    try {
+      Files.createDirectories(entry.getParent());
+      tempFile = FileUtilRt.createTempFile(entry.getParent().toFile(), entry.getFileName().toString(), ".tmp").toPath();
+      Files.write(tempFile, classData);
+      Files.move(tempFile, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      // Check the size cap again after about an eighth of it has been written. Only the caller that crosses the threshold schedules it.
+      long threshold = myMaxSizeBytes / 8;
+      long stored = myBytesStoredSinceCleanUp.addAndGet(classData.length);
+      if (stored >= threshold && stored - classData.length < threshold) {
+        AppExecutorUtil.getAppExecutorService().execute(this::removeStaleEntries);
+      }
+    }
+    catch (IOException e) {
+      LOG.debug("Unable to store " + entry.toString(), e);
+      if (tempFile != null) {
+        deleteIgnoringErrors(tempFile);
+      }
+    }
+  }
+
+  /**
+   * Marks the entry as used, so that it is removed last.
+   */
+  private static void touch(@NotNull Path entry) {
+    try {
+      Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+    }
+    catch (IOException e) {
+      LOG.debug(e);
+    }
+  }
+
+  /**
+   * Removes entries that were not used in the last {@link #MAX_ENTRY_AGE_MS}, then the least recently used entries until the cache
+   * fits in its size cap. Since entries are keyed by contents, the cache would otherwise grow with every build.
+   */
+  @VisibleForTesting
+  synchronized void removeStaleEntries() {
+    myBytesStoredSinceCleanUp.set(0);
+    if (!Files.isDirectory(myRootDir)) {
+      return;
+    }
+    long threshold = System.currentTimeMillis() - MAX_ENTRY_AGE_MS;
+    List<Entry> entries = new ArrayList<>();
+    try (Stream<Path> files = Files.walk(myRootDir, 2)) {
+      files.forEach(file -> {
+        try {
+          BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+          if (!attributes.isRegularFile()) {
+            return;
+          }
+          if (attributes.lastModifiedTime().toMillis() < threshold) {
+            Files.delete(file);
+          }
+          else {
+            entries.add(new Entry(file, attributes.lastModifiedTime().toMillis(), attributes.size()));
+          }
+        }
+        catch (IOException ignored) {
+        }
+      });
+    }
+    catch (IOException | RuntimeException e) {
+      LOG.debug(e);
+      return;
+    }
+
+    long totalSize = entries.stream().mapToLong(entry -> entry.size).sum();
+    if (totalSize <= myMaxSizeBytes) {
+      return;
+    }
+    entries.sort(Comparator.comparingLong(entry -> entry.lastUsedMs));
+    for (Entry entry : entries) {
+      if (totalSize <= myMaxSizeBytes) {
+        break;
+      }
+      deleteIgnoringErrors(entry.file);
+      totalSize -= entry.size;
+    }
+  }
+
+  private static void deleteIgnoringErrors(@NotNull Path file) {
+    try {
+      Files.deleteIfExists(file);
+    }
+    catch (IOException ignored) {
+    }
+  }
+
+  private static class Entry {
+    @NotNull final Path file;
+    final long lastUsedMs;
+    final long size;
+
+    Entry(@NotNull Path file, long lastUsedMs, long size) {
+      this.file = file;
+      this.lastUsedMs = lastUsedMs;
+      this.size = size;
+    }
+  }
+
+  private static class InstanceHolder {
+    static final TransformedClassCache INSTANCE = createInstance();
+
+    @NotNull
+    private static TransformedClassCache createInstance() {
+      TransformedClassCache cache = new TransformedClassCache(Paths.get(PathManager.getSystemPath(), CACHE_DIRECTORY));
+      AppExecutorUtil.getAppExecutorService().execute(cache::removeStaleEntries);
+      return cache;
+    }
+  }
+}
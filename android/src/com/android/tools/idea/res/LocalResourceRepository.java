@@ -34,6 +34,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -136,6 +137,10 @@ public abstract class LocalResourceRepository extends AbstractResourceRepository
   @Nullable private List<MultiResourceRepository> myParents;
 
   private volatile long myGeneration;
+  /** The generation of the last change that could have affected resources of any type. */
+  private volatile long myAllTypesGeneration;
+  /** Generations of the last changes affecting resources of particular types, indexed by {@link ResourceType#ordinal()}. */
+  private final AtomicLongArray myTypeGenerations = new AtomicLongArray(ResourceType.values().length);
 
   private final Object RESOURCE_DIRS_LOCK = new Object();
   @Nullable private Set<VirtualFile> myResourceDirs;
@@ -213,7 +218,33 @@ public abstract class LocalResourceRepository extends AbstractResourceRepository
     return myGeneration;
   }
 
+  /**
+   * Returns the generation of the resources of the given type. It changes whenever resources of the given type
+   * are added, removed or change their values. Changes of other resource types don't affect it.
+   *
+   * @see #getModificationCount()
+   */
+  public long getModificationCount(@NotNull ResourceType type) {
+    return Math.max(myAllTypesGeneration, myTypeGenerations.get(type.ordinal()));
+  }
+
+  /**
+   * Sets the generation of the repository after a change that could have affected resources of any type.
+   */
   protected void setModificationCount(long count) {
+    myAllTypesGeneration = count;
+    myGeneration = count;
+  }
+
+  /**
+   * Sets the generation of the repository after a change that affected only resources of the given types.
+   * If no types are given, the change didn't affect any resource values, for example, only the contents
+   * of a file resource have changed.
+   */
+  protected void setModificationCountForTypes(long count, @NotNull ResourceType... types) {
+    for (ResourceType type : types) {
+      myTypeGenerations.set(type.ordinal(), count);
+    }
     myGeneration = count;
   }
 
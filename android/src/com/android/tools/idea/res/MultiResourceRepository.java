@@ -24,6 +24,7 @@ import com.android.ide.common.resources.SingleNamespaceResourceRepository;
 import com.android.ide.common.resources.configuration.FolderConfiguration;
 import com.android.resources.ResourceType;
 import com.android.tools.idea.resources.aar.AarResourceRepository;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableList;
@@ -55,6 +56,9 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Predicate;
 import javax.annotation.concurrent.GuardedBy;
 import org.jetbrains.annotations.NotNull;
@@ -67,6 +71,11 @@ import org.jetbrains.annotations.Nullable;
  * replace/hide any subsequent definitions of the same resource.
  *
  * <p>In the resource repository hierarchy, MultiResourceRepository is an internal node, never a leaf.
+ *
+ * <p>Merged resources of each namespace and type are also published as immutable snapshots. Reads served
+ * from a snapshot don't acquire {@link #ITEM_MAP_LOCK} and therefore don't wait for updates of the child
+ * repositories. A snapshot is dropped when any of its child repositories invalidates the corresponding
+ * resource type, and is recreated by the next read that merges the resources under the lock.
  */
 @SuppressWarnings("InstanceGuardedByStatic") // TODO: The whole locking scheme for resource repositories needs to be reworked.
 public abstract class MultiResourceRepository extends LocalResourceRepository implements Disposable {
@@ -108,6 +117,18 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
   private final Table<ResourceNamespace, ResourceType, Set<SingleNamespaceResourceRepository>> myUnreconciledResources =
       Tables.newCustomTable(new HashMap<>(), () -> Maps.newEnumMap(ResourceType.class));
 
+  /**
+   * The up to date maps in {@link #myCachedMaps} indexed by {@link ResourceType#ordinal()}.
+   * Modified only while holding {@link #ITEM_MAP_LOCK}, but read without it.
+   */
+  private final Map<ResourceNamespace, AtomicReferenceArray<ImmutableListMultimap<String, ResourceItem>>> mySnapshots =
+      new ConcurrentHashMap<>();
+
+  /** Number of reads served from {@link #mySnapshots}. */
+  private final LongAdder myLockFreeReads = new LongAdder();
+  /** Number of reads that had to acquire {@link #ITEM_MAP_LOCK} because there was no snapshot to serve them. */
+  private final LongAdder myLockedReads = new LongAdder();
+
   MultiResourceRepository(@NotNull String displayName) {
     super(displayName);
   }
@@ -149,6 +170,7 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
         myModificationCounts[i++] = child.getModificationCount();
       }
       myCachedMaps.clear();
+      mySnapshots.clear();
 
       invalidateParentCaches();
     }
@@ -237,13 +259,25 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
       }
 
       if (changed) {
-        setModificationCount(ourModificationCounter.incrementAndGet());
+        // The affected resource types are reflected by the modification counts of the children.
+        setModificationCountForTypes(ourModificationCounter.incrementAndGet());
       }
 
       return super.getModificationCount();
     }
   }
 
+  @Override
+  public long getModificationCount(@NotNull ResourceType type) {
+    synchronized (ITEM_MAP_LOCK) {
+      long count = super.getModificationCount(type);
+      for (LocalResourceRepository child : myLocalResources) {
+        count = Math.max(count, child.getModificationCount(type));
+      }
+      return count;
+    }
+  }
+
   @Override
   @NotNull
   public Set<ResourceNamespace> getNamespaces() {
@@ -285,11 +319,14 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
       return getResourcesUnderLock(repository, namespace, type);
     }
 
-    ListMultimap<String, ResourceItem> map = myCachedMaps.get(namespace, type);
+    ImmutableListMultimap<String, ResourceItem> map = getCachedMap(namespace, type);
     Set<SingleNamespaceResourceRepository> unreconciledRepositories = null;
     if (map != null) {
       unreconciledRepositories = myUnreconciledResources.get(namespace, type);
       if (unreconciledRepositories == null) {
+        if (findSnapshot(namespace, type) == null) {
+          publishSnapshot(namespace, type, map);
+        }
         return map;
       }
     }
@@ -299,47 +336,52 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
 
     if (map == null) {
       // Create a new map.
-      // We only add a duplicate item if there isn't an item with the same qualifiers and it is
-      // not a styleable or an id. Styleables and ids are allowed to be defined in multiple
-      // places even with the same qualifiers.
-      map = type == ResourceType.STYLEABLE || type == ResourceType.ID ?
-            ArrayListMultimap.create() : new PerConfigResourceMap(myResourceComparator);
+      ListMultimap<String, ResourceItem> merged = createMergedMap(type);
       for (SingleNamespaceResourceRepository repository : repositoriesForNamespace) {
         ListMultimap<String, ResourceItem> items = getResourcesUnderLock(repository, namespace, type);
-        map.putAll(items);
+        merged.putAll(items);
 
         if (repository instanceof LocalResourceRepository) {
           myResourceNames.put(repository, type, ImmutableSet.copyOf(items.keySet()));
         }
       }
+      map = ImmutableListMultimap.copyOf(merged);
     }
     else {
-      // Update a partially out of date map.
+      // Update a partially out of date map. Only the names that the unreconciled repositories defined before or define now are merged
+      // again, the items of the other names are reused as they are.
+      Set<String> changedNames = new HashSet<>();
       for (SingleNamespaceResourceRepository unreconciledRepository : unreconciledRepositories) {
-        // Delete all resources that belonged to unreconciledRepository.
-        Predicate<ResourceItem> filter = item -> item.getRepository().equals(unreconciledRepository);
-        Set<String> names = myResourceNames.get(unreconciledRepository, type);
-        PerConfigResourceMap perConfigMap = map instanceof PerConfigResourceMap ? (PerConfigResourceMap)map : null;
-        for (String name : names) {
-          if (perConfigMap != null) {
-            perConfigMap.removeIf(name, filter);
-          }
-          else {
-            List<ResourceItem> items = map.get(name);
-            items.removeIf(filter);
-            if (items.isEmpty()) {
-              map.removeAll(name);
-            }
-          }
+        Set<String> oldNames = myResourceNames.get(unreconciledRepository, type);
+        if (oldNames != null) {
+          changedNames.addAll(oldNames);
         }
-        // Add all resources from unreconciledRepository.
         ListMultimap<String, ResourceItem> unreconciledResources = getResourcesUnderLock(unreconciledRepository, namespace, type);
-        map.putAll(unreconciledResources);
+        changedNames.addAll(unreconciledResources.keySet());
 
         assert unreconciledRepository instanceof LocalResourceRepository;
         myResourceNames.put(unreconciledRepository, type, ImmutableSet.copyOf(unreconciledResources.keySet()));
       }
 
+      ListMultimap<String, ResourceItem> changed = createMergedMap(type);
+      for (SingleNamespaceResourceRepository repository : repositoriesForNamespace) {
+        ListMultimap<String, ResourceItem> items = getResourcesUnderLock(repository, namespace, type);
+        for (String name : changedNames) {
+          List<ResourceItem> itemsWithName = items.get(name);
+          if (itemsWithName != null && !itemsWithName.isEmpty()) {
+            changed.putAll(name, itemsWithName);
+          }
+        }
+      }
+
+      ImmutableListMultimap.Builder<String, ResourceItem> builder = ImmutableListMultimap.builder();
+      for (Map.Entry<String, Collection<ResourceItem>> entry : map.asMap().entrySet()) {
+        if (!changedNames.contains(entry.getKey())) {
+          builder.putAll(entry.getKey(), entry.getValue());
+        }
+      }
+      map = builder.putAll(changed).build();
+
       myUnreconciledResources.remove(namespace, type);
     }
 
@@ -352,11 +394,128 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
                               getClass().getSimpleName()));
     }
 
+    // The immutable map is both the cached map and the snapshot served to readers, so the merged resources are only kept once.
     myCachedMaps.put(namespace, type, map);
+    publishSnapshot(namespace, type, map);
 
     return map;
   }
 
+  @NotNull
+  private ListMultimap<String, ResourceItem> createMergedMap(@NotNull ResourceType type) {
+    // We only add a duplicate item if there isn't an item with the same qualifiers and it is
+    // not a styleable or an id. Styleables and ids are allowed to be defined in multiple
+    // places even with the same qualifiers.
+    return type == ResourceType.STYLEABLE || type == ResourceType.ID ?
+           ArrayListMultimap.create() : new PerConfigResourceMap(myResourceComparator);
+  }
+
+  @GuardedBy("ITEM_MAP_LOCK")
+  @Nullable
+  private ImmutableListMultimap<String, ResourceItem> getCachedMap(@NotNull ResourceNamespace namespace, @NotNull ResourceType type) {
+    // Only immutable maps are put in myCachedMaps.
+    return (ImmutableListMultimap<String, ResourceItem>)myCachedMaps.get(namespace, type);
+  }
+
+  /**
+   * Returns the published snapshot of the merged resources of the given namespace and type, or null if there is none.
+   * Doesn't require holding {@link #ITEM_MAP_LOCK}.
+   */
+  @Nullable
+  private ImmutableListMultimap<String, ResourceItem> findSnapshot(@NotNull ResourceNamespace namespace, @NotNull ResourceType type) {
+    AtomicReferenceArray<ImmutableListMultimap<String, ResourceItem>> snapshots = mySnapshots.get(namespace);
+    return snapshots == null ? null : snapshots.get(type.ordinal());
+  }
+
+  /**
+   * Same as {@link #findSnapshot(ResourceNamespace, ResourceType)} but also counts the read for contention statistics.
+   */
+  @Nullable
+  private ImmutableListMultimap<String, ResourceItem> getSnapshotForRead(@NotNull ResourceNamespace namespace,
+                                                                         @NotNull ResourceType type) {
+    ImmutableListMultimap<String, ResourceItem> snapshot = findSnapshot(namespace, type);
+    if (snapshot == null) {
+      myLockedReads.increment();
+    }
+    else {
+      myLockFreeReads.increment();
+    }
+    return snapshot;
+  }
+
+  @GuardedBy("ITEM_MAP_LOCK")
+  private void publishSnapshot(@NotNull ResourceNamespace namespace,
+                               @NotNull ResourceType type,
+                               @NotNull ImmutableListMultimap<String, ResourceItem> map) {
+    mySnapshots.computeIfAbsent(namespace, ns -> new AtomicReferenceArray<>(ResourceType.values().length))
+        .set(type.ordinal(), map);
+  }
+
+  @GuardedBy("ITEM_MAP_LOCK")
+  private void dropSnapshot(@NotNull ResourceNamespace namespace, @NotNull ResourceType type) {
+    AtomicReferenceArray<ImmutableListMultimap<String, ResourceItem>> snapshots = mySnapshots.get(namespace);
+    if (snapshots != null) {
+      snapshots.set(type.ordinal(), null);
+    }
+  }
+
+  @Override
+  @NotNull
+  public List<ResourceItem> getResources(@NotNull ResourceNamespace namespace,
+                                         @NotNull ResourceType resourceType,
+                                         @NotNull String resourceName) {
+    ImmutableListMultimap<String, ResourceItem> snapshot = getSnapshotForRead(namespace, resourceType);
+    return snapshot == null ? super.getResources(namespace, resourceType, resourceName) : snapshot.get(resourceName);
+  }
+
+  @Override
+  @NotNull
+  public List<ResourceItem> getResources(@NotNull ResourceNamespace namespace,
+                                         @NotNull ResourceType resourceType,
+                                         @NotNull Predicate<ResourceItem> filter) {
+    ImmutableListMultimap<String, ResourceItem> snapshot = getSnapshotForRead(namespace, resourceType);
+    if (snapshot == null) {
+      return super.getResources(namespace, resourceType, filter);
+    }
+    List<ResourceItem> result = new ArrayList<>();
+    for (ResourceItem item : snapshot.values()) {
+      if (filter.test(item)) {
+        result.add(item);
+      }
+    }
+    return result;
+  }
+
+  @Override
+  @NotNull
+  public ListMultimap<String, ResourceItem> getResources(@NotNull ResourceNamespace namespace, @NotNull ResourceType resourceType) {
+    ImmutableListMultimap<String, ResourceItem> snapshot = getSnapshotForRead(namespace, resourceType);
+    return snapshot == null ? super.getResources(namespace, resourceType) : snapshot;
+  }
+
+  @Override
+  @NotNull
+  public Set<String> getResourceNames(@NotNull ResourceNamespace namespace, @NotNull ResourceType resourceType) {
+    ImmutableListMultimap<String, ResourceItem> snapshot = getSnapshotForRead(namespace, resourceType);
+    return snapshot == null ? super.getResourceNames(namespace, resourceType) : snapshot.keySet();
+  }
+
+  @Override
+  public boolean hasResources(@NotNull ResourceNamespace namespace, @NotNull ResourceType resourceType, @NotNull String resourceName) {
+    ImmutableListMultimap<String, ResourceItem> snapshot = getSnapshotForRead(namespace, resourceType);
+    return snapshot == null ? super.hasResources(namespace, resourceType, resourceName) : snapshot.containsKey(resourceName);
+  }
+
+  @VisibleForTesting
+  long getLockFreeReadCount() {
+    return myLockFreeReads.sum();
+  }
+
+  @VisibleForTesting
+  long getLockedReadCount() {
+    return myLockedReads.sum();
+  }
+
   @GuardedBy("ITEM_MAP_LOCK")
   @NotNull
   private static ListMultimap<String, ResourceItem> getResourcesUnderLock(@NotNull SingleNamespaceResourceRepository repository,
@@ -372,6 +531,11 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
 
   @Override
   public boolean hasResources(@NotNull ResourceNamespace namespace, @NotNull ResourceType type) {
+    ImmutableListMultimap<String, ResourceItem> snapshot = getSnapshotForRead(namespace, type);
+    if (snapshot != null) {
+      return !snapshot.isEmpty();
+    }
+
     synchronized (ITEM_MAP_LOCK) {
       if (myChildren.size() == 1) {
         return myChildren.get(0).hasResources(namespace, type);
@@ -413,6 +577,7 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
   @GuardedBy("ITEM_MAP_LOCK")
   public void invalidateCache() {
     myCachedMaps.clear();
+    mySnapshots.clear();
     myResourceNames.clear();
     myUnreconciledResources.clear();
     setModificationCount(ourModificationCounter.incrementAndGet());
@@ -436,6 +601,7 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
       // Update myUnreconciledResources only if myCachedMaps is used for this namespace.
       if (leafs.size() != 1) {
         for (ResourceType type : types) {
+          dropSnapshot(namespace, type);
           if (myCachedMaps.get(namespace, type) != null) {
             Set<SingleNamespaceResourceRepository> repositories = myUnreconciledResources.get(namespace, type);
             if (repositories == null) {
@@ -446,7 +612,7 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
           }
         }
 
-        setModificationCount(ourModificationCounter.incrementAndGet());
+        setModificationCountForTypes(ourModificationCounter.incrementAndGet(), types);
       }
 
       invalidateParentCaches(repository, types);
@@ -584,21 +750,6 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
       return removed;
     }
 
-    @SuppressWarnings("UnusedReturnValue")
-    boolean removeIf(@NotNull String key, @NotNull Predicate<? super ResourceItem> filter) {
-      List<ResourceItem> list = myMap.get(key);
-      if (list == null) {
-        return false;
-      }
-      int oldSize = list.size();
-      boolean removed = list.removeIf(filter);
-      mySize += list.size() - oldSize;
-      if (list.isEmpty()) {
-        myMap.remove(key);
-      }
-      return removed;
-    }
-
     @Override
     public void clear() {
       myMap.clear();
@@ -310,11 +310,17 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
   }
 
   /**
-   * Inserts the given resources into this repository, while holding the global repository lock.
+   * Inserts the given resources into this repository, while holding the global repository lock. Caches of the parent
+   * repositories are invalidated under the same lock, so that they cannot end up with merged resources that don't
+   * include the inserted ones.
    */
   private void commitToRepository(@NotNull Map<ResourceType, ListMultimap<String, ResourceItem>> itemsByType) {
+    if (itemsByType.isEmpty()) {
+      return;
+    }
     synchronized (ITEM_MAP_LOCK) {
       commitToRepositoryWithoutLock(itemsByType);
+      invalidateParentCaches(this, itemsByType.keySet().toArray(new ResourceType[0]));
     }
   }
 
@@ -803,7 +809,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
           }
 
           // Identities may have changed even if the ids are the same, so update maps.
-          setModificationCount(ourModificationCounter.incrementAndGet());
+          setModificationCountForTypes(ourModificationCounter.incrementAndGet(), ResourceType.ID);
           invalidateParentCaches(this, ResourceType.ID);
         }
       } else {
@@ -1036,7 +1042,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
                       synchronized (ITEM_MAP_LOCK) {
                         getOrCreateMap(type).put(name, item);
                         psiResourceFile.addItem(item);
-                        setModificationCount(ourModificationCounter.incrementAndGet());
+                        setModificationCountForTypes(ourModificationCounter.incrementAndGet(), type);
                         invalidateParentCaches(ResourceFolderRepository.this, type);
                         return;
                       }
@@ -1055,7 +1061,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
                 ResourceItem parentItem = findValueResourceItem(parentTag, psiFile);
                 if (parentItem instanceof PsiResourceItem) {
                   if (((PsiResourceItem)parentItem).recomputeValue()) {
-                    setModificationCount(ourModificationCounter.incrementAndGet());
+                    setModificationCountForTypes(ourModificationCounter.incrementAndGet(), parentItem.getType());
                   }
                   return;
                 }
@@ -1102,7 +1108,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
                     for (PsiResourceItem id : ids) {
                       psiResourceFile.addItem(id);
                     }
-                    setModificationCount(ourModificationCounter.incrementAndGet());
+                    setModificationCountForTypes(ourModificationCounter.incrementAndGet(), ResourceType.ID);
                     invalidateParentCaches(ResourceFolderRepository.this, ResourceType.ID);
                   }
                 }
@@ -1124,7 +1130,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
                       PsiResourceFile psiResourceFile = (PsiResourceFile)resFile;
                       psiResourceFile.addItem(newIdResource);
                       getOrCreateMap(ResourceType.ID).put(newIdResource.getName(), newIdResource);
-                      setModificationCount(ourModificationCounter.incrementAndGet());
+                      setModificationCountForTypes(ourModificationCounter.incrementAndGet(), ResourceType.ID);
                       invalidateParentCaches(ResourceFolderRepository.this, ResourceType.ID);
                       return;
                     }
@@ -1169,7 +1175,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
                   ResourceItem resourceItem = findValueResourceItem(parentTag, psiFile);
                   if (resourceItem instanceof PsiResourceItem) {
                     if (((PsiResourceItem)resourceItem).recomputeValue()) {
-                      setModificationCount(ourModificationCounter.incrementAndGet());
+                      setModificationCountForTypes(ourModificationCounter.incrementAndGet(), resourceItem.getType());
                     }
 
                     if (resourceItem.getType() == ResourceType.ATTR) {
@@ -1178,7 +1184,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
                         ResourceItem declareStyleable = findValueResourceItem(parentTag, psiFile);
                         if (declareStyleable instanceof PsiResourceItem) {
                           if (((PsiResourceItem)declareStyleable).recomputeValue()) {
-                            setModificationCount(ourModificationCounter.incrementAndGet());
+                            setModificationCountForTypes(ourModificationCounter.incrementAndGet(), declareStyleable.getType());
                           }
                         }
                       }
@@ -1214,7 +1220,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
                       synchronized (ITEM_MAP_LOCK) {
                         boolean removed = removeItemsForTag(resourceFile, tag, type);
                         if (removed) {
-                          setModificationCount(ourModificationCounter.incrementAndGet());
+                          setModificationCountForTypes(ourModificationCounter.incrementAndGet(), type);
                           invalidateParentCaches(ResourceFolderRepository.this, type);
                         }
                       }
@@ -1345,8 +1351,8 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
                 } else if (folderType != VALUES) {
                   // This is an XML change within an ID generating folder to something that it's not an ID. While we do not need
                   // to generate the ID, we need to notify that something relevant has changed.
-                  // One example of this change would be an edit to a drawable.
-                  setModificationCount(ourModificationCounter.incrementAndGet());
+                  // One example of this change would be an edit to a drawable. Values of resources are not affected.
+                  setModificationCountForTypes(ourModificationCounter.incrementAndGet());
                 }
               }
 
@@ -1387,7 +1393,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
                   ResourceItem resourceItem = findValueResourceItem(parentTag, psiFile);
                   if (resourceItem instanceof PsiResourceItem) {
                     if (((PsiResourceItem)resourceItem).recomputeValue()) {
-                      setModificationCount(ourModificationCounter.incrementAndGet());
+                      setModificationCountForTypes(ourModificationCounter.incrementAndGet(), resourceItem.getType());
                     }
                     return;
                   }
@@ -1457,7 +1463,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
                               assert false : item;
                             }
                           }
-                          setModificationCount(ourModificationCounter.incrementAndGet());
+                          setModificationCountForTypes(ourModificationCounter.incrementAndGet(), type);
                           invalidateParentCaches(ResourceFolderRepository.this, type);
                         }
                       }
@@ -1486,7 +1492,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
                       ResourceItem resourceItem = findValueResourceItem(parentTag, psiFile);
                       if (resourceItem instanceof PsiResourceItem) {
                         if (((PsiResourceItem)resourceItem).recomputeValue()) {
-                          setModificationCount(ourModificationCounter.incrementAndGet());
+                          setModificationCountForTypes(ourModificationCounter.incrementAndGet(), resourceItem.getType());
                         }
                         return;
                       }
@@ -1515,7 +1521,8 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
                 }
               }
 
-              setModificationCount(ourModificationCounter.incrementAndGet());
+              // Only the contents of the color state list file changed, not values of any resources.
+              setModificationCountForTypes(ourModificationCounter.incrementAndGet());
               return;
             }
           } else if (folderType == FONT) {
@@ -1529,8 +1536,8 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
               }
 
               // A change to an XML file that does not require adding/removing resources. This could be a change to the contents of an XML
-              // file in the raw folder.
-              setModificationCount(ourModificationCounter.incrementAndGet());
+              // file in the raw folder. Values of resources are not affected.
+              setModificationCountForTypes(ourModificationCounter.incrementAndGet());
             }
           } // else: can ignore this edit.
         }
@@ -1561,7 +1568,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
         addIds(result, ids, xmlTag, true);
         commitToRepository(result);
         ids.forEach(psiResourceFile::addItem);
-        setModificationCount(ourModificationCounter.incrementAndGet());
+        setModificationCountForTypes(ourModificationCounter.incrementAndGet(), ResourceType.ID);
         invalidateParentCaches(ResourceFolderRepository.this, ResourceType.ID);
         return true;
       }
@@ -1593,7 +1600,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
           if (item instanceof PsiResourceItem) {
             boolean cleared = ((PsiResourceItem)item).recomputeValue();
             if (cleared) { // Only bump revision if this is a value which has already been observed!
-              setModificationCount(ourModificationCounter.incrementAndGet());
+              setModificationCountForTypes(ourModificationCounter.incrementAndGet(), item.getType());
             }
           }
           return;
@@ -1613,7 +1620,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
             // Edited XML value.
             boolean cleared = ((PsiResourceItem)item).recomputeValue();
             if (cleared) { // Only bump revision if this is a value which has already been observed!
-              setModificationCount(ourModificationCounter.incrementAndGet());
+              setModificationCountForTypes(ourModificationCounter.incrementAndGet(), item.getType());
             }
           }
           break;
@@ -181,7 +181,7 @@ public final class SampleDataResourceRepository extends LocalResourceRepository
         }
         myResourceTable.put(ResourceType.SAMPLE_DATA, mapBuilder.build());
       }
-      setModificationCount(ourModificationCounter.incrementAndGet());
+      setModificationCountForTypes(ourModificationCounter.incrementAndGet(), ResourceType.SAMPLE_DATA);
       invalidateParentCaches(this, ResourceType.SAMPLE_DATA);
     }
   }
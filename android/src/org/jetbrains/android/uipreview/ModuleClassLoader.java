@@ -32,6 +32,9 @@ import com.intellij.openapi.vfs.VirtualFile;
 import java.io.IOException;
 import java.lang.ref.WeakReference;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -383,6 +386,15 @@ public final class ModuleClassLoader extends RenderClassLoader {
     return file.isValid() ? file : null;
   }
 
+  /** Returns the .class files loaded by this loader from the module and its source code dependencies */
+  @NotNull
+  Collection<VirtualFile> getLoadedClassFiles() {
+    if (myClassFiles == null) {
+      return Collections.emptyList();
+    }
+    return new ArrayList<>(myClassFiles.values());
+  }
+
   /** Checks whether any of the .class files loaded by this loader have changed since the creation of this class loader */
   boolean isUpToDate() {
     if (myClassFiles != null) {
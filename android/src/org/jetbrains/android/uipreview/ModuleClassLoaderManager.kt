@@ -16,10 +16,15 @@
 package org.jetbrains.android.uipreview
 
 import com.android.tools.idea.LogAnonymizerUtil.anonymize
+import com.android.tools.idea.project.AndroidProjectBuildNotifications
+import com.android.tools.idea.rendering.classloading.RenderClassLoader
 import com.intellij.openapi.application.ApplicationManager
 import com.intellij.openapi.diagnostic.Logger
 import com.intellij.openapi.diagnostic.debug
 import com.intellij.openapi.module.Module
+import com.intellij.openapi.project.Project
+import com.intellij.util.concurrency.AppExecutorUtil
+import java.util.Collections
 import java.util.WeakHashMap
 import java.util.concurrent.locks.ReentrantReadWriteLock
 import kotlin.concurrent.read
@@ -31,6 +36,8 @@ import kotlin.concurrent.write
 class ModuleClassLoaderManager {
   private val cacheLock: ReentrantReadWriteLock = ReentrantReadWriteLock()
   private val cache: MutableMap<Module, ModuleClassLoader> = WeakHashMap();
+  /** Projects for which the class files of the cached class loaders are pre-transformed after every build. */
+  private val buildListenerProjects: MutableSet<Project> = Collections.newSetFromMap(WeakHashMap())
 
   /**
    * Returns a project class loader to use for rendering. May cache instances across render sessions.
@@ -46,7 +53,10 @@ class ModuleClassLoaderManager {
           moduleClassLoader = null
         }
         else if (!moduleClassLoader.isUpToDate) {
-          LOG.debug("Files have changed, discarding ModuleClassLoader")
+          LOG.debug {
+            "Files have changed, discarding ModuleClassLoader that loaded ${moduleClassLoader?.loadedClassCount} classes " +
+            "in ${moduleClassLoader?.classPreparationTimeMs} ms"
+          }
           moduleClassLoader = null
         }
         else {
@@ -59,6 +69,12 @@ class ModuleClassLoaderManager {
         moduleClassLoader = ModuleClassLoader(parent, module)
         cacheLock.write {
           cache[module] = moduleClassLoader
+          val project = module.project
+          if (buildListenerProjects.add(project)) {
+            AndroidProjectBuildNotifications.subscribe(project, AndroidProjectBuildNotifications.AndroidProjectBuildListener {
+              preTransformClasses(project)
+            })
+          }
         }
       }
 
@@ -66,6 +82,20 @@ class ModuleClassLoaderManager {
     }
   }
 
+  /**
+   * Rewrites, in the background, the current versions of the class files loaded by the class loaders of the given project, so that
+   * the class loaders replacing them after a build find the classes in the
+   * [com.android.tools.idea.rendering.classloading.TransformedClassCache].
+   */
+  private fun preTransformClasses(project: Project) {
+    val classFiles = cacheLock.read {
+      cache.filterKeys { !it.isDisposed && it.project == project }.values.flatMap { it.loadedClassFiles }
+    }
+    if (classFiles.isNotEmpty()) {
+      AppExecutorUtil.getAppExecutorService().execute { RenderClassLoader.preTransform(classFiles) }
+    }
+  }
+
   fun clearCache() = cacheLock.write {
     cache.clear();
   }
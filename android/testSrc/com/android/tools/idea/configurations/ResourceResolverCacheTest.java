@@ -17,7 +17,10 @@ package com.android.tools.idea.configurations;
 
 import static com.android.tools.idea.res.ResourcesTestsUtil.checkIfScanPending;
 
+import com.android.ide.common.rendering.api.ResourceNamespace;
 import com.android.ide.common.resources.ResourceResolver;
+import com.android.ide.common.resources.ResourceValueMap;
+import com.android.resources.ResourceType;
 import com.android.sdklib.devices.Device;
 import com.android.sdklib.devices.Screen;
 import com.android.tools.idea.res.LocalResourceRepository;
@@ -25,12 +28,15 @@ import com.android.tools.idea.res.ResourceRepositoryManager;
 import com.google.common.collect.Iterables;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiDocumentManager;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiManager;
 import com.intellij.psi.xml.XmlFile;
 import com.intellij.psi.xml.XmlTagValue;
+import com.intellij.util.ui.UIUtil;
 import org.jetbrains.android.AndroidTestCase;
 import org.jetbrains.android.facet.AndroidFacet;
 
@@ -95,6 +101,47 @@ public class ResourceResolverCacheTest extends AndroidTestCase {
     assertSame(cache, configuration2.getConfigurationManager().getResolverCache());
   }
 
+  public void testIncrementalUpdateOfAppResources() {
+    VirtualFile layoutFile = myFixture.copyFileToProject("render/layout1.xml", "res/layout/layout1.xml");
+    VirtualFile stringsFile = myFixture.copyFileToProject("javadoc/strings/strings.xml", "res/values/strings.xml");
+    PsiFile psiStrings = PsiManager.getInstance(getProject()).findFile(stringsFile);
+    assertNotNull(psiStrings);
+    ConfigurationManager configurationManager = ConfigurationManager.getOrCreateInstance(myModule);
+    Configuration configuration = configurationManager.getConfiguration(layoutFile);
+    ResourceResolverCache cache = configurationManager.getResolverCache();
+    PsiDocumentManager documentManager = PsiDocumentManager.getInstance(getProject());
+    Document document = documentManager.getDocument(psiStrings);
+    assertNotNull(document);
+
+    // The first edit switches the resource repository to PSI, which rescans the whole file.
+    WriteCommandAction.runWriteCommandAction(null, () -> {
+      int offset = document.getText().indexOf("Cancel");
+      document.replaceString(offset, offset + "Cancel".length(), "Foo");
+      documentManager.commitDocument(document);
+    });
+    UIUtil.dispatchAllInvocationEvents();
+    assertEquals("Foo", configuration.getResourceResolver().findResValue("@string/cancel", false).getValue());
+    assertEquals(1, cache.myAppResourceMap.size());
+    ResourceResolverCache.ConfiguredAppResources before = Iterables.getOnlyElement(cache.myAppResourceMap.values());
+    ResourceValueMap layouts = before.resources.get(ResourceNamespace.RES_AUTO, ResourceType.LAYOUT);
+    ResourceValueMap strings = before.resources.get(ResourceNamespace.RES_AUTO, ResourceType.STRING);
+    assertNotNull(layouts);
+    assertNotNull(strings);
+
+    // Subsequent edits of string values affect only configured strings.
+    WriteCommandAction.runWriteCommandAction(null, () -> {
+      int offset = document.getText().indexOf("Foo");
+      document.replaceString(offset, offset + "Foo".length(), "Bar");
+      documentManager.commitDocument(document);
+    });
+    UIUtil.dispatchAllInvocationEvents();
+    assertEquals("Bar", configuration.getResourceResolver().findResValue("@string/cancel", false).getValue());
+    ResourceResolverCache.ConfiguredAppResources after = Iterables.getOnlyElement(cache.myAppResourceMap.values());
+    assertNotSame(before, after);
+    assertSame(layouts, after.resources.get(ResourceNamespace.RES_AUTO, ResourceType.LAYOUT));
+    assertNotSame(strings, after.resources.get(ResourceNamespace.RES_AUTO, ResourceType.STRING));
+  }
+
   public void testCustomConfiguration() {
     VirtualFile file1 = myFixture.copyFileToProject("render/layout1.xml", "res/layout/layout1.xml");
     ConfigurationManager configurationManager = ConfigurationManager.getOrCreateInstance(myModule);
@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.rendering;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.junit.After;
+import org.junit.Test;
+
+public class RenderExecutorTest {
+  private RenderExecutor myExecutor;
+
+  @After
+  public void tearDown() {
+    if (myExecutor != null) {
+      myExecutor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testHighPriorityRunsFirst() throws Exception {
+    myExecutor = new RenderExecutor(1);
+    CountDownLatch blocker = new CountDownLatch(1);
+    List<String> order = Collections.synchronizedList(new ArrayList<>());
+    myExecutor.runAsyncAction(null, RenderExecutor.Priority.NORMAL, () -> {
+      try {
+        blocker.await();
+      }
+      catch (InterruptedException ignore) {
+      }
+      return null;
+    });
+    CompletableFuture<?> low = myExecutor.runAsyncAction(new Object(), RenderExecutor.Priority.LOW, () -> order.add("low"));
+    CompletableFuture<?> normal = myExecutor.runAsyncAction(new Object(), RenderExecutor.Priority.NORMAL, () -> order.add("normal"));
+    CompletableFuture<?> high = myExecutor.runAsyncAction(new Object(), RenderExecutor.Priority.HIGH, () -> order.add("high"));
+    blocker.countDown();
+    CompletableFuture.allOf(low, normal, high).get(5, TimeUnit.SECONDS);
+
+    assertThat(order).containsExactly("high", "normal", "low").inOrder();
+  }
+
+  @Test
+  public void testSameAffinityRunsInSubmissionOrder() throws Exception {
+    myExecutor = new RenderExecutor(1);
+    Object session = new Object();
+    CountDownLatch blocker = new CountDownLatch(1);
+    List<String> order = Collections.synchronizedList(new ArrayList<>());
+    myExecutor.runAsyncAction(null, RenderExecutor.Priority.NORMAL, () -> {
+      try {
+        blocker.await();
+      }
+      catch (InterruptedException ignore) {
+      }
+      return null;
+    });
+    CompletableFuture<?> other = myExecutor.runAsyncAction(new Object(), RenderExecutor.Priority.NORMAL, () -> order.add("other"));
+    CompletableFuture<?> inflate = myExecutor.runAsyncAction(session, RenderExecutor.Priority.LOW, () -> order.add("inflate"));
+    CompletableFuture<?> render = myExecutor.runAsyncAction(session, RenderExecutor.Priority.LOW, () -> order.add("render"));
+    // A high priority action does not overtake the pending actions of its own session, but it makes the session run first.
+    CompletableFuture<?> read = myExecutor.runAsyncAction(session, RenderExecutor.Priority.HIGH, () -> order.add("read"));
+    blocker.countDown();
+    CompletableFuture.allOf(other, inflate, render, read).get(5, TimeUnit.SECONDS);
+
+    assertThat(order).containsExactly("inflate", "render", "read", "other").inOrder();
+  }
+
+  @Test
+  public void testSameAffinityRunsOnSameWorker() throws Exception {
+    myExecutor = new RenderExecutor(4);
+    Object affinity = new Object();
+    Thread first = myExecutor.runAsyncAction(affinity, RenderExecutor.Priority.NORMAL, Thread::currentThread).get(5, TimeUnit.SECONDS);
+    for (int i = 0; i < 10; i++) {
+      assertEquals(first, myExecutor.runAsyncAction(affinity, RenderExecutor.Priority.NORMAL, Thread::currentThread).get(5, TimeUnit.SECONDS));
+    }
+    assertThat(first.getName()).startsWith(RenderExecutor.THREAD_NAME);
+  }
+
+  @Test
+  public void testCancelPending() throws Exception {
+    myExecutor = new RenderExecutor(1);
+    Object affinity = new Object();
+    Object other = new Object();
+    CountDownLatch blocker = new CountDownLatch(1);
+    myExecutor.runAsyncAction(affinity, RenderExecutor.Priority.NORMAL, () -> {
+      try {
+        blocker.await();
+      }
+      catch (InterruptedException ignore) {
+      }
+      return null;
+    });
+    CompletableFuture<String> stale = myExecutor.runAsyncCancellableAction(affinity, RenderExecutor.Priority.NORMAL, () -> "stale");
+    CompletableFuture<String> unrelated =
+      myExecutor.runAsyncCancellableAction(other, RenderExecutor.Priority.NORMAL, () -> "unrelated");
+
+    assertEquals(1, myExecutor.cancelPending(affinity));
+    blocker.countDown();
+
+    assertEquals("unrelated", unrelated.get(5, TimeUnit.SECONDS));
+    assertTrue(stale.isCancelled());
+    try {
+      stale.get();
+      fail("Cancelled action should not complete");
+    }
+    catch (CancellationException ignore) {
+    }
+  }
+
+
+  @Test
+  public void testCancelPendingKeepsCleanupActions() throws Exception {
+    myExecutor = new RenderExecutor(1);
+    Object affinity = new Object();
+    CountDownLatch blocker = new CountDownLatch(1);
+    List<String> order = Collections.synchronizedList(new ArrayList<>());
+    myExecutor.runAsyncAction(affinity, RenderExecutor.Priority.NORMAL, () -> {
+      try {
+        blocker.await();
+      }
+      catch (InterruptedException ignore) {
+      }
+      return null;
+    });
+    CompletableFuture<?> render = myExecutor.runAsyncCancellableAction(affinity, RenderExecutor.Priority.NORMAL, () -> order.add("render"));
+    CompletableFuture<?> dispose = myExecutor.runAsyncAction(affinity, RenderExecutor.Priority.NORMAL, () -> order.add("dispose"));
+    CompletableFuture<?> release = myExecutor.runAsyncAction(affinity, RenderExecutor.Priority.NORMAL, () -> order.add("release"));
+
+    assertEquals(1, myExecutor.cancelPending(affinity));
+    blocker.countDown();
+    CompletableFuture.allOf(dispose, release).get(5, TimeUnit.SECONDS);
+
+    assertTrue(render.isCancelled());
+    assertThat(order).containsExactly("dispose", "release").inOrder();
+  }
+
+  @Test
+  public void testTimeoutCapturesWorkerStack() throws Exception {
+    myExecutor = new RenderExecutor(1);
+    CountDownLatch blocker = new CountDownLatch(1);
+    try {
+      myExecutor.runAction(null, () -> {
+        blocker.await();
+        return null;
+      }, 100);
+      fail("Expected timeout");
+    }
+    catch (TimeoutException e) {
+      assertThat(e.getStackTrace()).isNotEmpty();
+    }
+    finally {
+      blocker.countDown();
+    }
+  }
+
+  @Test
+  public void testBlockedWorkerTimeoutCapturesWorkerStack() throws Exception {
+    myExecutor = new RenderExecutor(1);
+    CountDownLatch blocker = new CountDownLatch(1);
+    myExecutor.runAsyncAction(null, RenderExecutor.Priority.NORMAL, () -> {
+      try {
+        blocker.await();
+      }
+      catch (InterruptedException ignore) {
+      }
+      return null;
+    });
+    try {
+      // After more than 3 timeouts, only a short probe is queued. Its timeout is reported like any other.
+      for (int i = 0; i < 5; i++) {
+        try {
+          myExecutor.runAction(null, () -> null, 10);
+          fail("Expected timeout");
+        }
+        catch (TimeoutException e) {
+          assertThat(e.getMessage()).startsWith("Preview timed out");
+          assertThat(e.getStackTrace()).isNotEmpty();
+        }
+      }
+    }
+    finally {
+      blocker.countDown();
+    }
+  }
+}
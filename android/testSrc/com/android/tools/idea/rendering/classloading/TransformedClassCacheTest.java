@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.rendering.classloading;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteStreams;
+import com.intellij.openapi.vfs.VirtualFile;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.org.objectweb.asm.ClassVisitor;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TransformedClassCacheTest {
+  @Rule
+  public TemporaryFolder myTemporaryFolder = new TemporaryFolder();
+
+  private final AtomicInteger myTransformCount = new AtomicInteger();
+  private final Function<ClassVisitor, ClassVisitor> myTransforms = visitor -> {
+    myTransformCount.incrementAndGet();
+    return new VersionClassTransform(visitor, 50, 0);
+  };
+  private TransformedClassCache myCache;
+  private byte[] myClassData;
+
+  @Before
+  public void setUp() throws IOException {
+    myCache = new TransformedClassCache(myTemporaryFolder.getRoot().toPath());
+    try (InputStream stream = TransformedClassCacheTest.class.getResourceAsStream("TransformedClassCacheTest.class")) {
+      myClassData = ByteStreams.toByteArray(stream);
+    }
+  }
+
+  @Test
+  public void testTransformedClassIsReused() {
+    byte[] rewritten = myCache.getTransformed(myClassData, myTransforms, "test:1");
+    assertThat(ClassConverter.getMajorVersion(rewritten)).isEqualTo((short)50);
+    assertThat(myTransformCount.get()).isEqualTo(1);
+
+    // A new cache in the same directory, like after an IDE restart, finds the class on disk.
+    TransformedClassCache cache = new TransformedClassCache(myTemporaryFolder.getRoot().toPath());
+    assertThat(cache.getTransformed(myClassData.clone(), myTransforms, "test:1")).isEqualTo(rewritten);
+    assertThat(myTransformCount.get()).isEqualTo(1);
+    assertThat(cache.getHitCount()).isEqualTo(1);
+    assertThat(cache.getMissCount()).isEqualTo(0);
+
+    // Different transformations don't reuse the class.
+    myCache.getTransformed(myClassData, myTransforms, "test:2");
+    assertThat(myTransformCount.get()).isEqualTo(2);
+    assertThat(myCache.getMissCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void testChangedClassIsTransformedAgain() {
+    myCache.getTransformed(myClassData, myTransforms, "test:1");
+    byte[] changed = myClassData.clone();
+    changed[6] = 0;
+    changed[7] = 49;
+    myCache.getTransformed(changed, myTransforms, "test:1");
+    assertThat(myTransformCount.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void testPreTransform() throws IOException {
+    VirtualFile classFile = mock(VirtualFile.class);
+    when(classFile.contentsToByteArray()).thenReturn(myClassData);
+    VirtualFile deletedFile = mock(VirtualFile.class);
+    when(deletedFile.contentsToByteArray()).thenThrow(new IOException("deleted"));
+
+    myCache.preTransform(ImmutableList.of(classFile, deletedFile), myTransforms, "test:1");
+    assertThat(myTransformCount.get()).isEqualTo(1);
+
+    // Classes already in the cache are not transformed again.
+    myCache.preTransform(ImmutableList.of(classFile), myTransforms, "test:1");
+    myCache.getTransformed(myClassData, myTransforms, "test:1");
+    assertThat(myTransformCount.get()).isEqualTo(1);
+    assertThat(myCache.getHitCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void testLeastRecentlyUsedEntriesAreRemovedOverTheSizeCap() throws IOException {
+    byte[] changed = myClassData.clone();
+    changed[6] = 0;
+    changed[7] = 49;
+    myCache.getTransformed(myClassData, myTransforms, "test:1");
+    myCache.getTransformed(changed, myTransforms, "test:1");
+    List<Path> entries = getEntries();
+    assertThat(entries).hasSize(2);
+    long now = System.currentTimeMillis();
+    for (Path entry : entries) {
+      Files.setLastModifiedTime(entry, FileTime.fromMillis(now - TimeUnit.HOURS.toMillis(1)));
+    }
+
+    // Using the first class touches its entry, so the other one is removed when only one fits.
+    long maxSize = Math.max(Files.size(entries.get(0)), Files.size(entries.get(1)));
+    TransformedClassCache cache = new TransformedClassCache(myTemporaryFolder.getRoot().toPath(), maxSize);
+    cache.getTransformed(myClassData, myTransforms, "test:1");
+    cache.removeStaleEntries();
+    assertThat(getEntries()).hasSize(1);
+    cache.getTransformed(myClassData, myTransforms, "test:1");
+    cache.getTransformed(changed, myTransforms, "test:1");
+    assertThat(cache.getHitCount()).isEqualTo(2);
+    assertThat(cache.getMissCount()).isEqualTo(1);
+  }
+
+  @NotNull
+  private List<Path> getEntries() throws IOException {
+    try (Stream<Path> files = Files.walk(myTemporaryFolder.getRoot().toPath())) {
+      return files.filter(Files::isRegularFile).collect(Collectors.toList());
+    }
+  }
+}
@@ -387,6 +387,42 @@ public class ModuleResourceRepositoryTest extends AndroidTestCase {
     assertHasExactResourceTypes(resources, typesWithoutRes3);
   }
 
+  public void testReadsFromSnapshots() {
+    VirtualFile values1 = myFixture.copyFileToProject(VALUES_OVERLAY1, "res1/values/values.xml");
+    VirtualFile values2 = myFixture.copyFileToProject(VALUES, "res2/values/values.xml");
+    ModuleResourceRepository resources = ModuleResourceRepository.createForTest(
+        myFacet, ImmutableList.of(values1.getParent().getParent(), values2.getParent().getParent()), RES_AUTO, null);
+
+    // The first read merges the resources under the lock, subsequent reads use the published snapshot.
+    assertStringIs(resources, "title_crossfade", "Complex Crossfade");
+    long lockedReads = resources.getLockedReadCount();
+    long lockFreeReads = resources.getLockFreeReadCount();
+    assertTrue(resources.hasResources(RES_AUTO, ResourceType.STRING, "title_zoom"));
+    assertThat(resources.getResourceNames(RES_AUTO, ResourceType.STRING)).contains("unique_string");
+    assertThat(resources.getResources(RES_AUTO, ResourceType.STRING).get("title_crossfade")).hasSize(1);
+    assertThat(resources.getLockedReadCount()).isEqualTo(lockedReads);
+    assertThat(resources.getLockFreeReadCount()).isEqualTo(lockFreeReads + 3);
+
+    // An edit in one of the children drops the snapshot, and the next read sees the edit.
+    PsiFile psiValues1 = PsiManager.getInstance(getProject()).findFile(values1);
+    assertNotNull(psiValues1);
+    PsiDocumentManager documentManager = PsiDocumentManager.getInstance(getProject());
+    Document document = documentManager.getDocument(psiValues1);
+    assertNotNull(document);
+    WriteCommandAction.runWriteCommandAction(null, () -> {
+      int offset = document.getText().indexOf("title_crossfade");
+      document.replaceString(offset, offset + "title_crossfade".length(), "title_crossfade2");
+      documentManager.commitDocument(document);
+    });
+    UIUtil.dispatchAllInvocationEvents();
+    assertThat(resources.getResources(RES_AUTO, ResourceType.STRING, "title_crossfade2")).hasSize(1);
+    assertThat(resources.getLockedReadCount()).isGreaterThan(lockedReads);
+    assertStringIs(resources, "title_crossfade", "Simple Crossfade");
+    // Names the edit didn't touch are kept by the reconciled map, which is itself the published snapshot.
+    assertThat(resources.getResourceNames(RES_AUTO, ResourceType.STRING)).containsAllOf("title_zoom", "unique_string");
+    assertSame(resources.getResources(RES_AUTO, ResourceType.STRING), resources.getResources(RES_AUTO, ResourceType.STRING));
+  }
+
   /**
    * This tests that even if we initialize ResourceFolderRepository with VirtualFiles and the test code is careful to only work with
    * VirtualFiles, we still get the PsiListener events.
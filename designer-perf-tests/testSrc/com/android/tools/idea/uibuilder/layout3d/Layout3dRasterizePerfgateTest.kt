@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.uibuilder.layout3d
+
+import com.android.tools.perflogger.Benchmark
+import com.android.tools.perflogger.Metric
+import com.android.tools.perflogger.WindowDeviationAnalyzer
+import org.junit.Assert.assertArrayEquals
+import org.junit.Test
+import java.awt.image.BufferedImage
+import java.awt.image.DataBufferInt
+import java.time.Instant
+import java.util.Arrays
+
+private const val NUMBER_OF_WARM_UP = 5
+private const val NUMBER_OF_SAMPLES = 40
+private const val FRAME_WIDTH = 1600
+private const val FRAME_HEIGHT = 1200
+
+private val layout3dBenchmark = Benchmark.Builder("Layout 3D Rasterize Benchmark (Micros)")
+  .setProject("Design Tools")
+  .setDescription("Time to draw a frame (mean) of a rotating layout after $NUMBER_OF_SAMPLES samples.")
+  .build()
+
+/**
+ * Measures the frame time of [Rasterize] while rotating the scenes used by [CheckLayout3d], the way [Display3D] draws them.
+ */
+class Layout3dRasterizePerfgateTest {
+
+  @Test
+  fun checkLayoutScene() {
+    val image = createTestImage()
+    measureFrames("Layout3d_CheckLayout", Layout(image, CheckLayout3d.getTestViews(image)))
+  }
+
+  @Test
+  fun deepHierarchyScene() {
+    val image = createTestImage()
+    measureFrames("Layout3d_DeepHierarchy", Layout(image, createDeepViews(image)))
+  }
+
+  private fun measureFrames(metricName: String, layout: Layout) {
+    val viewMatrix = ViewMatrix()
+    viewMatrix.look(ViewMatrix.UP_AT, layout, FRAME_WIDTH, FRAME_HEIGHT)
+    viewMatrix.setScreenWidth(1920.0)
+    viewMatrix.setScreenDim(FRAME_WIDTH, FRAME_HEIGHT)
+    viewMatrix.calcMatrix()
+    viewMatrix.trackBallDown(FRAME_WIDTH / 2, FRAME_HEIGHT / 2)
+
+    val transformed = TriData(layout)
+    val zBuffer = FloatArray(FRAME_WIDTH * FRAME_HEIGHT)
+    val rgb = IntArray(FRAME_WIDTH * FRAME_HEIGHT)
+    val metric = Metric(metricName)
+    for (frame in 0 until NUMBER_OF_WARM_UP + NUMBER_OF_SAMPLES) {
+      // Drag the trackball around the center of the frame, like a user rotating the view.
+      val angle = frame * 2 * Math.PI / NUMBER_OF_SAMPLES
+      viewMatrix.trackBallMove(FRAME_WIDTH / 2 + (Math.cos(angle) * FRAME_WIDTH / 4).toInt(),
+                               FRAME_HEIGHT / 2 + (Math.sin(angle) * FRAME_HEIGHT / 4).toInt())
+      layout.transform(viewMatrix.invers(), transformed)
+
+      val startTime = System.nanoTime()
+      drawFrame(layout, transformed, viewMatrix, zBuffer, rgb)
+      val frameTime = System.nanoTime() - startTime
+      if (frame >= NUMBER_OF_WARM_UP) {
+        metric.addSamples(layout3dBenchmark, Metric.MetricSample(Instant.now().toEpochMilli(), frameTime / 1000))
+      }
+
+      if (frame % 10 == 0) {
+        assertSameAsSingleThreaded(layout, transformed, viewMatrix, zBuffer, rgb)
+      }
+    }
+    metric.setAnalyzers(layout3dBenchmark, setOf(WindowDeviationAnalyzer.Builder()
+                                                   .addMeanTolerance(WindowDeviationAnalyzer.MeanToleranceParams.Builder().build())
+                                                   .build()))
+    metric.commit()
+  }
+
+  private fun drawFrame(layout: Layout, transformed: TriData, viewMatrix: ViewMatrix, zBuffer: FloatArray, rgb: IntArray) {
+    Arrays.fill(zBuffer, Float.MAX_VALUE)
+    Arrays.fill(rgb, 0xFF000000.toInt())
+    Rasterize.toZBuff(zBuffer, rgb, FRAME_WIDTH, FRAME_HEIGHT, transformed, layout.myTexture, layout.myTextureWidth, layout.myTextureHeight,
+                      viewMatrix.m)
+  }
+
+  /**
+   * Checks that the tiles drawn in parallel make the same frame as drawing every triangle over the whole frame, in order.
+   */
+  private fun assertSameAsSingleThreaded(layout: Layout,
+                                         transformed: TriData,
+                                         viewMatrix: ViewMatrix,
+                                         zBuffer: FloatArray,
+                                         rgb: IntArray) {
+    val expectedZBuffer = FloatArray(zBuffer.size) { Float.MAX_VALUE }
+    val expectedRgb = IntArray(rgb.size) { 0xFF000000.toInt() }
+    val vert = transformed.myVert
+    val uv = transformed.myTexture_uv
+    for (i in transformed.myIndex.indices step 3) {
+      val p1 = transformed.myIndex[i]
+      val p2 = transformed.myIndex[i + 1]
+      val p3 = transformed.myIndex[i + 2]
+      val type = transformed.mySurfaceType[i / 3]
+      if (type == 1) {
+        Rasterize.render_perspectiveAffine(expectedZBuffer, expectedRgb, FRAME_WIDTH, FRAME_HEIGHT,
+                                           vert[p1], vert[p1 + 1], vert[p1 + 2],
+                                           vert[p2], vert[p2 + 1], vert[p2 + 2],
+                                           vert[p3], vert[p3 + 1], vert[p3 + 2],
+                                           uv[p1], uv[p1 + 1], uv[p2], uv[p2 + 1], uv[p3], uv[p3 + 1],
+                                           layout.myTexture, layout.myTextureWidth, layout.myTextureHeight, viewMatrix.m)
+      }
+      else {
+        Rasterize.flat(expectedZBuffer, expectedRgb, FRAME_WIDTH, FRAME_HEIGHT,
+                       vert[p1], vert[p1 + 1], vert[p1 + 2],
+                       vert[p2], vert[p2 + 1], vert[p2 + 2],
+                       vert[p3], vert[p3 + 1], vert[p3 + 2],
+                       if (type == 0) Rasterize.BLUE else Rasterize.GRAY)
+      }
+    }
+    assertArrayEquals(expectedZBuffer, zBuffer, 0f)
+    assertArrayEquals(expectedRgb, rgb)
+  }
+
+  /**
+   * The same test pattern as [CheckLayout3d.getTestImage], without looking for an image on disk.
+   */
+  private fun createTestImage(): BufferedImage {
+    val width = 1024
+    val height = 1920
+    val image = BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB)
+    val data = (image.raster.dataBuffer as DataBufferInt).data
+    for (i in data.indices) {
+      data[i] = ((i % width) * 255 / width shl 16) or ((i / width) * 255 / height shl 8) or (i shr 10)
+    }
+    return image
+  }
+
+  /**
+   * A layout with rows of nested containers, each holding a few buttons, to get a deep 3D hierarchy.
+   */
+  private fun createDeepViews(image: BufferedImage): Layout.View {
+    val w = image.width.toFloat()
+    val h = image.height.toFloat()
+    val rows = 8
+    val depth = 6
+    val rowHeight = h / rows
+    val root = Layout.View(0f, 0f, w, h)
+    for (row in 0 until rows) {
+      var container = Layout.View(0f, row * rowHeight, w, rowHeight)
+      root.addChild(container)
+      for (level in 1..depth) {
+        val inset = level * 8f
+        val nested = Layout.View(inset, row * rowHeight + inset, w - 2 * inset, rowHeight - 2 * inset)
+        container.addChild(nested)
+        container = nested
+      }
+      val buttonWidth = (w - 2 * depth * 8f) / 5
+      for (button in 0 until 4) {
+        val x = depth * 8f + button * buttonWidth * 1.25f
+        container.addChild(Layout.View(x, row * rowHeight + rowHeight / 3, buttonWidth, rowHeight / 3))
+      }
+    }
+    return root
+  }
+}
@@ -18,6 +18,7 @@ package com.android.tools.idea.common.model;
 import android.view.View;
 import com.android.ide.common.rendering.api.ViewInfo;
 import com.android.tools.idea.rendering.parsers.AttributeSnapshot;
+import com.android.tools.idea.rendering.RenderExecutor;
 import com.android.tools.idea.rendering.RenderService;
 import com.android.tools.idea.uibuilder.handlers.constraint.ComponentModification;
 import com.android.tools.idea.uibuilder.model.LayoutParamsManager;
@@ -105,12 +106,12 @@ public class AttributesTransaction implements NlAttributesHolder {
   /**
    * Triggers a re-layout of the given {@link View}. This might happen asynchronously.
    */
-  private static void triggerViewRelayout(@NotNull View view) {
+  private static void triggerViewRelayout(@NotNull View view, @NotNull NlModel model) {
     try {
       // We run the re-layout as a render action to avoid a render happening at the same time as the re-layout since that
-      // might cause problems.
+      // might cause problems. The view belongs to the session of the model's render task, so the action runs in its thread.
       // TODO: Investigate a more lightweight solution for this.
-      RenderService.runAsyncRenderAction(() -> {
+      RenderService.runAsyncRenderAction(model.getRenderTask(), RenderExecutor.Priority.NORMAL, () -> {
         view.setLayoutParams(view.getLayoutParams());
         view.forceLayout();
       });
@@ -206,7 +207,7 @@ public class AttributesTransaction implements NlAttributesHolder {
       applyAllPendingAttributesToView(viewInfo);
       if (hasPendingRelayout) {
         hasLayoutAttributeChanged = true;
-        triggerViewRelayout((View)viewInfo.getViewObject());
+        triggerViewRelayout((View)viewInfo.getViewObject(), myModel);
       }
     }
   }
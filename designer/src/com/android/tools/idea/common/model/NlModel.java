@@ -37,6 +37,7 @@ import com.android.tools.idea.common.util.XmlTagUtil;
 import com.android.tools.idea.configurations.Configuration;
 import com.android.tools.idea.configurations.ConfigurationManager;
 import com.android.tools.idea.rendering.RefreshRenderAction;
+import com.android.tools.idea.rendering.RenderTask;
 import com.android.tools.idea.rendering.parsers.TagSnapshot;
 import com.android.tools.idea.res.LocalResourceRepository;
 import com.android.tools.idea.res.ResourceHelper;
@@ -115,6 +116,7 @@ public class NlModel implements Disposable, ResourceChangeListener, Modification
   private final ModelVersion myModelVersion = new ModelVersion();
   private final DesignerEditorFileType myType;
   private long myConfigurationModificationCount;
+  @Nullable private volatile RenderTask myRenderTask;
   private final MergingUpdateQueue myUpdateQueue;
 
   // Variable to track what triggered the latest render (if known)
@@ -985,6 +987,19 @@ public class NlModel implements Disposable, ResourceChangeListener, Modification
     return myModelVersion.getVersion();
   }
 
+  /**
+   * Returns the {@link RenderTask} whose session holds the current view objects of this model, if any. Render actions that access
+   * those views must use it as affinity, see {@link com.android.tools.idea.rendering.RenderService#runRenderAction(Object, java.util.concurrent.Callable)}.
+   */
+  @Nullable
+  public RenderTask getRenderTask() {
+    return myRenderTask;
+  }
+
+  public void setRenderTask(@Nullable RenderTask renderTask) {
+    myRenderTask = renderTask;
+  }
+
   public long getConfigurationModificationCount() {
     return myConfigurationModificationCount;
   }
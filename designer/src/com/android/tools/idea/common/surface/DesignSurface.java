@@ -94,6 +94,7 @@ import java.util.function.Consumer;
 import java.util.function.Function;
 import javax.annotation.concurrent.GuardedBy;
 import javax.swing.*;
+import javax.swing.event.ChangeListener;
 import javax.swing.plaf.ScrollBarUI;
 import org.intellij.lang.annotations.JdkConstants;
 import org.jetbrains.android.facet.AndroidFacet;
@@ -834,6 +835,15 @@ public abstract class DesignSurface extends EditorDesignSurface implements Dispo
     return myScrollPane.getViewport().getViewPosition();
   }
 
+  /**
+   * Returns true if any part of the given {@link SceneView} is in the visible area of the surface. Must be called from the UI thread.
+   */
+  public boolean isShowing(@NotNull SceneView sceneView) {
+    Rectangle viewRect = myScrollPane.getViewport().getViewRect();
+    Dimension size = sceneView.getSize();
+    return viewRect.intersects(sceneView.getX(), sceneView.getY(), size.width, size.height);
+  }
+
   /**
    * Set the scale factor used to multiply the content size.
    *
@@ -997,6 +1007,17 @@ public abstract class DesignSurface extends EditorDesignSurface implements Dispo
     }
   }
 
+  /**
+   * Adds a listener notified, on the UI thread, when the visible area of the surface or the size of its content changes.
+   */
+  public void addViewportChangeListener(@NotNull ChangeListener listener) {
+    myScrollPane.getViewport().addChangeListener(listener);
+  }
+
+  public void removeViewportChangeListener(@NotNull ChangeListener listener) {
+    myScrollPane.getViewport().removeChangeListener(listener);
+  }
+
   /**
    * The editor has been activated
    */
@@ -16,6 +16,7 @@
 package com.android.tools.idea.uibuilder.layout3d;
 
 import java.text.DecimalFormat;
+import java.util.stream.IntStream;
 
 /**
  * This is a collection of code to rasterize code
@@ -261,6 +262,22 @@ public class Rasterize {
    * Render a myTexture including use of zbuffer
    */
   public static void render_perspectiveAffine(float[] zbuff, int[] rgb, int w, int h,
+                                              float fx1, float fy1, float fz1,
+                                              float fx2, float fy2, float fz2,
+                                              float fx3, float fy3, float fz3,
+                                              float tx1, float ty1,
+                                              float tx2, float ty2,
+                                              float tx3, float ty3,
+                                              int[] texture, int tWidth, int tHeight, double[] matrix) {
+    render_perspectiveAffine(zbuff, rgb, w, h, 0, 0, w, h, fx1, fy1, fz1, fx2, fy2, fz2, fx3, fy3, fz3, tx1, ty1, tx2, ty2, tx3, ty3,
+                             texture, tWidth, tHeight, matrix);
+  }
+
+  /**
+   * Render a myTexture including use of zbuffer, only touching the pixels within [clipX0, clipX1) x [clipY0, clipY1)
+   */
+  public static void render_perspectiveAffine(float[] zbuff, int[] rgb, int w, int h,
+                                              int clipX0, int clipY0, int clipX1, int clipY1,
                                               float fx1, float fy1, float fz1,
                                               float fx2, float fy2, float fz2,
                                               float fx3, float fy3, float fz3,
@@ -376,17 +393,17 @@ public class Rasterize {
     int miny = (min(Y1, Y2, Y3) + 0xF) >> 4;
     int maxy = (max(Y1, Y2, Y3) + 0xF) >> 4;
 
-    if (miny < 0) {
-      miny = 0;
+    if (miny < clipY0) {
+      miny = clipY0;
     }
-    if (minx < 0) {
-      minx = 0;
+    if (minx < clipX0) {
+      minx = clipX0;
     }
-    if (maxx > w) {
-      maxx = w;
+    if (maxx > clipX1) {
+      maxx = clipX1;
     }
-    if (maxy > h) {
-      maxy = h;
+    if (maxy > clipY1) {
+      maxy = clipY1;
     }
     int off = miny * w;
 
@@ -825,6 +842,18 @@ public class Rasterize {
    * Render a myTexture including use of zbuffer
    */
   public static void flat(float[] zbuff, int[] rgb, int w, int h,
+                          float fx1, float fy1, float fz1,
+                          float fx2, float fy2, float fz2,
+                          float fx3, float fy3, float fz3,
+                          int color) {
+    flat(zbuff, rgb, w, h, 0, 0, w, h, fx1, fy1, fz1, fx2, fy2, fz2, fx3, fy3, fz3, color);
+  }
+
+  /**
+   * Render a flat shaded triangle including use of zbuffer, only touching the pixels within [clipX0, clipX1) x [clipY0, clipY1)
+   */
+  public static void flat(float[] zbuff, int[] rgb, int w, int h,
+                          int clipX0, int clipY0, int clipX1, int clipY1,
                           float fx1, float fy1, float fz1,
                           float fx2, float fy2, float fz2,
                           float fx3, float fy3, float fz3,
@@ -908,17 +937,17 @@ public class Rasterize {
     int miny = (min(Y1, Y2, Y3) + 0xF) >> 4;
     int maxy = (max(Y1, Y2, Y3) + 0xF) >> 4;
 
-    if (miny < 0) {
-      miny = 0;
+    if (miny < clipY0) {
+      miny = clipY0;
     }
-    if (minx < 0) {
-      minx = 0;
+    if (minx < clipX0) {
+      minx = clipX0;
     }
-    if (maxx > w) {
-      maxx = w;
+    if (maxx > clipX1) {
+      maxx = clipX1;
     }
-    if (maxy > h) {
-      maxy = h;
+    if (maxy > clipY1) {
+      maxy = clipY1;
     }
     int off = miny * w;
 
@@ -1257,6 +1286,19 @@ public class Rasterize {
   public static final int BLUE = 0x5599FF;
   public static final int GRAY = 0x101010;
 
+  /**
+   * The width and height of the tiles the image is split into. The triangles covering each tile are rasterized in parallel with
+   * the other tiles.
+   */
+  static final int TILE_SIZE = 64;
+
+  /**
+   * Rasterizes one triangle of a {@link TriData} within a clip rectangle.
+   */
+  private interface TileRasterizer {
+    void rasterize(int index, int clipX0, int clipY0, int clipX1, int clipY1);
+  }
+
   /**
    * CheckLayout3d entery point to convert tri data to an image
    *
@@ -1272,13 +1314,13 @@ public class Rasterize {
    */
   public static void toZBuff(float[] zbuff, int[] rgb, int w, int h, TriData tri, int[] texture,
                              int tWidth, int tHeight, double[] matrix) {
-    for (int i = 0; i < tri.myIndex.length; i += 3) {
+    rasterizeTiles(w, h, tri, (i, clipX0, clipY0, clipX1, clipY1) -> {
       int p1 = tri.myIndex[i];
       int p2 = tri.myIndex[i + 1];
       int p3 = tri.myIndex[i + 2];
       int type = tri.mySurfaceType[i / 3];
       if (type == 1) {
-        render_perspectiveAffine(zbuff, rgb, w, h,
+        render_perspectiveAffine(zbuff, rgb, w, h, clipX0, clipY0, clipX1, clipY1,
                                  tri.myVert[p1], tri.myVert[p1 + 1], tri.myVert[p1 + 2],
                                  tri.myVert[p2], tri.myVert[p2 + 1], tri.myVert[p2 + 2],
                                  tri.myVert[p3], tri.myVert[p3 + 1], tri.myVert[p3 + 2],
@@ -1289,7 +1331,7 @@ public class Rasterize {
         );
       }
       else {
-        flat(zbuff, rgb, w, h,
+        flat(zbuff, rgb, w, h, clipX0, clipY0, clipX1, clipY1,
              tri.myVert[p1], tri.myVert[p1 + 1], tri.myVert[p1 + 2],
              tri.myVert[p2], tri.myVert[p2 + 1], tri.myVert[p2 + 2],
              tri.myVert[p3], tri.myVert[p3 + 1], tri.myVert[p3 + 2],
@@ -1297,7 +1339,7 @@ public class Rasterize {
              (type == 0) ? BLUE : GRAY
         );
       }
-    }
+    });
   }
 
   /**
@@ -1310,20 +1352,91 @@ public class Rasterize {
    * @param tri   the data set it contains triangles indexes etc
    */
   public static void simple(float[] zbuff, int[] rgb, int w, int h, TriData tri) {
-
-    for (int i = 0; i < tri.myIndex.length; i += 3) {
+    rasterizeTiles(w, h, tri, (i, clipX0, clipY0, clipX1, clipY1) -> {
       int p1 = tri.myIndex[i];
       int p2 = tri.myIndex[i + 1];
       int p3 = tri.myIndex[i + 2];
       int type = (tri.mySurfaceType != null) ? tri.mySurfaceType[i / 3] : 0;
-      flat(zbuff, rgb, w, h,
+      flat(zbuff, rgb, w, h, clipX0, clipY0, clipX1, clipY1,
            tri.myVert[p1], tri.myVert[p1 + 1], tri.myVert[p1 + 2],
            tri.myVert[p2], tri.myVert[p2 + 1], tri.myVert[p2 + 2],
            tri.myVert[p3], tri.myVert[p3 + 1], tri.myVert[p3 + 2],
 
            (type == 0) ? BLUE : GRAY
       );
+    });
+  }
+
+  /**
+   * Splits the image into tiles of {@link #TILE_SIZE}, bins the triangles by the tiles their bounding box covers, and rasterizes the
+   * bins of the tiles in parallel. Each tile only writes its own pixels, and draws its triangles in the order they are in
+   * {@code tri}, so the image is the same as when drawing all the triangles on a single thread.
+   */
+  private static void rasterizeTiles(int w, int h, TriData tri, TileRasterizer rasterizer) {
+    int tilesX = (w + TILE_SIZE - 1) / TILE_SIZE;
+    int tilesY = (h + TILE_SIZE - 1) / TILE_SIZE;
+    int triangles = tri.myIndex.length / 3;
+    if (tilesX == 0 || tilesY == 0 || triangles == 0) {
+      return;
+    }
+
+    // The tiles covered by each triangle, as [minTileX, minTileY, maxTileX, maxTileY], or empty when it is outside of the image.
+    int[] covered = new int[triangles * 4];
+    int[] binSizes = new int[tilesX * tilesY];
+    for (int t = 0; t < triangles; t++) {
+      int i = t * 3;
+      int p1 = tri.myIndex[i];
+      int p2 = tri.myIndex[i + 1];
+      int p3 = tri.myIndex[i + 2];
+      // Same bounding box as the one computed by the rasterizers, from the 28.4 fixed-point coordinates.
+      int X1 = (int)(16.0f * tri.myVert[p1] + .5f);
+      int X2 = (int)(16.0f * tri.myVert[p2] + .5f);
+      int X3 = (int)(16.0f * tri.myVert[p3] + .5f);
+      int Y1 = (int)(16.0f * tri.myVert[p1 + 1] + .5f);
+      int Y2 = (int)(16.0f * tri.myVert[p2 + 1] + .5f);
+      int Y3 = (int)(16.0f * tri.myVert[p3 + 1] + .5f);
+      int minx = Math.max((min(X1, X2, X3) + 0xF) >> 4, 0);
+      int maxx = Math.min((max(X1, X2, X3) + 0xF) >> 4, w);
+      int miny = Math.max((min(Y1, Y2, Y3) + 0xF) >> 4, 0);
+      int maxy = Math.min((max(Y1, Y2, Y3) + 0xF) >> 4, h);
+      if (minx >= maxx || miny >= maxy) {
+        covered[t * 4 + 3] = -1;
+        continue;
+      }
+      covered[t * 4] = minx / TILE_SIZE;
+      covered[t * 4 + 1] = miny / TILE_SIZE;
+      covered[t * 4 + 2] = (maxx - 1) / TILE_SIZE;
+      covered[t * 4 + 3] = (maxy - 1) / TILE_SIZE;
+      for (int ty = covered[t * 4 + 1]; ty <= covered[t * 4 + 3]; ty++) {
+        for (int tx = covered[t * 4]; tx <= covered[t * 4 + 2]; tx++) {
+          binSizes[ty * tilesX + tx]++;
+        }
+      }
+    }
+
+    int[][] bins = new int[binSizes.length][];
+    for (int tile = 0; tile < bins.length; tile++) {
+      bins[tile] = new int[binSizes[tile]];
+      binSizes[tile] = 0;
+    }
+    for (int t = 0; t < triangles; t++) {
+      for (int ty = covered[t * 4 + 1]; ty <= covered[t * 4 + 3]; ty++) {
+        for (int tx = covered[t * 4]; tx <= covered[t * 4 + 2]; tx++) {
+          int tile = ty * tilesX + tx;
+          bins[tile][binSizes[tile]++] = t * 3;
+        }
+      }
     }
+
+    IntStream.range(0, bins.length).parallel().forEach(tile -> {
+      int clipX0 = (tile % tilesX) * TILE_SIZE;
+      int clipY0 = (tile / tilesX) * TILE_SIZE;
+      int clipX1 = Math.min(clipX0 + TILE_SIZE, w);
+      int clipY1 = Math.min(clipY0 + TILE_SIZE, h);
+      for (int index : bins[tile]) {
+        rasterizer.rasterize(index, clipX0, clipY0, clipX1, clipY1);
+      }
+    });
   }
 
   /**
@@ -48,6 +48,7 @@ import com.android.tools.idea.common.type.DesignerEditorFileType;
 import com.android.tools.idea.configurations.Configuration;
 import com.android.tools.idea.configurations.ConfigurationListener;
 import com.android.tools.idea.rendering.Locale;
+import com.android.tools.idea.rendering.RenderExecutor;
 import com.android.tools.idea.rendering.RenderLogger;
 import com.android.tools.idea.rendering.RenderResult;
 import com.android.tools.idea.rendering.RenderService;
@@ -94,7 +95,9 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Semaphore;
@@ -107,6 +110,7 @@ import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import javax.annotation.concurrent.GuardedBy;
 import javax.swing.*;
+import javax.swing.event.ChangeListener;
 import org.jetbrains.android.facet.AndroidFacet;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -126,6 +130,11 @@ public class LayoutlibSceneManager extends SceneManager {
   private final SelectionChangeListener mySelectionChangeListener = new SelectionChangeListener();
   private final ModelChangeListener myModelChangeListener = new ModelChangeListener();
   private final ConfigurationListener myConfigurationChangeListener = new ConfigurationChangeListener();
+  private final ChangeListener myViewportChangeListener = event -> updateVisibility();
+  /**
+   * Whether the scene is in the visible area of the surface. Computed on the UI thread so the render threads do not read Swing state.
+   */
+  private volatile boolean myIsVisible = true;
   private boolean myAreListenersRegistered;
   private final Object myProgressLock = new Object();
   @GuardedBy("myProgressLock")
@@ -222,6 +231,8 @@ public class LayoutlibSceneManager extends SceneManager {
     updateTrackingConfiguration();
 
     getDesignSurface().getSelectionModel().addListener(mySelectionChangeListener);
+    getDesignSurface().addViewportChangeListener(myViewportChangeListener);
+    UIUtil.invokeLaterIfNeeded(this::updateVisibility);
 
     Scene scene = getScene();
 
@@ -297,6 +308,7 @@ public class LayoutlibSceneManager extends SceneManager {
     if (myAreListenersRegistered) {
       NlModel model = getModel();
       getDesignSurface().getSelectionModel().removeListener(mySelectionChangeListener);
+      getDesignSurface().removeViewportChangeListener(myViewportChangeListener);
       model.getConfiguration().removeListener(myConfigurationChangeListener);
       model.removeListener(myModelChangeListener);
       model.removeListener(myModelChangeListener);
@@ -313,8 +325,10 @@ public class LayoutlibSceneManager extends SceneManager {
   private void disposeRenderTask() {
     synchronized (myRenderingTaskLock) {
       if (myRenderTask != null) {
+        myRenderTask.cancelPendingActions();
         myRenderTask.dispose();
         myRenderTask = null;
+        getModel().setRenderTask(null);
       }
     }
     myRenderResultLock.writeLock().lock();
@@ -827,6 +841,10 @@ public class LayoutlibSceneManager extends SceneManager {
         // No need to inflate
         return CompletableFuture.completedFuture(false);
       }
+      if (myRenderTask != null) {
+        // The current task is about to be replaced, so the results of its queued actions would be stale.
+        myRenderTask.cancelPendingActions();
+      }
     }
 
     // Record the current version we're rendering from; we'll use that in #activate to make sure we're picking up any
@@ -838,7 +856,8 @@ public class LayoutlibSceneManager extends SceneManager {
     RenderLogger logger = renderService.createLogger(facet);
     RenderService.RenderTaskBuilder renderTaskBuilder = renderService.taskBuilder(facet, configuration)
       .withPsiFile(getModel().getFile())
-      .withLogger(logger);
+      .withLogger(logger)
+      .withPriority(getRenderPriority());
     return setupRenderTaskBuilder(renderTaskBuilder).build()
       .thenCompose(newTask -> {
         if (newTask != null) {
@@ -856,9 +875,11 @@ public class LayoutlibSceneManager extends SceneManager {
               // Update myRenderTask with the new task
               synchronized (myRenderingTaskLock) {
                 if (myRenderTask != null && !myRenderTask.isDisposed()) {
+                  myRenderTask.cancelPendingActions();
                   myRenderTask.dispose();
                 }
                 myRenderTask = newTask;
+                getModel().setRenderTask(newTask);
               }
             }
           })
@@ -1091,7 +1112,14 @@ public class LayoutlibSceneManager extends SceneManager {
           if (elapsedFrameTimeMs != -1) {
             myRenderTask.setElapsedFrameTimeNanos(TimeUnit.MILLISECONDS.toNanos(elapsedFrameTimeMs));
           }
-          return myRenderTask.render().thenApply(result -> {
+          myRenderTask.setPriority(getRenderPriority());
+          return myRenderTask.render().exceptionally(ex -> {
+            if (ex instanceof CancellationException || ex.getCause() instanceof CancellationException) {
+              // The render was dropped because the task was replaced by a new one before it ran.
+              return null;
+            }
+            throw ex instanceof CompletionException ? (CompletionException)ex : new CompletionException(ex);
+          }).thenApply(result -> {
             // When the layout was inflated in this same call, we do not have to update the hierarchy again
             if (result != null && !inflated) {
               updateHierarchy(result);
@@ -1105,6 +1133,25 @@ public class LayoutlibSceneManager extends SceneManager {
       });
   }
 
+  /**
+   * Returns the priority of the render actions of this scene. Scenes visible in the surface are rendered before offscreen ones.
+   * This only reads the cached visibility so it can be called from any thread.
+   */
+  @NotNull
+  private RenderExecutor.Priority getRenderPriority() {
+    return myIsVisible ? RenderExecutor.Priority.HIGH : RenderExecutor.Priority.LOW;
+  }
+
+  /**
+   * Recomputes whether the scene is in the visible area of the surface. Called on the UI thread when the surface viewport changes.
+   */
+  private void updateVisibility() {
+    if (Disposer.isDisposed(this)) {
+      return;
+    }
+    myIsVisible = getDesignSurface().isShowing(getSceneView());
+  }
+
   public void setElapsedFrameTimeMs(long ms) {
     myElapsedFrameTimeMs = ms;
   }
@@ -32,6 +32,11 @@ class ColorBlindModeScreenViewLayer(screenView: ScreenView, val mode: ColorBlind
   ScreenViewLayer(screenView) {
 
   private val colorConverter = ColorConverter(mode)
+  /**
+   * The last result whose image was converted. Its image is converted in place, so it must not be converted again.
+   */
+  private var lastConvertedResult: RenderResult? = null
+
   init {
     Disposer.register(this, colorConverter)
   }
@@ -44,8 +49,13 @@ class ColorBlindModeScreenViewLayer(screenView: ScreenView, val mode: ColorBlind
       return
     }
 
+    if (result == null || result === lastConvertedResult) {
+      return
+    }
+    lastConvertedResult = result
+
     colorConverter.init()
-    val original = result?.renderedImage ?: return
+    val original = result.renderedImage
     val copied = original.copy ?: return
     colorConverter.convert(copied, copied)
 
@@ -20,6 +20,8 @@ import java.awt.image.BufferedImage
 import java.awt.image.DataBufferInt
 import java.lang.StringBuilder
 import java.util.function.Function
+import java.util.stream.IntStream
+import kotlin.math.min
 import kotlin.math.pow
 
 /**
@@ -34,8 +36,13 @@ class ColorConverter(val mode: ColorBlindMode) : Disposable {
 
   companion object {
     private var removeGammaCLut: DoubleArray? = null
+
+    /** Number of pixels converted by each parallel task. */
+    private const val TILE_SIZE = 16 * 1024
   }
   private var cbmCLut: ColorLut? = null
+  /** Result of [prepare] for each channel value and alpha, indexed by `alpha shl 8 or channel`. */
+  private var prepareLut: ByteArray? = null
 
   /**
    * Ensure that all necessary color lookup table is built.
@@ -53,13 +60,21 @@ class ColorConverter(val mode: ColorBlindMode) : Disposable {
       cbmCLut = buildColorLut(DIM, mode, removeGammaCLut!!)
       ColorConverterLogger.end("Build gamma CLut for ${mode.name}")
     }
+
+    if (prepareLut == null) {
+      prepareLut = buildPrepareLut()
+    }
   }
 
   /**
    * Pre condition : BufferedImage must be [BufferedImage.TYPE_INT_ARGB]
+   *
+   * The image is converted in tiles of [TILE_SIZE] pixels, in parallel. Only integer math is used per pixel.
    */
   fun convert(startImage: BufferedImage, postImage: BufferedImage) {
-    if (cbmCLut == null || removeGammaCLut == null) {
+    val lut = cbmCLut
+    val prepareLut = prepareLut
+    if (lut == null || prepareLut == null || removeGammaCLut == null) {
       throw RuntimeException("Make sure the converter.init is called.")
     }
 
@@ -67,8 +82,19 @@ class ColorConverter(val mode: ColorBlindMode) : Disposable {
     val inData = (startImage.raster.dataBuffer as DataBufferInt).data
     val outData = (postImage.raster.dataBuffer as DataBufferInt).data
 
-    for (i in inData.indices) {
-      outData[i] = convert(inData[i])
+    val tileCount = (inData.size + TILE_SIZE - 1) / TILE_SIZE
+    IntStream.range(0, tileCount).parallel().forEach { tile ->
+      // Layouts have large areas of the same color, so reuse the last conversion when the color doesn't change.
+      var lastIn = inData[tile * TILE_SIZE]
+      var lastOut = convert(lastIn, lut, prepareLut)
+      for (i in tile * TILE_SIZE until min(inData.size, (tile + 1) * TILE_SIZE)) {
+        val color = inData[i]
+        if (color != lastIn) {
+          lastIn = color
+          lastOut = convert(color, lut, prepareLut)
+        }
+        outData[i] = lastOut
+      }
     }
     ColorConverterLogger.end("Apply ${mode.name}")
 
@@ -84,6 +110,28 @@ class ColorConverter(val mode: ColorBlindMode) : Disposable {
     return 0xff shl 24 or cbmCLut!!.interpolate(prepare(color))
   }
 
+  private fun convert(color: Int, lut: ColorLut, prepareLut: ByteArray): Int {
+    val alpha = a(color) shl 8
+    val r = prepareLut[alpha or r(color)].toInt() and 0xFF
+    val g = prepareLut[alpha or g(color)].toInt() and 0xFF
+    val b = prepareLut[alpha or b(color)].toInt() and 0xFF
+    return 0xff shl 24 or lut.interpolate(combine(r, g, b))
+  }
+
+  /**
+   * Tabulates [prepare] for every channel value and alpha, so that pixels can be prepared without floating-point math.
+   * [prepare] transforms each channel independently, so the red channel gives the result of all channels.
+   */
+  private fun buildPrepareLut(): ByteArray {
+    val lut = ByteArray(256 * 256)
+    for (alpha in 0..255) {
+      for (value in 0..255) {
+        lut[alpha shl 8 or value] = r(prepare(alpha shl 24 or (value shl 16))).toByte()
+      }
+    }
+    return lut
+  }
+
   /**
    * Slightly reduce the colour domain as per the paper
    * "Digital Vido Colourmaps for Checking the Legibility of Displays by Dichromats"
@@ -118,6 +166,7 @@ class ColorConverter(val mode: ColorBlindMode) : Disposable {
   override fun dispose() {
     removeGammaCLut = null
     cbmCLut = null
+    prepareLut = null
   }
 }
 
@@ -173,41 +222,36 @@ class ColorLut(val lut: IntArray, val dim: Int) {
     val green = inputColor shr 8 and 0xFF
     val blue = inputColor and 0xFF
 
-    // 2) x - INDEX, y - COLOR. Interpolate from x to y.
-    val rx: Double = red * (dim - 1) / 255.0
-    val rx0: Int = Math.floor(rx).toInt()
+    // 2) x - INDEX, y - COLOR. Interpolate from x to y, in fixed point: x = x0 + fraction / 255.
+    val rx = red * (dim - 1)
+    val rx0 = rx / 255
+    val rFraction = rx % 255
 
-    val gx: Double = green * (dim - 1) / 255.0
-    val gx0: Int = Math.floor(gx).toInt()
+    val gx = green * (dim - 1)
+    val gx0 = gx / 255
+    val gFraction = gx % 255
 
-    val bx: Double = blue * (dim - 1) / 255.0
-    val bx0: Int = Math.floor(bx).toInt()
+    val bx = blue * (dim - 1)
+    val bx0 = bx / 255
+    val bFraction = bx % 255
 
     val x0 = rx0 + gx0 * dim + bx0 * dimdim
+    val color0 = lut[x0]
 
-    val rx1 = Math.ceil(rx).toInt()
-    val gx1 = Math.ceil(gx).toInt()
-    val bx1 = Math.ceil(bx).toInt()
-
-    val ry0 = r(lut[x0])
-    val ry1 = r(lut[nextRed(x0)])
-
-    val gy0 = g(lut[x0])
-    val gy1 = g(lut[nextGreen(x0)])
-
-    val by0 = b(lut[x0])
-    val by1 = b(lut[nextBlue(x0)])
-
-    val ry = if (rx0 == rx1) ry0 else
-      interpolate(rx, rx0.toDouble(), rx1.toDouble(), ry0, ry1)
-    val gy = if (gx0 == gx1) gy0 else
-      interpolate(gx, gx0.toDouble(), gx1.toDouble(), gy0, gy1)
-    val by = if (bx0 == bx1) by0 else
-      interpolate(bx, bx0.toDouble(), bx1.toDouble(), by0, by1)
+    val ry = if (rFraction == 0) r(color0) else interpolate(rFraction, r(color0), r(lut[nextRed(x0)]))
+    val gy = if (gFraction == 0) g(color0) else interpolate(gFraction, g(color0), g(lut[nextGreen(x0)]))
+    val by = if (bFraction == 0) b(color0) else interpolate(bFraction, b(color0), b(lut[nextBlue(x0)]))
 
     return ry shl 16 or (gy shl 8) or by
   }
 
+  /**
+   * Interpolates between [y0] and [y1], at [fraction] / 255 of the way.
+   */
+  private fun interpolate(fraction: Int, y0: Int, y1: Int): Int {
+    return (y0 * (255 - fraction) + y1 * fraction) / 255
+  }
+
   override fun toString(): String {
     val builder = StringBuilder()
     for (i in lut.indices) {
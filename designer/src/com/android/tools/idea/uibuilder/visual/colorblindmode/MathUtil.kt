@@ -23,10 +23,6 @@ import kotlin.math.roundToInt
  * go/cbm_simulator
  */
 
-fun interpolate(x: Double, x0: Double, x1: Double, y0: Int, y1: Int): Int {
-  return ((y0 * (x1 - x) + y1 * (x - x0)) / (x1 - x0)).toInt()
-}
-
 fun a(c: Int): Int {
   return c shr 24 and 0xFF
 }
@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.uibuilder.visual.colorblindmode
+
+import junit.framework.TestCase
+import java.awt.image.BufferedImage
+import java.awt.image.DataBufferInt
+import java.util.Random
+
+/**
+ * Tests that the parallel, integer-only image conversion matches the conversion of single colors.
+ */
+class ColorConverterTest : TestCase() {
+
+  fun testImageConversionMatchesColorConversion() {
+    // Large enough to be converted in several tiles, with runs of the same color.
+    val image = BufferedImage(300, 200, BufferedImage.TYPE_INT_ARGB)
+    val data = (image.raster.dataBuffer as DataBufferInt).data
+    val random = Random(1)
+    var i = 0
+    while (i < data.size) {
+      val color = random.nextInt()
+      val run = random.nextInt(20) + 1
+      for (j in i until minOf(data.size, i + run)) {
+        data[j] = color
+      }
+      i += run
+    }
+    val input = data.copyOf()
+
+    for (mode in ColorBlindMode.values()) {
+      val converter = ColorConverter(mode)
+      converter.init()
+      val output = BufferedImage(image.width, image.height, BufferedImage.TYPE_INT_ARGB)
+      converter.convert(image, output)
+      val outData = (output.raster.dataBuffer as DataBufferInt).data
+
+      for (index in input.indices) {
+        val expected = converter.convert(input[index])
+        val actual = outData[index]
+        assertEquals(a(expected), a(actual))
+        assertTrue("$mode red at $index: ${getColorString(expected)} vs ${getColorString(actual)}", Math.abs(r(expected) - r(actual)) <= 1)
+        assertTrue("$mode green at $index: ${getColorString(expected)} vs ${getColorString(actual)}", Math.abs(g(expected) - g(actual)) <= 1)
+        assertTrue("$mode blue at $index: ${getColorString(expected)} vs ${getColorString(actual)}", Math.abs(b(expected) - b(actual)) <= 1)
+      }
+    }
+  }
+}
@@ -27,6 +27,8 @@ import com.android.tools.idea.sdk.StudioSettingsController
 import com.android.tools.idea.sdk.progress.StudioLoggerProgressIndicator
 import com.android.tools.idea.sdk.wizard.SdkQuickfixUtils
 import com.google.common.annotations.VisibleForTesting
+import com.google.common.hash.HashCode
+import com.google.common.hash.Hashing
 import com.intellij.execution.configurations.GeneralCommandLine
 import com.intellij.execution.process.OSProcessHandler
 import com.intellij.execution.process.ProcessAdapter
@@ -88,13 +90,34 @@ object SkiaParser : SkiaParserService {
   private const val VERSION_MAP_FILE_NAME = "version-map.xml"
   private val progressIndicator = StudioLoggerProgressIndicator(SkiaParser::class.java)
 
+  // The last parsed picture and the images of its views by content hash. Live updates often send the same picture again, or one where
+  // only a few views changed: the tree, or the images of the views that didn't change, are then reused instead of being built again.
+  private val cacheLock = Any()
+  private var lastPictureHash: HashCode? = null
+  private var lastTree: InspectorView? = null
+  private var imageCache = mapOf<HashCode, Image>()
+
   @Throws(InvalidPictureException::class)
   override fun getViewTree(data: ByteArray, isInterrupted: () -> Boolean): InspectorView? {
+    val pictureHash = Hashing.murmur3_128().hashBytes(data)
+    val previousImages = synchronized(cacheLock) {
+      if (pictureHash == lastPictureHash) {
+        return lastTree
+      }
+      imageCache
+    }
     val server = runServer(data) ?: throw UnsupportedPictureVersionException(getSkpVersion(data))
     val response = server.getViewTree(data)
     return response?.root?.let {
       try {
-        buildTree(it, isInterrupted)
+        val images = mutableMapOf<HashCode, Image>()
+        val tree = buildTree(it, isInterrupted, previousImages, images)
+        synchronized(cacheLock) {
+          lastPictureHash = pictureHash
+          lastTree = tree
+          imageCache = images
+        }
+        tree
       }
       catch (interruptedException: InterruptedException) {
         null
@@ -105,9 +128,17 @@ object SkiaParser : SkiaParserService {
   override fun shutdownAll() {
     supportedVersionMap?.values?.forEach { it.shutdown() }
     devbuildServerInfo.shutdown()
+    synchronized(cacheLock) {
+      lastPictureHash = null
+      lastTree = null
+      imageCache = mapOf()
+    }
   }
 
-  private fun buildTree(node: SkiaParser.InspectorView, isInterrupted: () -> Boolean): InspectorView? {
+  private fun buildTree(node: SkiaParser.InspectorView,
+                        isInterrupted: () -> Boolean,
+                        previousImages: Map<HashCode, Image>,
+                        images: MutableMap<HashCode, Image>): InspectorView? {
     if (isInterrupted()) {
       throw InterruptedException()
     }
@@ -115,21 +146,31 @@ object SkiaParser : SkiaParserService {
     val height = node.height
     var image: Image? = null
     if (!node.image.isEmpty) {
-      val intArray = IntArray(width * height)
-      node.image.asReadOnlyByteBuffer().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(intArray)
-      val buffer = DataBufferInt(intArray, width * height)
-      val model = SinglePixelPackedSampleModel(DataBuffer.TYPE_INT, width, height, intArrayOf(0xff0000, 0xff00, 0xff, 0xff000000.toInt()))
-      val raster = Raster.createWritableRaster(model, buffer, Point(0, 0))
-      val colorModel = DirectColorModel(ColorSpace.getInstance(ColorSpace.CS_sRGB),
-                                        32, 0xff0000, 0xff00, 0xff, 0xff000000.toInt(), false, DataBuffer.TYPE_INT)
-      @Suppress("UndesirableClassUsage")
-      image = BufferedImage(colorModel, raster, false, null)
+      val imageHash = Hashing.murmur3_128().newHasher()
+        .putInt(width)
+        .putInt(height)
+        .putBytes(node.image.asReadOnlyByteBuffer())
+        .hash()
+      image = images[imageHash] ?: previousImages[imageHash] ?: createImage(node.image, width, height)
+      images[imageHash] = image
     }
     val res = InspectorView(node.id, node.type, node.x, node.y, width, height, image)
-    node.childrenList.mapNotNull { buildTree(it, isInterrupted) }.forEach { res.addChild(it) }
+    node.childrenList.mapNotNull { buildTree(it, isInterrupted, previousImages, images) }.forEach { res.addChild(it) }
     return res
   }
 
+  private fun createImage(data: ByteString, width: Int, height: Int): Image {
+    val intArray = IntArray(width * height)
+    data.asReadOnlyByteBuffer().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(intArray)
+    val buffer = DataBufferInt(intArray, width * height)
+    val model = SinglePixelPackedSampleModel(DataBuffer.TYPE_INT, width, height, intArrayOf(0xff0000, 0xff00, 0xff, 0xff000000.toInt()))
+    val raster = Raster.createWritableRaster(model, buffer, Point(0, 0))
+    val colorModel = DirectColorModel(ColorSpace.getInstance(ColorSpace.CS_sRGB),
+                                      32, 0xff0000, 0xff00, 0xff, 0xff000000.toInt(), false, DataBuffer.TYPE_INT)
+    @Suppress("UndesirableClassUsage")
+    return BufferedImage(colorModel, raster, false, null)
+  }
+
   private fun runServer(data: ByteArray): ServerInfo? {
     val server = findServerInfoForSkpVersion(getSkpVersion(data)) ?: return null
     server.runServer()
@@ -35,7 +35,10 @@ import com.intellij.openapi.util.LowMemoryWatcher
 import com.intellij.util.ui.UIUtil
 import java.awt.Image
 import java.awt.Rectangle
+import java.awt.image.BufferedImage
 import java.io.ByteArrayInputStream
+import java.util.Collections
+import java.util.IdentityHashMap
 import java.util.concurrent.TimeUnit
 import java.util.concurrent.atomic.AtomicLong
 import javax.imageio.ImageIO
@@ -194,6 +197,8 @@ private class ComponentTreeLoaderImpl(
     private val nodeMap = root.flatten().associateBy { it.drawId }
     private val viewMap = viewRoot.flatten().associateBy { it.id.toLong() }
     private val offset = root.bounds.location
+    // The images created by combine(). The images of the Skia views may be shared with other pictures, and must not be drawn into.
+    private val combinedImages = Collections.newSetFromMap(IdentityHashMap<Image, Boolean>())
 
     init {
       val rootView = viewMap[root.drawId]
@@ -233,12 +238,22 @@ private class ComponentTreeLoaderImpl(
       if (image == null) {
         return view.image
       }
-      @Suppress("UndesirableClassUsage")
+      val combined = if (image in combinedImages) image else copy(image)
       // Combine the images...
-      val g = image.graphics
+      val g = combined.graphics
       UIUtil.drawImage(g, view.image!!, offset.x + view.x - bounds.x, offset.y + view.y - bounds.y, null)
       g.dispose()
-      return image
+      return combined
+    }
+
+    private fun copy(image: Image): Image {
+      @Suppress("UndesirableClassUsage")
+      val copy = BufferedImage(image.getWidth(null), image.getHeight(null), BufferedImage.TYPE_INT_ARGB)
+      val g = copy.graphics
+      UIUtil.drawImage(g, image, 0, 0, null)
+      g.dispose()
+      combinedImages.add(copy)
+      return copy
     }
   }
 }
\ No newline at end of file
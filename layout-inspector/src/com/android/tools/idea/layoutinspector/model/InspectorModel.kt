@@ -61,15 +61,36 @@ class InspectorModel(val project: Project) {
   val isEmpty
     get() = root.children.isEmpty()
 
+  // Lookups of the views in [roots] by drawId and viewId name, kept up to date by [update].
+  private val idLookup = mutableMapOf(root.drawId to root)
+  private val viewIdLookup = mutableMapOf<String, MutableList<ViewNode>>()
+
   /**
    * Get a ViewNode by drawId
    */
-  operator fun get(id: Long) = root.flatten().find { it.drawId == id }
+  operator fun get(id: Long) = idLookup[id]
 
   /**
    * Get a ViewNode by viewId name
    */
-  operator fun get(id: String) = root.flatten().find { it.viewId?.name == id }
+  operator fun get(id: String) = viewIdLookup[id]?.firstOrNull()
+
+  private fun addToLookup(node: ViewNode) {
+    idLookup[node.drawId] = node
+    node.viewId?.name?.let { viewIdLookup.getOrPut(it) { mutableListOf() }.add(node) }
+  }
+
+  private fun removeFromLookup(node: ViewNode) {
+    if (idLookup[node.drawId] === node) {
+      idLookup.remove(node.drawId)
+    }
+    val name = node.viewId?.name ?: return
+    val nodes = viewIdLookup[name] ?: return
+    nodes.remove(node)
+    if (nodes.isEmpty()) {
+      viewIdLookup.remove(name)
+    }
+  }
 
   /**
    * Update [root]'s bounds and children based on any updates to [roots]
@@ -117,6 +138,7 @@ class InspectorModel(val project: Project) {
    * Replaces all subtrees with differing root IDs. Existing views are updated.
    */
   fun update(newRoot: ViewNode?, id: Any, allIds: List<*>) {
+    roots.filterKeys { it !in allIds }.values.forEach { removed -> removed.flatten().forEach { removeFromLookup(it) } }
     var structuralChange: Boolean = roots.keys.retainAll(allIds)
     val oldRoot = roots[id]
     // changes in DIM_BEHIND will cause a structural change
@@ -125,8 +147,10 @@ class InspectorModel(val project: Project) {
       return
     }
     if (newRoot?.drawId != oldRoot?.drawId || newRoot?.qualifiedName != oldRoot?.qualifiedName) {
+      oldRoot?.flatten()?.forEach { removeFromLookup(it) }
       if (newRoot != null) {
         roots[id] = newRoot
+        newRoot.flatten().forEach { addToLookup(it) }
       }
       else {
         roots.remove(id)
@@ -140,6 +164,8 @@ class InspectorModel(val project: Project) {
       else {
         val updater = Updater(oldRoot, newRoot)
         structuralChange = updater.update() || structuralChange
+        updater.removedNodes.forEach { removeFromLookup(it) }
+        updater.addedNodes.forEach { addToLookup(it) }
       }
     }
 
@@ -150,14 +176,39 @@ class InspectorModel(val project: Project) {
 
   fun notifyModified() = modificationListeners.forEach { it(root, root, false) }
 
+  /**
+   * Removes all the views, e.g. to release memory, along with their lookups. The listeners are notified as for a removed window, so that
+   * views derived from the model, like the hit-testing grid of the device view, are rebuilt too.
+   */
+  fun clear() {
+    roots.clear()
+    idLookup.clear()
+    idLookup[root.drawId] = root
+    viewIdLookup.clear()
+    root.children.clear()
+    hasSubImages = false
+    selection = null
+    hoveredNode = null
+    modificationListeners.forEach { it(root, null, true) }
+  }
+
   private class Updater(private val oldRoot: ViewNode, private val newRoot: ViewNode) {
     private val oldNodes = oldRoot.flatten().associateBy { it.drawId }
+    private val keptNodes = mutableSetOf<ViewNode>()
+
+    /** The nodes of [newRoot] that were added to the tree by [update] */
+    val addedNodes = mutableListOf<ViewNode>()
+
+    /** The nodes of the old tree that are no longer part of it after [update] */
+    val removedNodes: List<ViewNode>
+      get() = oldNodes.values.filter { it !in keptNodes }
 
     fun update(): Boolean {
       return update(oldRoot, oldRoot.parent, newRoot)
     }
 
     private fun update(oldNode: ViewNode, parent: ViewNode?, newNode: ViewNode): Boolean {
+      keptNodes.add(oldNode)
       var modified = (parent != oldNode.parent) || !sameChildren(oldNode, newNode)
       // TODO: should changes below cause modified to be set to true?
       // Maybe each view should have its own modification listener that can listen for such changes?
@@ -180,6 +231,7 @@ class InspectorModel(val project: Project) {
         } else {
           oldNode.children.add(newChild)
           newChild.parent = oldNode
+          addedNodes.addAll(newChild.flatten())
         }
       }
       return modified
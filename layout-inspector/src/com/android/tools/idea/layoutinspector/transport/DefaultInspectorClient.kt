@@ -128,7 +128,8 @@ class DefaultInspectorClient(
   @Suppress("unused") // Need to keep a reference to receive notifications
   private val lowMemoryWatcher = LowMemoryWatcher.register(
     {
-      model.root.children.clear()
+      // The model is only modified on the UI thread.
+      ApplicationManager.getApplication().invokeLater { model.clear() }
       requestScreenshotMode()
       InspectorBannerService.getInstance(project).setNotification("Low Memory. Rotation disabled.")
     }, LowMemoryWatcher.LowMemoryWatcherType.ONLY_AFTER_GC)
@@ -29,6 +29,7 @@ import java.awt.Image
 import java.awt.Rectangle
 import java.awt.Shape
 import java.awt.geom.AffineTransform
+import java.awt.geom.Rectangle2D
 import kotlin.math.PI
 import kotlin.math.abs
 import kotlin.math.atan
@@ -38,6 +39,9 @@ import kotlin.math.sqrt
 
 val DEVICE_VIEW_MODEL_KEY = DataKey.create<DeviceViewPanelModel>(DeviceViewPanelModel::class.qualifiedName!!)
 
+// The maximum number of rows and columns of the grid used for hit-testing the views
+private const val MAX_GRID_SIZE = 64
+
 data class ViewDrawInfo(val bounds: Shape, val transform: AffineTransform, val node: ViewNode, val clip: Rectangle)
 
 class DeviceViewPanelModel(private val model: InspectorModel) {
@@ -60,6 +64,12 @@ class DeviceViewPanelModel(private val model: InspectorModel) {
 
   @VisibleForTesting
   var hitRects = listOf<ViewDrawInfo>()
+    set(value) {
+      field = value
+      hitGrid = HitGrid(value)
+    }
+
+  private var hitGrid = HitGrid(hitRects)
 
   val modificationListeners = mutableListOf<() -> Unit>()
 
@@ -120,9 +130,7 @@ class DeviceViewPanelModel(private val model: InspectorModel) {
     get() = !model.isEmpty
 
   fun findTopRect(x: Double, y: Double): ViewNode? {
-    return hitRects.findLast {
-      it.bounds.contains(x, y)
-    }?.node
+    return hitGrid.findLast(x, y)?.node
   }
 
   fun rotate(xRotation: Double, yRotation: Double) {
@@ -222,4 +230,57 @@ class DeviceViewPanelModel(private val model: InspectorModel) {
     yOff = 0.0
     refresh()
   }
-}
\ No newline at end of file
+}
+
+/**
+ * Spatial index of the transformed bounds of [ViewDrawInfo]s: the area covered by the views is split into a grid, and each cell lists
+ * the views whose bounding box overlaps it. Hit-testing then only checks the views listed in the cell of the point.
+ */
+private class HitGrid(private val drawInfos: List<ViewDrawInfo>) {
+  private val area: Rectangle2D? =
+    if (drawInfos.isEmpty()) null else drawInfos.map { it.bounds.bounds2D }.reduce { acc, bounds -> acc.createUnion(bounds) }
+  private val columns: Int
+  private val rows: Int
+  private val cells: Array<IntArray>
+
+  init {
+    // Roughly one view per cell, for views evenly spread over the area.
+    val size = sqrt(drawInfos.size.toDouble()).toInt().coerceIn(1, MAX_GRID_SIZE)
+    columns = size
+    rows = size
+    val cellLists = Array(columns * rows) { mutableListOf<Int>() }
+    drawInfos.forEachIndexed { index, info ->
+      val bounds = info.bounds.bounds2D
+      for (row in row(bounds.minY)..row(bounds.maxY)) {
+        for (column in column(bounds.minX)..column(bounds.maxX)) {
+          cellLists[row * columns + column].add(index)
+        }
+      }
+    }
+    cells = Array(cellLists.size) { cellLists[it].toIntArray() }
+  }
+
+  /**
+   * Returns the last of the [ViewDrawInfo]s that contains the given point, i.e. the one drawn on top.
+   */
+  fun findLast(x: Double, y: Double): ViewDrawInfo? {
+    if (area == null || x < area.minX || x > area.maxX || y < area.minY || y > area.maxY) {
+      return null
+    }
+    val cell = cells[row(y) * columns + column(x)]
+    for (i in cell.indices.reversed()) {
+      val info = drawInfos[cell[i]]
+      if (info.bounds.contains(x, y)) {
+        return info
+      }
+    }
+    return null
+  }
+
+  private fun column(x: Double) = cellIndex(x, area?.minX ?: 0.0, area?.width ?: 0.0, columns)
+
+  private fun row(y: Double) = cellIndex(y, area?.minY ?: 0.0, area?.height ?: 0.0, rows)
+
+  private fun cellIndex(value: Double, start: Double, length: Double, count: Int) =
+    if (length <= 0.0) 0 else ((value - start) * count / length).toInt().coerceIn(0, count - 1)
+}
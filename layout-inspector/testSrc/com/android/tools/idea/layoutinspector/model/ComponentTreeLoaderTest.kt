@@ -174,6 +174,37 @@ class ComponentTreeLoaderTest {
     assertThat(node4.children).isEmpty()
   }
 
+  @Test
+  fun testSharedImagesAreNotModified() {
+    @Suppress("UndesirableClassUsage")
+    val image2 = BufferedImage(50, 100, BufferedImage.TYPE_INT_ARGB)
+    @Suppress("UndesirableClassUsage")
+    val subImage = BufferedImage(10, 10, BufferedImage.TYPE_INT_ARGB)
+    subImage.setRGB(0, 0, 0xFF00FF00.toInt())
+
+    // The view with id 5 isn't in the component tree, so its image is drawn into the image of view 2.
+    val skiaResponse = InspectorView("1", "com.example.MyViewClass1", 0, 0, 100, 200, null, listOf(
+      InspectorView("2", "com.example.MyViewClass2", 10, 10, 50, 100, image2, listOf(
+        InspectorView("5", "com.example.MyViewClass1", 10, 10, 10, 10, subImage)
+      ))
+    ))
+
+    val client = mock(DefaultInspectorClient::class.java)
+    val payload = "samplepicture".toByteArray()
+    `when`(client.getPayload(111)).thenReturn(payload)
+    val skiaParser = mock(SkiaParserService::class.java)!!
+    // The same tree is returned for both pictures, like the skia parser does when the device sends the same picture again.
+    `when`(skiaParser.getViewTree(eq(payload), any())).thenReturn(skiaResponse)
+
+    for (i in 1..2) {
+      val tree = ComponentTreeLoader.loadComponentTree(event, ResourceLookup(projectRule.project), client, skiaParser, projectRule.project)!!
+      val combined = tree.children[0].imageBottom as BufferedImage
+      assertThat(combined).isNotSameAs(image2)
+      assertThat(combined.getRGB(0, 0)).isEqualTo(0xFF00FF00.toInt())
+      assertThat(image2.getRGB(0, 0)).isEqualTo(0)
+    }
+  }
+
   @Test
   fun testFallback() {
     val imageFile = File(TestUtils.getWorkspaceRoot(), "$TEST_DATA_PATH/image1.png")
@@ -15,6 +15,9 @@
  */
 package com.android.tools.idea.layoutinspector.model
 
+import com.android.ide.common.rendering.api.ResourceNamespace
+import com.android.ide.common.rendering.api.ResourceReference
+import com.android.resources.ResourceType
 import com.android.tools.idea.layoutinspector.model
 import com.android.tools.idea.layoutinspector.view
 import com.intellij.openapi.project.Project
@@ -206,4 +209,70 @@ class InspectorModelTest {
     assertEmpty(model.root.children)
     assertTrue(model.isEmpty)
   }
-}
\ No newline at end of file
+
+  @Test
+  fun testLookupsFollowUpdates() {
+    val title = ResourceReference(ResourceNamespace.TODO(), ResourceType.ID, "title")
+    val button = ResourceReference(ResourceNamespace.TODO(), ResourceType.ID, "button")
+    val model = model {
+      view(ROOT, 2, 4, 6, 8, "rootType") {
+        view(VIEW1, 8, 6, 4, 2, "v1Type", viewId = title) {
+          view(VIEW3, 9, 8, 7, 6, "v3Type")
+        }
+        view(VIEW2, 6, 7, 8, 9, "v2Type")
+      }
+    }
+    assertSame(model[VIEW1], model["title"])
+    assertNull(model["button"])
+
+    // VIEW1 is replaced by VIEW4, which has a new VIEW3 child, and VIEW2 is removed
+    val newRoot =
+      view(ROOT, 2, 4, 6, 8, "rootType") {
+        view(VIEW4, 8, 6, 4, 2, "v4Type", viewId = button) {
+          view(VIEW3, 9, 8, 7, 6, "v3Type")
+        }
+      }
+    model.update(newRoot, ROOT, listOf(ROOT))
+
+    assertNull(model[VIEW1])
+    assertNull(model[VIEW2])
+    assertNull(model["title"])
+    assertSame(model[ROOT]!!.children[0], model[VIEW4])
+    assertSame(model[VIEW4], model["button"])
+    assertSame(model[VIEW4]!!.children[0], model[VIEW3])
+
+    // remove the window
+    model.update(null, ROOT, listOf<Any>())
+    assertNull(model[ROOT])
+    assertNull(model[VIEW3])
+    assertNull(model["button"])
+    assertSame(model.root, model[model.root.drawId])
+  }
+
+  @Test
+  fun testClearRemovesViewsAndLookups() {
+    val title = ResourceReference(ResourceNamespace.TODO(), ResourceType.ID, "title")
+    val model = model {
+      view(ROOT, 2, 4, 6, 8, "rootType") {
+        view(VIEW1, 8, 6, 4, 2, "v1Type", viewId = title)
+      }
+    }
+    model.selection = model[VIEW1]
+    var newRoot: ViewNode? = model[ROOT]
+    var isModified = false
+    model.modificationListeners.add { _, new, structuralChange ->
+      newRoot = new
+      isModified = structuralChange
+    }
+
+    model.clear()
+    assertTrue(model.isEmpty)
+    assertTrue(isModified)
+    assertNull(newRoot)
+    assertNull(model.selection)
+    assertNull(model[ROOT])
+    assertNull(model[VIEW1])
+    assertNull(model["title"])
+    assertSame(model.root, model[model.root.drawId])
+  }
+}
@@ -187,6 +187,38 @@ class DeviceViewPanelModelTest {
     assertThat(panelModel.isRotated).isFalse()
   }
 
+  @Test
+  fun testFindTopRect() {
+    val model = model {
+      view(ROOT, Rectangle(0, 0, 200, 300), imageBottom = mock(Image::class.java)) {
+        for (row in 0 until 6) {
+          view(VIEW1 + 100 * row, Rectangle(0, row * 50, 200, 50), imageBottom = mock(Image::class.java)) {
+            for (column in 0 until 4) {
+              view(VIEW1 + 100 * row + column + 1, Rectangle(column * 50 + 5, row * 50 + 5, 60, 40),
+                   imageBottom = mock(Image::class.java))
+            }
+          }
+        }
+      }
+    }
+    val panelModel = DeviceViewPanelModel(model)
+
+    for ((xOff, yOff) in listOf(Pair(0.0, 0.0), Pair(0.3, 0.0), Pair(-0.2, 0.4))) {
+      panelModel.resetRotation()
+      panelModel.rotate(xOff, yOff)
+      var y = -300.0
+      while (y < 300.0) {
+        var x = -300.0
+        while (x < 300.0) {
+          val expected = panelModel.hitRects.findLast { it.bounds.contains(x, y) }?.node
+          assertEquals(expected, panelModel.findTopRect(x, y))
+          x += 3.7
+        }
+        y += 3.7
+      }
+    }
+  }
+
   private fun checkRects(expectedTransforms: MutableList<ComparingTransform>, xOff: Double, yOff: Double) {
     val rects = listOf(
       Rectangle(0, 0, 100, 200),
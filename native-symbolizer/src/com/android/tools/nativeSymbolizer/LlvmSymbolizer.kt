@@ -18,6 +18,7 @@ package com.android.tools.nativeSymbolizer
 import com.intellij.openapi.Disposable
 import java.io.*
 import java.util.concurrent.*
+import java.util.concurrent.atomic.AtomicInteger
 
 /**
  * Implementation of NativeSymbolizer that uses llvm-symbolizer.
@@ -34,62 +35,178 @@ import java.util.concurrent.*
  * /usr/local/google/home/ezemtsov/projects/android-apps/sum/app/src/main/cpp/native-lib.cpp:36:7
  *
  * More info about llvm-symbolizer: https://llvm.org/docs/CommandGuide/llvm-symbolizer.html
+ *
+ * Requests are pipelined: up to [MAX_BATCH_SIZE] lines are written to a process before its responses are read, and batches are
+ * spread over a pool of [processCount] processes. Results are cached in [symbolCache] by the build id of the symbol file.
  */
 class LlvmSymbolizer(private val symbolizerExe: String,
                      private val symLocator: SymbolFilesLocator,
-                     private val timeoutMsc: Long = 5000) : NativeSymbolizer {
+                     private val timeoutMsc: Long = 5000,
+                     processCount: Int = DEFAULT_PROCESS_COUNT,
+                     private val symbolCache: SymbolCache = SymbolCache(null)) : NativeSymbolizer {
+
+  companion object {
+    private const val MAX_BATCH_SIZE = 256
+    private val DEFAULT_PROCESS_COUNT = Runtime.getRuntime().availableProcessors().coerceIn(1, 4)
+  }
 
-  private var procHolder : ProcessHolder? = null
-  private val executor : ExecutorService = Executors.newSingleThreadExecutor()
+  private val procHolders = arrayOfNulls<ProcessHolder>(processCount.coerceAtLeast(1))
+  private val procLocks = Array(procHolders.size) { Any() }
+  private val executor : ExecutorService = Executors.newCachedThreadPool()
+  private val cacheKeys = ConcurrentHashMap<File, CacheKey>()
 
   override fun symbolize(abiArch: String, module: String, offset: Long): Symbol? {
-    val symFiles = symLocator.findSymbolFiles(abiArch, module)
+    return symbolize(abiArch, listOf(SymbolRequest(module, offset)))[0]
+  }
 
-    for (symFile in symFiles) {
-      val request = formatRequest(symFile, offset)
+  override fun symbolize(abiArch: String, requests: List<SymbolRequest>): List<Symbol?> {
+    val results = arrayOfNulls<Symbol>(requests.size)
+    val symFilesByModule = HashMap<String, List<File>>()
+    // A module can have several symbol files. Try the first one for all requests, then the next one for the requests it didn't
+    // resolve, and so on.
+    var pending = requests.indices.toList()
+    var symFileIndex = 0
+    while (pending.isNotEmpty()) {
+      val lines = mutableListOf<PendingLine>()
+      var hasSymFile = false
+      for (index in pending) {
+        val request = requests[index]
+        val symFiles = symFilesByModule.getOrPut(request.module) { symLocator.findSymbolFiles(abiArch, request.module) }
+        val symFile = symFiles.getOrNull(symFileIndex) ?: continue
+        hasSymFile = true
+        val cacheKey = getCacheKey(symFile)
+        val cached = cacheKey?.let { symbolCache.get(it, request.offset) }
+        when {
+          cached == null -> lines.add(PendingLine(index, cacheKey, formatRequest(symFile, request.offset)))
+          cached != SymbolCache.UNKNOWN -> results[index] = cached.copy(module = request.module)
+        }
+      }
+      if (!hasSymFile) {
+        break
+      }
 
-      val holder = getProcHolder()
-      val future = executor.submit( Callable<List<String>> {
-        holder.stdin.write(request)
-        holder.stdin.flush()
+      val responses = symbolizeLines(lines.map { it.request })
+      val symbolsToCache = HashMap<String, MutableMap<Long, Symbol>>()
+      for ((line, response) in lines.zip(responses)) {
+        if (response == null) {
+          // The symbolizer failed to respond, try the next symbol file.
+          continue
+        }
+        val request = requests[line.index]
+        val symbol = parseResponse(response, request.module)
+        results[line.index] = symbol
+        if (line.cacheKey != null) {
+          symbolsToCache.getOrPut(line.cacheKey) { HashMap() }[request.offset] = symbol?.copy(module = "") ?: SymbolCache.UNKNOWN
+        }
+      }
+      symbolsToCache.forEach { (cacheKey, symbols) -> symbolCache.putAll(cacheKey, symbols) }
 
-        val response: MutableList<String> = mutableListOf()
-        var responseLine: String?
-        while (true) {
-          responseLine = holder.stdout.readLine()
-          if (responseLine == null || responseLine.isEmpty()) {
-            break
-          }
-          response.add(responseLine)
+      pending = pending.filter { results[it] == null }
+      symFileIndex++
+    }
+    return results.asList()
+  }
+
+  /**
+   * @return the key of the symbols of a file in [symbolCache], or null if they can't be cached because the file has no build id.
+   */
+  private fun getCacheKey(symFile: File): String? {
+    val lastModified = symFile.lastModified()
+    var cacheKey = cacheKeys[symFile]
+    if (cacheKey == null || cacheKey.lastModified != lastModified) {
+      // Stripped and unstripped copies of a library have the same build id, but only the latter can be symbolized.
+      cacheKey = CacheKey(lastModified, readBuildId(symFile)?.let { "$it-${symFile.length()}" })
+      cacheKeys[symFile] = cacheKey
+    }
+    return cacheKey.key
+  }
+
+  /**
+   * Sends formatted requests to the symbolizer processes, in batches spread over the pool.
+   * @return the response to each request, or null for the requests that failed.
+   */
+  private fun symbolizeLines(requests: List<String>): List<List<String>?> {
+    val responses = arrayOfNulls<List<String>>(requests.size)
+    val batches = requests.indices.chunked(MAX_BATCH_SIZE)
+    val workerCount = minOf(procHolders.size, batches.size)
+    val workers = (0 until workerCount).map { slot ->
+      executor.submit(Runnable {
+        for (batchIndex in slot until batches.size step workerCount) {
+          val batch = batches[batchIndex]
+          val batchResponses = symbolizeBatch(slot, batch.map { requests[it] }) ?: continue
+          batch.forEachIndexed { i, requestIndex -> responses[requestIndex] = batchResponses[i] }
         }
-        response
       })
-      val response : List<String>
+    }
+    for (worker in workers) {
       try {
-        response = future.get(timeoutMsc, TimeUnit.MILLISECONDS)
-      } catch (e: TimeoutException) {
-        getLogger().warn("llvm-symbolizer timed out", e)
-        stop()
-        continue
-      } catch (e: ExecutionException) {
-        getLogger().warn("llvm-symbolizer communication failed", e)
-        stop()
-        continue
+        worker.get()
+      }
+      catch (e: ExecutionException) {
+        val cause = e.cause
+        throw cause as? IOException ?: IOException(cause)
       }
-
-      val result = parseResponse(response, module)
-      if (result != null)
-        return result
     }
+    return responses.asList()
+  }
+
+  /**
+   * Writes a batch of requests to the process of the given slot, and reads their responses while they are being written.
+   * @return the responses, or null if the process failed or didn't respond in time.
+   */
+  private fun symbolizeBatch(slot: Int, requests: List<String>): List<List<String>>? {
+    synchronized(procLocks[slot]) {
+      val holder = getProcHolder(slot)
+      val responseCount = AtomicInteger()
+      val writer = executor.submit(Runnable {
+        holder.stdin.write(requests.joinToString(""))
+        holder.stdin.flush()
+      })
+      val reader = executor.submit( Callable<List<List<String>>> {
+        val responses: MutableList<List<String>> = ArrayList(requests.size)
+        while (responses.size < requests.size) {
+          val response: MutableList<String> = mutableListOf()
+          while (true) {
+            val responseLine = holder.stdout.readLine() ?: throw EOFException("llvm-symbolizer closed its output")
+            if (responseLine.isEmpty()) {
+              break
+            }
+            response.add(responseLine)
+          }
+          responses.add(response)
+          responseCount.incrementAndGet()
+        }
+        responses
+      })
 
-    return null
+      // Each response should arrive within the timeout, so keep waiting as long as responses come in.
+      var lastResponseCount = 0
+      while (true) {
+        try {
+          return reader.get(timeoutMsc, TimeUnit.MILLISECONDS)
+        } catch (e: TimeoutException) {
+          if (responseCount.get() > lastResponseCount) {
+            lastResponseCount = responseCount.get()
+            continue
+          }
+          getLogger().warn("llvm-symbolizer timed out", e)
+        } catch (e: ExecutionException) {
+          getLogger().warn("llvm-symbolizer communication failed", e)
+        }
+        // Destroying the process unblocks the reader and the writer.
+        stop(slot)
+        writer.cancel(true)
+        reader.cancel(true)
+        return null
+      }
+    }
   }
 
-  private fun getProcHolder() : ProcessHolder {
-    var holder = procHolder
+  private fun getProcHolder(slot: Int) : ProcessHolder {
+    var holder = procHolders[slot]
     if (holder == null || !holder.process.isAlive) {
-      start()
-      holder = procHolder!! // procHolder must't be null after start()
+      start(slot)
+      holder = procHolders[slot]!! // procHolders[slot] must't be null after start()
     }
     return holder
   }
@@ -126,9 +243,9 @@ class LlvmSymbolizer(private val symbolizerExe: String,
     return Symbol(name, module, sourceFile, lineNumber)
   }
 
-  private fun start() {
-    if (procHolder != null)
-      stop()
+  private fun start(slot: Int) {
+    if (procHolders[slot] != null)
+      stop(slot)
 
     val builder = ProcessBuilder(symbolizerExe)
     val process = builder.start()
@@ -138,14 +255,22 @@ class LlvmSymbolizer(private val symbolizerExe: String,
 
     val stdin = OutputStreamWriter(process.outputStream, Charsets.UTF_8)
     val stdout = BufferedReader(InputStreamReader(process.inputStream, Charsets.UTF_8))
-    procHolder = ProcessHolder(process, stdout, stdin)
+    procHolders[slot] = ProcessHolder(process, stdout, stdin)
   }
 
   override fun stop() {
-    procHolder?.dispose()
-    procHolder = null
+    procHolders.indices.forEach { stop(it) }
   }
 
+  private fun stop(slot: Int) {
+    procHolders[slot]?.dispose()
+    procHolders[slot] = null
+  }
+
+  private class PendingLine(val index: Int, val cacheKey: String?, val request: String)
+
+  private class CacheKey(val lastModified: Long, val key: String?)
+
   private class ProcessHolder(val process: Process,
                               val stdout: BufferedReader,
                               val stdin: OutputStreamWriter) : Disposable {
@@ -25,6 +25,11 @@ import java.nio.file.Paths
 
 data class Symbol(val name: String, val module: String, val sourceFile: String = "", val lineNumber: Int = 0)
 
+/**
+ * An offset in a native module to symbolize, see [NativeSymbolizer.symbolize].
+ */
+data class SymbolRequest(val module: String, val offset: Long)
+
 /**
  * Components that can fetch information about native symbols by a module and an offset.
  */
@@ -39,6 +44,16 @@ interface NativeSymbolizer {
    */
   @Throws(IOException::class)
   fun symbolize(abiArch: String, module: String, offset: Long): Symbol?
+
+  /**
+   * Obtains information about many functions at once. This is much faster than symbolizing each offset on its own when there are
+   * a lot of them, e.g. all the frames of a native heap capture.
+   * @param abiArch - CPU architecture of the modules (e.g x86, arm, arm64 and so on)
+   * @param requests - modules and offsets that need to be symbolized
+   * @return symbols info in the order of [requests], with null for the ones that can't be found
+   */
+  @Throws(IOException::class)
+  fun symbolize(abiArch: String, requests: List<SymbolRequest>): List<Symbol?>
   fun stop()
 }
 
@@ -51,7 +66,8 @@ fun createNativeSymbolizer(project: Project): NativeSymbolizer {
     log.debug("Native symbolizer paths for $arch is [$dirs]")
   }
   val symLocator = SymbolFilesLocator(symDirMap)
-  return LlvmSymbolizer(symbolizerPath, symLocator)
+  val symbolCache = SymbolCache(Paths.get(PathManager.getSystemPath(), "native-symbols").toFile())
+  return LlvmSymbolizer(symbolizerPath, symLocator, symbolCache = symbolCache)
 }
 
 /**
@@ -0,0 +1,244 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.nativeSymbolizer
+
+import java.io.BufferedInputStream
+import java.io.BufferedOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.EOFException
+import java.io.File
+import java.io.FileInputStream
+import java.io.FileOutputStream
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit
+
+/**
+ * Cache of symbolization results, keyed by a key derived from the build id of a symbol file (see [readBuildId]) and an offset in it.
+ *
+ * A build id identifies the content of a native library, so results stay valid across IDE restarts and rebuilds that don't change
+ * the library. When [cacheDir] is not null, the results of each key are appended to a file in it and loaded back the first time that
+ * key is looked up. Offsets that can't be symbolized are cached too, as [UNKNOWN].
+ *
+ * Reading the file of a key touches it, so its modification time is when it was last used. Files not used for [maxAgeMs] are deleted,
+ * and the least recently used ones are deleted while the files take more than [maxTotalSize] bytes. This happens when the cache is
+ * created and then every time about an eighth of [maxTotalSize] has been written.
+ */
+class SymbolCache(private val cacheDir: File?,
+                  private val maxTotalSize: Long = DEFAULT_MAX_TOTAL_SIZE,
+                  private val maxAgeMs: Long = DEFAULT_MAX_AGE_MS) {
+  companion object {
+    /**
+     * Cached for offsets that a symbol file can't symbolize. Cached symbols don't have a module, see [get].
+     */
+    val UNKNOWN = Symbol("", "")
+
+    private const val FILE_EXTENSION = ".syms"
+
+    // DataOutputStream.writeUTF is limited to 65535 bytes, and a char takes at most 3 bytes.
+    private const val MAX_STRING_LENGTH = 65535 / 3
+
+    private const val DEFAULT_MAX_TOTAL_SIZE = 64L * 1024 * 1024
+    private val DEFAULT_MAX_AGE_MS = TimeUnit.DAYS.toMillis(30)
+  }
+
+  private val symbolsByKey = ConcurrentHashMap<String, MutableMap<Long, Symbol>>()
+
+  // Guarded by this.
+  private var bytesWrittenSinceEviction = 0L
+
+  init {
+    evictFiles()
+  }
+
+  /**
+   * @return the cached symbol, with an empty module, [UNKNOWN] if the offset is known to have no symbol, or null if it is not cached.
+   */
+  fun get(key: String, offset: Long): Symbol? {
+    return getSymbols(key)[offset]
+  }
+
+  /**
+   * Caches the symbols of many offsets of the same key, and persists them if the cache has a directory.
+   */
+  fun putAll(key: String, symbols: Map<Long, Symbol>) {
+    if (symbols.isEmpty()) {
+      return
+    }
+    val cached = getSymbols(key)
+    cached.putAll(symbols)
+    val dir = cacheDir ?: return
+    synchronized(this) {
+      try {
+        dir.mkdirs()
+        DataOutputStream(BufferedOutputStream(FileOutputStream(File(dir, key + FILE_EXTENSION), true))).use { out ->
+          for ((offset, symbol) in symbols) {
+            if (symbol.name.length > MAX_STRING_LENGTH || symbol.sourceFile.length > MAX_STRING_LENGTH) {
+              continue
+            }
+            out.writeLong(offset)
+            out.writeUTF(symbol.name)
+            out.writeUTF(symbol.sourceFile)
+            out.writeInt(symbol.lineNumber)
+          }
+          bytesWrittenSinceEviction += out.size()
+        }
+      }
+      catch (e: IOException) {
+        getLogger().warn("Failed to write the native symbols cache of $key", e)
+      }
+      if (bytesWrittenSinceEviction > maxTotalSize / 8) {
+        evictFiles()
+      }
+    }
+  }
+
+  /**
+   * Deletes the files not used for [maxAgeMs], then the least recently used files until the rest fit in [maxTotalSize].
+   */
+  @Synchronized
+  private fun evictFiles() {
+    bytesWrittenSinceEviction = 0
+    val files = cacheDir?.listFiles { file -> file.isFile && file.name.endsWith(FILE_EXTENSION) } ?: return
+    val now = System.currentTimeMillis()
+    val kept = mutableListOf<File>()
+    for (file in files) {
+      if (now - file.lastModified() > maxAgeMs) {
+        file.delete()
+      }
+      else {
+        kept.add(file)
+      }
+    }
+    kept.sortBy { it.lastModified() }
+    var totalSize = kept.map { it.length() }.sum()
+    for (file in kept) {
+      if (totalSize <= maxTotalSize) {
+        break
+      }
+      totalSize -= file.length()
+      file.delete()
+    }
+  }
+
+  private fun getSymbols(key: String): MutableMap<Long, Symbol> {
+    return symbolsByKey.computeIfAbsent(key) { load(it) }
+  }
+
+  private fun load(key: String): MutableMap<Long, Symbol> {
+    val symbols = ConcurrentHashMap<Long, Symbol>()
+    val file = File(cacheDir ?: return symbols, key + FILE_EXTENSION)
+    if (!file.isFile) {
+      return symbols
+    }
+    // Marks the file as recently used for the eviction.
+    file.setLastModified(System.currentTimeMillis())
+    try {
+      DataInputStream(BufferedInputStream(FileInputStream(file))).use { input ->
+        while (true) {
+          val offset = input.readLong()
+          val name = input.readUTF()
+          val sourceFile = input.readUTF()
+          val lineNumber = input.readInt()
+          symbols[offset] = if (name.isEmpty()) UNKNOWN else Symbol(name, "", sourceFile, lineNumber)
+        }
+      }
+    }
+    catch (e: EOFException) {
+      // End of the file, or a record cut short when the IDE was closed while writing it. Keep what was read.
+    }
+    catch (e: IOException) {
+      getLogger().warn("Failed to read the native symbols cache of $key", e)
+    }
+    return symbols
+  }
+}
+
+/**
+ * Reads the GNU build id of an ELF file, from its NT_GNU_BUILD_ID note.
+ *
+ * @return the build id as a hex string, or null if the file is not an ELF file or doesn't have a build id.
+ */
+fun readBuildId(file: File): String? {
+  try {
+    RandomAccessFile(file, "r").use { raf ->
+      val channel = raf.channel
+      val ident = ByteBuffer.allocate(64)
+      channel.read(ident, 0)
+      ident.flip()
+      if (ident.limit() < 52 || ident.getInt(0) != 0x7f454c46) {
+        return null
+      }
+      val is64Bit = ident.get(4).toInt() == 2
+      ident.order(if (ident.get(5).toInt() == 2) ByteOrder.BIG_ENDIAN else ByteOrder.LITTLE_ENDIAN)
+      val sectionHeadersOffset = if (is64Bit) ident.getLong(0x28) else ident.getInt(0x20).toLong() and 0xffffffffL
+      val sectionHeaderSize = ident.getShort(if (is64Bit) 0x3A else 0x2E).toInt() and 0xffff
+      val sectionCount = ident.getShort(if (is64Bit) 0x3C else 0x30).toInt() and 0xffff
+      if (sectionHeadersOffset <= 0 || sectionCount == 0 || sectionHeaderSize == 0) {
+        return null
+      }
+
+      val sectionHeaders = ByteBuffer.allocate(sectionHeaderSize * sectionCount).order(ident.order())
+      channel.read(sectionHeaders, sectionHeadersOffset)
+      for (i in 0 until sectionCount) {
+        val header = i * sectionHeaderSize
+        if (header + sectionHeaderSize > sectionHeaders.position() || sectionHeaders.getInt(header + 4) != SHT_NOTE) {
+          continue
+        }
+        val offset = if (is64Bit) sectionHeaders.getLong(header + 0x18) else sectionHeaders.getInt(header + 0x10).toLong() and 0xffffffffL
+        val size = if (is64Bit) sectionHeaders.getLong(header + 0x20) else sectionHeaders.getInt(header + 0x14).toLong() and 0xffffffffL
+        if (size <= 0 || size > MAX_NOTE_SECTION_SIZE) {
+          continue
+        }
+        val notes = ByteBuffer.allocate(size.toInt()).order(ident.order())
+        channel.read(notes, offset)
+        notes.flip()
+        findBuildIdNote(notes)?.let { return it }
+      }
+    }
+  }
+  catch (e: IOException) {
+    getLogger().warn("Failed to read the build id of ${file.path}", e)
+  }
+  return null
+}
+
+private const val SHT_NOTE = 7
+private const val NT_GNU_BUILD_ID = 3
+private const val MAX_NOTE_SECTION_SIZE = 1 shl 16
+
+private fun findBuildIdNote(notes: ByteBuffer): String? {
+  while (notes.remaining() >= 12) {
+    val nameSize = notes.getInt()
+    val descSize = notes.getInt()
+    val type = notes.getInt()
+    val paddedNameSize = (nameSize + 3) and 3.inv()
+    val paddedDescSize = (descSize + 3) and 3.inv()
+    if (nameSize < 0 || descSize < 0 || paddedNameSize + paddedDescSize > notes.remaining()) {
+      return null
+    }
+    val name = ByteArray(paddedNameSize).also { notes.get(it) }
+    val desc = ByteArray(paddedDescSize).also { notes.get(it) }
+    if (type == NT_GNU_BUILD_ID && nameSize == 4 && String(name, 0, 3, Charsets.US_ASCII) == "GNU") {
+      return desc.take(descSize).joinToString("") { String.format("%02x", it) }
+    }
+  }
+  return null
+}
@@ -158,6 +158,49 @@ class LlvmSymbolizerTest {
     }
   }
 
+  @Test
+  fun testSymbolizeBatch() {
+    val symbolizer = LlvmSymbolizer(getLlvmSymbolizerPath(), SymbolFilesLocator(getSymDirMap()), processCount = 2)
+    for (arch in architectures) {
+      val expectedSymbols = Paths.get(testDataDir, arch, EXPECTED_SYMBOLS_FILE_NAME).toFile().readLines().map { it.split('|') }
+      val module = "/data/app/com.someapp.name-abcd09876abds==/lib/arm64/" + LIB_FILE_NAME
+      // Repeat the requests to have more than one batch, with unknown modules and offsets in between.
+      val requests = (0 until 300).flatMap { expectedSymbols }.flatMap {
+        listOf(SymbolRequest(module, it[0].toLong(16) + 1), SymbolRequest("/p/libnotexists.so", 12345))
+      } + SymbolRequest(module, 0xffffffffff)
+
+      val symbols = symbolizer.symbolize(arch, requests)
+      Assert.assertEquals(requests.size, symbols.size)
+      for ((i, expected) in ((0 until 300).flatMap { expectedSymbols }).withIndex()) {
+        val symbol = symbols[i * 2]!!
+        Assert.assertEquals(expected[1], symbol.name)
+        Assert.assertEquals(expected[2], symbol.sourceFile)
+        Assert.assertEquals(module, symbol.module)
+        Assert.assertNull(symbols[i * 2 + 1])
+      }
+      Assert.assertNull(symbols.last())
+    }
+    symbolizer.stop()
+  }
+
+  @Test
+  fun testSymbolsAreCachedOnDisk() {
+    val cacheDir = FileUtil.createTempDirectory("llvm-symbolizer", "cache", true)
+    val arch = "x86"
+    val expectedSymbols = Paths.get(testDataDir, arch, EXPECTED_SYMBOLS_FILE_NAME).toFile().readLines().map { it.split('|') }
+    val requests = expectedSymbols.map { SymbolRequest(LIB_FILE_NAME, it[0].toLong(16) + 1) } + SymbolRequest(LIB_FILE_NAME, 0xffffffffff)
+
+    val symbolizer = LlvmSymbolizer(getLlvmSymbolizerPath(), SymbolFilesLocator(getSymDirMap()), symbolCache = SymbolCache(cacheDir))
+    val symbols = symbolizer.symbolize(arch, requests)
+    symbolizer.stop()
+
+    // A new cache reading the same directory resolves everything without starting llvm-symbolizer.
+    val notExistingPath = getLlvmSymbolizerPath().replace("llvm-symbolizer", "not-llvm-symbolizer")
+    val cachedSymbolizer = LlvmSymbolizer(notExistingPath, SymbolFilesLocator(getSymDirMap()), symbolCache = SymbolCache(cacheDir))
+    Assert.assertEquals(symbols, cachedSymbolizer.symbolize(arch, requests))
+    Assert.assertNull(cachedSymbolizer.symbolize(arch, LIB_FILE_NAME, 0xffffffffff))
+  }
+
   @Test
   fun testUnknownSymbols() {
     val symbolizer = createSymbolizer()
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.nativeSymbolizer
+
+import com.android.testutils.TestUtils
+import com.intellij.openapi.util.io.FileUtil
+import org.junit.Assert
+import org.junit.Test
+import java.io.File
+import java.util.concurrent.TimeUnit
+
+class SymbolCacheTest {
+
+  val testDataDir = TestUtils.getWorkspaceFile("tools/adt/idea/native-symbolizer/testData/bin/").absolutePath
+
+  @Test
+  fun testReadBuildId() {
+    Assert.assertEquals("463de9a467d1bc1453c0e1f494308df8a8616b48", readBuildId(File(testDataDir, "arm/libnative-lib.so")))
+    Assert.assertEquals("9b3ea9b018209bd554c02186a62cf2c7cca3e915", readBuildId(File(testDataDir, "arm64/libnative-lib.so")))
+    Assert.assertEquals("77d9de6b9746662e7da8225fedd7533b57ded517", readBuildId(File(testDataDir, "x86/libnative-lib.so")))
+    Assert.assertEquals("415446799bd7b2495e1056857fc6dfc724ffc002", readBuildId(File(testDataDir, "x86_64/libnative-lib.so")))
+    Assert.assertNull(readBuildId(File(testDataDir, "arm/symbols.txt")))
+    Assert.assertNull(readBuildId(File(testDataDir, "does-not-exist.so")))
+  }
+
+  @Test
+  fun testSymbolsArePersisted() {
+    val cacheDir = FileUtil.createTempDirectory("symbol-cache", "test", true)
+    val cache = SymbolCache(cacheDir)
+    Assert.assertNull(cache.get("key", 1))
+    cache.putAll("key", mapOf(1L to Symbol("foo()", "", "foo.cpp", 12), 2L to SymbolCache.UNKNOWN))
+    cache.putAll("key", mapOf(3L to Symbol("bar()", "", "bar.cpp", 34)))
+    cache.putAll("other", mapOf(1L to Symbol("baz()", "")))
+
+    val reloaded = SymbolCache(cacheDir)
+    Assert.assertEquals(Symbol("foo()", "", "foo.cpp", 12), reloaded.get("key", 1))
+    Assert.assertEquals(SymbolCache.UNKNOWN, reloaded.get("key", 2))
+    Assert.assertEquals(Symbol("bar()", "", "bar.cpp", 34), reloaded.get("key", 3))
+    Assert.assertNull(reloaded.get("key", 4))
+    Assert.assertEquals(Symbol("baz()", ""), reloaded.get("other", 1))
+  }
+
+  @Test
+  fun testSymbolsAreKeptInMemoryWithoutDirectory() {
+    val cache = SymbolCache(null)
+    cache.putAll("key", mapOf(1L to Symbol("foo()", "")))
+    Assert.assertEquals(Symbol("foo()", ""), cache.get("key", 1))
+    Assert.assertNull(SymbolCache(null).get("key", 1))
+  }
+
+  @Test
+  fun testOldAndLeastRecentlyUsedFilesAreEvicted() {
+    val cacheDir = FileUtil.createTempDirectory("symbol-cache", "test", true)
+    val writer = SymbolCache(cacheDir)
+    writer.putAll("old", mapOf(1L to Symbol("old()", "")))
+    writer.putAll("used", mapOf(1L to Symbol("used()", "")))
+    writer.putAll("unused", mapOf(1L to Symbol("unused()", "")))
+    val now = System.currentTimeMillis()
+    File(cacheDir, "old.syms").setLastModified(now - TimeUnit.DAYS.toMillis(2))
+    File(cacheDir, "used.syms").setLastModified(now - TimeUnit.HOURS.toMillis(2))
+    File(cacheDir, "unused.syms").setLastModified(now - TimeUnit.HOURS.toMillis(1))
+
+    // Reading "used" makes it the most recently used file.
+    Assert.assertEquals(Symbol("used()", ""), SymbolCache(cacheDir).get("used", 1))
+    val cache = SymbolCache(cacheDir, File(cacheDir, "used.syms").length(), TimeUnit.DAYS.toMillis(1))
+    Assert.assertFalse(File(cacheDir, "old.syms").exists())
+    Assert.assertFalse(File(cacheDir, "unused.syms").exists())
+    Assert.assertEquals(Symbol("used()", ""), cache.get("used", 1))
+    Assert.assertNull(cache.get("unused", 1))
+  }
+}
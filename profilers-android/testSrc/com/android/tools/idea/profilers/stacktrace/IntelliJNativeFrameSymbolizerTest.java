@@ -20,7 +20,11 @@ import static com.google.common.truth.Truth.assertThat;
 
 import com.android.tools.nativeSymbolizer.NativeSymbolizer;
 import com.android.tools.nativeSymbolizer.Symbol;
+import com.android.tools.nativeSymbolizer.SymbolRequest;
 import com.android.tools.profiler.proto.Memory.NativeCallStack;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.junit.Test;
@@ -58,6 +62,22 @@ public class IntelliJNativeFrameSymbolizerTest {
     assertThat(symbolizedFrame2).isEqualTo(expectedSymbolizedFrame2);
   }
 
+  @Test
+  public void testSymbolizeBatch() {
+    IntelliJNativeFrameSymbolizer frameSymbolizer = new IntelliJNativeFrameSymbolizer(new FakeNativeSymbolizer());
+    NativeCallStack.NativeFrame frame1 = NativeCallStack.NativeFrame.newBuilder().setModuleName("test1").setModuleOffset(100).build();
+    NativeCallStack.NativeFrame frame2 = NativeCallStack.NativeFrame.newBuilder().setModuleName("test2").setModuleOffset(200).build();
+
+    List<NativeCallStack.NativeFrame> symbolizedFrames = frameSymbolizer.symbolize("arm", Arrays.asList(frame1, frame2));
+    assertThat(symbolizedFrames).containsExactly(frameSymbolizer.symbolize("arm", frame1), frameSymbolizer.symbolize("arm", frame2))
+      .inOrder();
+
+    // verify unfound symbols
+    symbolizedFrames = frameSymbolizer.symbolize("arm64", Arrays.asList(frame1, frame2));
+    assertThat(symbolizedFrames.stream().map(NativeCallStack.NativeFrame::getSymbolName).collect(Collectors.toList()))
+      .containsExactly(String.format("0x%x", 100 - 1), String.format("0x%x", 200 - 1)).inOrder();
+  }
+
   private static class FakeNativeSymbolizer implements NativeSymbolizer {
     @Nullable
     @Override
@@ -71,6 +91,12 @@ public class IntelliJNativeFrameSymbolizerTest {
       }
     }
 
+    @NotNull
+    @Override
+    public List<Symbol> symbolize(@NotNull String abiArch, @NotNull List<SymbolRequest> requests) {
+      return requests.stream().map(request -> symbolize(abiArch, request.getModule(), request.getOffset())).collect(Collectors.toList());
+    }
+
     @Override
     public void stop() {
     }
@@ -118,6 +118,7 @@ final class MemoryClassifierView extends AspectObserver {
            .onChange(MemoryProfilerAspect.CURRENT_HEAP, this::refreshHeapSet)
            .onChange(MemoryProfilerAspect.CURRENT_HEAP_UPDATING, this::startHeapLoadingUi)
            .onChange(MemoryProfilerAspect.CURRENT_HEAP_UPDATED, this::stopHeapLoadingUi)
+           .onChange(MemoryProfilerAspect.CURRENT_HEAP_PROGRESS, this::refreshHeapProgress)
            .onChange(MemoryProfilerAspect.CURRENT_HEAP_CONTENTS, this::refreshTree)
            .onChange(MemoryProfilerAspect.CURRENT_CLASS, this::refreshClassSet)
            .onChange(MemoryProfilerAspect.CLASS_GROUPING, this::refreshGrouping)
@@ -383,6 +384,15 @@ final class MemoryClassifierView extends AspectObserver {
     myLoadingPanel.startLoading();
   }
 
+  /**
+   * Shows the progress of the background computations of the heap, e.g. the depths that instance filters wait for, in the loading panel.
+   */
+  private void refreshHeapProgress() {
+    CaptureObject capture = myStage.getSelectedCapture();
+    String progressText = capture instanceof HeapDumpCaptureObject ? ((HeapDumpCaptureObject)capture).getProgressText() : null;
+    myLoadingPanel.setLoadingText(Strings.nullToEmpty(progressText));
+  }
+
   private void stopHeapLoadingUi() {
     if (myColumnTree == null) {
       return;
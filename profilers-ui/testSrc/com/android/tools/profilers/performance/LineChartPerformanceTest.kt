@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.performance
+
+import com.android.tools.adtui.chart.linechart.LineChart
+import com.android.tools.adtui.chart.linechart.LineConfig
+import com.android.tools.adtui.model.LineChartModel
+import com.android.tools.adtui.model.LongDataSeries
+import com.android.tools.adtui.model.Range
+import com.android.tools.adtui.model.RangedContinuousSeries
+import com.android.tools.perflogger.Benchmark
+import org.junit.Test
+import java.awt.Color
+import java.awt.image.BufferedImage
+
+/**
+ * Measures the time it takes to redraw a [LineChart] for different numbers of data points, the way the profiler monitors redraw their
+ * charts on every frame while streaming.
+ */
+class LineChartPerformanceTest {
+  companion object {
+    private const val WIDTH = 800
+    private const val HEIGHT = 200
+    private const val WARM_UP_FRAMES = 20
+    private const val FRAMES = 100
+    private val POINT_COUNTS = listOf(1_000, 10_000, 100_000, 1_000_000)
+  }
+
+  private val benchmark = Benchmark.Builder("LineChart Frame Time (Nanos)").setProject("Android Studio Profilers").build()
+
+  @Test
+  fun runPerformanceTest() {
+    for (pointCount in POINT_COUNTS) {
+      benchmark.log("Frame-Time-$pointCount-Points", measureFrameTime(pointCount, false))
+      benchmark.log("Frame-Time-$pointCount-Points-Filled", measureFrameTime(pointCount, true))
+    }
+  }
+
+  private fun measureFrameTime(pointCount: Int, filled: Boolean): Long {
+    val series = LongDataSeries()
+    for (i in 0 until pointCount) {
+      series.add(i.toLong(), (i * 7919L) % 1000)
+    }
+    // Show all the points but the last frames worth, so every frame can scroll the range.
+    val xRange = Range(0.0, (pointCount - FRAMES - WARM_UP_FRAMES).toDouble())
+    val model = LineChartModel()
+    val ranged = RangedContinuousSeries("Series", xRange, Range(0.0, 1000.0), series)
+    model.add(ranged)
+    val chart = LineChart(model)
+    chart.configure(ranged, LineConfig(Color.BLUE).setFilled(filled))
+    chart.setSize(WIDTH, HEIGHT)
+
+    val image = BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB)
+    val graphics = image.createGraphics()
+    var totalNs = 0L
+    for (frame in 0 until WARM_UP_FRAMES + FRAMES) {
+      // Scrolling the range invalidates the chart, so each frame rebuilds and reduces the paths.
+      xRange.set(xRange.min + 1, xRange.max + 1)
+      val startNs = System.nanoTime()
+      chart.paint(graphics)
+      if (frame >= WARM_UP_FRAMES) {
+        totalNs += System.nanoTime() - startNs
+      }
+    }
+    graphics.dispose()
+    return totalNs / FRAMES
+  }
+}
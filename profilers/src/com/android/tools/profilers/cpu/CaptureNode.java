@@ -21,70 +21,69 @@ import com.android.tools.adtui.model.filter.FilterResult;
 import com.android.tools.perflib.vmtrace.ClockType;
 import com.android.tools.profilers.cpu.nodemodel.CaptureNodeModel;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 public class CaptureNode implements HNode<CaptureNode> {
+  private static final int INITIAL_CHILDREN_CAPACITY = 2;
 
-  /**
-   * Start time with GLOBAL clock.
-   */
-  private long myStartGlobal;
+  private static final FilterType[] FILTER_TYPES = FilterType.values();
 
   /**
-   * End time with GLOBAL clock.
+   * Holds the start and end times with the GLOBAL and THREAD clocks, the depth, the clock type and the filter type of this node, at
+   * {@link #myId}.
    */
-  private long myEndGlobal;
+  @NotNull
+  private final CaptureNodeStore myStore;
 
-  /**
-   * Start time with THREAD clock.
-   */
-  private long myStartThread;
+  private final int myId;
 
   /**
-   * End time with THREAD clock.
+   * Large traces have millions of nodes, most of which are leaves, so the list is only allocated when the first child is added.
    */
-  private long myEndThread;
-
-  @NotNull
-  protected final List<CaptureNode> myChildren;
-
   @NotNull
-  private ClockType myClockType;
+  private List<CaptureNode> myChildren;
 
   /**
    * The parent of its child is set to it when it is added {@link #addChild(CaptureNode)}
    */
   private CaptureNode myParent;
 
-  /**
-   * see {@link FilterType}.
-   */
-  @NotNull
-  private FilterType myFilterType;
-
-  /**
-   * The shortest distance from the root.
-   */
-  private int myDepth;
-
   @NotNull
   private final CaptureNodeModel myData;
 
   public CaptureNode(@NotNull CaptureNodeModel model) {
-    myChildren = new ArrayList<>();
-    myClockType = ClockType.GLOBAL;
-    myFilterType = FilterType.MATCH;
-    myDepth = 0;
+    this(model, new CaptureNodeStore(1));
+  }
+
+  /**
+   * Creates a node whose values are kept in {@code store}. Parsers share one store between all the nodes of a tree.
+   */
+  public CaptureNode(@NotNull CaptureNodeModel model, @NotNull CaptureNodeStore store) {
+    myChildren = Collections.emptyList();
+    myStore = store;
+    myId = store.allocate();
     myData = model;
+    setFilterType(FilterType.MATCH);
   }
 
   public void addChild(CaptureNode node) {
-    myChildren.add(node);
+    appendChild(node);
     node.myParent = this;
   }
 
+  /**
+   * Adds a child without changing its parent.
+   */
+  protected final void appendChild(@NotNull CaptureNode node) {
+    if (myChildren.isEmpty()) {
+      myChildren = new ArrayList<>(INITIAL_CHILDREN_CAPACITY);
+    }
+    myChildren.add(node);
+  }
+
   @NotNull
   public List<CaptureNode> getChildren() {
     return myChildren;
@@ -114,71 +113,77 @@ public class CaptureNode implements HNode<CaptureNode> {
 
   @Override
   public long getStart() {
-    return myClockType == ClockType.THREAD ? myStartThread : myStartGlobal;
+    return usesThreadClock() ? getStartThread() : getStartGlobal();
   }
 
   @Override
   public long getEnd() {
-    return myClockType == ClockType.THREAD ? myEndThread : myEndGlobal;
+    return usesThreadClock() ? getEndThread() : getEndGlobal();
   }
 
   @Override
   public int getDepth() {
-    return myDepth;
+    return myStore.getDepth(myId);
   }
 
   public void setStartGlobal(long startGlobal) {
-    myStartGlobal = startGlobal;
+    myStore.setStartGlobal(myId, startGlobal);
   }
 
   public long getStartGlobal() {
-    return myStartGlobal;
+    return myStore.getStartGlobal(myId);
   }
 
   public void setEndGlobal(long endGlobal) {
-    myEndGlobal = endGlobal;
+    myStore.setEndGlobal(myId, endGlobal);
   }
 
   public long getEndGlobal() {
-    return myEndGlobal;
+    return myStore.getEndGlobal(myId);
   }
 
   public void setStartThread(long startThread) {
-    myStartThread = startThread;
+    myStore.setStartThread(myId, startThread);
   }
 
   public long getStartThread() {
-    return myStartThread;
+    return myStore.getStartThread(myId);
   }
 
   public void setEndThread(long endThread) {
-    myEndThread = endThread;
+    myStore.setEndThread(myId, endThread);
   }
 
   public long getEndThread() {
-    return myEndThread;
+    return myStore.getEndThread(myId);
   }
 
   public void setClockType(@NotNull ClockType clockType) {
-    myClockType = clockType;
+    byte flags = myStore.getFlags(myId);
+    myStore.setFlags(myId, (byte)(clockType == ClockType.THREAD ? flags | CaptureNodeStore.THREAD_CLOCK_FLAG
+                                                                 : flags & ~CaptureNodeStore.THREAD_CLOCK_FLAG));
   }
 
   /**
    * Returns the proportion of time the method was using CPU relative to the total (wall-clock) time that passed.
    */
   public double threadGlobalRatio() {
-    long durationThread = myEndThread - myStartThread;
-    long durationGlobal = myEndGlobal - myStartGlobal;
+    long durationThread = getEndThread() - getStartThread();
+    long durationGlobal = getEndGlobal() - getStartGlobal();
     return (double)durationThread / durationGlobal;
   }
 
   @NotNull
   public ClockType getClockType() {
-    return myClockType;
+    return usesThreadClock() ? ClockType.THREAD : ClockType.GLOBAL;
+  }
+
+  private boolean usesThreadClock() {
+    return (myStore.getFlags(myId) & CaptureNodeStore.THREAD_CLOCK_FLAG) != 0;
   }
 
   public void setDepth(int depth) {
-    myDepth = depth;
+    myStore.setDepth(myId, depth);
   }
 
   /**
@@ -231,11 +236,12 @@ public class CaptureNode implements HNode<CaptureNode> {
 
   @NotNull
   public FilterType getFilterType() {
-    return myFilterType;
+    return FILTER_TYPES[myStore.getFlags(myId) & CaptureNodeStore.FILTER_TYPE_MASK];
   }
 
   public void setFilterType(@NotNull FilterType type) {
-    myFilterType = type;
+    byte flags = myStore.getFlags(myId);
+    myStore.setFlags(myId, (byte)((flags & CaptureNodeStore.THREAD_CLOCK_FLAG) | type.ordinal()));
   }
 
   public boolean isUnmatched() {
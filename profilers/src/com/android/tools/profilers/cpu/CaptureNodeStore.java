@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.cpu;
+
+import java.util.Arrays;
+
+/**
+ * Struct-of-arrays storage for the values of the {@link CaptureNode}s of a tree. Each node gets an id when it is created, and its
+ * timestamps, depth and flags are kept at that index of parallel primitive arrays, so a node object only holds its id and its references.
+ * <p/>
+ * Parsers create one store per tree, e.g. per thread, and call {@link #trimToSize()} once the tree is built. A store is not thread-safe:
+ * its nodes must be created by one thread at a time.
+ */
+public final class CaptureNodeStore {
+  private static final int DEFAULT_CAPACITY = 16;
+
+  /**
+   * Flag set if the node uses the THREAD clock rather than the GLOBAL one. The lower bits hold the ordinal of the filter type.
+   */
+  static final byte THREAD_CLOCK_FLAG = (byte)0x80;
+  static final byte FILTER_TYPE_MASK = 0x7F;
+
+  private long[] myStartGlobal;
+  private long[] myEndGlobal;
+  private long[] myStartThread;
+  private long[] myEndThread;
+  private int[] myDepths;
+  private byte[] myFlags;
+  private int mySize;
+
+  public CaptureNodeStore() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  public CaptureNodeStore(int initialCapacity) {
+    setCapacity(Math.max(1, initialCapacity));
+  }
+
+  /**
+   * @return the id of a new node, whose values are all 0.
+   */
+  int allocate() {
+    if (mySize == myDepths.length) {
+      setCapacity(mySize + (mySize >> 1) + 1);
+    }
+    return mySize++;
+  }
+
+  /**
+   * @return the number of nodes in the store.
+   */
+  public int size() {
+    return mySize;
+  }
+
+  /**
+   * Releases the capacity that no node uses.
+   */
+  public void trimToSize() {
+    if (mySize != myDepths.length) {
+      setCapacity(Math.max(1, mySize));
+    }
+  }
+
+  private void setCapacity(int capacity) {
+    myStartGlobal = myStartGlobal == null ? new long[capacity] : Arrays.copyOf(myStartGlobal, capacity);
+    myEndGlobal = myEndGlobal == null ? new long[capacity] : Arrays.copyOf(myEndGlobal, capacity);
+    myStartThread = myStartThread == null ? new long[capacity] : Arrays.copyOf(myStartThread, capacity);
+    myEndThread = myEndThread == null ? new long[capacity] : Arrays.copyOf(myEndThread, capacity);
+    myDepths = myDepths == null ? new int[capacity] : Arrays.copyOf(myDepths, capacity);
+    myFlags = myFlags == null ? new byte[capacity] : Arrays.copyOf(myFlags, capacity);
+  }
+
+  long getStartGlobal(int id) {
+    return myStartGlobal[id];
+  }
+
+  void setStartGlobal(int id, long value) {
+    myStartGlobal[id] = value;
+  }
+
+  long getEndGlobal(int id) {
+    return myEndGlobal[id];
+  }
+
+  void setEndGlobal(int id, long value) {
+    myEndGlobal[id] = value;
+  }
+
+  long getStartThread(int id) {
+    return myStartThread[id];
+  }
+
+  void setStartThread(int id, long value) {
+    myStartThread[id] = value;
+  }
+
+  long getEndThread(int id) {
+    return myEndThread[id];
+  }
+
+  void setEndThread(int id, long value) {
+    myEndThread[id] = value;
+  }
+
+  int getDepth(int id) {
+    return myDepths[id];
+  }
+
+  void setDepth(int id, int depth) {
+    myDepths[id] = depth;
+  }
+
+  byte getFlags(int id) {
+    return myFlags[id];
+  }
+
+  void setFlags(int id, byte flags) {
+    myFlags[id] = flags;
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.cpu;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Helpers for {@link TraceParser}s to build the {@link CaptureNode} trees of a capture.
+ */
+public final class CaptureTrees {
+  private CaptureTrees() {
+  }
+
+  /**
+   * Builds the call tree of each thread on the fork-join pool. The trees of different threads are independent, so once a parser has
+   * split its events by thread, reconstructing them in parallel makes opening a trace with many threads much faster.
+   * <p>
+   * {@code buildTree} is called concurrently for different threads, so it must only share thread-safe state. The result doesn't depend
+   * on the order in which the trees are built: it iterates in the order of {@code threads}.
+   *
+   * @param buildTree  builds the tree of a thread, or returns null if the thread has no tree.
+   * @param threadInfo creates the {@link CpuThreadInfo} of a thread that has a tree.
+   */
+  @NotNull
+  public static <T> Map<CpuThreadInfo, CaptureNode> buildInParallel(@NotNull List<T> threads,
+                                                                    @NotNull Function<T, CaptureNode> buildTree,
+                                                                    @NotNull Function<T, CpuThreadInfo> threadInfo) {
+    // Collecting a parallel stream into a list keeps the encounter order.
+    List<CaptureNode> trees = threads.parallelStream().map(buildTree).collect(Collectors.toList());
+    Map<CpuThreadInfo, CaptureNode> result = new LinkedHashMap<>();
+    for (int i = 0; i < threads.size(); ++i) {
+      @Nullable CaptureNode tree = trees.get(i);
+      if (tree != null) {
+        result.put(threadInfo.apply(threads.get(i)), tree);
+      }
+    }
+    return result;
+  }
+}
@@ -19,13 +19,17 @@ import com.android.tools.perflib.vmtrace.MethodInfo;
 import com.android.tools.perflib.vmtrace.TraceAction;
 import com.android.tools.perflib.vmtrace.VmTraceHandler;
 import com.android.tools.profilers.cpu.CaptureNode;
+import com.android.tools.profilers.cpu.CaptureTrees;
 import com.android.tools.profilers.cpu.CpuThreadInfo;
 import com.android.tools.profilers.cpu.nodemodel.CaptureNodeModel;
 import com.android.tools.profilers.cpu.nodemodel.JavaMethodModel;
 import com.android.tools.profilers.cpu.nodemodel.SingleNameModel;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Deque;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -102,30 +106,33 @@ public class ArtTraceHandler implements VmTraceHandler {
     return myThreadsGraph;
   }
 
+  /**
+   * The trace events have already been split by thread into {@link #myNodeConstructors}, so the remaining work of fixing up and adjusting
+   * the call tree of each thread is done in parallel.
+   */
   @NotNull
   private Map<CpuThreadInfo, CaptureNode> createThreadsGraph() {
-    Map<CpuThreadInfo, CaptureNode> threadsGraph = new HashMap<>(myThreads.size());
-
-    for (Map.Entry<Integer, String> entry : myThreads.entrySet()) {
-      final int id = entry.getKey();
-      final String name = entry.getValue();
-
-      CaptureNodeConstructor constructor = myNodeConstructors.get(id);
-      if (constructor == null) {
-        continue;
-      }
-
-      CaptureNode topLevelCall = constructor.getTopLevel();
-      assert topLevelCall != null;
-      CpuThreadInfo info = new CpuThreadInfo(id, name, name.equals(MAIN_THREAD_NAME));
-
-      long topLevelGlobalStart = topLevelCall.getStartGlobal() + myStartTimeUs;
-      adjustNodesTimeAndDepth(topLevelCall, topLevelGlobalStart);
+    List<Integer> threadIds = new ArrayList<>(myThreads.keySet());
+    Collections.sort(threadIds);
+    return CaptureTrees.buildInParallel(threadIds, this::buildThreadTree, id -> {
+      String name = myThreads.get(id);
+      return new CpuThreadInfo(id, name, name.equals(MAIN_THREAD_NAME));
+    });
+  }
 
-      threadsGraph.put(info, topLevelCall);
+  @Nullable
+  private CaptureNode buildThreadTree(int threadId) {
+    CaptureNodeConstructor constructor = myNodeConstructors.get(threadId);
+    if (constructor == null) {
+      return null;
     }
 
-    return threadsGraph;
+    CaptureNode topLevelCall = constructor.getTopLevel();
+    assert topLevelCall != null;
+
+    long topLevelGlobalStart = topLevelCall.getStartGlobal() + myStartTimeUs;
+    adjustNodesTimeAndDepth(topLevelCall, topLevelGlobalStart);
+    return topLevelCall;
   }
 
   /**
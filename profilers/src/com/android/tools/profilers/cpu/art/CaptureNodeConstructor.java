@@ -17,6 +17,7 @@ package com.android.tools.profilers.cpu.art;
 
 import com.android.tools.perflib.vmtrace.TraceAction;
 import com.android.tools.profilers.cpu.CaptureNode;
+import com.android.tools.profilers.cpu.CaptureNodeStore;
 import com.android.tools.profilers.cpu.nodemodel.CaptureNodeModel;
 import org.jetbrains.annotations.Nullable;
 
@@ -49,6 +50,11 @@ class CaptureNodeConstructor {
    */
   private CaptureNode myTopLevelNode;
 
+  /**
+   * Holds the values of all the nodes of the thread.
+   */
+  private final CaptureNodeStore myStore = new CaptureNodeStore();
+
   CaptureNodeConstructor(CaptureNodeModel captureNodeModel) {
     myTopLevelNodeModel = captureNodeModel;
   }
@@ -62,7 +68,7 @@ class CaptureNodeConstructor {
   }
 
   private void enterMethod(CaptureNodeModel captureNodeModel, int threadTime, int globalTime) {
-    CaptureNode node = new CaptureNode(captureNodeModel);
+    CaptureNode node = new CaptureNode(captureNodeModel, myStore);
     node.setStartGlobal(globalTime);
     node.setStartThread(threadTime);
 
@@ -90,7 +96,7 @@ class CaptureNodeConstructor {
     } else {
       // We are exiting out of a method that was entered into before tracing was started.
       // In such a case, create this method
-      CaptureNode node = new CaptureNode(captureNodeModel);
+      CaptureNode node = new CaptureNode(captureNodeModel, myStore);
       // All the previous nodes at the top level are now assumed to have been called from
       // this method. So mark this method as having called all of those methods, and reset
       // the top level to only include this method
@@ -169,6 +175,7 @@ class CaptureNodeConstructor {
     // Now that we've added the top level call, there should be only 1 top level call
     assert myTopLevelNodes.size() == 1;
     myTopLevelNode = myTopLevelNodes.get(0);
+    myStore.trimToSize();
   }
 
   public CaptureNode getTopLevel() {
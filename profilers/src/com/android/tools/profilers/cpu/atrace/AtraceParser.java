@@ -18,6 +18,8 @@ package com.android.tools.profilers.cpu.atrace;
 import com.android.tools.adtui.model.Range;
 import com.android.tools.adtui.model.SeriesData;
 import com.android.tools.profilers.cpu.CaptureNode;
+import com.android.tools.profilers.cpu.CaptureNodeStore;
+import com.android.tools.profilers.cpu.CaptureTrees;
 import com.android.tools.profilers.cpu.CpuCapture;
 import com.android.tools.profilers.cpu.CpuProfilerStage;
 import com.android.tools.profilers.cpu.CpuThreadInfo;
@@ -29,12 +31,14 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -81,6 +85,13 @@ public class AtraceParser implements TraceParser {
    */
   private final Map<CpuThreadInfo, CaptureNode> myCaptureTreeNodes;
 
+  /**
+   * Map of slice name to the model shared by all the {@link CaptureNode}s of slices with that name. Traces repeat the same few slice names
+   * many times, so sharing the models saves memory, and matching each name against the id pattern of {@link AtraceNodeModel} once. Threads
+   * are built concurrently, so the map needs to be thread-safe.
+   */
+  private final Map<String, AtraceNodeModel> mySliceModels;
+
   /**
    * Map between processor ids and its set of {@link CpuThreadSliceInfo}.
    * Note: In kernel space all user space processes are treated at threads, where each thread has a TGID (Thread group ID).
@@ -127,7 +138,8 @@ public class AtraceParser implements TraceParser {
    */
   public AtraceParser(int processId) {
     myProcessId = processId;
-    myCaptureTreeNodes = new HashMap<>();
+    myCaptureTreeNodes = new LinkedHashMap<>();
+    mySliceModels = new ConcurrentHashMap<>();
     myThreadStateData = new HashMap<>();
     myCpuSchedulingToCpuData = new HashMap<>();
     myCpuUtilizationSeries = new ArrayList<>();
@@ -309,36 +321,38 @@ public class AtraceParser implements TraceParser {
    */
   private void buildCaptureTreeNodes() {
     Range range = getRange();
-    for (ThreadModel thread : myProcessModel.getThreads()) {
-      CpuThreadSliceInfo threadInfo =
-        new CpuThreadSliceInfo(thread.getId(), thread.getName(), thread.getProcess().getId(), thread.getProcess().getName());
-      CaptureNode root = new CaptureNode(new AtraceNodeModel(thread.getName()));
+    // The trees of the threads are independent, so they are built in parallel.
+    myCaptureTreeNodes.putAll(CaptureTrees.buildInParallel(myProcessModel.getThreads(), thread -> {
+      CaptureNodeStore store = new CaptureNodeStore();
+      CaptureNode root = new CaptureNode(new AtraceNodeModel(thread.getName()), store);
       root.setStartGlobal((long)range.getMin());
       root.setEndGlobal((long)range.getMax());
-      myCaptureTreeNodes.put(threadInfo, root);
       for (SliceGroup slice : thread.getSlices()) {
-        CaptureNode node = populateCaptureNode(slice, 1);
+        CaptureNode node = populateCaptureNode(store, slice, 1);
         root.addChild(node);
       }
-    }
+      store.trimToSize();
+      return root;
+    }, thread -> new CpuThreadSliceInfo(thread.getId(), thread.getName(), thread.getProcess().getId(), thread.getProcess().getName())));
   }
 
   /**
    * Recursive function that builds a tree of {@link CaptureNode} from a {@link SliceGroup}
    *
+   * @param store to create the nodes in.
    * @param slice to convert to a {@link CaptureNode}. This method will be recursively called on all children.
    * @param depth to current node. Depth starts at 0
    * @return The {@link CaptureNode} that mirrors the {@link SliceGroup} passed in.
    */
-  private CaptureNode populateCaptureNode(SliceGroup slice, int depth) {
-    CaptureNode node = new CaptureNode(new AtraceNodeModel(slice.getName()));
+  private CaptureNode populateCaptureNode(CaptureNodeStore store, SliceGroup slice, int depth) {
+    CaptureNode node = new CaptureNode(mySliceModels.computeIfAbsent(slice.getName(), AtraceNodeModel::new), store);
     node.setStartGlobal(convertToUserTimeUs(slice.getStartTime()));
     node.setEndGlobal(convertToUserTimeUs(slice.getEndTime()));
     node.setStartThread(convertToUserTimeUs(slice.getStartTime()));
     node.setEndThread(convertToUserTimeUs(slice.getStartTime() + slice.getCpuTime()));
     node.setDepth(depth);
     for (SliceGroup child : slice.getChildren()) {
-      node.addChild(populateCaptureNode(child, depth + 1));
+      node.addChild(populateCaptureNode(store, child, depth + 1));
     }
     return node;
   }
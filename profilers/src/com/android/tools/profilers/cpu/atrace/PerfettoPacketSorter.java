@@ -0,0 +1,330 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.cpu.atrace;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Charsets;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * This class takes the Atrace lines converted from {@link PerfettoTrace.FtraceEventBundle}s and returns them sorted by timestamp. This is
+ * needed because the bundles come in out of order, as well as the lines within a bundle are out of order.
+ * <p>
+ * Lines are sorted with an external merge sort: they are buffered in memory until the buffer reaches a size limit, then the buffer is
+ * sorted and spilled to a temporary file as a run, in a compact binary encoding. Perfetto bundles are nearly sorted already, which the
+ * (stable, adaptive) sort of each run takes advantage of. Once all lines have been added, the class is reset for iteration, and the
+ * iterator merges the spilled runs and the last in-memory run with a k-way merge. Lines with the same timestamp are returned in the order
+ * they were added.
+ * <p>
+ * This replaces sorting the lines in a temporary SQLite table, which took 235975ms (including trebuchet time) to parse a 30 second capture.
+ */
+public class PerfettoPacketSorter implements Iterator<String> {
+  /**
+   * Approximate size, in bytes, of the lines kept in memory before they are spilled to disk.
+   */
+  private static final long DEFAULT_MAX_RUN_BYTES = 32 * 1024 * 1024;
+
+  /**
+   * Approximate memory overhead of a buffered {@link Line}, on top of its characters.
+   */
+  private static final int LINE_OVERHEAD_BYTES = 64;
+
+  private static final Comparator<Run> RUN_ORDER = Comparator.comparingLong(Run::getTimestamp).thenComparingInt(Run::getIndex);
+
+  private final long myMaxRunBytes;
+
+  @NotNull private List<Line> myBuffer = new ArrayList<>();
+  private long myBufferBytes;
+
+  @NotNull private final List<File> mySpilledRuns = new ArrayList<>();
+
+  /**
+   * Runs that have lines left to return, ordered by their next line. Null until {@link #resetForIterator()} is called.
+   */
+  @Nullable private PriorityQueue<Run> myMergeQueue;
+
+  private static Logger getLogger() {
+    return Logger.getInstance(PerfettoPacketSorter.class);
+  }
+
+  public PerfettoPacketSorter() {
+    this(DEFAULT_MAX_RUN_BYTES);
+  }
+
+  @VisibleForTesting
+  public PerfettoPacketSorter(long maxRunBytes) {
+    myMaxRunBytes = maxRunBytes;
+  }
+
+  /**
+   * As a trace file is loaded each line converted from an FtraceEvent should be added to the sorter.
+   */
+  public void addLine(long timestamp, @NotNull String line) {
+    if (myMergeQueue != null) {
+      // Lines can't be added once iteration started.
+      return;
+    }
+    myBuffer.add(new Line(timestamp, line));
+    myBufferBytes += line.length() + LINE_OVERHEAD_BYTES;
+    if (myBufferBytes >= myMaxRunBytes) {
+      spillBuffer();
+    }
+  }
+
+  /**
+   * This function should be called when we want to finalize this class for writing and enable it for reading.
+   */
+  public void resetForIterator() {
+    if (myMergeQueue != null) {
+      return;
+    }
+    sortBuffer();
+    myMergeQueue = new PriorityQueue<>(RUN_ORDER);
+    for (int i = 0; i < mySpilledRuns.size(); ++i) {
+      try {
+        addIfNotEmpty(new FileRun(i, mySpilledRuns.get(i)));
+      }
+      catch (IOException ex) {
+        getLogger().error(ex);
+      }
+    }
+    // The lines still in memory were added last, so they come after the spilled runs when timestamps are equal.
+    addIfNotEmpty(new MemoryRun(mySpilledRuns.size(), myBuffer));
+  }
+
+  /**
+   * Delete the spilled runs and free resources.
+   */
+  public void close() {
+    if (myMergeQueue != null) {
+      for (Run run : myMergeQueue) {
+        run.close();
+      }
+    }
+    for (File file : mySpilledRuns) {
+      FileUtil.delete(file);
+    }
+    mySpilledRuns.clear();
+    myBuffer = new ArrayList<>();
+    myBufferBytes = 0;
+    myMergeQueue = null;
+  }
+
+  @Override
+  public boolean hasNext() {
+    return myMergeQueue != null && !myMergeQueue.isEmpty();
+  }
+
+  @Override
+  @NotNull
+  public String next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    assert myMergeQueue != null;
+    Run run = myMergeQueue.poll();
+    String line = run.getLine();
+    try {
+      if (run.advance()) {
+        myMergeQueue.add(run);
+      }
+      else {
+        run.close();
+      }
+    }
+    catch (IOException ex) {
+      getLogger().error(ex);
+      run.close();
+    }
+    return line;
+  }
+
+  private void addIfNotEmpty(@NotNull Run run) {
+    try {
+      if (run.advance()) {
+        assert myMergeQueue != null;
+        myMergeQueue.add(run);
+      }
+      else {
+        run.close();
+      }
+    }
+    catch (IOException ex) {
+      getLogger().error(ex);
+      run.close();
+    }
+  }
+
+  private void sortBuffer() {
+    // List.sort is a stable merge sort that runs in close to linear time on the nearly sorted lines of perfetto traces.
+    myBuffer.sort(Comparator.comparingLong(line -> line.myTimestamp));
+  }
+
+  private void spillBuffer() {
+    sortBuffer();
+    try {
+      File file = FileUtil.createTempFile("perfetto", ".run", true);
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+        for (Line line : myBuffer) {
+          byte[] bytes = line.myText.getBytes(Charsets.UTF_8);
+          out.writeLong(line.myTimestamp);
+          out.writeInt(bytes.length);
+          out.write(bytes);
+        }
+      }
+      mySpilledRuns.add(file);
+    }
+    catch (IOException ex) {
+      // Keep the lines in memory rather than losing them.
+      getLogger().warn(ex);
+      return;
+    }
+    myBuffer = new ArrayList<>();
+    myBufferBytes = 0;
+  }
+
+  private static final class Line {
+    private final long myTimestamp;
+    @NotNull private final String myText;
+
+    private Line(long timestamp, @NotNull String text) {
+      myTimestamp = timestamp;
+      myText = text;
+    }
+  }
+
+  /**
+   * A sorted sequence of lines, read one line at a time.
+   */
+  private static abstract class Run {
+    private final int myIndex;
+
+    private Run(int index) {
+      myIndex = index;
+    }
+
+    /**
+     * The position of the run in the order lines were added, used to keep lines with the same timestamp in that order.
+     */
+    int getIndex() {
+      return myIndex;
+    }
+
+    /**
+     * Moves to the next line of the run.
+     *
+     * @return false if there are no more lines.
+     */
+    abstract boolean advance() throws IOException;
+
+    abstract long getTimestamp();
+
+    @NotNull
+    abstract String getLine();
+
+    void close() {
+    }
+  }
+
+  private static final class MemoryRun extends Run {
+    @NotNull private final List<Line> myLines;
+    private int myPosition = -1;
+
+    private MemoryRun(int index, @NotNull List<Line> lines) {
+      super(index);
+      myLines = lines;
+    }
+
+    @Override
+    boolean advance() {
+      return ++myPosition < myLines.size();
+    }
+
+    @Override
+    long getTimestamp() {
+      return myLines.get(myPosition).myTimestamp;
+    }
+
+    @NotNull
+    @Override
+    String getLine() {
+      return myLines.get(myPosition).myText;
+    }
+  }
+
+  private static final class FileRun extends Run {
+    @NotNull private final DataInputStream myInput;
+    private long myTimestamp;
+    @NotNull private String myLine = "";
+
+    private FileRun(int index, @NotNull File file) throws IOException {
+      super(index);
+      myInput = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+    }
+
+    @Override
+    boolean advance() throws IOException {
+      try {
+        myTimestamp = myInput.readLong();
+      }
+      catch (EOFException ex) {
+        return false;
+      }
+      byte[] bytes = new byte[myInput.readInt()];
+      myInput.readFully(bytes);
+      myLine = new String(bytes, Charsets.UTF_8);
+      return true;
+    }
+
+    @Override
+    long getTimestamp() {
+      return myTimestamp;
+    }
+
+    @NotNull
+    @Override
+    String getLine() {
+      return myLine;
+    }
+
+    @Override
+    void close() {
+      try {
+        myInput.close();
+      }
+      catch (IOException ignored) {
+      }
+    }
+  }
+}
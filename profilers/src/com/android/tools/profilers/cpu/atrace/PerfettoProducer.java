@@ -51,7 +51,7 @@ public class PerfettoProducer implements TrebuchetBufferProducer {
 
   // Maps thread id to thread group id. A tgid is the thread id at the root of the tree. This is also known as the PID in user space.
   private final ArrayDeque<String> myGeneratedTrebuchetLines = new ArrayDeque<>();
-  private final PerfettoPacketDBSorter mySorter = new PerfettoPacketDBSorter();
+  private final PerfettoPacketSorter mySorter = new PerfettoPacketSorter();
 
   private static double nanosToSeconds(double nanos) {
     return nanos / TimeUnit.SECONDS.toNanos(1);
@@ -265,7 +265,7 @@ public class PerfettoProducer implements TrebuchetBufferProducer {
     }
     assert line != null;
     // Trebuchet has a bug where all lines need to be truncated to 1023 characters including the newline.
-    byte[] data = String.format("%s\n", line.substring(0, Math.min(1022, line.length()))).getBytes(Charsets.UTF_8);
+    byte[] data = (line.length() > 1022 ? line.substring(0, 1022) : line).concat("\n").getBytes(Charsets.UTF_8);
     return new DataSlice(data);
   }
 
@@ -19,6 +19,8 @@ import com.android.tools.adtui.model.Range;
 import com.android.tools.profiler.proto.Cpu;
 import com.android.tools.profiler.proto.SimpleperfReport;
 import com.android.tools.profilers.cpu.CaptureNode;
+import com.android.tools.profilers.cpu.CaptureNodeStore;
+import com.android.tools.profilers.cpu.CaptureTrees;
 import com.android.tools.profilers.cpu.CpuCapture;
 import com.android.tools.profilers.cpu.CpuThreadInfo;
 import com.android.tools.profilers.cpu.TraceParser;
@@ -38,10 +40,13 @@ import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * Parses a trace file obtained using simpleperf to a map threadId -> {@link CaptureNode}.
@@ -90,6 +95,13 @@ public class SimpleperfTraceParser implements TraceParser {
    */
   private final Map<CpuThreadInfo, CaptureNode> myCaptureTrees;
 
+  /**
+   * Maps a call chain entry to the {@link CaptureNodeModel} shared by all the {@link CaptureNode}s created from equivalent entries. The
+   * same functions appear in a large number of samples, so this avoids parsing their names and keeping a model for every node. Threads are
+   * parsed concurrently, so the map needs to be thread-safe.
+   */
+  private final Map<ModelKey, CaptureNodeModel> myModels;
+
   /**
    * Number of samples read from trace file.
    */
@@ -121,7 +133,8 @@ public class SimpleperfTraceParser implements TraceParser {
   public SimpleperfTraceParser() {
     myFiles = new HashMap<>();
     mySamples = new ArrayList<>();
-    myCaptureTrees = new HashMap<>();
+    myCaptureTrees = new LinkedHashMap<>();
+    myModels = new ConcurrentHashMap<>();
     myThreads = new HashMap<>();
   }
 
@@ -190,8 +203,8 @@ public class SimpleperfTraceParser implements TraceParser {
   }
 
   @NotNull
-  private static CaptureNode createCaptureNode(CaptureNodeModel model, long timestamp) {
-    CaptureNode node = new CaptureNode(model);
+  private static CaptureNode createCaptureNode(CaptureNodeStore store, CaptureNodeModel model, long timestamp) {
+    CaptureNode node = new CaptureNode(model, store);
     setNodeStartTime(node, timestamp);
     node.setDepth(0);
     return node;
@@ -301,10 +314,17 @@ public class SimpleperfTraceParser implements TraceParser {
     // Split the samples per thread.
     Map<Integer, List<SimpleperfReport.Sample>> threadSamples = splitSamplesPerThread();
 
-    // Process the samples for each thread
-    for (Map.Entry<Integer, List<SimpleperfReport.Sample>> threadSamplesEntry : threadSamples.entrySet()) {
-      parseThreadSamples(threadSamplesEntry.getKey(), threadSamplesEntry.getValue());
-    }
+    // Process the samples of each thread in parallel. Sort the threads so the resulting map doesn't depend on the hash map order.
+    List<Integer> threadIds = new ArrayList<>(threadSamples.keySet());
+    Collections.sort(threadIds);
+    myCaptureTrees.putAll(CaptureTrees.buildInParallel(threadIds, threadId -> parseThreadSamples(threadId, threadSamples.get(threadId)),
+                                                       this::createThreadInfo));
+  }
+
+  @NotNull
+  private CpuThreadInfo createThreadInfo(int threadId) {
+    SimpleperfReport.Thread thread = myThreads.get(threadId);
+    return new CpuThreadInfo(threadId, thread.getThreadName(), threadId == thread.getProcessId());
   }
 
   /**
@@ -335,12 +355,15 @@ public class SimpleperfTraceParser implements TraceParser {
   }
 
   /**
-   * Parses the list of samples of a thread into a {@link CaptureNode} tree.
+   * Parses the list of samples of a thread into a {@link CaptureNode} tree. This is called concurrently for different threads.
+   *
+   * @return the root of the tree, or null if the thread has no samples.
    */
-  private void parseThreadSamples(int threadId, List<SimpleperfReport.Sample> threadSamples) {
+  @Nullable
+  private CaptureNode parseThreadSamples(int threadId, List<SimpleperfReport.Sample> threadSamples) {
     if (threadSamples.isEmpty()) {
       getLog().warn(String.format("Warning: No samples read for thread %s (%d)", myThreads.get(threadId), threadId));
-      return;
+      return null;
     }
 
     if (!myThreads.containsKey(threadId)) {
@@ -350,14 +373,15 @@ public class SimpleperfTraceParser implements TraceParser {
     // Add a root node to represent the thread itself.
     long firstTimestamp = threadSamples.get(0).getTime();
     SimpleperfReport.Thread thread = myThreads.get(threadId);
-    CaptureNode root = createCaptureNode(new SingleNameModel(thread.getThreadName()), firstTimestamp);
+    CaptureNodeStore store = new CaptureNodeStore();
+    CaptureNode root = createCaptureNode(store, new SingleNameModel(thread.getThreadName()), firstTimestamp);
     root.setDepth(0);
-    myCaptureTrees.put(new CpuThreadInfo(threadId, thread.getThreadName(), threadId == thread.getProcessId()), root);
 
     // Parse the first call chain so we have a value for lastCallchain
     List<SimpleperfReport.Sample.CallChainEntry> previousCallChain = Lists.reverse(threadSamples.get(0).getCallchainList());
     // Node used to traverse the tree. In the first traversal we pass an empty list as previous call chain and root as last visited node.
-    CaptureNode lastVisitedNode = parseCallChain(previousCallChain, Collections.emptyList(), threadSamples.get(0).getTime(), root);
+    CaptureNode lastVisitedNode =
+      parseCallChain(store, previousCallChain, Collections.emptyList(), threadSamples.get(0).getTime(), root);
 
     // Now parse all the rest of the samples collected for this thread
     for (int i = 1; i < threadSamples.size(); i++) {
@@ -366,7 +390,7 @@ public class SimpleperfTraceParser implements TraceParser {
       // so reversing it makes the traversal easier.
       List<SimpleperfReport.Sample.CallChainEntry> callChain = Lists.reverse(sample.getCallchainList());
       // TODO: when --trace-offcpu is supported, we will need to call updateAncestorsEndTime if sample has a "schedule" out event.
-      lastVisitedNode = parseCallChain(callChain, previousCallChain, sample.getTime(), lastVisitedNode);
+      lastVisitedNode = parseCallChain(store, callChain, previousCallChain, sample.getTime(), lastVisitedNode);
       previousCallChain = callChain;
     }
 
@@ -376,6 +400,8 @@ public class SimpleperfTraceParser implements TraceParser {
     updateAncestorsEndTime(lastTimestamp, lastVisitedNode);
     // update the root timestamp
     setNodeEndTime(root, lastTimestamp);
+    store.trimToSize();
+    return root;
   }
 
   /**
@@ -394,9 +420,10 @@ public class SimpleperfTraceParser implements TraceParser {
    * Given a {@link SimpleperfReport.Sample.CallChainEntry} and the previous one, add the new method calls as nodes to the tree and set
    * their start time to the given timestamp. Also, check which methods are not on the call chain anymore and update their end time.
    * Receives a {@link CaptureNode} as a starting point to traverse the tree when adding new nodes or visiting existing ones. Returns the
-   * last visited node.
+   * last visited node. New nodes are created in {@code store}.
    */
-  private CaptureNode parseCallChain(List<SimpleperfReport.Sample.CallChainEntry> callChain,
+  private CaptureNode parseCallChain(CaptureNodeStore store,
+                                     List<SimpleperfReport.Sample.CallChainEntry> callChain,
                                      List<SimpleperfReport.Sample.CallChainEntry> previousCallChain,
                                      long sampleTimestamp, CaptureNode lastVisitedNode) {
     // Node used to traverse the tree when adding new nodes or going up to find the divergent node ancestor.
@@ -417,7 +444,7 @@ public class SimpleperfTraceParser implements TraceParser {
 
     // We add the new nodes (if any) present in the new call chain as descendants of the parent of the first divergent node.
     if (divergenceIndex < callChain.size()) {
-      traversalNode = addNewNodes(callChain, traversalNode, divergenceIndex, sampleTimestamp);
+      traversalNode = addNewNodes(store, callChain, traversalNode, divergenceIndex, sampleTimestamp);
     }
 
     // Finally, return the traversal node.
@@ -442,13 +469,13 @@ public class SimpleperfTraceParser implements TraceParser {
    * Given a list of call chain entries and a start index, convert them to {@link CaptureNode} and add them as descendants of a given node.
    * Returns the last visited (added) node.
    */
-  private CaptureNode addNewNodes(List<SimpleperfReport.Sample.CallChainEntry> callChain,
+  private CaptureNode addNewNodes(CaptureNodeStore store, List<SimpleperfReport.Sample.CallChainEntry> callChain,
                                   CaptureNode node, int startIndex, long startTimestamp) {
     assert node != null;
     for (int i = startIndex; i < callChain.size(); i++) {
       // Get the parent function vAddress. That corresponds to the line of the parent function where the current function is called.
       long parentVAddress = i > 0 ? callChain.get(i - 1).getVaddrInFile() : -1;
-      CaptureNode child = createCaptureNode(methodModelFromCallchainEntry(callChain.get(i), parentVAddress), startTimestamp);
+      CaptureNode child = createCaptureNode(store, methodModelFromCallchainEntry(callChain.get(i), parentVAddress), startTimestamp);
       node.addChild(child);
       child.setDepth(node.getDepth() + 1);
       node = child;
@@ -458,6 +485,23 @@ public class SimpleperfTraceParser implements TraceParser {
   }
 
   private CaptureNodeModel methodModelFromCallchainEntry(SimpleperfReport.Sample.CallChainEntry callChainEntry, long parentVAddress) {
+    int symbolId = callChainEntry.getSymbolId();
+    // Models of entries without a symbol are built from their own address, otherwise from the address of their caller.
+    long address = symbolId == INVALID_SYMBOL_ID ? callChainEntry.getVaddrInFile() : parentVAddress;
+    ModelKey key = new ModelKey(callChainEntry.getFileId(), symbolId, address);
+    CaptureNodeModel model = myModels.get(key);
+    if (model == null) {
+      model = createMethodModel(callChainEntry, parentVAddress);
+      // Another thread may have created the model of the same entry in the meantime.
+      CaptureNodeModel existing = myModels.putIfAbsent(key, model);
+      if (existing != null) {
+        model = existing;
+      }
+    }
+    return model;
+  }
+
+  private CaptureNodeModel createMethodModel(SimpleperfReport.Sample.CallChainEntry callChainEntry, long parentVAddress) {
     int symbolId = callChainEntry.getSymbolId();
     SimpleperfReport.File symbolFile = myFiles.get(callChainEntry.getFileId());
     if (symbolFile == null) {
@@ -474,4 +518,33 @@ public class SimpleperfTraceParser implements TraceParser {
     boolean isUserWritten = symbolFile.getPath().startsWith(myAppDataFolderPrefix);
     return NodeNameParser.parseNodeName(symbolFile.getSymbol(symbolId), isUserWritten, symbolFile.getPath(), parentVAddress);
   }
+
+  /**
+   * Identifies the call chain entries that result in the same {@link CaptureNodeModel}.
+   */
+  private static final class ModelKey {
+    private final int myFileId;
+    private final int mySymbolId;
+    private final long myAddress;
+
+    private ModelKey(int fileId, int symbolId, long address) {
+      myFileId = fileId;
+      mySymbolId = symbolId;
+      myAddress = address;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof ModelKey)) {
+        return false;
+      }
+      ModelKey other = (ModelKey)o;
+      return myFileId == other.myFileId && mySymbolId == other.mySymbolId && myAddress == other.myAddress;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * (31 * myFileId + mySymbolId) + Long.hashCode(myAddress);
+    }
+  }
 }
@@ -24,6 +24,7 @@ public enum MemoryProfilerAspect {
   CURRENT_HEAP,
   CURRENT_HEAP_UPDATING,
   CURRENT_HEAP_UPDATED,
+  CURRENT_HEAP_PROGRESS,
   CURRENT_HEAP_CONTENTS,
   CURRENT_CLASS,
   CURRENT_INSTANCE,
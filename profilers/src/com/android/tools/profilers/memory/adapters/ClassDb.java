@@ -52,6 +52,16 @@ public final class ClassDb {
     return entry;
   }
 
+  /**
+   * Same as {@link #registerClass(long, long, String)}, except that the entry of a class that is already registered is returned instead of
+   * being replaced. Callers that classify many instances of the same class share a single entry.
+   */
+  @NotNull
+  public ClassEntry getOrRegisterClass(long classId, long superClassId, @NotNull String className) {
+    ClassEntry entry = myClassEntries.get(classId);
+    return entry != null ? entry : registerClass(classId, superClassId, className);
+  }
+
   @NotNull
   public ClassEntry getEntry(long classId) {
     assert myClassEntries.containsKey(classId);
@@ -78,7 +78,17 @@ public class ClassSet extends ClassifierSet {
     @Nullable
     @Override
     public ClassifierSet getClassifierSet(@NotNull InstanceObject instance, boolean createIfAbsent) {
-      ClassDb.ClassEntry classEntry = instance.getClassEntry();
+      return getClassSet(instance.getClassEntry(), createIfAbsent);
+    }
+
+    @Nullable
+    @Override
+    public ClassifierSet getClassifierSet(@NotNull InstanceGroup group, boolean createIfAbsent) {
+      return getClassSet(group.getClassEntry(), createIfAbsent);
+    }
+
+    @Nullable
+    private ClassSet getClassSet(@NotNull ClassDb.ClassEntry classEntry, boolean createIfAbsent) {
       ClassSet classSet = myClassMap.get(classEntry);
       if (classSet == null && createIfAbsent) {
         classSet = new ClassSet(classEntry);
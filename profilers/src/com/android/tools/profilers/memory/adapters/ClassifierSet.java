@@ -33,11 +33,15 @@ public abstract class ClassifierSet implements MemoryObject {
   @Nullable private Supplier<String> myNameSupplier = null;
 
   // The set of instances that make up our baseline snapshot (e.g. live objects at the left of a selection range).
-  @NotNull protected final Set<InstanceObject> mySnapshotInstances = new LinkedHashSet<>(0);
+  // The sets are replaced rather than cleared once their instances are partitioned, as a cleared hash set keeps its table, which for a
+  // heap of millions of instances is a lot of memory.
+  @NotNull protected Set<InstanceObject> mySnapshotInstances = new LinkedHashSet<>(0);
   // The set of instances that have delta events (e.g. delta allocations/deallocations within a selection range).
   // Note that instances here can also appear in the set of snapshot instances (e.g. when a instance is allocated before the selection
   // and deallocation within the selection).
-  @NotNull protected final Set<InstanceObject> myDeltaInstances = new LinkedHashSet<>(0);
+  @NotNull protected Set<InstanceObject> myDeltaInstances = new LinkedHashSet<>(0);
+  // Groups of delta allocations that are accounted for by their totals. Their instance objects are only created when listed.
+  @NotNull protected List<InstanceGroup> myDeltaInstanceGroups = new ArrayList<>(0);
 
   // Lazily create the Classifier, as it is configurable and isn't necessary until nodes under this node needs to be classified.
   @Nullable protected Classifier myClassifier = null;
@@ -180,6 +184,25 @@ public abstract class ClassifierSet implements MemoryObject {
     return addDeltaInstanceInformation(instanceObject, false);
   }
 
+  /**
+   * Adds the instances of the group as delta allocations, without creating their instance objects if the group can be classified as a
+   * whole.
+   */
+  public void addDeltaInstanceGroup(@NotNull InstanceGroup group) {
+    if (myClassifier != null && !myClassifier.isTerminalClassifier()) {
+      myClassifier.classifyGroup(group);
+    }
+    else {
+      myDeltaInstanceGroups.add(group);
+    }
+
+    myDeltaAllocations += group.getCount();
+    myTotalNativeSize += group.getTotalNativeSize();
+    myTotalShallowSize += group.getTotalShallowSize();
+    myTotalRetainedSize += group.getTotalRetainedSize();
+    myNeedsRefiltering = true;
+  }
+
   // Remove delta instance alloc information
   // Remove instance when it neither has alloc nor dealloc information
   // Return true if the instance is removed
@@ -271,8 +294,7 @@ public abstract class ClassifierSet implements MemoryObject {
   }
 
   public void clearClassifierSets() {
-    mySnapshotInstances.clear();
-    myDeltaInstances.clear();
+    releaseInstances();
     myClassifier = createSubClassifier();
     mySnapshotObjectCount = 0;
     myDeltaAllocations = 0;
@@ -290,7 +312,7 @@ public abstract class ClassifierSet implements MemoryObject {
     if (myClassifier == null) {
       Set<InstanceObject> total = new HashSet<>(mySnapshotInstances);
       total.addAll(myDeltaInstances);
-      return total.size();
+      return total.size() + myDeltaInstanceGroups.stream().mapToInt(InstanceGroup::getCount).sum();
     }
     else {
       return (int)getInstancesStream().count();
@@ -302,7 +324,9 @@ public abstract class ClassifierSet implements MemoryObject {
    */
   @NotNull
   public Stream<InstanceObject> getInstancesStream() {
-    Stream<InstanceObject> total = Stream.concat(mySnapshotInstances.stream(), myDeltaInstances.stream()).distinct();
+    Stream<InstanceObject> total =
+      Stream.concat(Stream.concat(mySnapshotInstances.stream(), myDeltaInstances.stream()).distinct(),
+                    myDeltaInstanceGroups.stream().flatMap(InstanceGroup::createInstances));
     if (myClassifier == null) {
       return total;
     }
@@ -312,7 +336,8 @@ public abstract class ClassifierSet implements MemoryObject {
   }
 
   /**
-   * Return the stream of instance objects that contribute to the delta.
+   * Return the stream of instance objects that contribute to the delta, without the ones of the instance groups, see
+   * {@link #getDeltaInstanceGroupStream()}.
    * Note that there can be duplicated entries as {@link #getSnapshotInstanceStream()}.
    */
   @NotNull
@@ -326,6 +351,20 @@ public abstract class ClassifierSet implements MemoryObject {
     }
   }
 
+  /**
+   * Return the stream of instance groups that contribute to the delta.
+   */
+  @NotNull
+  protected Stream<InstanceGroup> getDeltaInstanceGroupStream() {
+    if (myClassifier == null) {
+      return myDeltaInstanceGroups.stream();
+    }
+    else {
+      return Stream.concat(myClassifier.getAllClassifierSets().stream().flatMap(ClassifierSet::getDeltaInstanceGroupStream),
+                           myDeltaInstanceGroups.stream());
+    }
+  }
+
   /**
    * Return the stream of instance objects that contribute to the baseline snapshot.
    * Note that there can duplicated entries as {@link #getDeltaInstanceStream()}.
@@ -362,18 +401,14 @@ public abstract class ClassifierSet implements MemoryObject {
    */
   @Nullable
   public ClassifierSet findContainingClassifierSet(@NotNull InstanceObject target) {
-    boolean instancesContainsTarget =
-      Stream.concat(mySnapshotInstances.stream(), myDeltaInstances.stream()).filter(instance -> target.equals(instance)).findAny()
-        .isPresent();
+    boolean instancesContainsTarget = containsInstance(target);
     if (instancesContainsTarget && myClassifier != null) {
       return this;
     }
     else if (instancesContainsTarget || myClassifier != null) {
       List<ClassifierSet> childrenClassifierSets = getChildrenClassifierSets();
       // mySnapshotInstances/myDeltaInstances can be updated after getChildrenClassiferSets so rebuild the stream.
-      boolean stillContainsTarget =
-        Stream.concat(mySnapshotInstances.stream(), myDeltaInstances.stream()).filter(instance -> target.equals(instance)).findAny()
-          .isPresent();
+      boolean stillContainsTarget = containsInstance(target);
       if (instancesContainsTarget && stillContainsTarget) {
         return this; // If after the partition the target still falls within the instances within this set, then return this set.
       }
@@ -388,6 +423,14 @@ public abstract class ClassifierSet implements MemoryObject {
     return null;
   }
 
+  /**
+   * @return whether the instance belongs to this set itself rather than to one of its children.
+   */
+  private boolean containsInstance(@NotNull InstanceObject target) {
+    return Stream.concat(mySnapshotInstances.stream(), myDeltaInstances.stream()).anyMatch(instance -> target.equals(instance)) ||
+           myDeltaInstanceGroups.stream().anyMatch(group -> group.contains(target));
+  }
+
   /**
    * Determines if {@code this} ClassifierSet's descendant children forms a superset (could be equivalent) of the given
    * {@code targetSet}'s immediate children.
@@ -408,10 +451,24 @@ public abstract class ClassifierSet implements MemoryObject {
   protected void ensurePartition() {
     if (myClassifier == null) {
       myClassifier = createSubClassifier();
-      myClassifier.partition(mySnapshotInstances, myDeltaInstances);
+      if (!myClassifier.isTerminalClassifier()) {
+        // The instances now belong to the child sets.
+        myClassifier.partition(mySnapshotInstances, myDeltaInstances);
+        myClassifier.partitionGroups(myDeltaInstanceGroups);
+        releaseInstances();
+      }
     }
   }
 
+  /**
+   * Empties the instance sets of this node and frees their memory.
+   */
+  protected void releaseInstances() {
+    mySnapshotInstances = new LinkedHashSet<>(0);
+    myDeltaInstances = new LinkedHashSet<>(0);
+    myDeltaInstanceGroups = new ArrayList<>(0);
+  }
+
   /**
    * Gets the classifier this class will use to classify its instances.
    */
@@ -520,6 +577,16 @@ public abstract class ClassifierSet implements MemoryObject {
     @Nullable
     public abstract ClassifierSet getClassifierSet(@NotNull InstanceObject instance, boolean createIfAbsent);
 
+    /**
+     * Retrieve the next-level ClassifierSet that all the instances of the given {@code group} belong to, like
+     * {@link #getClassifierSet(InstanceObject, boolean)}. Returns null if the instances of the group have to be classified one at a time,
+     * which is the default.
+     */
+    @Nullable
+    public ClassifierSet getClassifierSet(@NotNull InstanceGroup group, boolean createIfAbsent) {
+      return null;
+    }
+
     /**
      * Gets a {@link List} of the child ClassifierSets.
      */
@@ -557,5 +624,28 @@ public abstract class ClassifierSet implements MemoryObject {
       snapshotInstances.clear();
       deltaInstances.clear();
     }
+
+    /**
+     * Partitions the instance groups in {@code deltaGroups} like {@link #partition(Collection, Collection)}. The groups that cannot be
+     * classified as a whole are split into their instances. This will consume the groups from the input.
+     */
+    public final void partitionGroups(@NotNull Collection<InstanceGroup> deltaGroups) {
+      if (isTerminalClassifier()) {
+        return;
+      }
+
+      deltaGroups.forEach(this::classifyGroup);
+      deltaGroups.clear();
+    }
+
+    private void classifyGroup(@NotNull InstanceGroup group) {
+      ClassifierSet classifierSet = getClassifierSet(group, true);
+      if (classifierSet != null) {
+        classifierSet.addDeltaInstanceGroup(group);
+      }
+      else {
+        group.createInstances().forEach(instance -> getClassifierSet(instance, true).addDeltaInstanceObject(instance));
+      }
+    }
   }
 }
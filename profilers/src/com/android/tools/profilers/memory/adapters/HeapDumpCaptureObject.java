@@ -45,9 +45,9 @@ import com.android.tools.proguard.ProguardMap;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
-import gnu.trove.TLongObjectHashMap;
 import java.io.OutputStream;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -78,9 +78,6 @@ public class HeapDumpCaptureObject implements CaptureObject {
   @NotNull
   private final Map<Integer, HeapSet> myHeapSets = new HashMap<>();
 
-  @NotNull
-  private final TLongObjectHashMap<InstanceObject> myInstanceIndex = new TLongObjectHashMap<>();
-
   @NotNull
   private final ClassDb myClassDb = new ClassDb();
 
@@ -93,10 +90,34 @@ public class HeapDumpCaptureObject implements CaptureObject {
   @Nullable
   private volatile Snapshot mySnapshot;
 
+  /**
+   * The entry shared by all the class objects when the heap dump has a java.lang.Class, set when loading.
+   */
+  @Nullable
+  private ClassDb.ClassEntry myJavaLangClassEntry;
+
   private volatile boolean myIsLoadingError = false;
 
   private boolean myHasNativeAllocations;
 
+  /**
+   * Columns of the values that the heap sets add up, set when loading.
+   */
+  @Nullable
+  private volatile HeapDumpInstanceIndex myIndex;
+
+  /**
+   * Nodes of the index that match the current instance filters, or null for all of them. Only used on the instance filter executor.
+   */
+  @Nullable
+  private BitSet myInstanceSelection;
+
+  /**
+   * Computes the depths and retained sizes of the instances, set when loading.
+   */
+  @Nullable
+  private volatile HeapDumpDominators myDominators;
+
   @NotNull
   private final MemoryProfilerStage myStage;
 
@@ -107,6 +128,9 @@ public class HeapDumpCaptureObject implements CaptureObject {
   private final ExecutorService myExecutorService =
     Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("memory-heapdump-instancefilters").build());
 
+  private final ExecutorService myDominatorExecutorService =
+    Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("memory-heapdump-dominators").build());
+
   public HeapDumpCaptureObject(@NotNull ProfilerClient client,
                                @NotNull Common.Session session,
                                @NotNull HeapDumpInfo heapDumpInfo,
@@ -218,52 +242,42 @@ public class HeapDumpCaptureObject implements CaptureObject {
     else {
       snapshot = Snapshot.createSnapshot(buffer, new ProguardMap(), Collections.singletonList(nativeRegistryPostProcessor));
     }
-    snapshot.computeDominators();
     myHasNativeAllocations = nativeRegistryPostProcessor.getHasNativeAllocations();
-    mySnapshot = snapshot;
 
     Map<Heap, HeapSet> heapSets = new HashMap<>(snapshot.getHeaps().size());
-    InstanceObject javaLangClassObject = null;
+    Map<Integer, HeapSet> heapSetsById = new HashMap<>(snapshot.getHeaps().size());
     for (Heap heap : snapshot.getHeaps()) {
       HeapSet heapSet = new HeapSet(this, heap.getName(), heap.getId());
       heapSets.put(heap, heapSet);
-      if (javaLangClassObject == null) {
+      heapSetsById.put(heap.getId(), heapSet);
+      if (myJavaLangClassEntry == null) {
         ClassObj javaLangClass =
           heap.getClasses().stream().filter(classObj -> JAVA_LANG_CLASS.equals(classObj.getClassName())).findFirst().orElse(null);
         if (javaLangClass != null) {
-          javaLangClassObject = createClassObjectInstance(null, javaLangClass);
+          myJavaLangClassEntry = registerClass(javaLangClass, JAVA_LANG_CLASS);
         }
       }
     }
-
-    InstanceObject finalJavaLangClassObject = javaLangClassObject;
+    // Without java.lang.Class, each class object is registered as its own java.lang.Class entry.
+    boolean hasJavaLangClass = myJavaLangClassEntry != null;
     for (Heap heap : snapshot.getHeaps()) {
-      HeapSet heapSet = heapSets.get(heap);
-      heap.getClasses().forEach(classObj -> {
-        InstanceObject classObject = createClassObjectInstance(finalJavaLangClassObject, classObj);
-        assert !myInstanceIndex.containsKey(classObj.getId());
-        myInstanceIndex.put(classObj.getId(), classObject);
-        heapSet.addDeltaInstanceObject(classObject);
-      });
+      heap.getClasses().forEach(classObj -> registerClass(classObj, hasJavaLangClass ? classObj.getClassName() : JAVA_LANG_CLASS));
     }
 
-    for (Heap heap : snapshot.getHeaps()) {
-      HeapSet heapSet = heapSets.get(heap);
-      heap.forEachInstance(instance -> {
-        assert !JAVA_LANG_CLASS.equals(instance.getClassObj().getClassName());
-
-        ClassObj classObj = instance.getClassObj();
-        ClassDb.ClassEntry classEntry =
-          classObj.getSuperClassObj() != null ?
-          myClassDb.registerClass(classObj.getId(), classObj.getSuperClassObj().getId(), classObj.getClassName()) :
-          myClassDb.registerClass(classObj.getId(), classObj.getClassName());
-        InstanceObject instanceObject = new HeapDumpInstanceObject(this, instance, classEntry, null);
-        assert !myInstanceIndex.containsKey(instance.getId());
-        myInstanceIndex.put(instance.getId(), instanceObject);
-        heapSet.addDeltaInstanceObject(instanceObject);
-        return true;
-      });
+    HeapDumpInstanceIndex index = new HeapDumpInstanceIndex(snapshot, this::getClassEntry, this::createInstanceObject);
+    myIndex = index;
+    HeapDumpDominators dominators = new HeapDumpDominators(snapshot, index);
+    myDominators = dominators;
+    if (queryJoiner == null) {
+      // There is no joiner to publish the retained sizes on later, so compute them before the heap sets are built.
+      dominators.compute((stage, fraction) -> {});
     }
+    mySnapshot = snapshot;
+
+    // The heap sets hold the totals of each class from the index. Instance objects are only created when the instances of a class are
+    // listed, or when following a reference, and are equal to each other for the same perflib instance.
+    index.createGroups(null, dominators::getRetainedSize)
+      .forEach((heapId, groups) -> groups.forEach(heapSetsById.get(heapId)::addDeltaInstanceGroup));
     heapSets.forEach((key, value) -> {
       if ("default".equals(key.getName())) {
         if (heapSets.size() == 1 || key.getInstancesCount() > 0) {
@@ -277,9 +291,60 @@ public class HeapDumpCaptureObject implements CaptureObject {
 
     myStage.refreshSelectedHeap();
 
+    if (queryJoiner != null) {
+      // Computing the dominators of a large heap takes a while. Show the heap with its shallow sizes in the meantime: the depths and the
+      // retained sizes of the instances show up as they are computed, and the progress is reported to the UI.
+      myDominatorExecutorService.execute(() -> {
+        dominators.compute(
+          (stage, fraction) -> queryJoiner.execute(() -> myStage.getAspect().changed(MemoryProfilerAspect.CURRENT_HEAP_PROGRESS)));
+        // Add the classes up again so that the totals account for the retained sizes. This is done on the instance filter executor, so
+        // that the totals match the filters applied so far.
+        myExecutorService.execute(() -> {
+          Map<Integer, List<InstanceGroup>> groups = createInstanceGroups(index);
+          queryJoiner.execute(() -> {
+            setInstanceGroups(groups);
+            myStage.refreshSelectedHeap();
+          });
+        });
+      });
+    }
+
     return true;
   }
 
+  /**
+   * @return whether the dominators of the heap dump have been computed. Until then, the retained sizes of some instances are not known.
+   */
+  public boolean hasRetainedSizes() {
+    HeapDumpDominators dominators = myDominators;
+    return dominators != null && dominators.isDone();
+  }
+
+  /**
+   * @return the distance of the instance to a GC root, or {@link #INVALID_VALUE} until the depths have been computed.
+   */
+  int getDepth(@NotNull Instance instance) {
+    HeapDumpDominators dominators = myDominators;
+    return dominators == null ? INVALID_VALUE : dominators.getDepth(instance);
+  }
+
+  /**
+   * @return the retained size of the instance, or {@link #INVALID_VALUE} until it has been computed.
+   */
+  long getRetainedSize(@NotNull Instance instance) {
+    HeapDumpDominators dominators = myDominators;
+    return dominators == null ? INVALID_VALUE : dominators.getRetainedSize(instance);
+  }
+
+  /**
+   * @return a description of the progress of the depth and retained size computation, or null if it is not running.
+   */
+  @Nullable
+  public String getProgressText() {
+    HeapDumpDominators dominators = myDominators;
+    return dominators == null ? null : dominators.getProgressText();
+  }
+
   @Override
   public boolean isDoneLoading() {
     return mySnapshot != null || myIsLoadingError;
@@ -293,6 +358,7 @@ public class HeapDumpCaptureObject implements CaptureObject {
   @Override
   public void unload() {
     myExecutorService.shutdownNow();
+    myDominatorExecutorService.shutdownNow();
   }
 
   @NotNull
@@ -313,31 +379,43 @@ public class HeapDumpCaptureObject implements CaptureObject {
              .asList(InstanceAttribute.LABEL, InstanceAttribute.DEPTH, InstanceAttribute.SHALLOW_SIZE, InstanceAttribute.RETAINED_SIZE);
   }
 
+  /**
+   * @return an instance object for the given perflib instance. It is created on demand, and is equal to the one in the heap sets.
+   */
   @Nullable
   public InstanceObject findInstanceObject(@NotNull Instance instance) {
     if (mySnapshot == null) {
       return null;
     }
 
-    return myInstanceIndex.get(instance.getId());
+    return createInstanceObject(instance);
   }
 
   @NotNull
-  InstanceObject createClassObjectInstance(@Nullable InstanceObject javaLangClass, @NotNull ClassObj classObj) {
-    String className = javaLangClass == null ? JAVA_LANG_CLASS : classObj.getClassName();
-    ClassDb.ClassEntry classEntry = classObj.getSuperClassObj() != null ?
-                                    myClassDb.registerClass(classObj.getId(), classObj.getSuperClassObj().getId(), className) :
-                                    myClassDb.registerClass(classObj.getId(), className);
-    InstanceObject classObject;
-    if (javaLangClass == null) {
-      // Handle java.lang.Class which is a special case. All its instances are other classes, so wee need to create an InstanceObject for it
-      // first for all classes to reference.
-      classObject = new HeapDumpInstanceObject(this, classObj, classEntry, ValueObject.ValueType.CLASS);
-    }
-    else {
-      classObject = new HeapDumpInstanceObject(this, classObj, javaLangClass.getClassEntry(), ValueObject.ValueType.CLASS);
+  private ClassDb.ClassEntry registerClass(@NotNull ClassObj classObj, @NotNull String className) {
+    return classObj.getSuperClassObj() != null ?
+           myClassDb.registerClass(classObj.getId(), classObj.getSuperClassObj().getId(), className) :
+           myClassDb.registerClass(classObj.getId(), className);
+  }
+
+  @NotNull
+  private InstanceObject createInstanceObject(@NotNull Instance instance) {
+    return new HeapDumpInstanceObject(this, instance, getClassEntry(instance),
+                                      instance instanceof ClassObj ? ValueObject.ValueType.CLASS : null);
+  }
+
+  @NotNull
+  private ClassDb.ClassEntry getClassEntry(@NotNull Instance instance) {
+    if (instance instanceof ClassObj) {
+      // Class objects are instances of java.lang.Class.
+      return myJavaLangClassEntry != null ? myJavaLangClassEntry : myClassDb.getEntry(instance.getId());
     }
-    return classObject;
+
+    assert !JAVA_LANG_CLASS.equals(instance.getClassObj().getClassName());
+    // All the instances of a class share its entry, which is normally registered with the ClassObj when loading.
+    ClassObj classObj = instance.getClassObj();
+    long superClassId = classObj.getSuperClassObj() != null ? classObj.getSuperClassObj().getId() : ClassDb.INVALID_CLASS_ID;
+    return myClassDb.getOrRegisterClass(classObj.getId(), superClassId, classObj.getClassName());
   }
 
   @NotNull
@@ -357,6 +435,11 @@ public class HeapDumpCaptureObject implements CaptureObject {
     return myExecutorService;
   }
 
+  @VisibleForTesting
+  ExecutorService getDominatorExecutor() {
+    return myDominatorExecutorService;
+  }
+
   @Override
   public void addInstanceFilter(@NotNull CaptureObjectInstanceFilter filterToAdd, @NotNull Executor analyzeJoiner) {
     assert mySupportedInstanceFilters.contains(filterToAdd);
@@ -364,19 +447,19 @@ public class HeapDumpCaptureObject implements CaptureObject {
     myCurrentInstanceFilters.add(filterToAdd);
     myStage.getAspect().changed(MemoryProfilerAspect.CURRENT_HEAP_UPDATING);
     myExecutorService.execute(() -> {
-      // Run the analyzers on the currently existing InstanceObjects in the HeapSets.
-      Set<InstanceObject> currentMatchedInstances = new HashSet<>();
-      for (HeapSet heap : myHeapSets.values()) {
-        currentMatchedInstances.addAll(heap.getInstancesStream().collect(Collectors.toSet()));
+      if (!awaitDepths()) {
+        return;
       }
-
-      Set<InstanceObject> matchedInstancesFinal = filterToAdd.filter(currentMatchedInstances, myClassDb);
+      HeapDumpInstanceIndex index = myIndex;
+      if (index == null) {
+        return;
+      }
+      // Run the analyzer on the instances that match the filters applied so far.
+      Set<InstanceObject> currentMatchedInstances = getSelectedInstances(index).collect(Collectors.toSet());
+      myInstanceSelection = index.select(filterToAdd.filter(currentMatchedInstances, myClassDb));
+      Map<Integer, List<InstanceGroup>> groups = createInstanceGroups(index);
       analyzeJoiner.execute(() -> {
-        for (HeapSet heap : myHeapSets.values()) {
-          heap.clearClassifierSets();
-        }
-
-        matchedInstancesFinal.forEach(instance -> myHeapSets.get(instance.getHeapId()).addDeltaInstanceObject(instance));
+        setInstanceGroups(groups);
         myStage.getAspect().changed(MemoryProfilerAspect.CURRENT_HEAP_UPDATED);
         myStage.refreshSelectedHeap();
       });
@@ -393,28 +476,87 @@ public class HeapDumpCaptureObject implements CaptureObject {
     myCurrentInstanceFilters.remove(filterToRemove);
     myStage.getAspect().changed(MemoryProfilerAspect.CURRENT_HEAP_UPDATING);
     myExecutorService.execute(() -> {
+      if (!awaitDepths()) {
+        return;
+      }
+      HeapDumpInstanceIndex index = myIndex;
+      if (index == null) {
+        return;
+      }
       // Run the remaining analyzers on the full instance set, since we don't know the the instances that have been removed from the
       // HeapSets using the filter that we are removing.
-      Set<InstanceObject> allInstances = new HashSet<>(myInstanceIndex.size());
-      myInstanceIndex.forEachValue(instance -> allInstances.add(instance));
-      Set<InstanceObject> matchedInstances = allInstances;
-      for (CaptureObjectInstanceFilter filter : myCurrentInstanceFilters) {
-        matchedInstances = filter.filter(matchedInstances, myClassDb);
+      if (myCurrentInstanceFilters.isEmpty()) {
+        myInstanceSelection = null;
       }
-
-      Set<InstanceObject> matchedInstancesFinal = matchedInstances;
-      analyzeJoiner.execute(() -> {
-        for (HeapSet heap : myHeapSets.values()) {
-          heap.clearClassifierSets();
+      else {
+        Set<InstanceObject> matchedInstances = index.createInstances().collect(Collectors.toSet());
+        for (CaptureObjectInstanceFilter filter : myCurrentInstanceFilters) {
+          matchedInstances = filter.filter(matchedInstances, myClassDb);
         }
-
-        matchedInstancesFinal.forEach(instance -> myHeapSets.get(instance.getHeapId()).addDeltaInstanceObject(instance));
+        myInstanceSelection = index.select(matchedInstances);
+      }
+      Map<Integer, List<InstanceGroup>> groups = createInstanceGroups(index);
+      analyzeJoiner.execute(() -> {
+        setInstanceGroups(groups);
         myStage.getAspect().changed(MemoryProfilerAspect.CURRENT_HEAP_UPDATED);
         myStage.refreshSelectedHeap();
       });
     });
   }
 
+  /**
+   * @return the instances that match the instance filters applied so far. Only called on the instance filter executor.
+   */
+  @NotNull
+  private Stream<InstanceObject> getSelectedInstances(@NotNull HeapDumpInstanceIndex index) {
+    BitSet selection = myInstanceSelection;
+    if (selection == null) {
+      return index.createInstances();
+    }
+    return selection.stream().mapToObj(node -> createInstanceObject(index.getInstance(node)));
+  }
+
+  /**
+   * @return the totals of the classes of each heap, for the instances that match the instance filters applied so far. Only called on the
+   * instance filter executor.
+   */
+  @NotNull
+  private Map<Integer, List<InstanceGroup>> createInstanceGroups(@NotNull HeapDumpInstanceIndex index) {
+    HeapDumpDominators dominators = myDominators;
+    return index.createGroups(myInstanceSelection, node -> dominators == null ? INVALID_VALUE : dominators.getRetainedSize(node));
+  }
+
+  /**
+   * Replaces the contents of the heap sets with the given groups.
+   */
+  private void setInstanceGroups(@NotNull Map<Integer, List<InstanceGroup>> groups) {
+    myHeapSets.forEach((heapId, heap) -> {
+      heap.clearClassifierSets();
+      groups.getOrDefault(heapId, Collections.emptyList()).forEach(heap::addDeltaInstanceGroup);
+    });
+  }
+
+  /**
+   * Instance filters can depend on the depths of the instances, so they wait for those to be computed. The loading panel shown while
+   * filtering reports the progress in the meantime.
+   *
+   * @return false if the wait was interrupted because the capture is being unloaded.
+   */
+  private boolean awaitDepths() {
+    HeapDumpDominators dominators = myDominators;
+    if (dominators == null) {
+      return true;
+    }
+    try {
+      dominators.awaitDepths();
+      return true;
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
   @Override
   public boolean canSafelyLoad() {
     Transport.BytesResponse response = myClient.getTransportClient().getBytes(Transport.BytesRequest.newBuilder()
@@ -0,0 +1,435 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.memory.adapters;
+
+import static com.android.tools.profilers.memory.adapters.MemoryObject.INVALID_VALUE;
+
+import com.android.tools.perflib.heap.Instance;
+import com.android.tools.perflib.heap.RootObj;
+import com.android.tools.perflib.heap.Snapshot;
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.IntStream;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Computes the dominator tree of a heap dump, and from it the depths and the retained sizes of its instances. It replaces
+ * {@link Snapshot#computeDominators()}, which has to finish for the whole heap before any of those values can be read.
+ * <p/>
+ * The hard references of the heap are first copied into compressed (CSR) arrays indexed by the nodes of a {@link HeapDumpInstanceIndex},
+ * in parallel. The depths come from a
+ * breadth first search over those arrays and are published right away, since the instance filters only need them. The immediate
+ * dominators are then computed with the Semi-NCA algorithm, and the retained sizes are added up the dominator tree one level at a time,
+ * with the instances of a level processed in parallel on the common fork-join pool. The retained size of an instance is published as soon
+ * as its whole dominator subtree has been added up.
+ */
+final class HeapDumpDominators {
+  enum Stage {
+    REFERENCES("Collecting references"),
+    DEPTHS("Computing depths"),
+    DOMINATORS("Computing dominators"),
+    RETAINED_SIZES("Computing retained sizes"),
+    DONE("Done");
+
+    @NotNull private final String myDescription;
+
+    Stage(@NotNull String description) {
+      myDescription = description;
+    }
+
+    @NotNull
+    public String getDescription() {
+      return myDescription;
+    }
+  }
+
+  interface ProgressListener {
+    /**
+     * Called from the computing thread when the computation moves to a new stage, and a few times within each stage.
+     */
+    void onProgress(@NotNull Stage stage, double fraction);
+  }
+
+  /**
+   * Node of the virtual root, which references all the GC roots. It is also the node of the index for unknown instances.
+   */
+  private static final int ROOT = HeapDumpInstanceIndex.NO_NODE;
+
+  /**
+   * Number of progress updates reported for each stage.
+   */
+  private static final int PROGRESS_STEPS = 20;
+
+  @NotNull private final Snapshot mySnapshot;
+
+  @NotNull private final HeapDumpInstanceIndex myIndex;
+
+  /**
+   * Distance of each node to a GC root, {@link Integer#MAX_VALUE} for the unreachable ones.
+   */
+  private int[] myDepths;
+
+  /**
+   * Depth of each node in the dominator tree, 0 for the virtual root and -1 for the unreachable nodes.
+   */
+  private int[] myDominatorDepths;
+
+  private AtomicLongArray myRetainedSizes;
+
+  /**
+   * The retained sizes of the nodes at this depth of the dominator tree and deeper are final.
+   */
+  private volatile int myCompletedDominatorDepth = Integer.MAX_VALUE;
+
+  @NotNull private volatile Stage myStage = Stage.REFERENCES;
+
+  private volatile double myFraction;
+
+  @NotNull private final CountDownLatch myDepthsLatch = new CountDownLatch(1);
+
+  HeapDumpDominators(@NotNull Snapshot snapshot, @NotNull HeapDumpInstanceIndex index) {
+    mySnapshot = snapshot;
+    myIndex = index;
+  }
+
+  /**
+   * Runs the whole computation on the calling thread. The parallel parts use the common fork-join pool. Interrupting the calling thread
+   * cancels the computation.
+   */
+  void compute(@NotNull ProgressListener listener) {
+    try {
+      doCompute(listener);
+    }
+    finally {
+      // Never leave the instance filters waiting, even if the computation failed.
+      myDepthsLatch.countDown();
+    }
+  }
+
+  private void doCompute(@NotNull ProgressListener listener) {
+    setStage(Stage.REFERENCES, listener);
+    int count = myIndex.getNodeCount();
+
+    boolean[] isRoot = new boolean[count];
+    for (RootObj root : mySnapshot.getGCRoots()) {
+      Instance referred = root.getReferredInstance();
+      if (referred != null) {
+        isRoot[myIndex.getNode(referred.getId())] = true;
+      }
+    }
+    isRoot[ROOT] = false;
+
+    // Predecessors of each node, as compressed arrays. Every node fills its own range, so both passes run in parallel.
+    int[] predecessorStarts = new int[count + 1];
+    IntStream.range(1, count).parallel().forEach(node -> {
+      int predecessorCount = isRoot[node] ? 1 : 0;
+      for (Instance referrer : myIndex.getInstance(node).getHardReverseReferences()) {
+        if (myIndex.getNode(referrer.getId()) != ROOT) {
+          predecessorCount++;
+        }
+      }
+      predecessorStarts[node + 1] = predecessorCount;
+    });
+    for (int node = 1; node <= count; node++) {
+      predecessorStarts[node] += predecessorStarts[node - 1];
+    }
+    int[] predecessors = new int[predecessorStarts[count]];
+    IntStream.range(1, count).parallel().forEach(node -> {
+      int next = predecessorStarts[node];
+      if (isRoot[node]) {
+        predecessors[next++] = ROOT;
+      }
+      for (Instance referrer : myIndex.getInstance(node).getHardReverseReferences()) {
+        int predecessor = myIndex.getNode(referrer.getId());
+        if (predecessor != ROOT) {
+          predecessors[next++] = predecessor;
+        }
+      }
+    });
+
+    // Successors of each node, by inverting the predecessors.
+    int[] successorStarts = new int[count + 1];
+    for (int predecessor : predecessors) {
+      successorStarts[predecessor + 1]++;
+    }
+    for (int node = 1; node <= count; node++) {
+      successorStarts[node] += successorStarts[node - 1];
+    }
+    int[] successors = new int[predecessors.length];
+    int[] nextSuccessor = Arrays.copyOf(successorStarts, count);
+    for (int node = 1; node < count; node++) {
+      for (int i = predecessorStarts[node]; i < predecessorStarts[node + 1]; i++) {
+        successors[nextSuccessor[predecessors[i]]++] = node;
+      }
+    }
+
+    setStage(Stage.DEPTHS, listener);
+    int[] depths = new int[count];
+    Arrays.fill(depths, Integer.MAX_VALUE);
+    int[] queue = new int[count];
+    int head = 0;
+    int tail = 0;
+    depths[ROOT] = -1;
+    queue[tail++] = ROOT;
+    while (head < tail) {
+      int node = queue[head++];
+      for (int i = successorStarts[node]; i < successorStarts[node + 1]; i++) {
+        int successor = successors[i];
+        if (depths[successor] == Integer.MAX_VALUE) {
+          depths[successor] = depths[node] + 1;
+          queue[tail++] = successor;
+        }
+      }
+    }
+    myDepths = depths;
+
+    setStage(Stage.DOMINATORS, listener);
+    myDepthsLatch.countDown();
+
+    // Depth first numbering of the reachable nodes. The arrays below are indexed by number rather than by node.
+    int[] numbers = new int[count];
+    Arrays.fill(numbers, -1);
+    int[] vertices = new int[count];
+    int[] parents = new int[count];
+    int reached = 0;
+    int[] stack = new int[successors.length + 1];
+    int[] stackParents = new int[successors.length + 1];
+    int stackSize = 0;
+    stack[stackSize++] = ROOT;
+    while (stackSize > 0) {
+      stackSize--;
+      int node = stack[stackSize];
+      if (numbers[node] >= 0) {
+        continue;
+      }
+      int number = reached++;
+      numbers[node] = number;
+      vertices[number] = node;
+      parents[number] = stackParents[stackSize];
+      for (int i = successorStarts[node + 1] - 1; i >= successorStarts[node]; i--) {
+        if (numbers[successors[i]] < 0) {
+          stack[stackSize] = successors[i];
+          stackParents[stackSize] = number;
+          stackSize++;
+        }
+      }
+    }
+
+    // Semi-NCA: semi-dominators in reverse preorder with path compression, then the immediate dominators as their nearest common
+    // ancestors in the depth first tree.
+    int[] ancestors = Arrays.copyOf(parents, reached);
+    int[] labels = new int[reached];
+    int[] semis = new int[reached];
+    for (int w = 0; w < reached; w++) {
+      labels[w] = w;
+      semis[w] = w;
+    }
+    int[] evalStack = new int[reached];
+    int progressStep = Math.max(1, reached / PROGRESS_STEPS);
+    for (int w = reached - 1; w >= 1; w--) {
+      int semi = parents[w];
+      int node = vertices[w];
+      for (int i = predecessorStarts[node]; i < predecessorStarts[node + 1]; i++) {
+        int v = numbers[predecessors[i]];
+        if (v < 0) {
+          continue;
+        }
+        int candidate = semis[eval(v, w + 1, ancestors, labels, semis, evalStack)];
+        if (candidate < semi) {
+          semi = candidate;
+        }
+      }
+      semis[w] = semi;
+      if (w % progressStep == 0) {
+        reportProgress(Stage.DOMINATORS, (reached - w) / (double)reached, listener);
+      }
+    }
+
+    int[] idoms = parents;
+    int[] dominatorDepths = new int[reached];
+    int maxDominatorDepth = 0;
+    for (int w = 1; w < reached; w++) {
+      int idom = idoms[w];
+      while (idom > semis[w]) {
+        idom = idoms[idom];
+      }
+      idoms[w] = idom;
+      dominatorDepths[w] = dominatorDepths[idom] + 1;
+      maxDominatorDepth = Math.max(maxDominatorDepth, dominatorDepths[w]);
+    }
+
+    // Group the numbers by depth in the dominator tree, so that each level can be added up to its dominators in parallel.
+    int[] levelStarts = new int[maxDominatorDepth + 2];
+    for (int w = 1; w < reached; w++) {
+      levelStarts[dominatorDepths[w] + 1]++;
+    }
+    for (int depth = 1; depth < levelStarts.length; depth++) {
+      levelStarts[depth] += levelStarts[depth - 1];
+    }
+    int[] levels = new int[reached];
+    int[] nextInLevel = Arrays.copyOf(levelStarts, maxDominatorDepth + 1);
+    for (int w = 1; w < reached; w++) {
+      levels[nextInLevel[dominatorDepths[w]]++] = w;
+    }
+
+    int[] nodeDominatorDepths = new int[count];
+    Arrays.fill(nodeDominatorDepths, -1);
+    AtomicLongArray retainedSizes = new AtomicLongArray(count);
+    IntStream.range(1, reached).parallel().forEach(w -> {
+      int node = vertices[w];
+      nodeDominatorDepths[node] = dominatorDepths[w];
+      retainedSizes.set(node, myIndex.getShallowSize(node));
+    });
+    myDominatorDepths = nodeDominatorDepths;
+    myRetainedSizes = retainedSizes;
+    myCompletedDominatorDepth = maxDominatorDepth;
+
+    setStage(Stage.RETAINED_SIZES, listener);
+    for (int depth = maxDominatorDepth; depth >= 2; depth--) {
+      IntStream.range(levelStarts[depth], levelStarts[depth + 1]).parallel().forEach(i -> {
+        int w = levels[i];
+        retainedSizes.addAndGet(vertices[idoms[w]], retainedSizes.get(vertices[w]));
+      });
+      // The dominators of this level have now received the sizes of all of their subtrees.
+      myCompletedDominatorDepth = depth - 1;
+      reportProgress(Stage.RETAINED_SIZES, (maxDominatorDepth - depth + 1) / (double)maxDominatorDepth, listener);
+    }
+    myCompletedDominatorDepth = 0;
+
+    setStage(Stage.DONE, listener);
+  }
+
+  /**
+   * Returns the number, among the ancestors of {@code v} that have already been processed, with the smallest semi-dominator, compressing
+   * the path to it on the way.
+   */
+  private static int eval(int v, int lastLinked, int[] ancestors, int[] labels, int[] semis, int[] stack) {
+    if (ancestors[v] < lastLinked) {
+      return labels[v];
+    }
+    int size = 0;
+    int current = v;
+    do {
+      stack[size++] = current;
+      current = ancestors[current];
+    }
+    while (ancestors[current] >= lastLinked);
+
+    int previous = current;
+    int previousLabel = labels[previous];
+    do {
+      current = stack[--size];
+      ancestors[current] = ancestors[previous];
+      int currentLabel = labels[current];
+      if (semis[previousLabel] < semis[currentLabel]) {
+        labels[current] = previousLabel;
+      }
+      else {
+        previousLabel = currentLabel;
+      }
+      previous = current;
+    }
+    while (size > 0);
+    return labels[current];
+  }
+
+  private void setStage(@NotNull Stage stage, @NotNull ProgressListener listener) {
+    if (Thread.currentThread().isInterrupted()) {
+      throw new CancellationException("Dominator computation cancelled");
+    }
+    myFraction = 0;
+    myStage = stage;
+    listener.onProgress(stage, 0);
+  }
+
+  private void reportProgress(@NotNull Stage stage, double fraction, @NotNull ProgressListener listener) {
+    if (Thread.currentThread().isInterrupted()) {
+      throw new CancellationException("Dominator computation cancelled");
+    }
+    myFraction = fraction;
+    listener.onProgress(stage, fraction);
+  }
+
+  @NotNull
+  Stage getStage() {
+    return myStage;
+  }
+
+  /**
+   * @return a description of the stage in progress, or null once everything has been computed.
+   */
+  @Nullable
+  String getProgressText() {
+    Stage stage = myStage;
+    if (stage == Stage.DONE) {
+      return null;
+    }
+    return String.format("%s (%d%%)", stage.getDescription(), Math.round(myFraction * 100));
+  }
+
+  boolean hasDepths() {
+    return myStage.compareTo(Stage.DOMINATORS) >= 0;
+  }
+
+  boolean isDone() {
+    return myStage == Stage.DONE;
+  }
+
+  /**
+   * Blocks until the depths are known, or the computation failed.
+   */
+  void awaitDepths() throws InterruptedException {
+    myDepthsLatch.await();
+  }
+
+  /**
+   * @return the distance of the instance to a GC root, {@link Integer#MAX_VALUE} if it is unreachable, or
+   * {@link MemoryObject#INVALID_VALUE} if the depths have not been computed yet.
+   */
+  int getDepth(@NotNull Instance instance) {
+    if (!hasDepths()) {
+      return INVALID_VALUE;
+    }
+    int node = myIndex.getNode(instance.getId());
+    return node == ROOT ? Integer.MAX_VALUE : myDepths[node];
+  }
+
+  /**
+   * @return the retained size of the instance, or {@link MemoryObject#INVALID_VALUE} if the sizes of its dominator subtree have not all
+   * been added up yet. Unreachable instances retain nothing.
+   */
+  long getRetainedSize(@NotNull Instance instance) {
+    return getRetainedSize(myIndex.getNode(instance.getId()));
+  }
+
+  /**
+   * @see #getRetainedSize(Instance)
+   */
+  long getRetainedSize(int node) {
+    Stage stage = myStage;
+    if (stage.compareTo(Stage.RETAINED_SIZES) < 0) {
+      return INVALID_VALUE;
+    }
+    int dominatorDepth = node == ROOT ? -1 : myDominatorDepths[node];
+    if (stage != Stage.DONE && (dominatorDepth < 0 || dominatorDepth < myCompletedDominatorDepth)) {
+      return INVALID_VALUE;
+    }
+    return dominatorDepth < 0 ? 0 : myRetainedSizes.get(node);
+  }
+}
@@ -39,17 +39,19 @@ final class HeapDumpFieldObject implements FieldObject {
     .put(Type.DOUBLE, DOUBLE)
     .build();
 
+  @NotNull private final HeapDumpCaptureObject myCaptureObject;
+  @NotNull private final Instance myParentInstance;
   @NotNull private final FieldValue myField;
   @NotNull private final ValueObject.ValueType myValueType;
   @Nullable private final InstanceObject myInstanceObject;
-  private final int myDepth;
   private final long myNativeSize;
   private final int myShallowSize;
-  private final long myRetainedSize;
 
   private final int myHashCode;
 
   public HeapDumpFieldObject(@NotNull HeapDumpCaptureObject captureObject, @NotNull Instance parentInstance, @NotNull FieldValue field) {
+    myCaptureObject = captureObject;
+    myParentInstance = parentInstance;
     myField = field;
     Type type = myField.getField().getType();
     if (type == Type.OBJECT) {
@@ -59,8 +61,6 @@ final class HeapDumpFieldObject implements FieldObject {
         myInstanceObject = null;
         myNativeSize = 0;
         myShallowSize = 0;
-        myRetainedSize = 0;
-        myDepth = Integer.MAX_VALUE;
       }
       else {
         myInstanceObject = captureObject.findInstanceObject(instance);
@@ -79,8 +79,6 @@ final class HeapDumpFieldObject implements FieldObject {
 
         myNativeSize = instance.getNativeSize();
         myShallowSize = instance.getSize();
-        myRetainedSize = instance.getTotalRetainedSize();
-        myDepth = instance.getDistanceToGcRoot();
       }
     }
     else {
@@ -88,8 +86,6 @@ final class HeapDumpFieldObject implements FieldObject {
       myInstanceObject = null;
       myNativeSize = 0;
       myShallowSize = type.getSize();
-      myRetainedSize = type.getSize();
-      myDepth = parentInstance.getDistanceToGcRoot();
     }
 
     myHashCode = Arrays.hashCode(new Object[]{myInstanceObject, getFieldName(), getValueType(), myField.getValue()});
@@ -129,14 +125,31 @@ final class HeapDumpFieldObject implements FieldObject {
     return myShallowSize;
   }
 
+  /**
+   * Retained sizes and depths are computed with the dominators, in the background, so they are read when needed rather than when the
+   * field is created.
+   */
   @Override
   public long getRetainedSize() {
-    return myRetainedSize;
+    Type type = myField.getField().getType();
+    if (type != Type.OBJECT) {
+      return type.getSize();
+    }
+    Instance instance = (Instance)myField.getValue();
+    if (instance == null) {
+      return 0;
+    }
+    return myCaptureObject.getRetainedSize(instance);
   }
 
   @Override
   public int getDepth() {
-    return myDepth;
+    Type type = myField.getField().getType();
+    Instance instance = type == Type.OBJECT ? (Instance)myField.getValue() : myParentInstance;
+    if (instance == null) {
+      return Integer.MAX_VALUE;
+    }
+    return myCaptureObject.getDepth(instance);
   }
 
   @NotNull
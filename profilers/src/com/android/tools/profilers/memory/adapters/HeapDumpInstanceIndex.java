@@ -0,0 +1,280 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.memory.adapters;
+
+import com.android.tools.perflib.heap.Heap;
+import com.android.tools.perflib.heap.Instance;
+import com.android.tools.perflib.heap.Snapshot;
+import gnu.trove.TLongIntHashMap;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.IntToLongFunction;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Columnar index of the class objects and instances of a heap dump. Each of them is a node numbered from 1, class objects first, and the
+ * values the classifiers add up (heap, class, shallow and native sizes) are kept in primitive arrays indexed by node. The nodes are also
+ * sorted by class, so that the totals of a class are a scan over a contiguous range of nodes and no {@link InstanceObject} is needed until
+ * the instances are listed.
+ */
+final class HeapDumpInstanceIndex {
+  /**
+   * Node returned for unknown instances. It is never used by an instance, so that {@link HeapDumpDominators} can use it as its virtual
+   * root.
+   */
+  static final int NO_NODE = 0;
+
+  @NotNull private final Instance[] myInstances;
+  @NotNull private final TLongIntHashMap myNodes;
+  @NotNull private final int[] myHeapIds;
+  @NotNull private final int[] myClassSlots;
+  @NotNull private final int[] myShallowSizes;
+  @NotNull private final long[] myNativeSizes;
+
+  /**
+   * Class entry of each class slot, in the order in which the classes were first seen.
+   */
+  @NotNull private final ClassDb.ClassEntry[] myClassEntries;
+
+  /**
+   * The nodes of each class slot, sorted by slot. The nodes of {@code slot} start at {@code myClassStarts[slot]} and end before
+   * {@code myClassStarts[slot + 1]}.
+   */
+  @NotNull private final int[] myClassStarts;
+  @NotNull private final int[] myNodesByClass;
+
+  @NotNull private final Function<Instance, InstanceObject> myInstanceObjects;
+
+  HeapDumpInstanceIndex(@NotNull Snapshot snapshot,
+                        @NotNull Function<Instance, ClassDb.ClassEntry> classEntries,
+                        @NotNull Function<Instance, InstanceObject> instanceObjects) {
+    myInstanceObjects = instanceObjects;
+
+    List<Instance> instanceList = new ArrayList<>();
+    instanceList.add(null);
+    for (Heap heap : snapshot.getHeaps()) {
+      instanceList.addAll(heap.getClasses());
+    }
+    for (Heap heap : snapshot.getHeaps()) {
+      heap.forEachInstance(instance -> {
+        instanceList.add(instance);
+        return true;
+      });
+    }
+    myInstances = instanceList.toArray(new Instance[0]);
+    int count = myInstances.length;
+
+    myNodes = new TLongIntHashMap(count);
+    myHeapIds = new int[count];
+    myClassSlots = new int[count];
+    myShallowSizes = new int[count];
+    myNativeSizes = new long[count];
+    Map<ClassDb.ClassEntry, Integer> slots = new IdentityHashMap<>();
+    List<ClassDb.ClassEntry> classEntryList = new ArrayList<>();
+    for (int node = 1; node < count; node++) {
+      Instance instance = myInstances[node];
+      myNodes.put(instance.getId(), node);
+      myHeapIds[node] = instance.getHeap().getId();
+      myShallowSizes[node] = instance.getSize();
+      myNativeSizes[node] = instance.getNativeSize();
+      myClassSlots[node] = slots.computeIfAbsent(classEntries.apply(instance), classEntry -> {
+        classEntryList.add(classEntry);
+        return classEntryList.size() - 1;
+      });
+    }
+    myClassEntries = classEntryList.toArray(new ClassDb.ClassEntry[0]);
+
+    // Counting sort of the nodes by class slot.
+    myClassStarts = new int[myClassEntries.length + 1];
+    for (int node = 1; node < count; node++) {
+      myClassStarts[myClassSlots[node] + 1]++;
+    }
+    for (int slot = 1; slot <= myClassEntries.length; slot++) {
+      myClassStarts[slot] += myClassStarts[slot - 1];
+    }
+    myNodesByClass = new int[count - 1];
+    int[] nextInClass = new int[myClassEntries.length];
+    System.arraycopy(myClassStarts, 0, nextInClass, 0, myClassEntries.length);
+    for (int node = 1; node < count; node++) {
+      myNodesByClass[nextInClass[myClassSlots[node]]++] = node;
+    }
+  }
+
+  /**
+   * @return the number of nodes, including {@link #NO_NODE}.
+   */
+  int getNodeCount() {
+    return myInstances.length;
+  }
+
+  @NotNull
+  Instance getInstance(int node) {
+    return myInstances[node];
+  }
+
+  /**
+   * @return the node of the instance with the given id, or {@link #NO_NODE} if it is not in the heap dump.
+   */
+  int getNode(long instanceId) {
+    return myNodes.get(instanceId);
+  }
+
+  int getShallowSize(int node) {
+    return myShallowSizes[node];
+  }
+
+  /**
+   * Creates the instance objects of all the nodes.
+   */
+  @NotNull
+  Stream<InstanceObject> createInstances() {
+    return IntStream.range(1, myInstances.length).mapToObj(node -> myInstanceObjects.apply(myInstances[node]));
+  }
+
+  /**
+   * @return the nodes of the given instances.
+   */
+  @NotNull
+  BitSet select(@NotNull Collection<InstanceObject> instances) {
+    BitSet selection = new BitSet(myInstances.length);
+    for (InstanceObject instance : instances) {
+      if (instance instanceof HeapDumpInstanceObject) {
+        int node = getNode(((HeapDumpInstanceObject)instance).getInstance().getId());
+        if (node != NO_NODE) {
+          selection.set(node);
+        }
+      }
+    }
+    return selection;
+  }
+
+  /**
+   * Adds up the instances of each class by heap.
+   *
+   * @param selection     the nodes to include, or null for all of them. It must not be modified afterwards, as the groups refer to it.
+   * @param retainedSizes the retained size of a node, or a negative value if it is not known yet.
+   * @return the groups of each heap id, in the order in which their classes were first seen.
+   */
+  @NotNull
+  Map<Integer, List<InstanceGroup>> createGroups(@Nullable BitSet selection, @NotNull IntToLongFunction retainedSizes) {
+    Map<Integer, List<InstanceGroup>> groups = new HashMap<>();
+    Map<Integer, ClassGroup> classGroups = new LinkedHashMap<>();
+    for (int slot = 0; slot < myClassEntries.length; slot++) {
+      for (int i = myClassStarts[slot]; i < myClassStarts[slot + 1]; i++) {
+        int node = myNodesByClass[i];
+        if (selection != null && !selection.get(node)) {
+          continue;
+        }
+        int heapId = myHeapIds[node];
+        ClassGroup group = classGroups.get(heapId);
+        if (group == null) {
+          group = new ClassGroup(slot, heapId, selection);
+          classGroups.put(heapId, group);
+        }
+        group.add(node, retainedSizes.applyAsLong(node));
+      }
+      classGroups.forEach((heapId, group) -> groups.computeIfAbsent(heapId, id -> new ArrayList<>()).add(group));
+      classGroups.clear();
+    }
+    return groups;
+  }
+
+  private final class ClassGroup implements InstanceGroup {
+    private final int mySlot;
+    private final int myHeapId;
+    @Nullable private final BitSet mySelection;
+    private int myCount;
+    private long myTotalShallowSize;
+    private long myTotalNativeSize;
+    private long myTotalRetainedSize;
+
+    private ClassGroup(int slot, int heapId, @Nullable BitSet selection) {
+      mySlot = slot;
+      myHeapId = heapId;
+      mySelection = selection;
+    }
+
+    private void add(int node, long retainedSize) {
+      myCount++;
+      myTotalShallowSize += myShallowSizes[node];
+      myTotalNativeSize += myNativeSizes[node];
+      myTotalRetainedSize += Math.max(0, retainedSize);
+    }
+
+    private boolean includes(int node) {
+      return myHeapIds[node] == myHeapId && (mySelection == null || mySelection.get(node));
+    }
+
+    @NotNull
+    @Override
+    public ClassDb.ClassEntry getClassEntry() {
+      return myClassEntries[mySlot];
+    }
+
+    @Override
+    public int getHeapId() {
+      return myHeapId;
+    }
+
+    @Override
+    public int getCount() {
+      return myCount;
+    }
+
+    @Override
+    public long getTotalShallowSize() {
+      return myTotalShallowSize;
+    }
+
+    @Override
+    public long getTotalNativeSize() {
+      return myTotalNativeSize;
+    }
+
+    @Override
+    public long getTotalRetainedSize() {
+      return myTotalRetainedSize;
+    }
+
+    @NotNull
+    @Override
+    public Stream<InstanceObject> createInstances() {
+      return IntStream.range(myClassStarts[mySlot], myClassStarts[mySlot + 1])
+        .map(i -> myNodesByClass[i])
+        .filter(this::includes)
+        .mapToObj(node -> myInstanceObjects.apply(myInstances[node]));
+    }
+
+    @Override
+    public boolean contains(@NotNull InstanceObject instance) {
+      if (!(instance instanceof HeapDumpInstanceObject)) {
+        return false;
+      }
+      int node = getNode(((HeapDumpInstanceObject)instance).getInstance().getId());
+      return node != NO_NODE && myClassSlots[node] == mySlot && includes(node);
+    }
+  }
+}
@@ -33,7 +33,6 @@ import static com.android.tools.profilers.memory.adapters.ValueObject.ValueType.
 class HeapDumpInstanceObject implements InstanceObject {
   private static final String NAME_FORMATTER = "%s@%d (0x%x)";
   private static final int MAX_VALUE_TEXT_LENGTH = 1024;
-  private static final Comparator<Instance> DEPTH_COMPARATOR = Comparator.comparingInt(Instance::getDistanceToGcRoot);
   private static final String INVALID_STRING_VALUE = " ...<invalid string value>...";
   private static final Map<Type, ValueType> VALUE_TYPE_MAP = ImmutableMap.<Type, ValueObject.ValueType>builder()
     .put(Type.BOOLEAN, BOOLEAN)
@@ -52,7 +51,8 @@ class HeapDumpInstanceObject implements InstanceObject {
   @NotNull private final HeapDumpCaptureObject myCaptureObject;
   @NotNull private final Instance myInstance;
   @NotNull private final ClassDb.ClassEntry myClassEntry;
-  @NotNull private final String myMemoizedLabel;
+  // Formatted when first displayed rather than for every instance of the heap dump.
+  @Nullable private String myMemoizedLabel;
 
   HeapDumpInstanceObject(@NotNull HeapDumpCaptureObject captureObject,
                          @NotNull Instance instance,
@@ -62,8 +62,6 @@ class HeapDumpInstanceObject implements InstanceObject {
     myInstance = instance;
     myClassEntry = classEntry;
 
-    myMemoizedLabel =
-      String.format(NAME_FORMATTER, myClassEntry.getSimpleClassName(), myInstance.getUniqueId(), myInstance.getUniqueId());
     if (precomputedValueType != null) {
       myValueType = precomputedValueType;
       return;
@@ -109,6 +107,10 @@ class HeapDumpInstanceObject implements InstanceObject {
   @Override
   public String getValueText() {
     // TODO show length of array instance
+    if (myMemoizedLabel == null) {
+      myMemoizedLabel =
+        String.format(NAME_FORMATTER, myClassEntry.getSimpleClassName(), myInstance.getUniqueId(), myInstance.getUniqueId());
+    }
     return myMemoizedLabel;
   }
 
@@ -137,6 +139,11 @@ class HeapDumpInstanceObject implements InstanceObject {
     return "";
   }
 
+  @NotNull
+  Instance getInstance() {
+    return myInstance;
+  }
+
   @Override
   public int getHeapId() {
     return myInstance.getHeap().getId();
@@ -150,7 +157,8 @@ class HeapDumpInstanceObject implements InstanceObject {
 
   @Override
   public int getDepth() {
-    return myInstance.getDistanceToGcRoot();
+    // Depths are computed in the background with the dominators, so they are read when needed.
+    return myCaptureObject.getDepth(myInstance);
   }
 
   @Override
@@ -165,7 +173,7 @@ class HeapDumpInstanceObject implements InstanceObject {
 
   @Override
   public long getRetainedSize() {
-    return myInstance.getTotalRetainedSize();
+    return myCaptureObject.getRetainedSize(myInstance);
   }
 
   @Override
@@ -303,13 +311,20 @@ class HeapDumpInstanceObject implements InstanceObject {
   @NotNull
   public List<ReferenceObject> extractReferences() {
     // Sort hard referrers to appear first.
+    // Referrers are only sorted by depth once the depths have been computed.
+    boolean sortByDepth = myCaptureObject.getDepth(myInstance) != INVALID_VALUE;
+    Comparator<Instance> depthComparator = Comparator.comparingInt(myCaptureObject::getDepth);
     List<Instance> sortedReferences = new ArrayList<>(myInstance.getHardReverseReferences());
-    sortedReferences.sort(DEPTH_COMPARATOR);
+    if (sortByDepth) {
+      sortedReferences.sort(depthComparator);
+    }
 
     // Sort soft referrers to appear second.
     if (myInstance.getSoftReverseReferences() != null) {
       List<Instance> sortedSoftReferences = new ArrayList<>(myInstance.getSoftReverseReferences());
-      sortedSoftReferences.sort(DEPTH_COMPARATOR);
+      if (sortByDepth) {
+        sortedSoftReferences.sort(depthComparator);
+      }
       sortedReferences.addAll(sortedSoftReferences);
     }
 
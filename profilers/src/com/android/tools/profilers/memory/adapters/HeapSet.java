@@ -49,10 +49,11 @@ public class HeapSet extends ClassifierSet {
     // Subsequent calls to getChildrenClassifierSets will re-partition them to the correct child ClassifierSet.
     List<InstanceObject> snapshotStream = getSnapshotInstanceStream().collect(Collectors.toList());
     List<InstanceObject> deltaStream = getDeltaInstanceStream().collect(Collectors.toList());
-    myDeltaInstances.clear();
-    mySnapshotInstances.clear();
+    List<InstanceGroup> deltaGroups = getDeltaInstanceGroupStream().collect(Collectors.toList());
+    releaseInstances();
     myClassifier = null;
     myDeltaInstances.addAll(deltaStream);
+    myDeltaInstanceGroups.addAll(deltaGroups);
     mySnapshotInstances.addAll(snapshotStream);
     myNeedsRefiltering = true;
   }
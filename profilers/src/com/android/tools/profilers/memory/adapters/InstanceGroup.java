@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.memory.adapters;
+
+import java.util.stream.Stream;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The instances of a class in a heap, summarized by their totals. A {@link ClassifierSet} can account for a group without an
+ * {@link InstanceObject} per instance; those are only created when the instances of the set are listed.
+ */
+public interface InstanceGroup {
+  @NotNull
+  ClassDb.ClassEntry getClassEntry();
+
+  int getHeapId();
+
+  int getCount();
+
+  long getTotalShallowSize();
+
+  long getTotalNativeSize();
+
+  long getTotalRetainedSize();
+
+  /**
+   * Creates the instance objects of the group. The group does not keep them, so callers should not expect the same objects twice, but
+   * they are equal to the ones created before.
+   */
+  @NotNull
+  Stream<InstanceObject> createInstances();
+
+  boolean contains(@NotNull InstanceObject instance);
+}
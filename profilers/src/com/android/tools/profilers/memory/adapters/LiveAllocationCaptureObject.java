@@ -51,6 +51,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.intellij.openapi.diagnostic.Logger;
 import gnu.trove.TIntObjectHashMap;
+import gnu.trove.TLongHashSet;
 import gnu.trove.TLongObjectHashMap;
 import java.io.IOException;
 import java.io.OutputStream;
@@ -94,11 +95,13 @@ public class LiveAllocationCaptureObject implements CaptureObject {
   private final ClassDb myClassDb;
   private final TIntObjectHashMap<LiveAllocationInstanceObject> myInstanceMap;
   private final TIntObjectHashMap<Memory.AllocationStack> myCallstackMap;
-  // Mapping from unsymbolized addresses to symbolized native frames
+  // Mapping from unsymbolized addresses to symbolized native frames. Filled on the load executor and read on the UI thread, so it is
+  // guarded by itself.
   @NotNull private final TLongObjectHashMap<NativeCallStack.NativeFrame> myNativeFrameMap;
   private final TLongObjectHashMap<AllocationStack.StackFrame> myMethodIdMap;
   private final TIntObjectHashMap<ThreadId> myThreadIdMap;
   private final TreeMap<Long, Memory.MemoryMap.MemoryRegion> myJniMemoryRegionMap;
+  @NotNull private final LiveAllocationCheckpoints myCheckpoints;
 
   private final ProfilerClient myClient;
   private final Common.Session mySession;
@@ -143,6 +146,7 @@ public class LiveAllocationCaptureObject implements CaptureObject {
     myCaptureStartTime = captureStartTime;
     myAspectObserver = new AspectObserver();
     myStage = stage;
+    myCheckpoints = new LiveAllocationCheckpoints(session.getStartTimestamp());
 
     myHeapSets = new ArrayList<>(Arrays.asList(
       new HeapSet(this, DEFAULT_HEAP_NAME, 0),  // default
@@ -420,6 +424,8 @@ public class LiveAllocationCaptureObject implements CaptureObject {
         // the range between (last-seen sample, newEndTimeNs).
         myPreviousQueryEndTimeNs = Math.min(newEndTimeNs, myLastSeenTimestampNs);
 
+        symbolizeJniBacktraces(Stream.of(snapshotList, deltaAllocationList, deltaFreeList).flatMap(List::stream));
+
         joiner.execute(() -> {
           myStage.getAspect().changed(MemoryProfilerAspect.CURRENT_HEAP_UPDATED);
           if (clear ||
@@ -489,33 +495,49 @@ public class LiveAllocationCaptureObject implements CaptureObject {
   }
 
   /**
-   * Populates the input list with all instance objects that are alive at |snapshotTimeNs|.
+   * Populates the input list with all instance objects that are alive at |snapshotTimeNs|. The allocation events are replayed from the
+   * nearest checkpoint before the snapshot time, and checkpoints are added for the complete intervals that are replayed.
    */
   private void queryJavaInstanceSnapshot(long snapshotTimeNs, @NotNull List<InstanceObject> snapshotList) {
-    // Retrieve all the event samples from the start of the session until the snapshot time.
-    long sessionStartNs = mySession.getStartTimestamp();
-    List<Memory.BatchAllocationEvents> eventsList = getAllocationEvents(sessionStartNs, snapshotTimeNs);
     Map<Integer, LiveAllocationInstanceObject> liveInstanceMap = new LinkedHashMap<>();
+    Map<Integer, AllocationEvent> liveEventMap = new LinkedHashMap<>();
+    long replayStartNs = Long.MIN_VALUE;
+    Map.Entry<Long, List<AllocationEvent>> checkpoint = myCheckpoints.getCheckpoint(snapshotTimeNs);
+    if (checkpoint != null) {
+      replayStartNs = checkpoint.getKey();
+      for (AllocationEvent event : checkpoint.getValue()) {
+        addLiveInstance(event, liveInstanceMap, liveEventMap);
+      }
+    }
+
+    // Retrieve all the event samples from the checkpoint, or the start of the session, until the snapshot time.
+    List<Memory.BatchAllocationEvents> eventsList =
+      getAllocationEvents(checkpoint != null ? replayStartNs : mySession.getStartTimestamp(), snapshotTimeNs);
+    // Samples can arrive late, so only add checkpoints before the buffer that is queried around the last sample.
+    long lastCheckpointNs = Math.min(snapshotTimeNs, myLastSeenTimestampNs - QUERY_BUFFER_NS);
+    long nextCheckpointNs = myCheckpoints.getNextCheckpointTime(replayStartNs);
+    long finalReplayStartNs = replayStartNs;
     for (Memory.BatchAllocationEvents events : eventsList) {
-      // Only consider events up to but excluding the snapshot time.
-      Iterator<AllocationEvent> itr = events.getEventsList().stream().filter(evt -> evt.getTimestamp() < snapshotTimeNs)
-        .sorted(Comparator.comparingLong(AllocationEvent::getTimestamp)).iterator();
+      // Only consider events from the checkpoint up to but excluding the snapshot time.
+      Iterator<AllocationEvent> itr =
+        events.getEventsList().stream().filter(evt -> evt.getTimestamp() >= finalReplayStartNs && evt.getTimestamp() < snapshotTimeNs)
+          .sorted(Comparator.comparingLong(AllocationEvent::getTimestamp)).iterator();
       while (itr.hasNext()) {
         AllocationEvent event = itr.next();
-        LiveAllocationInstanceObject instance;
+        while (nextCheckpointNs <= event.getTimestamp() && nextCheckpointNs <= lastCheckpointNs) {
+          myCheckpoints.addCheckpoint(nextCheckpointNs, liveEventMap.values());
+          nextCheckpointNs = myCheckpoints.getNextCheckpointTime(nextCheckpointNs);
+        }
         switch (event.getEventCase()) {
           case ALLOC_DATA:
             // Allocation - create an InstanceObject. This might be removed later if there is a corresponding FREE_DATA event.
-            AllocationEvent.Allocation allocation = event.getAllocData();
-            instance = getOrCreateInstanceObject(allocation.getTag(), allocation.getClassTag(), allocation.getStackId(),
-                                                 allocation.getThreadId(), allocation.getSize(), allocation.getHeapId());
-            instance.setAllocationTime(event.getTimestamp());
-            liveInstanceMap.put(allocation.getTag(), instance);
+            addLiveInstance(event, liveInstanceMap, liveEventMap);
             break;
           case FREE_DATA:
             // Deallocation - there should be a matching InstanceObject.
             AllocationEvent.Deallocation deallocation = event.getFreeData();
             liveInstanceMap.remove(deallocation.getTag());
+            liveEventMap.remove(deallocation.getTag());
             // Don't keep deallocated objects around in the cache to avoid bloating memory.
             myInstanceMap.remove(deallocation.getTag());
             break;
@@ -529,6 +551,18 @@ public class LiveAllocationCaptureObject implements CaptureObject {
     snapshotList.addAll(liveInstanceMap.values());
   }
 
+  private void addLiveInstance(@NotNull AllocationEvent event,
+                               @NotNull Map<Integer, LiveAllocationInstanceObject> liveInstanceMap,
+                               @NotNull Map<Integer, AllocationEvent> liveEventMap) {
+    AllocationEvent.Allocation allocation = event.getAllocData();
+    LiveAllocationInstanceObject instance =
+      getOrCreateInstanceObject(allocation.getTag(), allocation.getClassTag(), allocation.getStackId(), allocation.getThreadId(),
+                                allocation.getSize(), allocation.getHeapId());
+    instance.setAllocationTime(event.getTimestamp());
+    liveInstanceMap.put(allocation.getTag(), instance);
+    liveEventMap.put(allocation.getTag(), event);
+  }
+
   private void queryJniReferencesSnapshot(long snapshotTimeNs, @NotNull List<InstanceObject> snapshotList) {
     if (!myEnableJniRefsTracking) {
       return;
@@ -709,29 +743,82 @@ public class LiveAllocationCaptureObject implements CaptureObject {
       return NativeCallStack.getDefaultInstance();
     }
 
+    // The frames of the JNI references in the loaded range are symbolized when the range is queried, so this normally finds them all.
+    TLongHashSet addresses = new TLongHashSet(backtrace.getAddressesCount());
+    addAddresses(backtrace, addresses);
+    symbolizeAddresses(addresses);
 
     NativeCallStack.Builder builder = NativeCallStack.newBuilder();
-    for (long address : backtrace.getAddressesList()) {
-      if (!myNativeFrameMap.containsKey(address)) {
-        String module = "";
-        long offset = 0;
-        Memory.MemoryMap.MemoryRegion region = getRegionByAddress(address);
-        if (region != null) {
-          module = region.getName();
-          // Adjust address to represent module offset.
-          offset = region.getFileOffset() + (address - region.getStartAddress());
+    synchronized (myNativeFrameMap) {
+      for (int i = 0; i < backtrace.getAddressesCount(); ++i) {
+        builder.addFrames(myNativeFrameMap.get(backtrace.getAddresses(i)));
+      }
+    }
+    return builder.build();
+  }
+
+  /**
+   * Symbolizes the unique native frames of the backtraces of all the JNI references in {@code instances} in one batch, before the UI asks
+   * for any of their call stacks.
+   */
+  private void symbolizeJniBacktraces(@NotNull Stream<InstanceObject> instances) {
+    if (!myEnableJniRefsTracking) {
+      return;
+    }
+    TLongHashSet addresses = new TLongHashSet();
+    instances.filter(instance -> instance instanceof JniReferenceInstanceObject).forEach(instance -> {
+      addAddresses(((JniReferenceInstanceObject)instance).getAllocationBacktrace(), addresses);
+      addAddresses(((JniReferenceInstanceObject)instance).getDeallocationBacktrace(), addresses);
+    });
+    symbolizeAddresses(addresses);
+  }
+
+  private static void addAddresses(@Nullable NativeBacktrace backtrace, @NotNull TLongHashSet addresses) {
+    if (backtrace == null) {
+      return;
+    }
+    for (int i = 0; i < backtrace.getAddressesCount(); ++i) {
+      addresses.add(backtrace.getAddresses(i));
+    }
+  }
+
+  /**
+   * Symbolizes the addresses that have not been symbolized yet in one batch.
+   */
+  private void symbolizeAddresses(@NotNull TLongHashSet addresses) {
+    List<NativeCallStack.NativeFrame> unsymbolizedFrames = new ArrayList<>();
+    synchronized (myNativeFrameMap) {
+      addresses.forEach(address -> {
+        if (!myNativeFrameMap.containsKey(address)) {
+          unsymbolizedFrames.add(createUnsymbolizedFrame(address));
         }
+        return true;
+      });
+    }
+    if (unsymbolizedFrames.isEmpty()) {
+      return;
+    }
 
-        NativeCallStack.NativeFrame unsymbolizedFrame = NativeCallStack.NativeFrame.newBuilder()
-          .setAddress(address).setModuleName(module).setModuleOffset(offset).build();
-        NativeCallStack.NativeFrame symbolizedFrame = myStage.getStudioProfilers().getIdeServices().getNativeFrameSymbolizer()
-          .symbolize(myStage.getStudioProfilers().getSessionsManager().getSelectedSessionMetaData().getProcessAbi(), unsymbolizedFrame);
-        myNativeFrameMap.put(address, symbolizedFrame);
+    List<NativeCallStack.NativeFrame> symbolizedFrames = myStage.getStudioProfilers().getIdeServices().getNativeFrameSymbolizer()
+      .symbolize(myStage.getStudioProfilers().getSessionsManager().getSelectedSessionMetaData().getProcessAbi(), unsymbolizedFrames);
+    synchronized (myNativeFrameMap) {
+      for (int i = 0; i < unsymbolizedFrames.size(); ++i) {
+        myNativeFrameMap.put(unsymbolizedFrames.get(i).getAddress(), symbolizedFrames.get(i));
       }
+    }
+  }
 
-      builder.addFrames(myNativeFrameMap.get(address));
+  @NotNull
+  private NativeCallStack.NativeFrame createUnsymbolizedFrame(long address) {
+    String module = "";
+    long offset = 0;
+    Memory.MemoryMap.MemoryRegion region = getRegionByAddress(address);
+    if (region != null) {
+      module = region.getName();
+      // Adjust address to represent module offset.
+      offset = region.getFileOffset() + (address - region.getStartAddress());
     }
-    return builder.build();
+    return NativeCallStack.NativeFrame.newBuilder().setAddress(address).setModuleName(module).setModuleOffset(offset).build();
   }
 
   @Nullable
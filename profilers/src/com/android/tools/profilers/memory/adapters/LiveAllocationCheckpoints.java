@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.memory.adapters;
+
+import com.android.tools.profiler.proto.Memory.AllocationEvent;
+import com.google.common.annotations.VisibleForTesting;
+import gnu.trove.TIntIntHashMap;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Checkpoints of the Java instances that are alive at regular times of a live allocation session. The instances alive at any time can be
+ * computed by replaying the allocation events since the nearest checkpoint before it, instead of since the start of the session.
+ * <p>
+ * The allocation events of the instances alive at any checkpoint are kept once, in allocation order, and a checkpoint only holds a bit
+ * per event telling whether the instance is alive at its time. To bound the memory of long sessions, every other checkpoint is dropped and
+ * the interval between checkpoints doubles whenever there are more than the maximum number of checkpoints. The events that are no longer
+ * alive at any checkpoint are dropped at that point.
+ * <p>
+ * This class is not thread-safe: it is only used on the loading thread of {@link LiveAllocationCaptureObject}.
+ */
+final class LiveAllocationCheckpoints {
+  private static final long DEFAULT_INTERVAL_NS = TimeUnit.SECONDS.toNanos(10);
+  private static final int DEFAULT_MAX_CHECKPOINTS = 64;
+
+  private final long myOriginNs;
+  private final int myMaxCheckpoints;
+  private long myIntervalNs;
+  /**
+   * The allocation events of the instances alive at one of the checkpoints, in allocation order.
+   */
+  @NotNull private final List<AllocationEvent> myEvents = new ArrayList<>();
+  /**
+   * Index in {@link #myEvents} of the allocation event of each tag.
+   */
+  @NotNull private final TIntIntHashMap myEventIndices = new TIntIntHashMap();
+  /**
+   * The indices in {@link #myEvents} of the instances alive at each checkpoint.
+   */
+  @NotNull private final TreeMap<Long, BitSet> myCheckpoints = new TreeMap<>();
+
+  LiveAllocationCheckpoints(long originNs) {
+    this(originNs, DEFAULT_INTERVAL_NS, DEFAULT_MAX_CHECKPOINTS);
+  }
+
+  @VisibleForTesting
+  LiveAllocationCheckpoints(long originNs, long intervalNs, int maxCheckpoints) {
+    assert intervalNs > 0 && maxCheckpoints > 1;
+    myOriginNs = originNs;
+    myIntervalNs = intervalNs;
+    myMaxCheckpoints = maxCheckpoints;
+  }
+
+  /**
+   * @return the latest checkpoint at or before {@code timeNs}, or null if there is none. Its value holds the allocation events of the
+   * instances alive right before its key, in allocation order.
+   */
+  @Nullable
+  Map.Entry<Long, List<AllocationEvent>> getCheckpoint(long timeNs) {
+    Map.Entry<Long, BitSet> checkpoint = myCheckpoints.floorEntry(timeNs);
+    if (checkpoint == null) {
+      return null;
+    }
+    BitSet liveIndices = checkpoint.getValue();
+    List<AllocationEvent> liveEvents = new ArrayList<>(liveIndices.cardinality());
+    for (int i = liveIndices.nextSetBit(0); i >= 0; i = liveIndices.nextSetBit(i + 1)) {
+      liveEvents.add(myEvents.get(i));
+    }
+    return new AbstractMap.SimpleImmutableEntry<>(checkpoint.getKey(), liveEvents);
+  }
+
+  /**
+   * @return the first time after {@code timeNs} at which a checkpoint can be added.
+   */
+  long getNextCheckpointTime(long timeNs) {
+    if (timeNs < myOriginNs) {
+      return myOriginNs + myIntervalNs;
+    }
+    return myOriginNs + ((timeNs - myOriginNs) / myIntervalNs + 1) * myIntervalNs;
+  }
+
+  /**
+   * Adds a checkpoint, unless {@code timeNs} is no longer a checkpoint time because the interval has grown since it was returned by
+   * {@link #getNextCheckpointTime(long)}. Checkpoints are only added after the last one, which is always the case when the events are
+   * replayed from the nearest checkpoint.
+   *
+   * @param liveEvents the allocation events of the instances alive right before {@code timeNs}, in allocation order.
+   */
+  void addCheckpoint(long timeNs, @NotNull Collection<AllocationEvent> liveEvents) {
+    if (timeNs <= myOriginNs || (timeNs - myOriginNs) % myIntervalNs != 0 ||
+        (!myCheckpoints.isEmpty() && timeNs <= myCheckpoints.lastKey())) {
+      return;
+    }
+    BitSet liveIndices = new BitSet(myEvents.size() + liveEvents.size());
+    for (AllocationEvent event : liveEvents) {
+      liveIndices.set(getOrAddEventIndex(event));
+    }
+    myCheckpoints.put(timeNs, liveIndices);
+    if (myCheckpoints.size() > myMaxCheckpoints) {
+      myIntervalNs *= 2;
+      myCheckpoints.keySet().removeIf(checkpointNs -> (checkpointNs - myOriginNs) % myIntervalNs != 0);
+      removeUnusedEvents();
+    }
+  }
+
+  @VisibleForTesting
+  int getCheckpointCount() {
+    return myCheckpoints.size();
+  }
+
+  @VisibleForTesting
+  int getEventCount() {
+    return myEvents.size();
+  }
+
+  /**
+   * Returns the index of the given event in {@link #myEvents}, adding it if needed. The instances that were not alive at the previous
+   * checkpoint were allocated after it, so appending their events keeps {@link #myEvents} in allocation order.
+   */
+  private int getOrAddEventIndex(@NotNull AllocationEvent event) {
+    int tag = event.getAllocData().getTag();
+    if (myEventIndices.containsKey(tag)) {
+      int index = myEventIndices.get(tag);
+      // Tags of freed instances may be reused by later allocations.
+      if (myEvents.get(index).getTimestamp() == event.getTimestamp()) {
+        return index;
+      }
+    }
+    int index = myEvents.size();
+    myEvents.add(event);
+    myEventIndices.put(tag, index);
+    return index;
+  }
+
+  /**
+   * Drops the events of the instances that are not alive at any of the remaining checkpoints, and renumbers the remaining ones.
+   */
+  private void removeUnusedEvents() {
+    BitSet usedIndices = new BitSet(myEvents.size());
+    for (BitSet liveIndices : myCheckpoints.values()) {
+      usedIndices.or(liveIndices);
+    }
+    if (usedIndices.cardinality() == myEvents.size()) {
+      return;
+    }
+
+    int[] newIndices = new int[myEvents.size()];
+    List<AllocationEvent> usedEvents = new ArrayList<>(usedIndices.cardinality());
+    myEventIndices.clear();
+    for (int i = usedIndices.nextSetBit(0); i >= 0; i = usedIndices.nextSetBit(i + 1)) {
+      AllocationEvent event = myEvents.get(i);
+      newIndices[i] = usedEvents.size();
+      myEventIndices.put(event.getAllocData().getTag(), usedEvents.size());
+      usedEvents.add(event);
+    }
+    myEvents.clear();
+    myEvents.addAll(usedEvents);
+
+    for (Map.Entry<Long, BitSet> checkpoint : myCheckpoints.entrySet()) {
+      BitSet liveIndices = checkpoint.getValue();
+      BitSet renumbered = new BitSet(usedEvents.size());
+      for (int i = liveIndices.nextSetBit(0); i >= 0; i = liveIndices.nextSetBit(i + 1)) {
+        renumbered.set(newIndices[i]);
+      }
+      checkpoint.setValue(renumbered);
+    }
+  }
+}
@@ -85,6 +85,67 @@ public class CaptureNodeTest {
     assertThat(visualParent.getChildAt(0)).isEqualTo(childA);
   }
 
+  @Test
+  public void leafHasNoChildren() {
+    CaptureNode leaf = new CaptureNode(new StubCaptureNodeModel());
+    assertThat(leaf.getChildCount()).isEqualTo(0);
+    assertThat(leaf.getChildren()).isEmpty();
+    assertThat(leaf.getFirstChild()).isNull();
+
+    CaptureNode child = new CaptureNode(new StubCaptureNodeModel());
+    leaf.addChild(child);
+    assertThat(leaf.getChildren()).containsExactly(child);
+  }
+
+  @Test
+  public void filterTypeCanBeSet() {
+    CaptureNode node = new CaptureNode(new StubCaptureNodeModel());
+    assertThat(node.getFilterType()).isEqualTo(CaptureNode.FilterType.MATCH);
+    for (CaptureNode.FilterType type : CaptureNode.FilterType.values()) {
+      node.setFilterType(type);
+      assertThat(node.getFilterType()).isEqualTo(type);
+    }
+    node.setFilterType(CaptureNode.FilterType.UNMATCH);
+    assertThat(node.isUnmatched()).isTrue();
+  }
+
+  @Test
+  public void nodesSharingAStoreKeepTheirOwnValues() {
+    CaptureNodeStore store = new CaptureNodeStore(1);
+    List<CaptureNode> nodes = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      CaptureNode node = new CaptureNode(new StubCaptureNodeModel(), store);
+      node.setStartGlobal(i);
+      node.setEndGlobal(i + 100);
+      node.setStartThread(i + 10);
+      node.setEndThread(i + 20);
+      node.setDepth(i);
+      nodes.add(node);
+    }
+    store.trimToSize();
+    assertThat(store.size()).isEqualTo(10);
+
+    CaptureNode node = nodes.get(7);
+    node.setClockType(ClockType.THREAD);
+    node.setFilterType(CaptureNode.FilterType.EXACT_MATCH);
+    assertThat(node.getStart()).isEqualTo(17);
+    assertThat(node.getEnd()).isEqualTo(27);
+    assertThat(node.getFilterType()).isEqualTo(CaptureNode.FilterType.EXACT_MATCH);
+    // The clock type and the filter type share the flags of the node.
+    node.setFilterType(CaptureNode.FilterType.UNMATCH);
+    assertThat(node.getClockType()).isEqualTo(ClockType.THREAD);
+    node.setClockType(ClockType.GLOBAL);
+    assertThat(node.getFilterType()).isEqualTo(CaptureNode.FilterType.UNMATCH);
+    assertThat(node.getStart()).isEqualTo(7);
+
+    for (int i = 0; i < 10; i++) {
+      assertThat(nodes.get(i).getDepth()).isEqualTo(i);
+      assertThat(nodes.get(i).getEndGlobal()).isEqualTo(i + 100);
+    }
+    assertThat(nodes.get(6).getClockType()).isEqualTo(ClockType.GLOBAL);
+    assertThat(nodes.get(6).getFilterType()).isEqualTo(CaptureNode.FilterType.MATCH);
+  }
+
   @Test
   public void testFilter() {
     CaptureNode node = createFilterTestTree();
@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.cpu;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.Test;
+
+public class CaptureTreesTest {
+  @Test
+  public void resultFollowsTheOrderOfThreads() {
+    List<Integer> threadIds = IntStream.range(0, 100).map(i -> 100 - i).boxed().collect(Collectors.toList());
+    Map<CpuThreadInfo, CaptureNode> trees = CaptureTrees.buildInParallel(threadIds, CaptureTreesTest::createTree, CaptureTreesTest::createInfo);
+
+    assertThat(trees.keySet().stream().map(CpuThreadInfo::getId).collect(Collectors.toList())).containsExactlyElementsIn(threadIds)
+      .inOrder();
+    trees.forEach((info, tree) -> assertThat(tree.getStartGlobal()).isEqualTo(info.getId()));
+  }
+
+  @Test
+  public void threadsWithoutTreeAreSkipped() {
+    List<Integer> threadIds = new ArrayList<>();
+    for (int i = 0; i < 10; ++i) {
+      threadIds.add(i);
+    }
+    Map<CpuThreadInfo, CaptureNode> trees =
+      CaptureTrees.buildInParallel(threadIds, id -> id % 2 == 0 ? createTree(id) : null, CaptureTreesTest::createInfo);
+
+    assertThat(trees.keySet().stream().map(CpuThreadInfo::getId).collect(Collectors.toList())).containsExactly(0, 2, 4, 6, 8).inOrder();
+  }
+
+  private static CaptureNode createTree(int id) {
+    CaptureNode root = new CaptureNode(new StubCaptureNodeModel());
+    root.setStartGlobal(id);
+    root.addChild(new CaptureNode(new StubCaptureNodeModel()));
+    return root;
+  }
+
+  private static CpuThreadInfo createInfo(int id) {
+    return new CpuThreadInfo(id, "Thread " + id);
+  }
+}
@@ -16,7 +16,7 @@
 package com.android.tools.profilers.cpu.perfetto
 
 import com.android.tools.profilers.cpu.CpuProfilerTestUtils
-import com.android.tools.profilers.cpu.atrace.PerfettoPacketDBSorter
+import com.android.tools.profilers.cpu.atrace.PerfettoPacketSorter
 import com.google.common.truth.Truth.assertThat
 import org.junit.Test
 import perfetto.protos.PerfettoTrace
@@ -26,7 +26,7 @@ class PerfettoSorterTest {
 
   @Test
   fun formattedLinesAreReturnedOnNext() {
-    val sorter = PerfettoPacketDBSorter()
+    val sorter = PerfettoPacketSorter()
     sorter.addLine(0, "Some line")
     assertThat(sorter.hasNext()).isFalse()
     sorter.resetForIterator()
@@ -36,7 +36,7 @@ class PerfettoSorterTest {
 
   @Test
   fun hasNextCanBeCalledMultipleTimes() {
-    val sorter = PerfettoPacketDBSorter()
+    val sorter = PerfettoPacketSorter()
     sorter.addLine(0, "Some Line")
     assertThat(sorter.hasNext()).isFalse()
     sorter.resetForIterator()
@@ -45,4 +45,51 @@ class PerfettoSorterTest {
     assertThat(sorter.hasNext()).isTrue()
     assertThat(sorter.next()).isEqualTo("Some Line")
   }
+
+  @Test
+  fun linesAreReturnedSortedByTimestamp() {
+    val sorter = PerfettoPacketSorter()
+    sorter.addLine(30, "Third")
+    sorter.addLine(10, "First")
+    sorter.addLine(20, "Second")
+    sorter.resetForIterator()
+    assertThat(sorter.asSequence().toList()).containsExactly("First", "Second", "Third").inOrder()
+    sorter.close()
+  }
+
+  @Test
+  fun linesSpilledToDiskAreMergedInOrder() {
+    // A tiny run size spills every few lines to disk, so the lines are merged back from many runs.
+    val sorter = PerfettoPacketSorter(256)
+    val timestamps = (0 until 1000L).map { (it * 7919) % 1000 }
+    timestamps.forEach { sorter.addLine(it, "Line $it") }
+    sorter.resetForIterator()
+    assertThat(sorter.asSequence().toList()).containsExactlyElementsIn((0 until 1000L).map { "Line $it" }).inOrder()
+    sorter.close()
+    assertThat(sorter.hasNext()).isFalse()
+  }
+
+  @Test
+  fun linesWithTheSameTimestampKeepTheirOrder() {
+    val sorter = PerfettoPacketSorter(256)
+    for (i in 0 until 100) {
+      sorter.addLine(i % 2L, "Line $i")
+    }
+    sorter.resetForIterator()
+    val expected = (0 until 100 step 2).map { "Line $it" } + (1 until 100 step 2).map { "Line $it" }
+    assertThat(sorter.asSequence().toList()).containsExactlyElementsIn(expected).inOrder()
+    sorter.close()
+  }
+
+  @Test
+  fun nonAsciiLinesSurviveSpilling() {
+    val sorter = PerfettoPacketSorter(1)
+    sorter.addLine(2, "tracing_mark_write: B|1|\u00e9v\u00e9nement")
+    sorter.addLine(1, "tracing_mark_write: B|1|\u6d4b\u8bd5")
+    sorter.resetForIterator()
+    assertThat(sorter.next()).isEqualTo("tracing_mark_write: B|1|\u6d4b\u8bd5")
+    assertThat(sorter.next()).isEqualTo("tracing_mark_write: B|1|\u00e9v\u00e9nement")
+    assertThat(sorter.hasNext()).isFalse()
+    sorter.close()
+  }
 }
@@ -21,11 +21,18 @@ import com.android.tools.idea.protobuf.ByteString;
 import com.android.tools.profilers.cpu.CaptureNode;
 import com.android.tools.profilers.cpu.CpuCapture;
 import com.android.tools.profilers.cpu.CpuThreadInfo;
+import com.android.tools.profilers.cpu.nodemodel.CaptureNodeModel;
 import com.android.tools.profilers.cpu.nodemodel.CppFunctionModel;
 import com.google.common.collect.Lists;
 import com.intellij.openapi.util.io.FileUtil;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -125,6 +132,28 @@ public class SimpleperfTraceParserTest {
     assertEquals(2, jvmtiAgentCount);
   }
 
+  @Test
+  public void nodesOfTheSameFunctionShareTheirModel() throws IOException {
+    myParser.parse(myTraceFile, 0);
+    Map<String, CaptureNodeModel> cppModels = new HashMap<>();
+    Set<CaptureNodeModel> models = Collections.newSetFromMap(new IdentityHashMap<>());
+    int nodeCount = 0;
+    Deque<CaptureNode> stack = new ArrayDeque<>(myParser.getCaptureTrees().values());
+    while (!stack.isEmpty()) {
+      CaptureNode node = stack.pop();
+      stack.addAll(node.getChildren());
+      models.add(node.getData());
+      nodeCount++;
+      if (node.getData() instanceof CppFunctionModel) {
+        CppFunctionModel model = (CppFunctionModel)node.getData();
+        CaptureNodeModel existing = cppModels.putIfAbsent(model.getFileName() + model.getFullName() + model.getVAddress(), model);
+        assertTrue(existing == null || existing == model);
+      }
+    }
+    // Functions are called from many samples, so there are a lot more nodes than models.
+    assertTrue(models.size() < nodeCount);
+  }
+
   @Test
   public void nodeDepthsShouldBeCoherent() throws IOException {
     myParser.parse(myTraceFile, 0);
@@ -55,4 +55,17 @@ public class ClassDbTest {
     assertThat(db.getDescendantClasses(classId4)).containsExactly(entry4, entry5);
     assertThat(db.getDescendantClasses(classId5)).containsExactly(entry5);
   }
+
+  @Test
+  public void testGetOrRegisterClassSharesEntries() {
+    ClassDb db = new ClassDb();
+    ClassDb.ClassEntry entry = db.getOrRegisterClass(1, INVALID_CLASS_ID, "com.example.Class1");
+    assertThat(db.getOrRegisterClass(1, INVALID_CLASS_ID, "com.example.Class1")).isSameAs(entry);
+    assertThat(db.getEntry(1)).isSameAs(entry);
+
+    // registerClass still replaces the entry.
+    ClassDb.ClassEntry replacedEntry = db.registerClass(1, "com.example.Class1");
+    assertThat(replacedEntry).isNotSameAs(entry);
+    assertThat(db.getOrRegisterClass(1, INVALID_CLASS_ID, "com.example.Class1")).isSameAs(replacedEntry);
+  }
 }
@@ -16,10 +16,12 @@
 package com.android.tools.profilers.memory.adapters;
 
 import static com.android.tools.profilers.memory.MemoryProfilerTestUtils.findChildClassSetWithName;
+import static com.android.tools.profilers.memory.adapters.MemoryObject.INVALID_VALUE;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import com.android.testutils.TestUtils;
@@ -48,7 +50,9 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.stream.Collectors;
 import org.jetbrains.annotations.NotNull;
@@ -139,6 +143,10 @@ public class HeapDumpCaptureObjectTest {
     assertEquals(field0.getAsInstance(), instance1);
     ReferenceObject reference1 = instance1.getReferences().get(0);
     assertEquals(reference1.getReferenceInstance(), instance0);
+
+    // Instances share the entry of their class with the class object.
+    assertSame(capture.getClassDb().getEntry(instance0.getClassEntry().getClassId()), instance0.getClassEntry());
+    assertSame(capture.getClassDb().getEntry(instance1.getClassEntry().getClassId()), instance1.getClassEntry());
   }
 
   @Test
@@ -178,6 +186,72 @@ public class HeapDumpCaptureObjectTest {
     assertNotNull(defaultHeap);
   }
 
+  @Test
+  public void testRetainedSizesAreComputedAfterLoading() throws Exception {
+    SnapshotBuilder snapshotBuilder = new SnapshotBuilder(2, 0, 0)
+      .addReferences(1, 2)
+      .addRoot(1);
+    myTransportService.addFile(Long.toString(3), ByteString.copyFrom(snapshotBuilder.getByteBuffer()));
+    HeapDumpInfo dumpInfo = HeapDumpInfo.newBuilder().setStartTime(3).setEndTime(8).build();
+
+    HeapDumpCaptureObject syncCapture =
+      new HeapDumpCaptureObject(new ProfilerClient(myGrpcChannel.getName()), ProfilersTestData.SESSION_DATA,
+                                dumpInfo, null, myIdeProfilerServices.getFeatureTracker(), myStage);
+    syncCapture.load(null, null);
+    assertTrue(syncCapture.hasRetainedSizes());
+    long expectedRetainedSize = getHeap(syncCapture, "testHeap").getTotalRetainedSize();
+    assertTrue(expectedRetainedSize > 0);
+
+    HeapDumpCaptureObject capture =
+      new HeapDumpCaptureObject(new ProfilerClient(myGrpcChannel.getName()), ProfilersTestData.SESSION_DATA,
+                                dumpInfo, null, myIdeProfilerServices.getFeatureTracker(), myStage);
+    // Hold the dominator computation until the state before it has been checked.
+    CountDownLatch blocker = new CountDownLatch(1);
+    capture.getDominatorExecutor().execute(() -> {
+      try {
+        blocker.await();
+      }
+      catch (InterruptedException ignored) {
+      }
+    });
+    Queue<Runnable> joinerTasks = new ConcurrentLinkedQueue<>();
+    capture.load(null, joinerTasks::add);
+    // The heap is available before the dominators are computed, with unknown retained sizes.
+    assertTrue(capture.isDoneLoading());
+    assertFalse(capture.isError());
+    HeapSet testHeap = getHeap(capture, "testHeap");
+    assertEquals(6, testHeap.getInstancesCount());
+    assertEquals(0, testHeap.getTotalRetainedSize());
+    // Depths and retained sizes are unknown until then, also for the fields that are created in the meantime.
+    InstanceObject referrer = testHeap.getInstancesStream()
+      .filter(instance -> instance.getFields().stream().anyMatch(f -> f.getAsInstance() != null))
+      .findFirst().get();
+    FieldObject field = referrer.getFields().stream().filter(f -> f.getAsInstance() != null).findFirst().get();
+    assertEquals(INVALID_VALUE, referrer.getDepth());
+    assertEquals(INVALID_VALUE, field.getDepth());
+    assertEquals(INVALID_VALUE, field.getRetainedSize());
+
+    assertNotNull(capture.getProgressText());
+
+    // Wait for the dominators to be computed on their executor, and for the heaps to be rebuilt on the instance filter executor, then
+    // publish the results.
+    blocker.countDown();
+    CountDownLatch dominatorsLatch = new CountDownLatch(1);
+    capture.getDominatorExecutor().execute(dominatorsLatch::countDown);
+    dominatorsLatch.await();
+    assertTrue(capture.hasRetainedSizes());
+    assertNull(capture.getProgressText());
+    CountDownLatch rebuildLatch = new CountDownLatch(1);
+    capture.getInstanceFilterExecutor().execute(rebuildLatch::countDown);
+    rebuildLatch.await();
+    joinerTasks.forEach(Runnable::run);
+    assertEquals(6, testHeap.getInstancesCount());
+    assertEquals(expectedRetainedSize, testHeap.getTotalRetainedSize());
+    assertTrue(referrer.getDepth() >= 0);
+    assertTrue(field.getDepth() >= 0);
+    assertTrue(field.getRetainedSize() >= 0);
+  }
+
   @Test
   public void testLoadingFailure() throws Exception {
     HeapDumpInfo dumpInfo = HeapDumpInfo.newBuilder().setStartTime(3).setEndTime(8).build();
@@ -241,6 +315,13 @@ public class HeapDumpCaptureObjectTest {
     Truth.assertThat(capture.getInstances().count()).isEqualTo(allInstanceCount);
   }
 
+  @NotNull
+  private static HeapSet getHeap(@NotNull HeapDumpCaptureObject capture, @NotNull String name) {
+    HeapSet heap = capture.getHeapSets().stream().filter(set -> name.equals(set.getName())).findFirst().orElse(null);
+    assertNotNull(heap);
+    return heap;
+  }
+
   private static void verifyInstance(@NotNull InstanceObject instance,
                                      @NotNull String valueText,
                                      int depth,
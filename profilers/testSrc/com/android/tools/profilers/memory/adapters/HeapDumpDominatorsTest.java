@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.memory.adapters;
+
+import static com.android.tools.profilers.memory.adapters.MemoryObject.INVALID_VALUE;
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.android.tools.perflib.heap.Instance;
+import com.android.tools.perflib.heap.Snapshot;
+import com.android.tools.perflib.heap.SnapshotBuilder;
+import com.android.tools.perflib.heap.io.InMemoryBuffer;
+import com.android.tools.proguard.ProguardMap;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+public class HeapDumpDominatorsTest {
+
+  @Test
+  public void testDiamondIsDominatedByItsTop() {
+    // 1 -> 2 -> 4, 1 -> 3 -> 4, 4 -> 5 and an unreachable 6 -> 5.
+    Snapshot snapshot = createSnapshot(new SnapshotBuilder(6, 0, 0)
+                                         .addReferences(1, 2, 3)
+                                         .addReferences(2, 4)
+                                         .addReferences(3, 4)
+                                         .addReferences(4, 5)
+                                         .addReferences(6, 5)
+                                         .addRoot(1));
+    HeapDumpDominators dominators = createDominators(snapshot);
+    Instance[] instances = new Instance[7];
+    for (int id = 1; id <= 6; id++) {
+      instances[id] = snapshot.findInstance(id);
+      assertEquals(INVALID_VALUE, dominators.getDepth(instances[id]));
+      assertEquals(INVALID_VALUE, dominators.getRetainedSize(instances[id]));
+    }
+
+    List<HeapDumpDominators.Stage> stages = new ArrayList<>();
+    dominators.compute((stage, fraction) -> {
+      if (stages.isEmpty() || stages.get(stages.size() - 1) != stage) {
+        stages.add(stage);
+      }
+    });
+    assertThat(stages).containsExactly(HeapDumpDominators.Stage.REFERENCES, HeapDumpDominators.Stage.DEPTHS,
+                                       HeapDumpDominators.Stage.DOMINATORS, HeapDumpDominators.Stage.RETAINED_SIZES,
+                                       HeapDumpDominators.Stage.DONE).inOrder();
+    assertTrue(dominators.isDone());
+    assertNull(dominators.getProgressText());
+
+    assertEquals(0, dominators.getDepth(instances[1]));
+    assertEquals(1, dominators.getDepth(instances[2]));
+    assertEquals(1, dominators.getDepth(instances[3]));
+    assertEquals(2, dominators.getDepth(instances[4]));
+    assertEquals(3, dominators.getDepth(instances[5]));
+    assertEquals(Integer.MAX_VALUE, dominators.getDepth(instances[6]));
+
+    // Neither 2 nor 3 dominates 4, so their retained sizes are their own.
+    assertEquals(instances[2].getSize(), dominators.getRetainedSize(instances[2]));
+    assertEquals(instances[3].getSize(), dominators.getRetainedSize(instances[3]));
+    assertEquals(instances[4].getSize() + instances[5].getSize(), dominators.getRetainedSize(instances[4]));
+    long total = 0;
+    for (int id = 1; id <= 5; id++) {
+      total += instances[id].getSize();
+    }
+    assertEquals(total, dominators.getRetainedSize(instances[1]));
+    assertEquals(0, dominators.getRetainedSize(instances[6]));
+  }
+
+  @Test
+  public void testDepthsArePublishedBeforeRetainedSizes() {
+    Snapshot snapshot = createSnapshot(new SnapshotBuilder(3, 0, 0)
+                                         .addReferences(1, 2)
+                                         .addReferences(2, 3)
+                                         .addRoot(1));
+    HeapDumpDominators dominators = createDominators(snapshot);
+    Instance first = snapshot.findInstance(1);
+    Instance last = snapshot.findInstance(3);
+    List<String> checks = new ArrayList<>();
+    dominators.compute((stage, fraction) -> {
+      if (stage == HeapDumpDominators.Stage.DOMINATORS && fraction == 0) {
+        assertTrue(dominators.hasDepths());
+        assertEquals(2, dominators.getDepth(last));
+        assertEquals(INVALID_VALUE, dominators.getRetainedSize(first));
+        checks.add("depths");
+      }
+      else if (stage == HeapDumpDominators.Stage.RETAINED_SIZES && fraction == 0) {
+        assertFalse(dominators.isDone());
+        // The deepest instance retains only itself, so it is known right away, unlike the instances that dominate it.
+        assertEquals(last.getSize(), dominators.getRetainedSize(last));
+        assertEquals(INVALID_VALUE, dominators.getRetainedSize(first));
+        checks.add("retained sizes");
+      }
+    });
+    assertThat(checks).containsExactly("depths", "retained sizes").inOrder();
+    assertEquals(first.getSize() + snapshot.findInstance(2).getSize() + last.getSize(), dominators.getRetainedSize(first));
+  }
+
+  @NotNull
+  private static HeapDumpDominators createDominators(@NotNull Snapshot snapshot) {
+    ClassDb.ClassEntry classEntry = new ClassDb().registerClass(1, "Node");
+    HeapDumpInstanceIndex index = new HeapDumpInstanceIndex(snapshot, instance -> classEntry, instance -> {
+      throw new AssertionError("The dominators should not create instance objects");
+    });
+    return new HeapDumpDominators(snapshot, index);
+  }
+
+  @NotNull
+  private static Snapshot createSnapshot(@NotNull SnapshotBuilder builder) {
+    return Snapshot.createSnapshot(new InMemoryBuffer(ByteBuffer.wrap(builder.getByteBuffer())), new ProguardMap(),
+                                   Collections.emptyList());
+  }
+}
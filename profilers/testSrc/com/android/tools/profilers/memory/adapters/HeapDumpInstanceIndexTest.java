@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.memory.adapters;
+
+import static com.android.tools.profilers.memory.MemoryProfilerTestUtils.findChildClassSetWithName;
+import static com.android.tools.profilers.memory.adapters.MemoryObject.INVALID_VALUE;
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertEquals;
+
+import com.android.tools.perflib.heap.ClassObj;
+import com.android.tools.perflib.heap.Instance;
+import com.android.tools.perflib.heap.Snapshot;
+import com.android.tools.perflib.heap.SnapshotBuilder;
+import com.android.tools.perflib.heap.io.InMemoryBuffer;
+import com.android.tools.profilers.memory.MemoryProfilerConfiguration;
+import com.android.tools.proguard.ProguardMap;
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HeapDumpInstanceIndexTest {
+  private final FakeCaptureObject myCaptureObject = new FakeCaptureObject.Builder().build();
+  private final ClassDb myClassDb = new ClassDb();
+  private final ClassDb.ClassEntry myOddEntry = myClassDb.registerClass(1001, "com.example.Odd");
+  private final ClassDb.ClassEntry myEvenEntry = myClassDb.registerClass(1002, "com.example.Even");
+  private final ClassDb.ClassEntry myClassEntry = myClassDb.registerClass(1003, ClassDb.JAVA_LANG_CLASS);
+
+  private Snapshot mySnapshot;
+  private HeapDumpInstanceIndex myIndex;
+
+  @Before
+  public void setUp() {
+    SnapshotBuilder builder = new SnapshotBuilder(6, 0, 0).addRoot(1);
+    mySnapshot = Snapshot.createSnapshot(new InMemoryBuffer(ByteBuffer.wrap(builder.getByteBuffer())), new ProguardMap(),
+                                         Collections.emptyList());
+    myIndex = new HeapDumpInstanceIndex(mySnapshot, this::getClassEntry, this::createInstanceObject);
+  }
+
+  @Test
+  public void testGroupsAddUpTheColumnsOfEachClass() {
+    List<InstanceGroup> groups = getGroups(myIndex.createGroups(null, node -> 10));
+    InstanceGroup odd = findGroup(groups, myOddEntry);
+    assertEquals(3, odd.getCount());
+    assertEquals(getShallowSize(1) + getShallowSize(3) + getShallowSize(5), odd.getTotalShallowSize());
+    assertEquals(30, odd.getTotalRetainedSize());
+    assertThat(getNames(odd)).containsExactly("1", "3", "5").inOrder();
+
+    InstanceGroup even = findGroup(groups, myEvenEntry);
+    assertEquals(3, even.getCount());
+    assertEquals(getShallowSize(2) + getShallowSize(4) + getShallowSize(6), even.getTotalShallowSize());
+  }
+
+  @Test
+  public void testSelectionLimitsTheGroupsAndTheirInstances() {
+    BitSet selection = new BitSet();
+    selection.set(myIndex.getNode(1));
+    selection.set(myIndex.getNode(3));
+    List<InstanceGroup> groups = getGroups(myIndex.createGroups(selection, node -> INVALID_VALUE));
+    assertThat(groups).hasSize(1);
+
+    InstanceGroup odd = groups.get(0);
+    assertEquals(myOddEntry, odd.getClassEntry());
+    assertEquals(2, odd.getCount());
+    // Unknown retained sizes are not added up.
+    assertEquals(0, odd.getTotalRetainedSize());
+    assertThat(getNames(odd)).containsExactly("1", "3").inOrder();
+  }
+
+  @Test
+  public void testHeapSetClassifiesAndRegroupsGroups() {
+    int heapId = mySnapshot.findInstance(1).getHeap().getId();
+    HeapSet heapSet = new HeapSet(myCaptureObject, "default", heapId);
+    myIndex.createGroups(null, node -> 10).get(heapId).forEach(heapSet::addDeltaInstanceGroup);
+
+    ClassSet oddSet = findChildClassSetWithName(heapSet, myOddEntry.getClassName());
+    assertEquals(3, oddSet.getDeltaAllocationCount());
+    assertEquals(30, oddSet.getTotalRetainedSize());
+    assertThat(oddSet.getInstancesStream().map(InstanceObject::getName).collect(Collectors.toList())).containsExactly("1", "3", "5");
+
+    // Regrouping moves the groups rather than their instances.
+    heapSet.setClassGrouping(MemoryProfilerConfiguration.ClassGrouping.ARRANGE_BY_PACKAGE);
+    ClassifierSet comPackage = heapSet.getChildrenClassifierSets().stream().filter(set -> "com".equals(set.getName())).findFirst().get();
+    assertEquals(6, comPackage.getDeltaAllocationCount());
+    assertEquals(getShallowSize(1) + getShallowSize(2) + getShallowSize(3) + getShallowSize(4) + getShallowSize(5) + getShallowSize(6),
+                 comPackage.getTotalShallowSize());
+  }
+
+  @NotNull
+  private ClassDb.ClassEntry getClassEntry(@NotNull Instance instance) {
+    if (instance instanceof ClassObj) {
+      return myClassEntry;
+    }
+    return instance.getId() % 2 == 1 ? myOddEntry : myEvenEntry;
+  }
+
+  @NotNull
+  private InstanceObject createInstanceObject(@NotNull Instance instance) {
+    ClassDb.ClassEntry classEntry = getClassEntry(instance);
+    return new FakeInstanceObject.Builder(myCaptureObject, classEntry.getClassId(), classEntry.getClassName())
+      .setName(Long.toString(instance.getId()))
+      .build();
+  }
+
+  private long getShallowSize(long id) {
+    return mySnapshot.findInstance(id).getSize();
+  }
+
+  @NotNull
+  private static List<InstanceGroup> getGroups(@NotNull Map<Integer, List<InstanceGroup>> groups) {
+    return groups.values().stream()
+      .flatMap(List::stream)
+      .filter(group -> !ClassDb.JAVA_LANG_CLASS.equals(group.getClassEntry().getClassName()))
+      .collect(Collectors.toList());
+  }
+
+  @NotNull
+  private static InstanceGroup findGroup(@NotNull List<InstanceGroup> groups, @NotNull ClassDb.ClassEntry classEntry) {
+    List<InstanceGroup> matches = groups.stream().filter(group -> group.getClassEntry() == classEntry).collect(Collectors.toList());
+    assertThat(matches).hasSize(1);
+    return matches.get(0);
+  }
+
+  @NotNull
+  private static List<String> getNames(@NotNull InstanceGroup group) {
+    return group.createInstances().map(InstanceObject::getName).collect(Collectors.toList());
+  }
+}
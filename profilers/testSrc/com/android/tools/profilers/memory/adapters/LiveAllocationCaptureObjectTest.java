@@ -42,6 +42,7 @@ import com.android.tools.profilers.memory.MemoryProfilerConfiguration;
 import com.android.tools.profilers.memory.MemoryProfilerStage;
 import com.android.tools.profilers.stacktrace.NativeFrameSymbolizer;
 import com.google.common.util.concurrent.MoreExecutors;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
@@ -704,6 +705,38 @@ public class LiveAllocationCaptureObjectTest {
       verifyClassifierResult(heapSet, expected_0_to_4, 0);
     }
 
+    @Test
+    public void testNativeFramesAreSymbolizedInOneBatchWhenLoading() throws Exception {
+      List<Integer> batchSizes = new ArrayList<>();
+      myIdeProfilerServices.setNativeFrameSymbolizer(new NativeFrameSymbolizer() {
+        @NotNull
+        @Override
+        public Memory.NativeCallStack.NativeFrame symbolize(String abi, Memory.NativeCallStack.NativeFrame unsymbolizedFrame) {
+          return FAKE_SYMBOLIZER.symbolize(abi, unsymbolizedFrame);
+        }
+
+        @NotNull
+        @Override
+        public List<Memory.NativeCallStack.NativeFrame> symbolize(String abi,
+                                                                   @NotNull List<Memory.NativeCallStack.NativeFrame> unsymbolizedFrames) {
+          batchSizes.add(unsymbolizedFrames.size());
+          return NativeFrameSymbolizer.super.symbolize(abi, unsymbolizedFrames);
+        }
+      });
+      LiveAllocationCaptureObject capture = new LiveAllocationCaptureObject(myProfilerClient,
+                                                                            ProfilersTestData.SESSION_DATA,
+                                                                            CAPTURE_START_TIME,
+                                                                            LOAD_SERVICE,
+                                                                            myStage);
+      HeapSet heapSet = capture.getHeapSet(JNI_HEAP_ID);
+      capture.load(new Range(CAPTURE_START_TIME, CAPTURE_START_TIME + TimeUnit.SECONDS.toMicros(4)), LOAD_JOINER);
+      assertThat(batchSizes).hasSize(1);
+
+      // Grouping by call stack resolves the backtraces from the frames symbolized during the load.
+      heapSet.setClassGrouping(MemoryProfilerConfiguration.ClassGrouping.ARRANGE_BY_CALLSTACK);
+      assertThat(heapSet.getChildrenClassifierSets()).isNotEmpty();
+      assertThat(batchSizes).hasSize(1);
+    }
 
     @Test
     public void testSelectionWithJaveMethodFilter() throws Exception {
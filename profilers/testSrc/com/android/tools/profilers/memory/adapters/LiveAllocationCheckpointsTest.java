@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.memory.adapters;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.android.tools.profiler.proto.Memory.AllocationEvent;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+public class LiveAllocationCheckpointsTest {
+  @Test
+  public void testCheckpointTimes() {
+    LiveAllocationCheckpoints checkpoints = new LiveAllocationCheckpoints(100, 10, 4);
+    assertThat(checkpoints.getNextCheckpointTime(Long.MIN_VALUE)).isEqualTo(110);
+    assertThat(checkpoints.getNextCheckpointTime(100)).isEqualTo(110);
+    assertThat(checkpoints.getNextCheckpointTime(109)).isEqualTo(110);
+    assertThat(checkpoints.getNextCheckpointTime(110)).isEqualTo(120);
+  }
+
+  @Test
+  public void testNearestCheckpointIsReturned() {
+    LiveAllocationCheckpoints checkpoints = new LiveAllocationCheckpoints(0, 10, 4);
+    AllocationEvent first = allocation(1, 5);
+    AllocationEvent second = allocation(2, 15);
+    checkpoints.addCheckpoint(10, Collections.singletonList(first));
+    checkpoints.addCheckpoint(20, Arrays.asList(first, second));
+    // Not a checkpoint time.
+    checkpoints.addCheckpoint(25, Collections.emptyList());
+
+    assertThat(checkpoints.getCheckpoint(9)).isNull();
+    Map.Entry<Long, List<AllocationEvent>> checkpoint = checkpoints.getCheckpoint(19);
+    assertThat(checkpoint.getKey()).isEqualTo(10);
+    assertThat(checkpoint.getValue()).containsExactly(first);
+    checkpoint = checkpoints.getCheckpoint(100);
+    assertThat(checkpoint.getKey()).isEqualTo(20);
+    assertThat(checkpoint.getValue()).containsExactly(first, second).inOrder();
+  }
+
+  @Test
+  public void testIntervalGrowsWhenThereAreTooManyCheckpoints() {
+    LiveAllocationCheckpoints checkpoints = new LiveAllocationCheckpoints(0, 10, 4);
+    for (long timeNs = 10; timeNs <= 50; timeNs += 10) {
+      checkpoints.addCheckpoint(timeNs, Collections.emptyList());
+    }
+    // Only the checkpoints at multiples of the doubled interval are kept.
+    assertThat(checkpoints.getCheckpointCount()).isEqualTo(2);
+    assertThat(checkpoints.getCheckpoint(39).getKey()).isEqualTo(20);
+    assertThat(checkpoints.getCheckpoint(50).getKey()).isEqualTo(40);
+    assertThat(checkpoints.getNextCheckpointTime(40)).isEqualTo(60);
+    checkpoints.addCheckpoint(50, Collections.emptyList());
+    assertThat(checkpoints.getCheckpointCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void testEventsAreSharedBetweenCheckpoints() {
+    LiveAllocationCheckpoints checkpoints = new LiveAllocationCheckpoints(0, 10, 2);
+    AllocationEvent first = allocation(1, 5);
+    AllocationEvent second = allocation(2, 15);
+    AllocationEvent third = allocation(3, 25);
+    // The same allocation, replayed by another query.
+    checkpoints.addCheckpoint(10, Collections.singletonList(first));
+    checkpoints.addCheckpoint(20, Arrays.asList(first.toBuilder().build(), second));
+    assertThat(checkpoints.getEventCount()).isEqualTo(2);
+    // A checkpoint can't be added before the last one.
+    checkpoints.addCheckpoint(10, Collections.singletonList(third));
+    assertThat(checkpoints.getCheckpoint(15).getValue()).containsExactly(first);
+
+    // Dropping the checkpoint at 10 and 30 drops the events only alive then.
+    checkpoints.addCheckpoint(30, Arrays.asList(second, third));
+    assertThat(checkpoints.getCheckpointCount()).isEqualTo(1);
+    assertThat(checkpoints.getEventCount()).isEqualTo(2);
+    assertThat(checkpoints.getCheckpoint(30).getValue()).containsExactly(first, second).inOrder();
+    assertThat(checkpoints.getCheckpoint(30).getKey()).isEqualTo(20);
+
+    // A reused tag is a different allocation.
+    AllocationEvent reused = allocation(1, 35);
+    checkpoints.addCheckpoint(40, Arrays.asList(second, reused));
+    assertThat(checkpoints.getCheckpoint(40).getValue()).containsExactly(second, reused).inOrder();
+    assertThat(checkpoints.getCheckpoint(39).getValue()).containsExactly(first, second).inOrder();
+  }
+
+  private static AllocationEvent allocation(int tag, long timestamp) {
+    return AllocationEvent.newBuilder()
+      .setAllocData(AllocationEvent.Allocation.newBuilder().setTag(tag))
+      .setTimestamp(timestamp)
+      .build();
+  }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.performance
+
+import com.android.testutils.TestUtils
+import com.android.tools.perflogger.Benchmark
+import com.android.tools.profilers.cpu.TraceParser
+import com.android.tools.profilers.cpu.art.ArtTraceParser
+import com.android.tools.profilers.cpu.atrace.AtraceParser
+import com.android.tools.profilers.cpu.simpleperf.SimpleperfTraceParser
+import org.junit.Test
+import java.io.File
+import java.util.concurrent.Callable
+import java.util.concurrent.ForkJoinPool
+
+/**
+ * Measures the time it takes to parse the test traces of each profiler type, with the per-thread call trees built sequentially and in
+ * parallel. Parallel streams run on the fork-join pool that the parsing is submitted to, so a pool of parallelism 1 gives the sequential
+ * baseline.
+ */
+class CpuTraceParsePerformanceTest {
+  companion object {
+    private const val CPU_TRACES_DIR = "tools/adt/idea/profilers/testData/cputraces/"
+    private const val WARM_UP_RUNS = 3
+    private const val RUNS = 10
+    // Process id of the app in atrace.ctrace.
+    private const val ATRACE_PID = 2652
+    // Process id of the app in perfetto.trace.
+    private const val PERFETTO_PID = 709
+  }
+
+  private val benchmark = Benchmark.Builder("CPU Trace Parse Time (Millis)").setProject("Android Studio Profilers").build()
+
+  @Test
+  fun runPerformanceTest() {
+    measure("Art", "valid_trace.trace") { ArtTraceParser() }
+    measure("Simpleperf", "simpleperf.trace") { SimpleperfTraceParser() }
+    measure("Atrace", "atrace.ctrace") { AtraceParser(ATRACE_PID) }
+    measure("Perfetto", "perfetto.trace") { AtraceParser(PERFETTO_PID) }
+  }
+
+  private fun measure(name: String, traceName: String, createParser: () -> TraceParser) {
+    val trace = TestUtils.getWorkspaceFile(CPU_TRACES_DIR + traceName)
+    val sequentialPool = ForkJoinPool(1)
+    val parallelPool = ForkJoinPool(Runtime.getRuntime().availableProcessors())
+    try {
+      benchmark.log("$name-Sequential", averageParseTimeMs(trace, sequentialPool, createParser))
+      benchmark.log("$name-Parallel", averageParseTimeMs(trace, parallelPool, createParser))
+    }
+    finally {
+      sequentialPool.shutdown()
+      parallelPool.shutdown()
+    }
+  }
+
+  private fun averageParseTimeMs(trace: File, pool: ForkJoinPool, createParser: () -> TraceParser): Long {
+    var totalNs = 0L
+    for (run in 0 until WARM_UP_RUNS + RUNS) {
+      val startNs = System.nanoTime()
+      pool.submit(Callable { createParser().parse(trace, 1) }).get()
+      if (run >= WARM_UP_RUNS) {
+        totalNs += System.nanoTime() - startNs
+      }
+    }
+    return totalNs / RUNS / 1_000_000
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.performance
+
+import com.android.testutils.TestUtils
+import com.android.tools.datastore.DataStoreDatabase
+import com.android.tools.datastore.FakeLogService
+import com.android.tools.datastore.database.MemoryLiveAllocationTable
+import com.android.tools.perflogger.Benchmark
+import com.android.tools.perflogger.Metric
+import com.android.tools.perflogger.WindowDeviationAnalyzer
+import com.android.tools.profiler.proto.Common
+import com.android.tools.profiler.proto.Memory
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import java.io.File
+import java.time.Instant
+import java.util.concurrent.TimeUnit
+
+/**
+ * Measures the ingest and query times of [MemoryLiveAllocationTable] for a minute of an app allocating 100k objects per second, sent in
+ * samples of 500ms like the agent does.
+ */
+class MemoryLiveAllocationTablePerformanceTest {
+  companion object {
+    private const val ALLOCATIONS_PER_SECOND = 100_000
+    private const val SESSION_SECONDS = 60
+    private const val QUERY_COUNT = 50
+    private val SAMPLE_INTERVAL = TimeUnit.MILLISECONDS.toNanos(500)
+    private val QUERY_RANGE = TimeUnit.SECONDS.toNanos(5)
+    private val SESSION = Common.Session.newBuilder().setSessionId(1).setStreamId(1).setPid(1).build()
+  }
+
+  private val benchmark = Benchmark.Builder("Memory Live Allocation Table Timings (Nanos)").setProject("Android Studio Profilers").build()
+  private lateinit var database: DataStoreDatabase
+  private lateinit var table: MemoryLiveAllocationTable
+
+  @Before
+  fun setup() {
+    val dbFile = File(TestUtils.createTempDirDeletedOnExit(), "MemoryLiveAllocationTablePerformanceTest")
+    database = DataStoreDatabase(dbFile.absolutePath, DataStoreDatabase.Characteristic.DURABLE, FakeLogService())
+    table = MemoryLiveAllocationTable(FakeLogService())
+    table.initialize(database.connection)
+  }
+
+  @After
+  fun tearDown() {
+    database.disconnect()
+  }
+
+  @Test
+  fun runPerformanceTest() {
+    val metrics = listOf(measureIngest(), measureQuery())
+    metrics.forEach {
+      it.setAnalyzers(benchmark, setOf(WindowDeviationAnalyzer.Builder()
+                                         .addMeanTolerance(WindowDeviationAnalyzer.MeanToleranceParams.Builder().build())
+                                         .build()))
+      it.commit()
+    }
+  }
+
+  private fun measureIngest(): Metric {
+    val metric = Metric("Ingest-Sample")
+    val eventsPerSample = (ALLOCATIONS_PER_SECOND * SAMPLE_INTERVAL / TimeUnit.SECONDS.toNanos(1)).toInt()
+    val eventInterval = SAMPLE_INTERVAL / eventsPerSample
+    var tag = 0
+    for (sample in 1..SESSION_SECONDS * TimeUnit.SECONDS.toNanos(1) / SAMPLE_INTERVAL) {
+      val sampleTimestamp = sample * SAMPLE_INTERVAL
+      val batch = Memory.BatchAllocationEvents.newBuilder().setTimestamp(sampleTimestamp)
+      for (i in 0 until eventsPerSample) {
+        val timestamp = sampleTimestamp - SAMPLE_INTERVAL + i * eventInterval
+        // Every other event frees the object allocated before it.
+        if (i % 2 == 0) {
+          batch.addEvents(Memory.AllocationEvent.newBuilder()
+                            .setAllocData(Memory.AllocationEvent.Allocation.newBuilder()
+                                            .setTag(++tag).setClassTag(tag % 1000).setStackId(tag % 5000).setThreadId(tag % 20).setSize(32))
+                            .setTimestamp(timestamp))
+        }
+        else {
+          batch.addEvents(Memory.AllocationEvent.newBuilder()
+                            .setFreeData(Memory.AllocationEvent.Deallocation.newBuilder().setTag(tag))
+                            .setTimestamp(timestamp))
+        }
+      }
+      val events = batch.build()
+      val startTime = System.nanoTime()
+      table.insertAllocationEvents(SESSION, events)
+      metric.addSamples(benchmark, Metric.MetricSample(Instant.now().toEpochMilli(), System.nanoTime() - startTime))
+    }
+    database.commit()
+    return metric
+  }
+
+  private fun measureQuery(): Metric {
+    val metric = Metric("Query-Range")
+    val step = (SESSION_SECONDS * TimeUnit.SECONDS.toNanos(1) - QUERY_RANGE) / QUERY_COUNT
+    for (i in 0..QUERY_COUNT) {
+      val from = i * step
+      val startTime = System.nanoTime()
+      table.getAllocationEvents(SESSION, from, from + QUERY_RANGE)
+      // We ignore the first query as it prepares the statement.
+      if (i != 0) {
+        metric.addSamples(benchmark, Metric.MetricSample(Instant.now().toEpochMilli(), System.nanoTime() - startTime))
+      }
+    }
+    return metric
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.performance
+
+import com.android.testutils.TestUtils
+import com.android.tools.datastore.DataStoreDatabase
+import com.android.tools.datastore.FakeLogService
+import com.android.tools.datastore.database.UnifiedEventsTable
+import com.android.tools.perflogger.Benchmark
+import com.android.tools.perflogger.Metric
+import com.android.tools.perflogger.WindowDeviationAnalyzer
+import com.android.tools.profiler.proto.Common
+import com.android.tools.profiler.proto.Cpu
+import com.android.tools.profiler.proto.Transport.GetEventGroupsRequest
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import java.io.File
+import java.time.Instant
+import java.util.concurrent.TimeUnit
+
+/**
+ * Measures [UnifiedEventsTable.queryUnifiedEventGroups] against a table holding a million events, with the range filters the profiler
+ * monitors use while scrolling through a long session.
+ */
+class UnifiedEventsQueryPerformanceTest {
+  companion object {
+    private const val EVENT_COUNT = 1_000_000
+    private const val GROUP_COUNT = 1_000
+    private const val BATCH_SIZE = 10_000
+    private const val QUERY_COUNT = 50
+    private val INTERVAL = TimeUnit.MILLISECONDS.toNanos(2)
+    private val QUERY_RANGE = TimeUnit.SECONDS.toNanos(10)
+  }
+
+  private val benchmark = Benchmark.Builder("Unified Event Group Query Timings (Nanos)").setProject("Android Studio Profilers").build()
+  private lateinit var database: DataStoreDatabase
+  private lateinit var table: UnifiedEventsTable
+
+  @Before
+  fun setup() {
+    val dbFile = File(TestUtils.createTempDirDeletedOnExit(), "UnifiedEventsQueryPerformanceTest")
+    database = DataStoreDatabase(dbFile.absolutePath, DataStoreDatabase.Characteristic.DURABLE, FakeLogService())
+    table = UnifiedEventsTable()
+    table.initialize(database.connection)
+
+    val batch = mutableListOf<Common.Event>()
+    for (i in 0 until EVENT_COUNT) {
+      batch.add(Common.Event.newBuilder()
+                  .setKind(Common.Event.Kind.CPU_THREAD)
+                  .setPid(1)
+                  .setGroupId((i % GROUP_COUNT).toLong())
+                  .setTimestamp(i * INTERVAL)
+                  .setIsEnded(i >= EVENT_COUNT - GROUP_COUNT)
+                  .setCpuThread(Cpu.CpuThreadData.newBuilder().setTid(i % GROUP_COUNT).setName("Thread ${i % GROUP_COUNT}"))
+                  .build())
+      if (batch.size == BATCH_SIZE) {
+        table.insertUnifiedEvents(1, batch)
+        batch.clear()
+      }
+    }
+    table.insertUnifiedEvents(1, batch)
+    database.commit()
+  }
+
+  @After
+  fun tearDown() {
+    database.disconnect()
+  }
+
+  @Test
+  fun runPerformanceTest() {
+    val metrics = listOf(measure("Full-Range", UnifiedEventsTable.EventProjection.FULL, false),
+                         measure("Full-Range-Headers-Only", UnifiedEventsTable.EventProjection.HEADERS_ONLY, false),
+                         measure("Single-Group", UnifiedEventsTable.EventProjection.FULL, true),
+                         measure("Single-Group-Headers-Only", UnifiedEventsTable.EventProjection.HEADERS_ONLY, true))
+    metrics.forEach {
+      it.setAnalyzers(benchmark, setOf(WindowDeviationAnalyzer.Builder()
+                                         .addMeanTolerance(WindowDeviationAnalyzer.MeanToleranceParams.Builder().build())
+                                         .build()))
+      it.commit()
+    }
+  }
+
+  private fun measure(name: String, projection: UnifiedEventsTable.EventProjection, singleGroup: Boolean): Metric {
+    val metric = Metric(name)
+    val sessionEnd = EVENT_COUNT * INTERVAL
+    val step = (sessionEnd - QUERY_RANGE) / QUERY_COUNT
+    for (i in 0..QUERY_COUNT) {
+      val from = i * step
+      val request = GetEventGroupsRequest.newBuilder()
+        .setKind(Common.Event.Kind.CPU_THREAD)
+        .setStreamId(1)
+        .setPid(1)
+        .setFromTimestamp(from)
+        .setToTimestamp(from + QUERY_RANGE)
+      if (singleGroup) {
+        request.groupId = (i % GROUP_COUNT).toLong()
+      }
+      val startTime = System.nanoTime()
+      table.queryUnifiedEventGroups(request.build(), projection)
+      // We ignore the first query as it prepares the statement.
+      if (i != 0) {
+        metric.addSamples(benchmark, Metric.MetricSample(Instant.now().toEpochMilli(), System.nanoTime() - startTime))
+      }
+    }
+    return metric
+  }
+}
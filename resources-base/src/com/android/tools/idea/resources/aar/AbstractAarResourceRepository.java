@@ -52,7 +52,7 @@ public abstract class AbstractAarResourceRepository extends AbstractResourceRepo
 
   @Override
   @NotNull
-  protected final ListMultimap<String, ResourceItem> getResourcesInternal(
+  protected ListMultimap<String, ResourceItem> getResourcesInternal(
     @NotNull ResourceNamespace namespace, @NotNull ResourceType resourceType) {
     if (!namespace.equals(myNamespace)) {
       return ImmutableListMultimap.of();
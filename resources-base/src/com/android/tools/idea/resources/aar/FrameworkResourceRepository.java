@@ -19,20 +19,27 @@ import static com.android.SdkConstants.DOT_9PNG;
 import static com.android.SdkConstants.FD_RES_RAW;
 
 import com.android.ide.common.rendering.api.ResourceNamespace;
+import com.android.ide.common.resources.AbstractResourceRepository;
 import com.android.ide.common.resources.ResourceItem;
+import com.android.ide.common.resources.ResourceItemWithVisibility;
+import com.android.ide.common.resources.ResourceVisitor;
 import com.android.ide.common.resources.configuration.FolderConfiguration;
 import com.android.ide.common.resources.configuration.LocaleQualifier;
 import com.android.ide.common.util.PathString;
 import com.android.resources.ResourceType;
+import com.android.resources.ResourceVisibility;
 import com.android.tools.idea.resources.base.Base128InputStream;
 import com.android.tools.idea.resources.base.Base128OutputStream;
 import com.android.tools.idea.resources.base.BasicResourceItem;
 import com.android.tools.idea.resources.base.BasicResourceItemBase;
 import com.android.tools.idea.resources.base.BasicValueResourceItemBase;
+import com.android.tools.idea.resources.base.MappedResourceTable;
 import com.android.tools.idea.resources.base.NamespaceResolver;
 import com.android.tools.idea.resources.base.RepositoryConfiguration;
 import com.android.tools.idea.resources.base.RepositoryLoader;
 import com.android.tools.idea.resources.base.ResourceSerializationUtil;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedSet;
@@ -48,11 +55,17 @@ import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
 import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
@@ -73,6 +86,9 @@ import org.jetbrains.annotations.TestOnly;
  * <p>Loading from framework_res.jar or a binary cache file is 3-4 times faster than loading
  * from res directory.
  *
+ * <p>Binary cache files are mapped into memory and shared by all repositories in the process (see {@link MappedResourceTable}).
+ * Resources loaded from cache files are decoded on demand, by name when requested by name, or by type when requested by type.
+ *
  * @see FrameworkResJarCreator
  */
 public final class FrameworkResourceRepository extends AarSourceResourceRepository {
@@ -88,6 +104,16 @@ public final class FrameworkResourceRepository extends AarSourceResourceReposito
   private final Set<String> myLanguageGroups = new TreeSet<>();
   private int myNumberOfLanguageGroupsLoadedFromCache;
   private final boolean myUseCompiled9Patches;
+  /**
+   * Cache files of the language groups loaded from cache. Resources contained in these files are not present in {@link #myResources}
+   * but are decoded on demand.
+   */
+  @NotNull private final List<MappedResourceTable.Decoder> myMappedTables = new ArrayList<>();
+  /** Resources requested by name, combined from {@link #myMappedTables} and {@link #myResources}. */
+  @NotNull private final Map<ResourceType, Map<String, List<ResourceItem>>> myDecodedResources = new ConcurrentHashMap<>();
+  /** Resources of the types requested as a whole, combined from {@link #myMappedTables} and {@link #myResources}. */
+  @NotNull private final Map<ResourceType, ListMultimap<String, ResourceItem>> myDecodedTypes = new ConcurrentHashMap<>();
+  @NotNull private final Map<ResourceType, Set<ResourceItem>> myDecodedPublicResources = new ConcurrentHashMap<>();
 
   private FrameworkResourceRepository(@NotNull RepositoryLoader<FrameworkResourceRepository> loader, boolean useCompiled9Patches) {
     super(loader, null);
@@ -164,17 +190,15 @@ public final class FrameworkResourceRepository extends AarSourceResourceReposito
                     @NotNull Loader loader,
                     @Nullable Set<String> languageGroups,
                     @NotNull Set<String> languageGroupsLoadedFromSourceRepositoryOrCache) {
-    Map<String, String> stringCache = Maps.newHashMapWithExpectedSize(10000);
     Map<NamespaceResolver, NamespaceResolver> namespaceResolverCache = new HashMap<>();
     Set<RepositoryConfiguration> configurationsToTakeOver =
-        sourceRepository == null ? ImmutableSet.of() : copyFromRepository(sourceRepository, stringCache, namespaceResolverCache);
+        sourceRepository == null ? ImmutableSet.of() : copyFromRepository(sourceRepository, namespaceResolverCache);
 
     // If not loading from a jar file, try to load from a cache file first. A separate cache file is not used
     // when loading from framework_res.jar since it already contains data in the cache format. Loading from
     // framework_res.jar or a cache file is significantly faster than reading individual resource files.
     if (!loader.isLoadingFromZipArchive() && cachingData != null) {
-      loadFromPersistentCache(cachingData, languageGroups, languageGroupsLoadedFromSourceRepositoryOrCache, stringCache,
-                              namespaceResolverCache);
+      loadFromPersistentCache(cachingData, languageGroups, languageGroupsLoadedFromSourceRepositoryOrCache, namespaceResolverCache);
     }
 
     myLanguageGroups.addAll(languageGroupsLoadedFromSourceRepositoryOrCache);
@@ -205,25 +229,170 @@ public final class FrameworkResourceRepository extends AarSourceResourceReposito
   @Override
   @NotNull
   public Set<ResourceType> getResourceTypes(@NotNull ResourceNamespace namespace) {
-    return namespace == ANDROID_NAMESPACE ? Sets.immutableEnumSet(myResources.keySet()) : ImmutableSet.of();
+    if (namespace != ANDROID_NAMESPACE) {
+      return ImmutableSet.of();
+    }
+    if (myMappedTables.isEmpty()) {
+      return Sets.immutableEnumSet(myResources.keySet());
+    }
+    Set<ResourceType> types = EnumSet.noneOf(ResourceType.class);
+    types.addAll(myResources.keySet());
+    for (MappedResourceTable.Decoder table : myMappedTables) {
+      types.addAll(table.getResourceTypes());
+    }
+    return Sets.immutableEnumSet(types);
+  }
+
+  @Override
+  @NotNull
+  protected ListMultimap<String, ResourceItem> getResourcesInternal(@NotNull ResourceNamespace namespace,
+                                                                    @NotNull ResourceType resourceType) {
+    if (myMappedTables.isEmpty() || !namespace.equals(ANDROID_NAMESPACE)) {
+      return super.getResourcesInternal(namespace, resourceType);
+    }
+    return myDecodedTypes.computeIfAbsent(resourceType, this::decodeAllResources);
+  }
+
+  @Override
+  @NotNull
+  public List<ResourceItem> getResources(@NotNull ResourceNamespace namespace, @NotNull ResourceType resourceType,
+                                         @NotNull String resourceName) {
+    if (myMappedTables.isEmpty() || !namespace.equals(ANDROID_NAMESPACE)) {
+      return super.getResources(namespace, resourceType, resourceName);
+    }
+    ListMultimap<String, ResourceItem> decodedType = myDecodedTypes.get(resourceType);
+    if (decodedType != null) {
+      return decodedType.get(resourceName);
+    }
+    Map<String, List<ResourceItem>> decodedResources = myDecodedResources.computeIfAbsent(resourceType, type -> new ConcurrentHashMap<>());
+    List<ResourceItem> items = decodedResources.computeIfAbsent(resourceName, name -> decodeResources(resourceType, name));
+    return items == null ? ImmutableList.of() : items;
+  }
+
+  @Override
+  public boolean hasResources(@NotNull ResourceNamespace namespace, @NotNull ResourceType resourceType, @NotNull String resourceName) {
+    return !getResources(namespace, resourceType, resourceName).isEmpty();
+  }
+
+  @Override
+  public boolean hasResources(@NotNull ResourceNamespace namespace, @NotNull ResourceType resourceType) {
+    if (myMappedTables.isEmpty()) {
+      return super.hasResources(namespace, resourceType);
+    }
+    return getResourceTypes(namespace).contains(resourceType);
+  }
+
+  @Override
+  @NotNull
+  public Set<String> getResourceNames(@NotNull ResourceNamespace namespace, @NotNull ResourceType resourceType) {
+    if (myMappedTables.isEmpty() || !namespace.equals(ANDROID_NAMESPACE)) {
+      return super.getResourceNames(namespace, resourceType);
+    }
+    ImmutableSet.Builder<String> names = ImmutableSet.builder();
+    for (MappedResourceTable.Decoder table : myMappedTables) {
+      names.addAll(table.getResourceNames(resourceType));
+    }
+    names.addAll(super.getResourcesInternal(namespace, resourceType).keySet());
+    return names.build();
+  }
+
+  @Override
+  @NotNull
+  public Collection<ResourceItem> getPublicResources(@NotNull ResourceNamespace namespace, @NotNull ResourceType type) {
+    if (myMappedTables.isEmpty() || !namespace.equals(ANDROID_NAMESPACE)) {
+      return super.getPublicResources(namespace, type);
+    }
+    return myDecodedPublicResources.computeIfAbsent(type, this::decodePublicResources);
+  }
+
+  @Override
+  @NotNull
+  public ResourceVisitor.VisitResult accept(@NotNull ResourceVisitor visitor) {
+    if (myMappedTables.isEmpty() || !visitor.shouldVisitNamespace(ANDROID_NAMESPACE)) {
+      return super.accept(visitor);
+    }
+    Map<ResourceType, ListMultimap<String, ResourceItem>> resources = new EnumMap<>(ResourceType.class);
+    for (ResourceType type : getResourceTypes(ANDROID_NAMESPACE)) {
+      resources.put(type, getResourcesInternal(ANDROID_NAMESPACE, type));
+    }
+    return AbstractResourceRepository.acceptByResources(resources, visitor);
+  }
+
+  /**
+   * Decodes resources with the given type and name from {@link #myMappedTables} and combines them with the ones from
+   * {@link #myResources}.
+   *
+   * @return the resources, or null if there are no resources with the given type and name
+   */
+  @Nullable
+  private List<ResourceItem> decodeResources(@NotNull ResourceType type, @NotNull String name) {
+    ImmutableList.Builder<ResourceItem> items = ImmutableList.builder();
+    for (MappedResourceTable.Decoder table : myMappedTables) {
+      try {
+        items.addAll(table.getResources(type, name));
+      }
+      catch (IOException e) {
+        LOG.error("Failed to load resources from cache file " + table.getTable().getFile().toString(), e);
+      }
+    }
+    items.addAll(super.getResourcesInternal(ANDROID_NAMESPACE, type).get(name));
+    List<ResourceItem> result = items.build();
+    return result.isEmpty() ? null : result;
+  }
+
+  /**
+   * Decodes all resources of the given type reusing the ones that were already decoded by name.
+   */
+  @NotNull
+  private ListMultimap<String, ResourceItem> decodeAllResources(@NotNull ResourceType type) {
+    Map<String, List<ResourceItem>> decodedResources = myDecodedResources.getOrDefault(type, ImmutableMap.of());
+    ImmutableListMultimap.Builder<String, ResourceItem> resources = ImmutableListMultimap.builder();
+    for (String name : getResourceNames(ANDROID_NAMESPACE, type)) {
+      List<ResourceItem> items = decodedResources.get(name);
+      if (items == null) {
+        items = decodeResources(type, name);
+      }
+      if (items != null) {
+        resources.putAll(name, items);
+      }
+    }
+    return resources.build();
+  }
+
+  @NotNull
+  private Set<ResourceItem> decodePublicResources(@NotNull ResourceType type) {
+    Set<String> names = new HashSet<>();
+    for (MappedResourceTable.Decoder table : myMappedTables) {
+      names.addAll(table.getNamesOfPublicResources(type));
+    }
+    for (ResourceItem item : super.getPublicResources(ANDROID_NAMESPACE, type)) {
+      names.add(item.getName());
+    }
+    ImmutableSet.Builder<ResourceItem> publicResources = ImmutableSet.builder();
+    for (String name : names) {
+      for (ResourceItem item : getResources(ANDROID_NAMESPACE, type, name)) {
+        if (((ResourceItemWithVisibility)item).getVisibility() == ResourceVisibility.PUBLIC) {
+          publicResources.add(item);
+        }
+      }
+    }
+    return publicResources.build();
   }
 
   /**
    * Copies resources from another FrameworkResourceRepository.
    *
    * @param sourceRepository the repository to copy resources from
-   * @param stringCache the string cache to populate with the names of copied resources
    * @param namespaceResolverCache the namespace resolver cache to populate with namespace resolvers referenced by the copied resources
    * @return the {@link RepositoryConfiguration} objects referenced by the copied resources
    */
   @NotNull
   private Set<RepositoryConfiguration> copyFromRepository(@NotNull FrameworkResourceRepository sourceRepository,
-                                                          @NotNull Map<String, String> stringCache,
                                                           @NotNull Map<NamespaceResolver, NamespaceResolver> namespaceResolverCache) {
     Collection<ListMultimap<String, ResourceItem>> resourceMaps = sourceRepository.myResources.values();
 
     // Copy resources from the source repository, get AarConfigurations that need to be taken over by this repository,
-    // and pre-populate string and namespace resolver caches.
+    // and pre-populate the namespace resolver cache.
     Set<RepositoryConfiguration> sourceConfigurations = Sets.newIdentityHashSet();
     for (ListMultimap<String, ResourceItem> resourceMap : resourceMaps) {
       for (ResourceItem item : resourceMap.values()) {
@@ -236,18 +405,21 @@ public final class FrameworkResourceRepository extends AarSourceResourceReposito
               resolver == ResourceNamespace.Resolver.EMPTY_RESOLVER ? NamespaceResolver.EMPTY : (NamespaceResolver)resolver;
           namespaceResolverCache.put(namespaceResolver, namespaceResolver);
         }
-        String name = item.getName();
-        stringCache.put(name, name);
       }
     }
 
+    // Cache files mapped by the source repository are reused together with the configurations of their resources.
+    for (MappedResourceTable.Decoder table : sourceRepository.myMappedTables) {
+      myMappedTables.add(table);
+      sourceConfigurations.addAll(table.getConfigurations());
+    }
+
     myNumberOfLanguageGroupsLoadedFromCache += sourceRepository.myNumberOfLanguageGroupsLoadedFromCache;
     return sourceConfigurations;
   }
 
   private void loadFromPersistentCache(@NotNull CachingData cachingData, @Nullable Set<String> languagesToLoad,
                                           @NotNull Set<String> loadedLanguages,
-                                          @NotNull Map<String, String> stringCache,
                                           @Nullable Map<NamespaceResolver, NamespaceResolver> namespaceResolverCache) {
     CacheFileNameGenerator fileNameGenerator = new CacheFileNameGenerator((cachingData));
     Set<String> languages = languagesToLoad == null ? fileNameGenerator.getAllCacheFileLanguages() : languagesToLoad;
@@ -255,16 +427,17 @@ public final class FrameworkResourceRepository extends AarSourceResourceReposito
     for (String language : languages) {
       if (!loadedLanguages.contains(language)) {
         Path cacheFile = fileNameGenerator.getCacheFile(language);
-        try (Base128InputStream stream = new Base128InputStream(cacheFile)) {
+        try {
           byte[] header = ResourceSerializationUtil.getCacheFileHeader(s -> writeCacheHeaderContent(cachingData, language, s));
-          if (!stream.validateContents(header)) {
+          MappedResourceTable table = MappedResourceTable.open(cacheFile, header);
+          if (table == null) {
             // Cache file header doesn't match.
             if (language.isEmpty()) {
               break; // Don't try to load language-specific resources if language-neutral ones could not be loaded.
             }
             continue;
           }
-          loadFromStream(stream, stringCache, namespaceResolverCache);
+          myMappedTables.add(table.createDecoder(this, namespaceResolverCache));
           loadedLanguages.add(language);
           myNumberOfLanguageGroupsLoadedFromCache++;
         }
@@ -292,7 +465,9 @@ public final class FrameworkResourceRepository extends AarSourceResourceReposito
         Path cacheFile = fileNameGenerator.getCacheFile(language);
         byte[] header = ResourceSerializationUtil.getCacheFileHeader(stream -> writeCacheHeaderContent(cachingData, language, stream));
         ResourceSerializationUtil.createPersistentCache(
-            cacheFile, header, stream -> writeToStream(stream, config -> language.equals(getLanguageGroup(config))));
+            cacheFile, header,
+            stream -> ResourceSerializationUtil.writeIndexedResourcesToStream(
+                myResources, stream, config -> language.equals(getLanguageGroup(config))));
       }
     }
   }
@@ -351,6 +526,11 @@ public final class FrameworkResourceRepository extends AarSourceResourceReposito
         languages.add(getLanguageGroup(config));
       }
     }
+    for (MappedResourceTable.Decoder table : myMappedTables) {
+      for (RepositoryConfiguration configuration : table.getConfigurations()) {
+        languages.add(getLanguageGroup(configuration.getFolderConfiguration()));
+      }
+    }
 
     return languages;
   }
@@ -374,6 +554,12 @@ public final class FrameworkResourceRepository extends AarSourceResourceReposito
     return relativeResourcePath;
   }
 
+  @Override
+  protected void cleanupAfterFailedLoadingFromCache() {
+    super.cleanupAfterFailedLoadingFromCache();
+    myMappedTables.clear();
+  }
+
   @Override
   @NotNull
   public String getResourceUrl(@NotNull String relativeResourcePath) {
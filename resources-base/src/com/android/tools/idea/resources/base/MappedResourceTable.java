@@ -0,0 +1,254 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.resources.base;
+
+import com.android.ide.common.rendering.api.ResourceNamespace;
+import com.android.resources.ResourceType;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Sets;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Resources stored in a cache file created by {@link ResourceSerializationUtil#writeIndexedResourcesToStream}. The file is mapped
+ * into memory and only its index is read when the table is opened. Resource items are decoded on demand by a {@link Decoder}.
+ *
+ * <p>Tables are shared by all repositories in the process that use the same cache file. Since resource items reference
+ * the repository they belong to, every repository decodes the items with its own {@link Decoder}. The shared tables are
+ * weakly referenced, so a table, and the mapping of its file, is released once no repository uses it anymore. This
+ * matters on Windows, where a mapped file cannot be replaced.
+ */
+public final class MappedResourceTable {
+  /** Tables by cache file. A table is kept alive by the {@link Decoder}s of the repositories using it. */
+  private static final Cache<Path, MappedResourceTable> ourTables = CacheBuilder.newBuilder().weakValues().build();
+
+  @NotNull private final Path myFile;
+  @NotNull private final FileTime myLastModifiedTime;
+  @NotNull private final byte[] myHeader;
+  @NotNull private final ByteBuffer myBuffer;
+  private final int myPrefixOffset;
+  private final int myItemsOffset;
+  @NotNull private final Map<ResourceType, TypeIndex> myIndex = new EnumMap<>(ResourceType.class);
+
+  private MappedResourceTable(@NotNull Path file, @NotNull FileTime lastModifiedTime, @NotNull byte[] header, @NotNull ByteBuffer buffer)
+      throws IOException {
+    myFile = file;
+    myLastModifiedTime = lastModifiedTime;
+    myHeader = header;
+    myBuffer = buffer;
+    myPrefixOffset = header.length + 2 * Integer.BYTES;
+    int indexOffset = myPrefixOffset + buffer.getInt(header.length);
+    myItemsOffset = myPrefixOffset + buffer.getInt(header.length + Integer.BYTES);
+    if (indexOffset < myPrefixOffset || myItemsOffset < indexOffset || myItemsOffset > buffer.limit()) {
+      throw Base128InputStream.StreamFormatException.invalidFormat();
+    }
+
+    try (Base128InputStream stream = new Base128InputStream(slice(indexOffset, myItemsOffset))) {
+      int typeCount = stream.readInt();
+      for (int i = 0; i < typeCount; i++) {
+        ResourceType type = ResourceType.values()[stream.readInt()];
+        int nameCount = stream.readInt();
+        TypeIndex typeIndex = new TypeIndex(nameCount);
+        for (int j = 0; j < nameCount; j++) {
+          String name = stream.readString();
+          if (name == null) {
+            throw Base128InputStream.StreamFormatException.invalidFormat();
+          }
+          typeIndex.names[j] = name;
+          typeIndex.counts[j] = stream.readInt();
+          typeIndex.offsets[j] = stream.readInt();
+          typeIndex.hasPublicItems[j] = stream.readBoolean();
+        }
+        myIndex.put(type, typeIndex);
+      }
+    }
+    catch (ArrayIndexOutOfBoundsException e) {
+      throw Base128InputStream.StreamFormatException.invalidFormat();
+    }
+  }
+
+  /**
+   * Returns the table for the given cache file, mapping the file into memory unless it is already mapped.
+   *
+   * @param file the cache file
+   * @param header the expected header of the cache file
+   * @return the table, or null if the header of the file doesn't match
+   * @throws java.nio.file.NoSuchFileException if the file does not exist
+   * @throws IOException if the file cannot be read or has invalid format
+   */
+  @Nullable
+  public static MappedResourceTable open(@NotNull Path file, @NotNull byte[] header) throws IOException {
+    FileTime lastModifiedTime = Files.readAttributes(file, BasicFileAttributes.class).lastModifiedTime();
+    MappedResourceTable table = ourTables.getIfPresent(file);
+    if (table != null && table.myLastModifiedTime.equals(lastModifiedTime) && Arrays.equals(table.myHeader, header)) {
+      return table;
+    }
+
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        throw Base128InputStream.StreamFormatException.invalidFormat();
+      }
+      // Check the header before mapping the file to not keep stale cache files mapped.
+      ByteBuffer fileHeader = ByteBuffer.allocate(header.length);
+      while (fileHeader.hasRemaining() && channel.read(fileHeader) >= 0) {}
+      if (!Arrays.equals(fileHeader.array(), header) || size < header.length + 2 * Integer.BYTES) {
+        return null;
+      }
+      table = new MappedResourceTable(file, lastModifiedTime, header, channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+    }
+    ourTables.put(file, table);
+    return table;
+  }
+
+  @NotNull
+  public Path getFile() {
+    return myFile;
+  }
+
+  /**
+   * Creates a decoder of the resource items of the table for the given repository.
+   *
+   * @param repository the repository the decoded resource items belong to
+   * @param namespaceResolverCache the namespace resolver cache used to share namespace resolvers between repositories and tables
+   */
+  @NotNull
+  public Decoder createDecoder(@NotNull LoadableResourceRepository repository,
+                               @Nullable Map<NamespaceResolver, NamespaceResolver> namespaceResolverCache) throws IOException {
+    return new Decoder(repository, namespaceResolverCache);
+  }
+
+  @NotNull
+  private ByteBuffer slice(int start, int end) {
+    ByteBuffer buffer = myBuffer.duplicate();
+    buffer.position(start);
+    buffer.limit(end);
+    return buffer;
+  }
+
+  private static class TypeIndex {
+    @NotNull final String[] names;
+    @NotNull final int[] counts;
+    @NotNull final int[] offsets;
+    @NotNull final boolean[] hasPublicItems;
+
+    TypeIndex(int size) {
+      names = new String[size];
+      counts = new int[size];
+      offsets = new int[size];
+      hasPublicItems = new boolean[size];
+    }
+  }
+
+  /**
+   * Decodes resource items of a {@link MappedResourceTable} for a particular repository. Decoders are thread-safe.
+   */
+  public final class Decoder {
+    @NotNull private final List<RepositoryConfiguration> myConfigurations = new ArrayList<>();
+    @NotNull private final List<ResourceSourceFile> mySourceFiles = new ArrayList<>();
+    @NotNull private final List<ResourceNamespace.Resolver> myNamespaceResolvers = new ArrayList<>();
+
+    private Decoder(@NotNull LoadableResourceRepository repository,
+                    @Nullable Map<NamespaceResolver, NamespaceResolver> namespaceResolverCache) throws IOException {
+      try (Base128InputStream stream = new Base128InputStream(slice(myPrefixOffset, myItemsOffset))) {
+        ResourceSerializationUtil.readItemContext(stream, namespaceResolverCache, repository, myConfigurations, mySourceFiles,
+                                                  myNamespaceResolvers);
+      }
+    }
+
+    @NotNull
+    public MappedResourceTable getTable() {
+      return MappedResourceTable.this;
+    }
+
+    /**
+     * Returns the configurations referenced by the resource items decoded by this decoder.
+     */
+    @NotNull
+    public List<RepositoryConfiguration> getConfigurations() {
+      return Collections.unmodifiableList(myConfigurations);
+    }
+
+    @NotNull
+    public Set<ResourceType> getResourceTypes() {
+      return Sets.immutableEnumSet(myIndex.keySet());
+    }
+
+    /**
+     * Returns the names of the resources of the given type in alphabetical order.
+     */
+    @NotNull
+    public List<String> getResourceNames(@NotNull ResourceType type) {
+      TypeIndex typeIndex = myIndex.get(type);
+      return typeIndex == null ? ImmutableList.of() : Collections.unmodifiableList(Arrays.asList(typeIndex.names));
+    }
+
+    /**
+     * Returns the names of the resources of the given type that have at least one public resource item.
+     */
+    @NotNull
+    public List<String> getNamesOfPublicResources(@NotNull ResourceType type) {
+      TypeIndex typeIndex = myIndex.get(type);
+      if (typeIndex == null) {
+        return ImmutableList.of();
+      }
+      List<String> names = new ArrayList<>();
+      for (int i = 0; i < typeIndex.names.length; i++) {
+        if (typeIndex.hasPublicItems[i]) {
+          names.add(typeIndex.names[i]);
+        }
+      }
+      return names;
+    }
+
+    /**
+     * Decodes the resource items with the given type and name.
+     */
+    @NotNull
+    public List<BasicResourceItem> getResources(@NotNull ResourceType type, @NotNull String name) throws IOException {
+      TypeIndex typeIndex = myIndex.get(type);
+      int i = typeIndex == null ? -1 : Arrays.binarySearch(typeIndex.names, name);
+      if (i < 0) {
+        return ImmutableList.of();
+      }
+      int count = typeIndex.counts[i];
+      List<BasicResourceItem> items = new ArrayList<>(count);
+      try (Base128InputStream stream = new Base128InputStream(slice(myItemsOffset + typeIndex.offsets[i], myBuffer.limit()))) {
+        for (int j = 0; j < count; j++) {
+          items.add(BasicResourceItemBase.deserialize(stream, myConfigurations, mySourceFiles, myNamespaceResolvers));
+        }
+      }
+      return items;
+    }
+  }
+}
@@ -87,9 +87,11 @@ import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.nio.file.FileVisitResult;
 import java.nio.file.FileVisitor;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.attribute.BasicFileAttributes;
@@ -105,8 +107,13 @@ import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import org.jetbrains.annotations.NotNull;
@@ -135,11 +142,17 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
   @NotNull private final ListMultimap<String, BasicStyleableResourceItem> myStyleables = ArrayListMultimap.create();
   @NotNull protected ResourceVisibility myDefaultVisibility = ResourceVisibility.PRIVATE;
   /** Cache of FolderConfiguration instances, keyed by qualifier strings (see {@link FolderConfiguration#getQualifierString()}). */
-  @NotNull protected final Map<String, FolderConfiguration> myFolderConfigCache = new HashMap<>();
+  @NotNull protected final Map<String, FolderConfiguration> myFolderConfigCache = new ConcurrentHashMap<>();
   @NotNull private final Map<FolderConfiguration, RepositoryConfiguration> myConfigCache = new HashMap<>();
-  @NotNull private final ValueResourceXmlParser myParser = new ValueResourceXmlParser();
-  @NotNull private final XmlTextExtractor myTextExtractor = new XmlTextExtractor();
-  @NotNull private final ResourceUrlParser myUrlParser = new ResourceUrlParser();
+  /** Namespace resolvers shared by the parsers of all threads. */
+  @NotNull private final Map<NamespaceResolver, NamespaceResolver> myNamespaceResolverCache = new ConcurrentHashMap<>();
+  /** Parsers used outside of the concurrent parsing of value resource files. */
+  @NotNull private final Parsers mySequentialParsers = new Parsers();
+  /**
+   * Parsers of the threads concurrently parsing value resource files. Set only while a thread parses a file, so that the parsers are not
+   * kept by the threads of the pool after the load, see {@link #loadResourceFiles}.
+   */
+  @NotNull private final ThreadLocal<Parsers> myConcurrentParsers = new ThreadLocal<>();
   // Used to keep track of resources defined in the current value resource file.
   @NotNull private final Table<ResourceType, String, BasicValueResourceItemBase> myValueFileResources =
       Tables.newCustomTable(new EnumMap<>(ResourceType.class), () -> new LinkedHashMap<>());
@@ -189,12 +202,11 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
       loadPublicResourceNames();
       boolean shouldParseResourceIds = !loadIdsFromRTxt();
 
-      zipFile.stream().forEach(zipEntry -> {
-        if (!zipEntry.isDirectory()) {
-          PathString path = new PathString(zipEntry.getName());
-          loadResourceFile(path, repository, shouldParseResourceIds);
-        }
-      });
+      List<PathString> resourceFiles = zipFile.stream()
+          .filter(zipEntry -> !zipEntry.isDirectory())
+          .map(zipEntry -> new PathString(zipEntry.getName()))
+          .collect(Collectors.toList());
+      loadResourceFiles(resourceFiles, repository, shouldParseResourceIds);
     }
     catch (Exception e) {
       LOG.error("Failed to load resources from " + myResourceDirectoryOrFile.toString(), e);
@@ -219,9 +231,7 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
                                          ImmutableList.of(myResourceDirectoryOrFile) :
                                          myResourceFilesAndFolders.stream().map(PathString::toPath).collect(Collectors.toList());
       List<PathString> resourceFiles = findResourceFiles(sourceFilesAndFolders);
-      for (PathString file : resourceFiles) {
-        loadResourceFile(file, repository, shouldParseResourceIds);
-      }
+      loadResourceFiles(resourceFiles, repository, shouldParseResourceIds);
     }
     catch (Exception e) {
       LOG.error("Failed to load resources from " + myResourceDirectoryOrFile.toString(), e);
@@ -230,15 +240,61 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
     finishLoading(repository);
   }
 
-  protected final void loadResourceFile(@NotNull PathString file, @NotNull T repository, boolean shouldParseResourceIds) {
-    String folderName = file.getParentFileName();
-    if (folderName != null) {
-      FolderInfo folderInfo = FolderInfo.create(folderName, myFolderConfigCache);
-      if (folderInfo != null) {
-        RepositoryConfiguration configuration = getConfiguration(repository, folderInfo.configuration);
-        loadResourceFile(file, folderInfo, configuration, shouldParseResourceIds);
+  /**
+   * Loads the given resource files. The value resource files are parsed concurrently, but the resources are added to the repository
+   * on the calling thread in the order of the files, so the contents of the repository don't depend on the order in which the files
+   * were parsed.
+   */
+  private void loadResourceFiles(@NotNull List<PathString> files, @NotNull T repository, boolean shouldParseResourceIds) {
+    int n = files.size();
+    FolderInfo[] folderInfos = new FolderInfo[n];
+    RepositoryConfiguration[] configurations = new RepositoryConfiguration[n];
+    for (int i = 0; i < n; i++) {
+      String folderName = files.get(i).getParentFileName();
+      if (folderName != null) {
+        FolderInfo folderInfo = FolderInfo.create(folderName, myFolderConfigCache);
+        if (folderInfo != null) {
+          folderInfos[i] = folderInfo;
+          configurations[i] = getConfiguration(repository, folderInfo.configuration);
+        }
       }
     }
+
+    ParsedValueResources[] parsedValueFiles = new ParsedValueResources[n];
+    // The parsers are reused by the files parsed after each other, but are only reachable from this method.
+    Queue<Parsers> idleParsers = new ConcurrentLinkedQueue<>();
+    IntStream.range(0, n).parallel().forEach(i -> {
+      FolderInfo folderInfo = folderInfos[i];
+      if (folderInfo != null && folderInfo.resourceType == null && isXmlFile(files.get(i))) {
+        Parsers parsers = idleParsers.poll();
+        if (parsers == null) {
+          parsers = new Parsers();
+        }
+        myConcurrentParsers.set(parsers);
+        try {
+          parsedValueFiles[i] = parseValueResources(files.get(i), configurations[i]);
+        }
+        finally {
+          myConcurrentParsers.remove();
+          idleParsers.add(parsers);
+        }
+      }
+    });
+
+    for (int i = 0; i < n; i++) {
+      if (parsedValueFiles[i] != null) {
+        addValueResources(parsedValueFiles[i]);
+      }
+      else if (folderInfos[i] != null) {
+        loadResourceFile(files.get(i), folderInfos[i], configurations[i], shouldParseResourceIds);
+      }
+    }
+  }
+
+  @NotNull
+  private Parsers getParsers() {
+    Parsers parsers = myConcurrentParsers.get();
+    return parsers == null ? mySequentialParsers : parsers;
   }
 
   protected void finishLoading(@NotNull T repository) {
@@ -400,20 +456,51 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
 
   @NotNull
   private List<PathString> findResourceFiles(@NotNull List<Path> filesOrFolders) {
-    ResourceFileCollector fileCollector = new ResourceFileCollector(this);
-    for (Path file : filesOrFolders) {
+    // Resource directories are split into their folders that are scanned concurrently, each by its own collector.
+    List<Path> walkRoots = new ArrayList<>();
+    for (Path fileOrFolder : filesOrFolders) {
+      addWalkRoots(fileOrFolder, walkRoots);
+    }
+    List<ResourceFileCollector> fileCollectors = walkRoots.parallelStream().map(root -> {
+      ResourceFileCollector fileCollector = new ResourceFileCollector(this);
       try {
-        Files.walkFileTree(file, fileCollector);
+        Files.walkFileTree(root, fileCollector);
       }
       catch (IOException e) {
         // All IOExceptions are logged by ResourceFileCollector.
       }
+      return fileCollector;
+    }).collect(Collectors.toList());
+
+    List<PathString> resourceFiles = new ArrayList<>();
+    for (ResourceFileCollector fileCollector : fileCollectors) {
+      for (IOException e : fileCollector.ioErrors) {
+        LOG.error("Error loading resources from " + myResourceDirectoryOrFile.toString(), e);
+      }
+      resourceFiles.addAll(fileCollector.resourceFiles);
     }
-    for (IOException e : fileCollector.ioErrors) {
-      LOG.error("Error loading resources from " + myResourceDirectoryOrFile.toString(), e);
+    Collections.sort(resourceFiles); // Make sure that the files are in canonical order.
+    return resourceFiles;
+  }
+
+  /**
+   * Adds the children of the given directory to {@code walkRoots}, or the file or directory itself if it is a file, is ignored,
+   * or can't be listed. In the latter cases walking the file tree takes care of filtering and error reporting.
+   */
+  private void addWalkRoots(@NotNull Path fileOrFolder, @NotNull List<Path> walkRoots) {
+    try {
+      BasicFileAttributes attrs = Files.readAttributes(fileOrFolder, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+      if (attrs.isDirectory() && !isIgnored(fileOrFolder, attrs)) {
+        try (Stream<Path> children = Files.list(fileOrFolder)) {
+          walkRoots.addAll(children.collect(Collectors.toList()));
+        }
+        return;
+      }
     }
-    Collections.sort(fileCollector.resourceFiles); // Make sure that the files are in canonical order.
-    return fileCollector.resourceFiles;
+    catch (IOException | UncheckedIOException e) {
+      // Reported when walking the file tree.
+    }
+    walkRoots.add(fileOrFolder);
   }
 
   @NotNull
@@ -461,19 +548,30 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
   protected abstract void addResourceItem(@NotNull BasicResourceItem item, @NotNull T repository);
 
   protected final void parseValueResourceFile(@NotNull PathString file, @NotNull RepositoryConfiguration configuration) {
+    addValueResources(parseValueResources(file, configuration));
+  }
+
+  /**
+   * Parses a value resource file without modifying the state of the loader, so that different files can be parsed concurrently.
+   * The returned resources are added to the repository by {@link #addValueResources(ParsedValueResources)}.
+   */
+  @NotNull
+  private ParsedValueResources parseValueResources(@NotNull PathString file, @NotNull RepositoryConfiguration configuration) {
+    ParsedValueResources result = new ParsedValueResources(file);
     try (InputStream stream = getInputStream(file)) {
       ResourceSourceFile sourceFile = createResourceSourceFile(file, configuration);
-      myParser.setInput(stream, null);
+      ValueResourceXmlParser parser = getParsers().parser;
+      parser.setInput(stream, null);
 
       int event;
       do {
-        event = myParser.nextToken();
-        int depth = myParser.getDepth();
+        event = parser.nextToken();
+        int depth = parser.getDepth();
         if (event == XmlPullParser.START_TAG) {
-          if (myParser.getPrefix() != null) {
+          if (parser.getPrefix() != null) {
             continue;
           }
-          String tagName = myParser.getName();
+          String tagName = parser.getName();
           assert depth <= 2; // Deeper tags should be consumed by the createResourceItem method.
           if (depth == 1) {
             if (!tagName.equals(TAG_RESOURCES)) {
@@ -483,11 +581,10 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
           else if (depth > 1) {
             ResourceType resourceType = getResourceType(tagName, file);
             if (resourceType != null && resourceType != ResourceType.PUBLIC) {
-              String resourceName = myParser.getAttributeValue(null, ATTR_NAME);
+              String resourceName = parser.getAttributeValue(null, ATTR_NAME);
               if (resourceName != null) {
                 validateResourceName(resourceName, resourceType, file);
-                BasicValueResourceItemBase item = createResourceItem(resourceType, resourceName, sourceFile);
-                addValueResourceItem(item);
+                result.items.add(createResourceItem(resourceType, resourceName, sourceFile, result.attrCandidates));
               }
             }
           }
@@ -496,7 +593,20 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
     }
     // KXmlParser throws RuntimeException for an undefined prefix and an illegal attribute name.
     catch (IOException | XmlPullParserException | XmlSyntaxException | RuntimeException e) {
-      handleParsingError(file, e);
+      result.error = e;
+    }
+    return result;
+  }
+
+  private void addValueResources(@NotNull ParsedValueResources parsedResources) {
+    for (BasicValueResourceItemBase item : parsedResources.items) {
+      addValueResourceItem(item);
+    }
+    for (BasicAttrResourceItem attr : parsedResources.attrCandidates) {
+      addAttr(attr, myAttrCandidates);
+    }
+    if (parsedResources.error != null) {
+      handleParsingError(parsedResources.file, parsedResources.error);
     }
 
     addValueFileResources();
@@ -627,8 +737,10 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
   }
 
   @NotNull
-  private BasicValueResourceItemBase createResourceItem(
-      @NotNull ResourceType type, @NotNull String name, @NotNull ResourceSourceFile sourceFile)
+  private BasicValueResourceItemBase createResourceItem(@NotNull ResourceType type,
+                                                        @NotNull String name,
+                                                        @NotNull ResourceSourceFile sourceFile,
+                                                        @NotNull List<BasicAttrResourceItem> attrCandidates)
       throws IOException, XmlPullParserException, XmlSyntaxException {
     switch (type) {
       case ARRAY:
@@ -647,7 +759,7 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
         return createStyleItem(name, sourceFile);
 
       case STYLEABLE:
-        return createStyleableItem(name, sourceFile);
+        return createStyleableItem(name, sourceFile, attrCandidates);
 
       case ANIMATOR:
       case DRAWABLE:
@@ -666,11 +778,11 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
   @NotNull
   private BasicArrayResourceItem createArrayItem(@NotNull String name, @NotNull ResourceSourceFile sourceFile)
       throws IOException, XmlPullParserException, XmlSyntaxException {
-    String indexValue = myParser.getAttributeValue(TOOLS_URI, ATTR_INDEX);
-    ResourceNamespace.Resolver namespaceResolver = myParser.getNamespaceResolver();
+    String indexValue = getParsers().parser.getAttributeValue(TOOLS_URI, ATTR_INDEX);
+    ResourceNamespace.Resolver namespaceResolver = getParsers().parser.getNamespaceResolver();
     List<String> values = new ArrayList<>();
     forSubTags(TAG_ITEM, () -> {
-      String text = myTextExtractor.extractText(myParser, false);
+      String text = getParsers().textExtractor.extractText(getParsers().parser, false);
       values.add(text);
     });
     int index = 0;
@@ -681,12 +793,12 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
       catch (NumberFormatException e) {
         throw new XmlSyntaxException(
             "The value of the " + namespaceResolver.prefixToUri(TOOLS_URI) + ':' + ATTR_INDEX + " attribute is not a valid number.",
-            myParser, getDisplayName(sourceFile));
+            getParsers().parser, getDisplayName(sourceFile));
       }
       if (index >= values.size()) {
         throw new XmlSyntaxException(
             "The value of the " + namespaceResolver.prefixToUri(TOOLS_URI) + ':' + ATTR_INDEX + " attribute is out of bounds.",
-            myParser, getDisplayName(sourceFile));
+            getParsers().parser, getDisplayName(sourceFile));
       }
     }
     ResourceVisibility visibility = getVisibility(ResourceType.ARRAY, name);
@@ -698,23 +810,24 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
   @NotNull
   private BasicAttrResourceItem createAttrItem(@NotNull String name, @NotNull ResourceSourceFile sourceFile)
       throws IOException, XmlPullParserException, XmlSyntaxException {
-    ResourceNamespace.Resolver namespaceResolver = myParser.getNamespaceResolver();
+    ResourceNamespace.Resolver namespaceResolver = getParsers().parser.getNamespaceResolver();
     ResourceNamespace attrNamespace;
-    myUrlParser.parseResourceUrl(name);
-    if (myUrlParser.hasNamespacePrefix(ANDROID_NS_NAME)) {
+    getParsers().urlParser.parseResourceUrl(name);
+    if (getParsers().urlParser.hasNamespacePrefix(ANDROID_NS_NAME)) {
       attrNamespace = ResourceNamespace.ANDROID;
     } else {
-      String prefix = myUrlParser.getNamespacePrefix();
-      attrNamespace = ResourceNamespace.fromNamespacePrefix(prefix, myNamespace, myParser.getNamespaceResolver());
+      String prefix = getParsers().urlParser.getNamespacePrefix();
+      attrNamespace = ResourceNamespace.fromNamespacePrefix(prefix, myNamespace, getParsers().parser.getNamespaceResolver());
       if (attrNamespace == null) {
-        throw new XmlSyntaxException("Undefined prefix of attr resource name \"" + name + "\"", myParser, getDisplayName(sourceFile));
+        throw new XmlSyntaxException("Undefined prefix of attr resource name \"" + name + "\"", getParsers().parser,
+                                     getDisplayName(sourceFile));
       }
     }
-    name = myUrlParser.getName();
+    name = getParsers().urlParser.getName();
 
-    String description = myParser.getLastComment();
-    String groupName = myParser.getAttrGroupComment();
-    String formatString = myParser.getAttributeValue(null, ATTR_FORMAT);
+    String description = getParsers().parser.getLastComment();
+    String groupName = getParsers().parser.getAttrGroupComment();
+    String formatString = getParsers().parser.getAttributeValue(null, ATTR_FORMAT);
     Set<AttributeFormat> formats =
       StringUtil.isEmpty(formatString) ? EnumSet.noneOf(AttributeFormat.class) : AttributeFormat.parse(formatString);
 
@@ -722,19 +835,19 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
     Map<String, Integer> valueMap = Maps.newHashMapWithExpectedSize(8);
     Map<String, String> descriptionMap = Maps.newHashMapWithExpectedSize(8);
     forSubTags(null, () -> {
-      if (myParser.getPrefix() == null) {
-        String tagName = myParser.getName();
+      if (getParsers().parser.getPrefix() == null) {
+        String tagName = getParsers().parser.getName();
         AttributeFormat format =
             tagName.equals(TAG_ENUM) ? AttributeFormat.ENUM : tagName.equals(TAG_FLAG) ? AttributeFormat.FLAGS : null;
         if (format != null) {
           formats.add(format);
-          String valueName = myParser.getAttributeValue(null, ATTR_NAME);
+          String valueName = getParsers().parser.getAttributeValue(null, ATTR_NAME);
           if (valueName != null) {
-            String valueDescription = myParser.getLastComment();
+            String valueDescription = getParsers().parser.getLastComment();
             if (valueDescription != null) {
               descriptionMap.put(valueName, valueDescription);
             }
-            String value = myParser.getAttributeValue(null, ATTR_VALUE);
+            String value = getParsers().parser.getAttributeValue(null, ATTR_VALUE);
             Integer numericValue = null;
             if (value != null) {
               try {
@@ -766,15 +879,15 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
   @NotNull
   private BasicPluralsResourceItem createPluralsItem(@NotNull String name, @NotNull ResourceSourceFile sourceFile)
       throws IOException, XmlPullParserException, XmlSyntaxException {
-    String defaultQuantity = myParser.getAttributeValue(TOOLS_URI, ATTR_QUANTITY);
-    ResourceNamespace.Resolver namespaceResolver = myParser.getNamespaceResolver();
+    String defaultQuantity = getParsers().parser.getAttributeValue(TOOLS_URI, ATTR_QUANTITY);
+    ResourceNamespace.Resolver namespaceResolver = getParsers().parser.getNamespaceResolver();
     EnumMap<Arity, String> values = new EnumMap<>(Arity.class);
     forSubTags(TAG_ITEM, () -> {
-      String quantityValue = myParser.getAttributeValue(null, ATTR_QUANTITY);
+      String quantityValue = getParsers().parser.getAttributeValue(null, ATTR_QUANTITY);
       if (quantityValue != null) {
         Arity quantity = Arity.getEnum(quantityValue);
         if (quantity != null) {
-          String text = myTextExtractor.extractText(myParser, false);
+          String text = getParsers().textExtractor.extractText(getParsers().parser, false);
           values.put(quantity, text);
         }
       }
@@ -784,7 +897,7 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
       defaultArity = Arity.getEnum(defaultQuantity);
       if (defaultArity == null || !values.containsKey(defaultArity)) {
         throw new XmlSyntaxException(
-            "Invalid value of the " + namespaceResolver.prefixToUri(TOOLS_URI) + ':' + ATTR_QUANTITY + " attribute.", myParser,
+            "Invalid value of the " + namespaceResolver.prefixToUri(TOOLS_URI) + ':' + ATTR_QUANTITY + " attribute.", getParsers().parser,
             getDisplayName(sourceFile));
       }
     }
@@ -798,9 +911,9 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
   private BasicValueResourceItem createStringItem(
       @NotNull ResourceType type, @NotNull String name, @NotNull ResourceSourceFile sourceFile, boolean withRowXml)
       throws IOException, XmlPullParserException {
-    ResourceNamespace.Resolver namespaceResolver = myParser.getNamespaceResolver();
-    String text = type == ResourceType.ID ? null : myTextExtractor.extractText(myParser, withRowXml);
-    String rawXml = type == ResourceType.ID ? null : myTextExtractor.getRawXml();
+    ResourceNamespace.Resolver namespaceResolver = getParsers().parser.getNamespaceResolver();
+    String text = type == ResourceType.ID ? null : getParsers().textExtractor.extractText(getParsers().parser, withRowXml);
+    String rawXml = type == ResourceType.ID ? null : getParsers().textExtractor.getRawXml();
     assert withRowXml || rawXml == null; // Text extractor doesn't extract raw XML unless asked to do it.
     ResourceVisibility visibility = getVisibility(type, name);
     BasicValueResourceItem item = rawXml == null ?
@@ -813,18 +926,18 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
   @NotNull
   private BasicStyleResourceItem createStyleItem(@NotNull String name, @NotNull ResourceSourceFile sourceFile)
       throws IOException, XmlPullParserException {
-    ResourceNamespace.Resolver namespaceResolver = myParser.getNamespaceResolver();
-    String parentStyle = myParser.getAttributeValue(null, ATTR_PARENT);
+    ResourceNamespace.Resolver namespaceResolver = getParsers().parser.getNamespaceResolver();
+    String parentStyle = getParsers().parser.getAttributeValue(null, ATTR_PARENT);
     if (parentStyle != null && !parentStyle.isEmpty()) {
-      myUrlParser.parseResourceUrl(parentStyle);
-      parentStyle = myUrlParser.getQualifiedName();
+      getParsers().urlParser.parseResourceUrl(parentStyle);
+      parentStyle = getParsers().urlParser.getQualifiedName();
     }
     List<StyleItemResourceValue> styleItems = new ArrayList<>();
     forSubTags(TAG_ITEM, () -> {
-      ResourceNamespace.Resolver itemNamespaceResolver = myParser.getNamespaceResolver();
-      String itemName = myParser.getAttributeValue(null, ATTR_NAME);
+      ResourceNamespace.Resolver itemNamespaceResolver = getParsers().parser.getNamespaceResolver();
+      String itemName = getParsers().parser.getAttributeValue(null, ATTR_NAME);
       if (itemName != null) {
-        String text = myTextExtractor.extractText(myParser, false);
+        String text = getParsers().textExtractor.extractText(getParsers().parser, false);
         StyleItemResourceValueImpl styleItem =
             new StyleItemResourceValueImpl(myNamespace, itemName, text, sourceFile.getRepository().getLibraryName());
         styleItem.setNamespaceResolver(itemNamespaceResolver);
@@ -838,12 +951,14 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
   }
 
   @NotNull
-  private BasicStyleableResourceItem createStyleableItem(@NotNull String name, @NotNull ResourceSourceFile sourceFile)
+  private BasicStyleableResourceItem createStyleableItem(@NotNull String name,
+                                                         @NotNull ResourceSourceFile sourceFile,
+                                                         @NotNull List<BasicAttrResourceItem> attrCandidates)
       throws IOException, XmlPullParserException {
-    ResourceNamespace.Resolver namespaceResolver = myParser.getNamespaceResolver();
+    ResourceNamespace.Resolver namespaceResolver = getParsers().parser.getNamespaceResolver();
     List<AttrResourceValue> attrs = new ArrayList<>();
     forSubTags(TAG_ATTR, () -> {
-      String attrName = myParser.getAttributeValue(null, ATTR_NAME);
+      String attrName = getParsers().parser.getAttributeValue(null, ATTR_NAME);
       if (attrName != null) {
         try {
           BasicAttrResourceItem attr = createAttrItem(attrName, sourceFile);
@@ -854,7 +969,7 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
           // The second condition is determined by the fact that the attr in the res-auto namespace may have an explicit definition
           // outside of this resource repository.
           if (attr.getNamespace().equals(myNamespace) && (myNamespace != ResourceNamespace.RES_AUTO || !attr.getFormats().isEmpty())) {
-            addAttr(attr, myAttrCandidates);
+            attrCandidates.add(attr);
           }
         }
         catch (XmlSyntaxException e) {
@@ -998,8 +1113,8 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
   private BasicValueResourceItem createFileReferenceItem(
       @NotNull ResourceType type, @NotNull String name, @NotNull ResourceSourceFile sourceFile)
       throws IOException, XmlPullParserException {
-    ResourceNamespace.Resolver namespaceResolver = myParser.getNamespaceResolver();
-    String text = myTextExtractor.extractText(myParser, false).trim();
+    ResourceNamespace.Resolver namespaceResolver = getParsers().parser.getNamespaceResolver();
+    String text = getParsers().textExtractor.extractText(getParsers().parser, false).trim();
     if (!text.isEmpty() && !text.startsWith(PREFIX_RESOURCE_REF) && !text.startsWith(PREFIX_THEME_REF)) {
       text = text.replace('/', File.separatorChar);
     }
@@ -1019,18 +1134,18 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
       }
 
       if (tagName.equals(TAG_ITEM)) {
-        String typeAttr = myParser.getAttributeValue(null, ATTR_TYPE);
+        String typeAttr = getParsers().parser.getAttributeValue(null, ATTR_TYPE);
         if (typeAttr != null) {
           type = ResourceType.fromClassName(typeAttr);
           if (type != null) {
             return type;
           }
 
-          throw new XmlSyntaxException("Invalid type attribute \"" + typeAttr + "\"", myParser, getDisplayName(file));
+          throw new XmlSyntaxException("Invalid type attribute \"" + typeAttr + "\"", getParsers().parser, getDisplayName(file));
         }
       }
 
-      throw new XmlSyntaxException("Invalid tag name \"" + tagName + "\"", myParser, getDisplayName(file));
+      throw new XmlSyntaxException("Invalid tag name \"" + tagName + "\"", getParsers().parser, getDisplayName(file));
     }
 
     return type;
@@ -1042,21 +1157,22 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
    * which name doesn't have a prefix and matches {@code tagName}.
    */
   private void forSubTags(@Nullable String tagName, @NotNull XmlTagVisitor subtagVisitor) throws IOException, XmlPullParserException {
-    int elementDepth = myParser.getDepth();
+    ValueResourceXmlParser parser = getParsers().parser;
+    int elementDepth = parser.getDepth();
     int event;
     do {
-      event = myParser.nextToken();
-      if (event == XmlPullParser.START_TAG && (tagName == null || tagName.equals(myParser.getName()) && myParser.getPrefix() == null)) {
+      event = parser.nextToken();
+      if (event == XmlPullParser.START_TAG && (tagName == null || tagName.equals(parser.getName()) && parser.getPrefix() == null)) {
         subtagVisitor.visitTag();
       }
-    } while (event != XmlPullParser.END_DOCUMENT && (event != XmlPullParser.END_TAG || myParser.getDepth() > elementDepth));
+    } while (event != XmlPullParser.END_DOCUMENT && (event != XmlPullParser.END_TAG || parser.getDepth() > elementDepth));
   }
 
   private void validateResourceName(@NotNull String resourceName, @NotNull ResourceType resourceType, @NotNull PathString file)
       throws XmlSyntaxException {
     String error = ValueResourceNameValidator.getErrorText(resourceName, resourceType);
     if (error != null) {
-      throw new XmlSyntaxException(error, myParser, getDisplayName(file));
+      throw new XmlSyntaxException(error, getParsers().parser, getDisplayName(file));
     }
   }
 
@@ -1171,6 +1287,26 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
     }
   }
 
+  /** The parsers used to parse a value resource file. Used by one thread at a time. */
+  private final class Parsers {
+    @NotNull final ValueResourceXmlParser parser = new ValueResourceXmlParser(myNamespaceResolverCache);
+    @NotNull final XmlTextExtractor textExtractor = new XmlTextExtractor();
+    @NotNull final ResourceUrlParser urlParser = new ResourceUrlParser();
+  }
+
+  /** Resources parsed from a value resource file. */
+  private static final class ParsedValueResources {
+    @NotNull final PathString file;
+    @NotNull final List<BasicValueResourceItemBase> items = new ArrayList<>();
+    /** Attr definitions inside styleables that may become top-level attr resources. */
+    @NotNull final List<BasicAttrResourceItem> attrCandidates = new ArrayList<>();
+    @Nullable Exception error;
+
+    ParsedValueResources(@NotNull PathString file) {
+      this.file = file;
+    }
+  }
+
   private static final class ResourceFileCollector implements FileVisitor<Path> {
     @NotNull final List<PathString> resourceFiles = new ArrayList<>();
     @NotNull final List<IOException> ioErrors = new ArrayList<>();
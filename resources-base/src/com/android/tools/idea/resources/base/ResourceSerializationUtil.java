@@ -22,6 +22,7 @@ import com.android.ide.common.rendering.api.StyleItemResourceValue;
 import com.android.ide.common.resources.ResourceItem;
 import com.android.ide.common.resources.configuration.FolderConfiguration;
 import com.android.resources.ResourceType;
+import com.android.resources.ResourceVisibility;
 import com.google.common.collect.ListMultimap;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.util.io.FileUtilRt;
@@ -33,14 +34,18 @@ import org.jetbrains.annotations.Nullable;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
@@ -123,9 +128,122 @@ public class ResourceSerializationUtil {
     sourceFileIndexes.defaultReturnValue(-1);
     Object2IntMap<ResourceNamespace.Resolver> namespaceResolverIndexes = new Object2IntOpenHashMap<>();
     namespaceResolverIndexes.defaultReturnValue(-1);
-    int itemCount = 0;
     Collection<ListMultimap<String, ResourceItem>> resourceMaps = resources.values();
+    int itemCount = collectIndexes(resourceMaps, configFilter, qualifierStringIndexes, sourceFileIndexes, namespaceResolverIndexes);
+
+    writeStrings(qualifierStringIndexes, stream);
+    writeSourceFiles(sourceFileIndexes, stream, qualifierStringIndexes);
+    writeNamespaceResolvers(namespaceResolverIndexes, stream);
+
+    stream.writeInt(itemCount);
 
+    for (ListMultimap<String, ResourceItem> resourceMap : resourceMaps) {
+      for (ResourceItem item : resourceMap.values()) {
+        FolderConfiguration configuration = item.getConfiguration();
+        if (configFilter.test(configuration)) {
+          ((BasicResourceItemBase)item).serialize(stream, qualifierStringIndexes, sourceFileIndexes, namespaceResolverIndexes);
+        }
+      }
+    }
+  }
+
+  /**
+   * Writes resources to the given output stream in a format that allows reading resources of a particular type and name without
+   * reading the rest of the stream. Such streams are read by {@link MappedResourceTable}.
+   *
+   * The data is stored as follows:
+   * <ol>
+   *   <li>Offset of the index relative to the end of this offset and the next one (4 bytes, big endian)</li>
+   *   <li>Offset of the resource items relative to the end of this offset (4 bytes, big endian)</li>
+   *   <li>Folder configurations, value resource files and namespace resolvers in the same format as in
+   *       {@link #writeResourcesToStream}</li>
+   *   <li>Number of resource types (int)</li>
+   *   <li>For each resource type, the ordinal of the type and the number of resource names (ints), followed by the resource names
+   *       in alphabetical order. Each name (string) is followed by the number of resource items with that name (int), the offset of
+   *       the first of these items relative to the start of the resource items (int) and whether any of the items is public
+   *       (boolean).</li>
+   *   <li>Serialized resource items (see {@link BasicResourceItemBase#serialize}) grouped by type and name</li>
+   * </ol>
+   *
+   * @param resources the resources to write
+   * @param stream the stream to write to
+   * @param configFilter only resources belonging to configurations satisfying this filter are written to the stream
+   */
+  public static void writeIndexedResourcesToStream(@NotNull Map<ResourceType, ListMultimap<String, ResourceItem>> resources,
+                                                   @NotNull Base128OutputStream stream,
+                                                   @NotNull Predicate<FolderConfiguration> configFilter) throws IOException {
+    Object2IntMap<String> qualifierStringIndexes = new Object2IntOpenHashMap<>();
+    qualifierStringIndexes.defaultReturnValue(-1);
+    Object2IntMap<ResourceSourceFile> sourceFileIndexes = new Object2IntOpenHashMap<>();
+    sourceFileIndexes.defaultReturnValue(-1);
+    Object2IntMap<ResourceNamespace.Resolver> namespaceResolverIndexes = new Object2IntOpenHashMap<>();
+    namespaceResolverIndexes.defaultReturnValue(-1);
+    collectIndexes(resources.values(), configFilter, qualifierStringIndexes, sourceFileIndexes, namespaceResolverIndexes);
+
+    ByteArrayOutputStream prefixBytes = new ByteArrayOutputStream();
+    try (Base128OutputStream prefixStream = new Base128OutputStream(prefixBytes)) {
+      writeStrings(qualifierStringIndexes, prefixStream);
+      writeSourceFiles(sourceFileIndexes, prefixStream, qualifierStringIndexes);
+      writeNamespaceResolvers(namespaceResolverIndexes, prefixStream);
+    }
+
+    ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+    ByteArrayOutputStream itemBytes = new ByteArrayOutputStream();
+    try (Base128OutputStream indexStream = new Base128OutputStream(indexBytes);
+         Base128OutputStream itemStream = new Base128OutputStream(itemBytes)) {
+      Map<ResourceType, SortedMap<String, List<ResourceItem>>> filteredResources = new EnumMap<>(ResourceType.class);
+      for (Map.Entry<ResourceType, ListMultimap<String, ResourceItem>> entry : resources.entrySet()) {
+        SortedMap<String, List<ResourceItem>> itemsByName = new TreeMap<>();
+        for (ResourceItem item : entry.getValue().values()) {
+          if (configFilter.test(item.getConfiguration())) {
+            itemsByName.computeIfAbsent(item.getName(), name -> new ArrayList<>()).add(item);
+          }
+        }
+        if (!itemsByName.isEmpty()) {
+          filteredResources.put(entry.getKey(), itemsByName);
+        }
+      }
+
+      indexStream.writeInt(filteredResources.size());
+      for (Map.Entry<ResourceType, SortedMap<String, List<ResourceItem>>> entry : filteredResources.entrySet()) {
+        indexStream.writeInt(entry.getKey().ordinal());
+        indexStream.writeInt(entry.getValue().size());
+        for (Map.Entry<String, List<ResourceItem>> itemsWithName : entry.getValue().entrySet()) {
+          itemStream.flush();
+          indexStream.writeString(itemsWithName.getKey());
+          indexStream.writeInt(itemsWithName.getValue().size());
+          indexStream.writeInt(itemBytes.size());
+          boolean hasPublicItems = false;
+          for (ResourceItem item : itemsWithName.getValue()) {
+            ((BasicResourceItemBase)item).serialize(itemStream, qualifierStringIndexes, sourceFileIndexes, namespaceResolverIndexes);
+            hasPublicItems |= ((BasicResourceItemBase)item).getVisibility() == ResourceVisibility.PUBLIC;
+          }
+          indexStream.writeBoolean(hasPublicItems);
+        }
+      }
+    }
+
+    stream.write(ByteBuffer.allocate(2 * Integer.BYTES)
+                     .putInt(prefixBytes.size())
+                     .putInt(prefixBytes.size() + indexBytes.size())
+                     .array());
+    stream.write(prefixBytes.toByteArray());
+    stream.write(indexBytes.toByteArray());
+    stream.write(itemBytes.toByteArray());
+  }
+
+  /**
+   * Assigns indexes to the qualifier strings, value resource files and namespace resolvers of the resources satisfying
+   * the given filter.
+   *
+   * @return the number of resources satisfying the filter
+   */
+  private static int collectIndexes(@NotNull Collection<ListMultimap<String, ResourceItem>> resourceMaps,
+                                    @NotNull Predicate<FolderConfiguration> configFilter,
+                                    @NotNull Object2IntMap<String> qualifierStringIndexes,
+                                    @NotNull Object2IntMap<ResourceSourceFile> sourceFileIndexes,
+                                    @NotNull Object2IntMap<ResourceNamespace.Resolver> namespaceResolverIndexes) {
+    int itemCount = 0;
     for (ListMultimap<String, ResourceItem> resourceMap : resourceMaps) {
       for (ResourceItem item : resourceMap.values()) {
         FolderConfiguration configuration = item.getConfiguration();
@@ -157,21 +275,7 @@ public class ResourceSerializationUtil {
         }
       }
     }
-
-    writeStrings(qualifierStringIndexes, stream);
-    writeSourceFiles(sourceFileIndexes, stream, qualifierStringIndexes);
-    writeNamespaceResolvers(namespaceResolverIndexes, stream);
-
-    stream.writeInt(itemCount);
-
-    for (ListMultimap<String, ResourceItem> resourceMap : resourceMaps) {
-      for (ResourceItem item : resourceMap.values()) {
-        FolderConfiguration configuration = item.getConfiguration();
-        if (configFilter.test(configuration)) {
-          ((BasicResourceItemBase)item).serialize(stream, qualifierStringIndexes, sourceFileIndexes, namespaceResolverIndexes);
-        }
-      }
-    }
+    return itemCount;
   }
 
   private static void addToNamespaceResolverIndexes(@NotNull ResourceNamespace.Resolver resolver,
@@ -192,11 +296,36 @@ public class ResourceSerializationUtil {
                                              @NotNull Consumer<BasicResourceItem> resourceConsumer) throws IOException {
     stream.setStringCache(stringCache); // Enable string instance sharing to minimize memory consumption.
 
+    List<RepositoryConfiguration> configurations = new ArrayList<>();
+    List<ResourceSourceFile> newSourceFiles = new ArrayList<>();
+    List<ResourceNamespace.Resolver> newNamespaceResolvers = new ArrayList<>();
+    if (!readItemContext(stream, namespaceResolverCache, repository, configurations, newSourceFiles, newNamespaceResolvers)) {
+      return; // Nothing to load.
+    }
+
+    int n = stream.readInt();
+    for (int i = 0; i < n; i++) {
+      BasicResourceItemBase item = BasicResourceItemBase.deserialize(stream, configurations, newSourceFiles, newNamespaceResolvers);
+      resourceConsumer.accept(item);
+    }
+  }
+
+  /**
+   * Reads the folder configurations, value resource files and namespace resolvers preceding the resource items in a stream
+   * and adds them to the given lists.
+   *
+   * @return false if the stream contains no folder configurations and therefore no resource items, true otherwise
+   */
+  static boolean readItemContext(@NotNull Base128InputStream stream,
+                                 @Nullable Map<NamespaceResolver, NamespaceResolver> namespaceResolverCache,
+                                 @NotNull LoadableResourceRepository repository,
+                                 @NotNull List<RepositoryConfiguration> configurations,
+                                 @NotNull List<ResourceSourceFile> sourceFiles,
+                                 @NotNull List<ResourceNamespace.Resolver> namespaceResolvers) throws IOException {
     int n = stream.readInt();
     if (n == 0) {
-      return; // Nothing to load.
+      return false;
     }
-    List<RepositoryConfiguration> configurations = new ArrayList<>(n);
     for (int i = 0; i < n; i++) {
       String configQualifier = stream.readString();
       if (configQualifier == null) {
@@ -210,27 +339,20 @@ public class ResourceSerializationUtil {
     }
 
     n = stream.readInt();
-    List<ResourceSourceFile> newSourceFiles = new ArrayList<>(n);
     for (int i = 0; i < n; i++) {
       ResourceSourceFile sourceFile = repository.deserializeResourceSourceFile(stream, configurations);
-      newSourceFiles.add(sourceFile);
+      sourceFiles.add(sourceFile);
     }
 
     n = stream.readInt();
-    List<ResourceNamespace.Resolver> newNamespaceResolvers = new ArrayList<>(n);
     for (int i = 0; i < n; i++) {
       NamespaceResolver namespaceResolver = NamespaceResolver.deserialize(stream);
       if (namespaceResolverCache != null) {
         namespaceResolver = namespaceResolverCache.computeIfAbsent(namespaceResolver, Function.identity());
       }
-      newNamespaceResolvers.add(namespaceResolver);
-    }
-
-    n = stream.readInt();
-    for (int i = 0; i < n; i++) {
-      BasicResourceItemBase item = BasicResourceItemBase.deserialize(stream, configurations, newSourceFiles, newNamespaceResolvers);
-      resourceConsumer.accept(item);
+      namespaceResolvers.add(namespaceResolver);
     }
+    return true;
   }
 
   /**
@@ -34,9 +34,21 @@ import org.xmlpull.v1.XmlPullParserException;
  * for the current tag.
  */
 class ValueResourceXmlParser extends CommentTrackingXmlPullParser {
-  @NotNull final Map<NamespaceResolver, NamespaceResolver> namespaceResolverCache = new HashMap<>();
+  @NotNull final Map<NamespaceResolver, NamespaceResolver> namespaceResolverCache;
   @NotNull final Deque<NamespaceResolver> resolverStack = new ArrayDeque<>(4);
 
+  ValueResourceXmlParser() {
+    this(new HashMap<>());
+  }
+
+  /**
+   * Creates a parser that shares the given namespace resolver cache with other parsers. The cache has to be thread-safe
+   * if the parsers are used by different threads.
+   */
+  ValueResourceXmlParser(@NotNull Map<NamespaceResolver, NamespaceResolver> namespaceResolverCache) {
+    this.namespaceResolverCache = namespaceResolverCache;
+  }
+
   /**
    * Returns the namespace resolver for the current XML node. The parser has to be positioned on a start tag
    * when this method is called.
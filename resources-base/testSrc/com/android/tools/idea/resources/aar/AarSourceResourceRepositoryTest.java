@@ -33,9 +33,12 @@ import com.android.utils.PathUtils;
 import com.intellij.util.containers.ContainerUtil;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.junit.After;
@@ -198,6 +201,44 @@ public class AarSourceResourceRepositoryTest {
                                                   AttributeFormat.STRING);
   }
 
+  @Test
+  public void testParallelLoadingMatchesSequentialLoading() throws Exception {
+    // Parallel streams started from a fork-join pool run in that pool, so a pool with a single thread loads the files sequentially.
+    List<String> sequential = loadInPool(1);
+    assertThat(sequential).isNotEmpty();
+    for (int i = 0; i < 5; i++) {
+      assertThat(loadInPool(4)).containsExactlyElementsIn(sequential).inOrder();
+    }
+  }
+
+  @NotNull
+  private static List<String> loadInPool(int parallelism) throws Exception {
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+    try {
+      return pool.submit(() -> describeContents(ResourcesTestsUtil.getTestAarRepositoryFromExplodedAar())).get();
+    }
+    finally {
+      pool.shutdown();
+    }
+  }
+
+  /**
+   * Describes all resources of the repository in the order in which the repository returns them.
+   */
+  @NotNull
+  private static List<String> describeContents(@NotNull AarSourceResourceRepository repository) {
+    List<String> result = new ArrayList<>();
+    for (ResourceType type : ResourceType.values()) {
+      for (Map.Entry<String, ResourceItem> entry : repository.getResources(ResourceNamespace.RES_AUTO, type).entries()) {
+        ResourceItem item = entry.getValue();
+        ResourceValue value = item.getResourceValue();
+        result.add(type.getName() + '/' + entry.getKey() + '-' + item.getConfiguration().getQualifierString() + '=' +
+                   (value == null ? null : value.getValue()));
+      }
+    }
+    return result;
+  }
+
   @Test
   public void testMultipleValues_partOfResourceDirectories() {
     AarSourceResourceRepository repository =
@@ -272,6 +272,32 @@ public class FrameworkResourceRepositoryTest extends PlatformTestCase {
     }
   }
 
+  public void testResourcesFromCacheAreDecodedOnDemand() {
+    FrameworkResourceRepository fromSourceFiles =
+        FrameworkResourceRepository.create(myResourceFolder, ImmutableSet.of("fr"), createCachingData(directExecutor()), false);
+    FrameworkResourceRepository fromCache =
+        FrameworkResourceRepository.create(myResourceFolder, ImmutableSet.of("fr"), createCachingData(null), false);
+    assertThat(fromCache.isLoadedFromCache()).isTrue();
+
+    List<ResourceItem> byName = fromCache.getResources(ResourceNamespace.ANDROID, ResourceType.STRING, "ok");
+    assertThat(byName).hasSize(fromSourceFiles.getResources(ResourceNamespace.ANDROID, ResourceType.STRING, "ok").size());
+    assertThat(fromCache.getResources(ResourceNamespace.ANDROID, ResourceType.STRING, "ok")).isSameAs(byName);
+    assertThat(fromCache.getResources(ResourceNamespace.ANDROID, ResourceType.STRING, "no_such_string")).isEmpty();
+    assertThat(fromCache.hasResources(ResourceNamespace.ANDROID, ResourceType.STRING, "ok")).isTrue();
+    assertThat(fromCache.getResourceNames(ResourceNamespace.ANDROID, ResourceType.STRING))
+        .isEqualTo(fromSourceFiles.getResourceNames(ResourceNamespace.ANDROID, ResourceType.STRING));
+
+    // Resources decoded by name are reused when their type is requested as a whole.
+    List<ResourceItem> byType = fromCache.getResources(ResourceNamespace.ANDROID, ResourceType.STRING).get("ok");
+    assertThat(byType).hasSize(byName.size());
+    for (int i = 0; i < byName.size(); i++) {
+      assertThat(byType.get(i)).isSameAs(byName.get(i));
+    }
+
+    compareContents(fromSourceFiles, fromCache);
+    checkContents(fromCache);
+  }
+
   public void testLoadingFromSourcesAndJar() throws Exception {
     Path frameworkResJar = getFrameworkResJar();
     for (Set<String> languages : Arrays.asList(ImmutableSet.<String>of(), ImmutableSet.of("fr", "de"), null)) {
@@ -16,14 +16,49 @@
 package com.android.tools.datastore;
 
 import org.jetbrains.annotations.NotNull;
+import org.sqlite.SQLiteConfig;
 
 import java.io.File;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 
+/**
+ * Wraps the SQLite database backing the datastore.
+ * <p>
+ * The write connection runs with auto-commit disabled and a background group-commit task commits the pending changes either when
+ * {@link #COMMIT_INTERVAL_MS} elapsed since the last commit or when more than {@link #MAX_PENDING_CHANGES} rows were modified. This keeps
+ * the uncommitted transaction (and the memory it holds) bounded during long sessions.
+ * <p>
+ * {@link Characteristic#DURABLE} databases can open a pool of read-only connections (see {@link #getReadConnection()}). They are then
+ * switched to WAL mode, which lets the read connections query the committed data while the pollers keep writing. Readers see the data as
+ * of the last group commit.
+ */
 public class DataStoreDatabase {
+  /**
+   * Maximum time uncommitted changes are kept in the write transaction.
+   */
+  private static final long COMMIT_INTERVAL_MS = 250;
+  /**
+   * Number of modified rows that triggers a commit before {@link #COMMIT_INTERVAL_MS} elapses.
+   */
+  private static final long MAX_PENDING_CHANGES = 10000;
+  /**
+   * How often the group-commit task checks the flush thresholds.
+   */
+  private static final long COMMIT_CHECK_INTERVAL_MS = 50;
+
   public enum Characteristic {
     // TODO handle potential db file name clashes
     DURABLE,
@@ -38,6 +73,15 @@ public class DataStoreDatabase {
   @NotNull private final LogService myLogService;
 
   private final Connection myConnection;
+  @NotNull private final List<Connection> myReadConnections;
+  private final AtomicInteger myNextReadConnection = new AtomicInteger();
+  private final ThreadLocal<Connection> myThreadReadConnection = new ThreadLocal<>();
+
+  private final Object myCommitLock = new Object();
+  private final ScheduledExecutorService myCommitExecutor;
+  private PreparedStatement myTotalChangesStatement;
+  private long myCommittedChanges;
+  private long myLastCommitNs = System.nanoTime();
 
   /**
    * @param dbPath the path to the backing DB file, if {@link Characteristic#DURABLE}.
@@ -52,8 +96,22 @@ public class DataStoreDatabase {
                            @NotNull Characteristic characteristic,
                            @NotNull LogService logService,
                            @NotNull Consumer<Throwable> noPiiExceptionHandler) {
+    this(dbPath, characteristic, logService, noPiiExceptionHandler, 0);
+  }
+
+  /**
+   * @param readConnectionCount number of read-only connections to open for the query paths. Only {@link Characteristic#DURABLE}
+   *                            databases support read connections, and only switch to WAL mode if they have some; in-memory databases
+   *                            always read from the write connection.
+   */
+  public DataStoreDatabase(@NotNull String dbPath,
+                           @NotNull Characteristic characteristic,
+                           @NotNull LogService logService,
+                           @NotNull Consumer<Throwable> noPiiExceptionHandler,
+                           int readConnectionCount) {
     myLogService = logService;
     Connection connection = null;
+    List<Connection> readConnections = new ArrayList<>();
     try {
       // For older versions of the JDBC we need to force load the sqlite.JDBC driver to trigger static initializer's and register
       // the JDBC driver with the java DriverMangaer.
@@ -71,6 +129,9 @@ public class DataStoreDatabase {
           if (dbFile.exists()) {
             dbFile.delete();
           }
+          // Also drop the WAL files of the previous database, they would otherwise be replayed into the new one.
+          new File(dbFile.getPath() + "-wal").delete();
+          new File(dbFile.getPath() + "-shm").delete();
 
           File parent = dbFile.getParentFile();
           if (parent != null) {
@@ -78,15 +139,28 @@ public class DataStoreDatabase {
               getLogger().error("Unable to create parent directory");
             }
           }
-          connection = DriverManager.getConnection(String.format("jdbc:sqlite:%s", dbFile.getPath()));
+          String url = String.format("jdbc:sqlite:%s", dbFile.getPath());
+          connection = DriverManager.getConnection(url);
+          if (readConnectionCount > 0) {
+            // WAL journaling lets the read connections query committed data without blocking on the writer.
+            try (Statement statement = connection.createStatement()) {
+              statement.execute("PRAGMA journal_mode=WAL");
+              statement.execute("PRAGMA synchronous=NORMAL");
+            }
+          }
+          SQLiteConfig readConfig = new SQLiteConfig();
+          readConfig.setReadOnly(true);
+          for (int i = 0; i < readConnectionCount; i++) {
+            readConnections.add(DriverManager.getConnection(url, readConfig.toProperties()));
+          }
           break;
         default:
           throw new RuntimeException("Characteristic not handled!");
       }
 
-      // Performance optimization.
-      // TODO: Create a timer and commit the database transaction every X seconds.
+      // Performance optimization. Changes are committed in groups by the commit task.
       connection.setAutoCommit(false);
+      myTotalChangesStatement = connection.prepareStatement("SELECT total_changes()");
     }
     catch (ClassNotFoundException e) {
       getLogger().error(e);
@@ -98,11 +172,76 @@ public class DataStoreDatabase {
       noPiiExceptionHandler.accept(e);
     }
     myConnection = connection;
+    myReadConnections = Collections.unmodifiableList(readConnections);
+    myCommitExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread thread = new Thread(r, "DataStoreGroupCommit");
+      thread.setDaemon(true);
+      return thread;
+    });
+    if (myConnection != null) {
+      myCommitExecutor.scheduleWithFixedDelay(() -> commitIfNeeded(false), COMMIT_CHECK_INTERVAL_MS, COMMIT_CHECK_INTERVAL_MS,
+                                              TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Commits the pending changes of the write connection if one of the group-commit thresholds was reached, or unconditionally if
+   * {@code force} is true.
+   *
+   * @return true if a commit happened.
+   */
+  private boolean commitIfNeeded(boolean force) {
+    synchronized (myCommitLock) {
+      try {
+        if (myConnection.isClosed()) {
+          return false;
+        }
+        long totalChanges;
+        try (ResultSet result = myTotalChangesStatement.executeQuery()) {
+          totalChanges = result.next() ? result.getLong(1) : myCommittedChanges;
+        }
+        long pendingChanges = totalChanges - myCommittedChanges;
+        long now = System.nanoTime();
+        if (!force &&
+            pendingChanges < MAX_PENDING_CHANGES &&
+            TimeUnit.NANOSECONDS.toMillis(now - myLastCommitNs) < COMMIT_INTERVAL_MS) {
+          return false;
+        }
+        // Commit even without pending changes, this releases the read snapshot the total_changes() query held.
+        myConnection.commit();
+        myCommittedChanges = totalChanges;
+        myLastCommitNs = now;
+        return pendingChanges > 0;
+      }
+      catch (SQLException e) {
+        getLogger().warn(e);
+        return false;
+      }
+    }
+  }
+
+  /**
+   * Commits the pending changes right away, e.g. so a newly created schema is visible to the read connections.
+   */
+  public void commit() {
+    commitIfNeeded(true);
   }
 
   public void disconnect() {
+    myCommitExecutor.shutdownNow();
+    for (Connection readConnection : myReadConnections) {
+      try {
+        readConnection.close();
+      }
+      catch (SQLException e) {
+        getLogger().error(e);
+      }
+    }
     try {
-      myConnection.commit();
+      synchronized (myCommitLock) {
+        myTotalChangesStatement.close();
+        myConnection.commit();
+      }
     }
     catch (SQLException e) {
       getLogger().error(e);
@@ -122,4 +261,20 @@ public class DataStoreDatabase {
   public Connection getConnection() {
     return myConnection;
   }
+
+  /**
+   * Returns the read-only connection assigned to the calling thread. Threads are spread across the pool in a round-robin fashion. If the
+   * database has no read connections, the write connection is returned instead.
+   */
+  public Connection getReadConnection() {
+    if (myReadConnections.isEmpty()) {
+      return myConnection;
+    }
+    Connection connection = myThreadReadConnection.get();
+    if (connection == null) {
+      connection = myReadConnections.get(Math.floorMod(myNextReadConnection.getAndIncrement(), myReadConnections.size()));
+      myThreadReadConnection.set(connection);
+    }
+    return connection;
+  }
 }
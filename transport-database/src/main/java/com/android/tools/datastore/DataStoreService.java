@@ -82,6 +82,11 @@ public class DataStoreService implements DataStoreTable.DataStoreTableErrorCallb
    * and can be queried via the events pipeline. Example data pushed into this stream are stream connected / disconnected events.
    */
   public static final long DATASTORE_RESERVED_STREAM_ID = -1;
+  /**
+   * Number of read-only connections opened for each {@link DataStoreDatabase.Characteristic#DURABLE} database, so the service query paths
+   * don't contend with the pollers writing to the database.
+   */
+  private static final int READ_CONNECTION_COUNT = 2;
 
   public static class BackingNamespace {
     public static final BackingNamespace DEFAULT_SHARED_NAMESPACE = new BackingNamespace("default.sql", DURABLE);
@@ -212,7 +217,8 @@ public class DataStoreService implements DataStoreTable.DataStoreTableErrorCallb
   public DataStoreDatabase createDatabase(@NotNull String dbPath,
                                           @NotNull DataStoreDatabase.Characteristic characteristic,
                                           Consumer<Throwable> noPiiExceptionHandler) {
-    return new DataStoreDatabase(dbPath, characteristic, myLogService, noPiiExceptionHandler);
+    return new DataStoreDatabase(dbPath, characteristic, myLogService, noPiiExceptionHandler,
+                                 characteristic == DURABLE ? READ_CONNECTION_COUNT : 0);
   }
 
   /**
@@ -227,7 +233,9 @@ public class DataStoreService implements DataStoreTable.DataStoreTableErrorCallb
       assert !namespace.myNamespace.isEmpty();
       DataStoreDatabase db = myDatabases.computeIfAbsent(namespace, backingNamespace -> createDatabase(
         myDatastoreDirectory + backingNamespace.myNamespace, backingNamespace.myCharacteristic, myNoPiiExceptionHandler));
-      service.setBackingStore(namespace, db.getConnection());
+      service.setBackingStore(namespace, db.getConnection(), db::getReadConnection);
+      // Commit the newly created schema so it is visible to the read connections.
+      db.commit();
     });
 
     // Build server and start listening for RPC calls for the registered service
@@ -20,6 +20,7 @@ import org.jetbrains.annotations.NotNull;
 
 import java.sql.Connection;
 import java.util.List;
+import java.util.function.Supplier;
 
 /**
  * Interface for a class that wraps a grpc service. Once connected to the service, you will need to
@@ -39,8 +40,13 @@ public interface ServicePassThrough {
   List<DataStoreService.BackingNamespace> getBackingNamespaces();
 
   /**
-   * @param namespace  a namespace corresponding to an entry in the list returned from {@link #getBackingNamespaces()}
-   * @param connection {@link Connection} to the backing store
+   * @param namespace        a namespace corresponding to an entry in the list returned from {@link #getBackingNamespaces()}
+   * @param connection       {@link Connection} to the backing store, used for writes
+   * @param queryConnections provides the read-only {@link Connection} to use for queries from the calling thread. Queries through these
+   *                         connections see the data as of the last group commit, so tables that read back their own writes should keep
+   *                         using {@code connection}.
    */
-  void setBackingStore(@NotNull DataStoreService.BackingNamespace namespace, @NotNull Connection connection);
+  void setBackingStore(@NotNull DataStoreService.BackingNamespace namespace,
+                       @NotNull Connection connection,
+                       @NotNull Supplier<Connection> queryConnections);
 }
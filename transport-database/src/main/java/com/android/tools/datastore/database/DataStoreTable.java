@@ -21,6 +21,7 @@ import java.sql.*;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * Interface a {@link com.android.tools.datastore.ServicePassThrough} object returns to indicate this object is
@@ -30,6 +31,10 @@ public abstract class DataStoreTable<T extends Enum> {
   private static final Set<DataStoreTableErrorCallback> ERROR_CALLBACKS = ConcurrentHashMap.newKeySet();
 
   private Connection myConnection;
+  /**
+   * Provides the connection used by the read-only statements of the calling thread. Defaults to the write connection.
+   */
+  @NotNull private Supplier<Connection> myQueryConnectionProvider = () -> myConnection;
   private final ThreadLocal<Map<T, PreparedStatement>> myStatementMap = new ThreadLocal<>();
 
   // Cache custom queries we have a limited number and we call the same query multiple times.
@@ -48,6 +53,17 @@ public abstract class DataStoreTable<T extends Enum> {
     myConnection = connection;
   }
 
+  /**
+   * Sets the provider of the connections used by the query statements (the ones starting with SELECT). The provider is called once per
+   * thread, when the thread prepares its statements, so it can hand out connections from a pool. Must be called before any statement is
+   * prepared.
+   *
+   * @see com.android.tools.datastore.DataStoreDatabase#getReadConnection()
+   */
+  public void setQueryConnectionProvider(@NotNull Supplier<Connection> queryConnectionProvider) {
+    myQueryConnectionProvider = queryConnectionProvider;
+  }
+
   /**
    * Helper function called after initialize to create {@link PreparedStatement} the implementor should cache
    * the statements for later use.
@@ -123,7 +139,7 @@ public abstract class DataStoreTable<T extends Enum> {
   }
 
   protected void createStatement(@NotNull T statement, @NotNull String stmt) throws SQLException {
-    getStatementMap().put(statement, myConnection.prepareStatement(stmt));
+    getStatementMap().put(statement, connectionFor(stmt).prepareStatement(stmt));
   }
 
   protected void createStatement(@NotNull T statement, @NotNull String stmt, int statementFlags) throws SQLException {
@@ -153,6 +169,8 @@ public abstract class DataStoreTable<T extends Enum> {
         }
       });
       int[] results = stmt.executeBatch();
+      // Clear parameters on exit so cached statements don't keep the last batch element in memory.
+      stmt.clearParameters();
       for(int i = 0; i < results.length; i++) {
         if (results[i] == Statement.EXECUTE_FAILED) {
           throw new SQLException(String.format("Failed to insert batch element %d with result %d", i, results[i]));
@@ -200,7 +218,7 @@ public abstract class DataStoreTable<T extends Enum> {
 
     Map<String, PreparedStatement> queryCache = myCustomQueryCache.get();
     if (!queryCache.containsKey(sql)) {
-      queryCache.put(sql, myConnection.prepareStatement(sql));
+      queryCache.put(sql, myQueryConnectionProvider.get().prepareStatement(sql));
     }
 
     PreparedStatement statement = queryCache.get(sql);
@@ -208,6 +226,15 @@ public abstract class DataStoreTable<T extends Enum> {
     return statement.executeQuery();
   }
 
+  @NotNull
+  private Connection connectionFor(@NotNull String stmt) {
+    return isQuery(stmt) ? myQueryConnectionProvider.get() : myConnection;
+  }
+
+  private static boolean isQuery(@NotNull String stmt) {
+    return stmt.trim().regionMatches(true, 0, "SELECT", 0, "SELECT".length());
+  }
+
   protected void applyParams(@NotNull PreparedStatement statement, Object... params) throws SQLException {
     for (int i = 0; params != null && i < params.length; i++) {
       if (params[i] == null) {
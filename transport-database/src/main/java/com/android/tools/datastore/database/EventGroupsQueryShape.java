@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.database;
+
+import com.android.tools.datastore.database.UnifiedEventsTable.EventProjection;
+import com.android.tools.profiler.proto.Transport.GetEventGroupsRequest;
+import java.util.ArrayList;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The shape of a {@link UnifiedEventsTable#queryUnifiedEventGroups} query: which optional filters are set and which columns are needed.
+ * Requests with the same shape share the same SQL statement, so the SQL is built once per shape and the prepared statements cached by
+ * {@link DataStoreTable} are reused across queries.
+ * <p>
+ * The statement is a {@code UNION ALL} of up to three parts, each one served by the unique index on
+ * (Kind, StreamId, ProcessId, GroupId, Timestamp, IsEnded):
+ * <ul>
+ *   <li>{@link #PART_BEFORE_RANGE}: per group, the last event before the from timestamp.</li>
+ *   <li>{@link #PART_IN_RANGE}: all the events between the from and to timestamps.</li>
+ *   <li>{@link #PART_AFTER_RANGE}: per group, the first event after the to timestamp.</li>
+ * </ul>
+ */
+final class EventGroupsQueryShape {
+  static final int PART_BEFORE_RANGE = 0;
+  static final int PART_IN_RANGE = 1;
+  static final int PART_AFTER_RANGE = 2;
+
+  static final String PART_COLUMN = "Part";
+  static final String GROUP_ID_COLUMN = "GroupId";
+  static final String IS_ENDED_COLUMN = "IsEnded";
+  static final String TIMESTAMP_COLUMN = "Timestamp";
+  static final String PROCESS_ID_COLUMN = "ProcessId";
+  static final String COMMAND_ID_COLUMN = "CommandId";
+  static final String DATA_COLUMN = "Data";
+
+  private static final int STREAM_ID_FILTER = 1;
+  private static final int PID_FILTER = 1 << 1;
+  private static final int GROUP_ID_FILTER = 1 << 2;
+  private static final int COMMAND_ID_FILTER = 1 << 3;
+  private static final int FROM_FILTER = 1 << 4;
+  private static final int TO_FILTER = 1 << 5;
+  private static final int HEADERS_ONLY = 1 << 6;
+  private static final int SHAPE_COUNT = 1 << 7;
+
+  private static final EventGroupsQueryShape[] SHAPES = new EventGroupsQueryShape[SHAPE_COUNT];
+
+  static {
+    for (int i = 0; i < SHAPE_COUNT; i++) {
+      SHAPES[i] = new EventGroupsQueryShape(i);
+    }
+  }
+
+  private final int myFlags;
+  @NotNull private final String mySql;
+
+  private EventGroupsQueryShape(int flags) {
+    myFlags = flags;
+    mySql = buildSql();
+  }
+
+  @NotNull
+  static EventGroupsQueryShape of(@NotNull GetEventGroupsRequest request, @NotNull EventProjection projection) {
+    int flags = 0;
+    if (request.getStreamId() != 0) {
+      flags |= STREAM_ID_FILTER;
+    }
+    if (request.getPid() != 0) {
+      flags |= PID_FILTER;
+    }
+    if (request.getGroupId() != 0) {
+      flags |= GROUP_ID_FILTER;
+    }
+    if (request.getCommandId() != 0) {
+      flags |= COMMAND_ID_FILTER;
+    }
+    if (request.getFromTimestamp() > 0) {
+      flags |= FROM_FILTER;
+    }
+    if (request.getToTimestamp() > 0 && request.getToTimestamp() != Long.MAX_VALUE) {
+      flags |= TO_FILTER;
+    }
+    if (projection == EventProjection.HEADERS_ONLY) {
+      flags |= HEADERS_ONLY;
+    }
+    return SHAPES[flags];
+  }
+
+  @NotNull
+  String getSql() {
+    return mySql;
+  }
+
+  private boolean has(int flag) {
+    return (myFlags & flag) != 0;
+  }
+
+  /**
+   * Returns the parameters to bind to {@link #getSql()} for the given request, in statement order.
+   */
+  @NotNull
+  List<Object> bindParams(@NotNull GetEventGroupsRequest request) {
+    List<Object> baseParams = new ArrayList<>();
+    baseParams.add(request.getKind().getNumber());
+    if (has(STREAM_ID_FILTER)) {
+      baseParams.add(request.getStreamId());
+    }
+    if (has(PID_FILTER)) {
+      baseParams.add(request.getPid());
+    }
+    if (has(GROUP_ID_FILTER)) {
+      baseParams.add(request.getGroupId());
+    }
+    if (has(COMMAND_ID_FILTER)) {
+      baseParams.add(request.getCommandId());
+    }
+
+    List<Object> params = new ArrayList<>();
+    if (has(FROM_FILTER)) {
+      params.addAll(baseParams);
+      params.add(request.getFromTimestamp());
+    }
+    params.addAll(baseParams);
+    if (has(FROM_FILTER)) {
+      params.add(request.getFromTimestamp());
+    }
+    if (has(TO_FILTER)) {
+      params.add(request.getToTimestamp());
+      params.addAll(baseParams);
+      params.add(request.getToTimestamp());
+    }
+    return params;
+  }
+
+  @NotNull
+  private String buildSql() {
+    StringBuilder filter = new StringBuilder("Kind = ?");
+    if (has(STREAM_ID_FILTER)) {
+      filter.append(" AND StreamId = ?");
+    }
+    if (has(PID_FILTER)) {
+      filter.append(" AND ProcessId = ?");
+    }
+    if (has(GROUP_ID_FILTER)) {
+      filter.append(" AND GroupId = ?");
+    }
+    if (has(COMMAND_ID_FILTER)) {
+      filter.append(" AND CommandId = ?");
+    }
+    String data = has(HEADERS_ONLY) ? "NULL AS Data" : "Data";
+    // Columns shared by the three parts. The aggregates of the before/after parts pick the row the bare columns are read from.
+    String columns = "GroupId, IsEnded, Timestamp, ProcessId, CommandId, " + data;
+
+    List<String> parts = new ArrayList<>();
+    if (has(FROM_FILTER)) {
+      parts.add(String.format("SELECT %d AS Part, %s, MAX(Timestamp), MAX(ROWID) FROM [UnifiedEventsTable] WHERE %s AND Timestamp < ? " +
+                              "GROUP BY GroupId", PART_BEFORE_RANGE, columns, filter));
+    }
+    StringBuilder inRange = new StringBuilder(
+      String.format("SELECT %d AS Part, %s, NULL, NULL FROM [UnifiedEventsTable] WHERE %s", PART_IN_RANGE, columns, filter));
+    if (has(FROM_FILTER)) {
+      inRange.append(" AND Timestamp >= ?");
+    }
+    if (has(TO_FILTER)) {
+      inRange.append(" AND Timestamp <= ?");
+    }
+    parts.add(inRange.toString());
+    if (has(TO_FILTER)) {
+      parts.add(String.format("SELECT %d AS Part, %s, MIN(Timestamp), MIN(ROWID) FROM [UnifiedEventsTable] WHERE %s AND Timestamp > ? " +
+                              "GROUP BY GroupId", PART_AFTER_RANGE, columns, filter));
+    }
+    return String.join(" UNION ALL ", parts);
+  }
+}
@@ -46,11 +46,13 @@ public class MemoryLiveAllocationTable extends DataStoreTable<MemoryLiveAllocati
 
   public enum MemoryStatements {
     INSERT_ALLOC_CONTEXTS("INSERT OR IGNORE INTO Memory_AllocationContexts (Session, Timestamp, Data) VALUES (?, ?, ?)"),
-    INSERT_ALLOC_EVENTS("INSERT OR IGNORE INTO Memory_AllocationEvents (Session, Timestamp, Data) VALUES (?, ?, ?)"),
+    INSERT_ALLOC_EVENTS(
+      "INSERT OR IGNORE INTO Memory_AllocationEvents (Session, Timestamp, MinEventTimestamp, MaxEventTimestamp, Data) VALUES (?, ?, ?, ?, ?)"),
     QUERY_ALLOC_CONTEXTS(
       "SELECT Data FROM Memory_AllocationContexts WHERE Session = ? AND Timestamp > ? AND Timestamp <= ? ORDER BY Timestamp ASC"),
     QUERY_ALLOC_EVENTS(
-      "SELECT Data FROM Memory_AllocationEvents WHERE Session = ? AND Timestamp > ? AND Timestamp <= ? ORDER BY Timestamp ASC"),
+      "SELECT Timestamp, MinEventTimestamp, MaxEventTimestamp, Data FROM Memory_AllocationEvents " +
+      "WHERE Session = ? AND Timestamp > ? AND Timestamp <= ? ORDER BY Timestamp ASC"),
 
     INSERT_JNI_REF("INSERT OR IGNORE INTO Memory_JniGlobalReferences (Session, Timestamp, Data) VALUES (?, ?, ?)"),
     QUERY_JNI_EVENTS(
@@ -90,8 +92,9 @@ public class MemoryLiveAllocationTable extends DataStoreTable<MemoryLiveAllocati
       // O+ Allocation Tracking
       createTable("Memory_AllocationContexts", "Session INTEGER NOT NULL", "Timestamp INTEGER", "Data BLOB",
                   "PRIMARY KEY(Session, Timestamp)");
-      createTable("Memory_AllocationEvents", "Session INTEGER NOT NULL", "Timestamp INTEGER", "Data BLOB",
-                  "PRIMARY KEY(Session, Timestamp)");
+      // The events are stored in the format of PackedAllocationEvents, with the range of their timestamps.
+      createTable("Memory_AllocationEvents", "Session INTEGER NOT NULL", "Timestamp INTEGER", "MinEventTimestamp INTEGER",
+                  "MaxEventTimestamp INTEGER", "Data BLOB", "PRIMARY KEY(Session, Timestamp)");
       createTable("Memory_JniGlobalReferences", "Session INTEGER NOT NULL", "Timestamp INTEGER", "Data BLOB",
                   "PRIMARY KEY(Session, Timestamp)");
       createTable("Memory_AllocationSamplingRateEvent", "Session INTEGER NOT NULL", "Timestamp INTEGER", "Data BLOB",
@@ -114,12 +117,24 @@ public class MemoryLiveAllocationTable extends DataStoreTable<MemoryLiveAllocati
     }
   }
 
+  /**
+   * @return the samples whose timestamps are within (startTime, endTime]. Only the events of the samples whose timestamps are within
+   * [startTime, endTime] are returned. Events are sent in samples that are timestamped after them, so callers that need the events of a
+   * range query a larger range and filter the events, and these are the only events that can be within it.
+   */
   public List<Memory.BatchAllocationEvents> getAllocationEvents(Common.Session session, long startTime, long endTime) {
     List<Memory.BatchAllocationEvents> results = new ArrayList<>();
     try {
       ResultSet resultSet = executeQuery(QUERY_ALLOC_EVENTS, session.getSessionId(), startTime, endTime);
       while (resultSet.next()) {
-        results.add(Memory.BatchAllocationEvents.newBuilder().mergeFrom(resultSet.getBytes(1)).build());
+        long timestamp = resultSet.getLong(1);
+        if (resultSet.getLong(3) < startTime || resultSet.getLong(2) > endTime) {
+          // None of the events are in range, so there is no need to read them.
+          results.add(Memory.BatchAllocationEvents.newBuilder().setTimestamp(timestamp).build());
+        }
+        else {
+          results.add(PackedAllocationEvents.decode(resultSet.getBytes(4), timestamp, startTime, endTime));
+        }
       }
     }
     catch (SQLException | InvalidProtocolBufferException ex) {
@@ -201,7 +216,14 @@ public class MemoryLiveAllocationTable extends DataStoreTable<MemoryLiveAllocati
   }
 
   public void insertAllocationEvents(Common.Session session, Memory.BatchAllocationEvents sample) {
-    execute(INSERT_ALLOC_EVENTS, session.getSessionId(), sample.getTimestamp(), sample.toByteArray());
+    long minEventTimestamp = Long.MAX_VALUE;
+    long maxEventTimestamp = Long.MIN_VALUE;
+    for (Memory.AllocationEvent event : sample.getEventsList()) {
+      minEventTimestamp = Math.min(minEventTimestamp, event.getTimestamp());
+      maxEventTimestamp = Math.max(maxEventTimestamp, event.getTimestamp());
+    }
+    execute(INSERT_ALLOC_EVENTS, session.getSessionId(), sample.getTimestamp(), minEventTimestamp, maxEventTimestamp,
+            PackedAllocationEvents.encode(sample));
   }
 
   public void insertOrReplaceAllocationSamplingRateEvent(@NotNull Common.Session session, @NotNull AllocationSamplingRateEvent event) {
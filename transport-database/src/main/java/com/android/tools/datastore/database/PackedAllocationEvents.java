@@ -0,0 +1,235 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.database;
+
+import com.android.tools.idea.protobuf.InvalidProtocolBufferException;
+import com.android.tools.profiler.proto.Memory.AllocationEvent;
+import com.android.tools.profiler.proto.Memory.BatchAllocationEvents;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Column-oriented binary encoding of a {@link BatchAllocationEvents} sample, so that the events of a time range can be read without parsing
+ * the whole batch.
+ * <p>
+ * The timestamps of the events are stored first, as zigzag varint deltas from the previous event (the first one from the batch timestamp).
+ * They are followed by fixed-width columns: the kind of each event, then the tag, class tag, stack id, thread id, heap id, length and size
+ * of the allocations, and the tag of the deallocations. Once the timestamps are decoded, the columns of an event are read at fixed offsets.
+ * Events that the columns can't represent exactly (e.g. class events, or allocations with method ids) are stored as serialized protos
+ * after the columns, with their offset and length in the tag and class tag columns. Batches with fields other than their timestamp and
+ * events are stored as serialized protos.
+ */
+final class PackedAllocationEvents {
+  private static final byte FORMAT_PACKED = 0;
+  private static final byte FORMAT_PROTO = 1;
+
+  private static final byte KIND_ALLOCATION = 0;
+  private static final byte KIND_DEALLOCATION = 1;
+  private static final byte KIND_PROTO = 2;
+
+  // Bytes of the fixed-width columns of an event: the kind, six int columns and the size.
+  private static final int COLUMNS_BYTES = Byte.BYTES + 6 * Integer.BYTES + Long.BYTES;
+  // Bytes of the header of a packed batch: the format, the event count and the size of the timestamps.
+  private static final int HEADER_BYTES = Byte.BYTES + 2 * Integer.BYTES;
+
+  private PackedAllocationEvents() {
+  }
+
+  @NotNull
+  static byte[] encode(@NotNull BatchAllocationEvents batch) {
+    if (!batch.toBuilder().clearEvents().build().equals(BatchAllocationEvents.newBuilder().setTimestamp(batch.getTimestamp()).build())) {
+      byte[] proto = batch.toByteArray();
+      return ByteBuffer.allocate(Byte.BYTES + proto.length).put(FORMAT_PROTO).put(proto).array();
+    }
+
+    int count = batch.getEventsCount();
+    ByteArrayOutputStream timestamps = new ByteArrayOutputStream(count * 2);
+    ByteArrayOutputStream protos = new ByteArrayOutputStream();
+    byte[] kinds = new byte[count];
+    int[][] intColumns = new int[6][count];
+    long[] sizes = new long[count];
+    long previousTimestamp = batch.getTimestamp();
+    for (int i = 0; i < count; ++i) {
+      AllocationEvent event = batch.getEvents(i);
+      writeVarLong(timestamps, zigzag(event.getTimestamp() - previousTimestamp));
+      previousTimestamp = event.getTimestamp();
+
+      if (event.equals(buildAllocation(event.getTimestamp(), event.getAllocData().getTag(), event.getAllocData().getClassTag(),
+                                       event.getAllocData().getStackId(), event.getAllocData().getThreadId(),
+                                       event.getAllocData().getHeapId(), event.getAllocData().getLength(),
+                                       event.getAllocData().getSize()))) {
+        AllocationEvent.Allocation allocation = event.getAllocData();
+        kinds[i] = KIND_ALLOCATION;
+        intColumns[0][i] = allocation.getTag();
+        intColumns[1][i] = allocation.getClassTag();
+        intColumns[2][i] = allocation.getStackId();
+        intColumns[3][i] = allocation.getThreadId();
+        intColumns[4][i] = allocation.getHeapId();
+        intColumns[5][i] = allocation.getLength();
+        sizes[i] = allocation.getSize();
+      }
+      else if (event.equals(buildDeallocation(event.getTimestamp(), event.getFreeData().getTag()))) {
+        kinds[i] = KIND_DEALLOCATION;
+        intColumns[0][i] = event.getFreeData().getTag();
+      }
+      else {
+        byte[] proto = event.toByteArray();
+        kinds[i] = KIND_PROTO;
+        intColumns[0][i] = protos.size();
+        intColumns[1][i] = proto.length;
+        protos.write(proto, 0, proto.length);
+      }
+    }
+
+    ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + timestamps.size() + count * COLUMNS_BYTES + protos.size());
+    buffer.put(FORMAT_PACKED).putInt(count).putInt(timestamps.size()).put(timestamps.toByteArray()).put(kinds);
+    for (int[] column : intColumns) {
+      for (int value : column) {
+        buffer.putInt(value);
+      }
+    }
+    for (long size : sizes) {
+      buffer.putLong(size);
+    }
+    buffer.put(protos.toByteArray());
+    return buffer.array();
+  }
+
+  /**
+   * Decodes the events of a batch whose timestamps are within [{@code startTime}, {@code endTime}]. The columns of the other events are not
+   * read.
+   */
+  @NotNull
+  static BatchAllocationEvents decode(@NotNull byte[] data, long batchTimestamp, long startTime, long endTime)
+    throws InvalidProtocolBufferException {
+    ByteBuffer buffer = ByteBuffer.wrap(data);
+    if (buffer.get() == FORMAT_PROTO) {
+      BatchAllocationEvents batch = BatchAllocationEvents.parseFrom(buffer);
+      BatchAllocationEvents.Builder result = batch.toBuilder().clearEvents();
+      batch.getEventsList().stream().filter(event -> event.getTimestamp() >= startTime && event.getTimestamp() <= endTime)
+        .forEach(result::addEvents);
+      return result.build();
+    }
+
+    int count = buffer.getInt();
+    int timestampsBytes = buffer.getInt();
+    int kindsOffset = HEADER_BYTES + timestampsBytes;
+    int protosOffset = kindsOffset + count * COLUMNS_BYTES;
+    BatchAllocationEvents.Builder result = BatchAllocationEvents.newBuilder().setTimestamp(batchTimestamp);
+    long timestamp = batchTimestamp;
+    for (int i = 0; i < count; ++i) {
+      timestamp += unzigzag(readVarLong(buffer));
+      if (timestamp < startTime || timestamp > endTime) {
+        continue;
+      }
+      byte kind = data[kindsOffset + i];
+      int intColumnsOffset = kindsOffset + count + i * Integer.BYTES;
+      int tag = buffer.getInt(intColumnsOffset);
+      switch (kind) {
+        case KIND_ALLOCATION:
+          result.addEvents(buildAllocation(timestamp, tag, buffer.getInt(intColumnsOffset + count * Integer.BYTES),
+                                           buffer.getInt(intColumnsOffset + 2 * count * Integer.BYTES),
+                                           buffer.getInt(intColumnsOffset + 3 * count * Integer.BYTES),
+                                           buffer.getInt(intColumnsOffset + 4 * count * Integer.BYTES),
+                                           buffer.getInt(intColumnsOffset + 5 * count * Integer.BYTES),
+                                           buffer.getLong(kindsOffset + count + 6 * count * Integer.BYTES + i * Long.BYTES)));
+          break;
+        case KIND_DEALLOCATION:
+          result.addEvents(buildDeallocation(timestamp, tag));
+          break;
+        default:
+          int length = buffer.getInt(intColumnsOffset + count * Integer.BYTES);
+          result.addEvents(AllocationEvent.parseFrom(ByteBuffer.wrap(data, protosOffset + tag, length)));
+          break;
+      }
+    }
+    return result.build();
+  }
+
+  @NotNull
+  private static AllocationEvent buildAllocation(long timestamp, int tag, int classTag, int stackId, int threadId, int heapId, int length,
+                                                 long size) {
+    // Only set the fields that are not defaults, so that the built event equals the one it was encoded from.
+    AllocationEvent.Allocation.Builder allocation = AllocationEvent.Allocation.newBuilder();
+    if (tag != 0) {
+      allocation.setTag(tag);
+    }
+    if (classTag != 0) {
+      allocation.setClassTag(classTag);
+    }
+    if (stackId != 0) {
+      allocation.setStackId(stackId);
+    }
+    if (threadId != 0) {
+      allocation.setThreadId(threadId);
+    }
+    if (heapId != 0) {
+      allocation.setHeapId(heapId);
+    }
+    if (length != 0) {
+      allocation.setLength(length);
+    }
+    if (size != 0) {
+      allocation.setSize(size);
+    }
+    return withTimestamp(AllocationEvent.newBuilder().setAllocData(allocation), timestamp);
+  }
+
+  @NotNull
+  private static AllocationEvent buildDeallocation(long timestamp, int tag) {
+    AllocationEvent.Deallocation.Builder deallocation = AllocationEvent.Deallocation.newBuilder();
+    if (tag != 0) {
+      deallocation.setTag(tag);
+    }
+    return withTimestamp(AllocationEvent.newBuilder().setFreeData(deallocation), timestamp);
+  }
+
+  @NotNull
+  private static AllocationEvent withTimestamp(@NotNull AllocationEvent.Builder event, long timestamp) {
+    if (timestamp != 0) {
+      event.setTimestamp(timestamp);
+    }
+    return event.build();
+  }
+
+  private static long zigzag(long value) {
+    return (value << 1) ^ (value >> 63);
+  }
+
+  private static long unzigzag(long value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  private static void writeVarLong(@NotNull ByteArrayOutputStream out, long value) {
+    while ((value & ~0x7FL) != 0) {
+      out.write((int)((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    out.write((int)value);
+  }
+
+  private static long readVarLong(@NotNull ByteBuffer buffer) {
+    long value = 0;
+    for (int shift = 0; ; shift += 7) {
+      byte b = buffer.get();
+      value |= (long)(b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+  }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.database;
+
+import com.android.tools.profiler.proto.Common.Event;
+import com.google.common.annotations.VisibleForTesting;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Queues the events of a stream and writes them to a {@link UnifiedEventsTable} in batches from a dedicated thread.
+ * <p>
+ * The events are serialized and inserted by the writer thread, so the caller (typically the
+ * {@link com.android.tools.datastore.poller.UnifiedEventsDataPoller}) only pays for the enqueue. The queue is bounded: when the writer
+ * falls behind, {@link #enqueue(Event)} blocks, which in turn slows down the consumption of the gRPC event stream.
+ */
+public class UnifiedEventsBatchWriter {
+  @VisibleForTesting static final int DEFAULT_QUEUE_CAPACITY = 8192;
+  @VisibleForTesting static final int DEFAULT_MAX_BATCH_SIZE = 1024;
+  /**
+   * How long the writer thread waits for new events before checking whether it was closed.
+   */
+  private static final long POLL_TIMEOUT_MS = 100;
+
+  private final long myStreamId;
+  @NotNull private final UnifiedEventsTable myTable;
+  @NotNull private final BlockingQueue<Event> myQueue;
+  private final int myMaxBatchSize;
+  @NotNull private final Thread myWriterThread;
+  private volatile boolean myIsClosed = false;
+
+  /**
+   * Number of events enqueued and written so far, guarded by {@link #myProgressLock}. Used by {@link #flush()}. Events of a batch that
+   * failed to be written are counted as written, since they will never be retried.
+   */
+  private final Object myProgressLock = new Object();
+  private long myEnqueuedCount = 0;
+  private long myWrittenCount = 0;
+
+  private final AtomicLong myFlushCount = new AtomicLong();
+  private final AtomicLong myTotalFlushLatencyNs = new AtomicLong();
+  private final AtomicLong myLastFlushLatencyNs = new AtomicLong();
+  private final AtomicLong myMaxFlushLatencyNs = new AtomicLong();
+
+  public UnifiedEventsBatchWriter(long streamId, @NotNull UnifiedEventsTable table) {
+    this(streamId, table, DEFAULT_QUEUE_CAPACITY, DEFAULT_MAX_BATCH_SIZE);
+  }
+
+  @VisibleForTesting
+  UnifiedEventsBatchWriter(long streamId, @NotNull UnifiedEventsTable table, int queueCapacity, int maxBatchSize) {
+    myStreamId = streamId;
+    myTable = table;
+    myQueue = new ArrayBlockingQueue<>(queueCapacity);
+    myMaxBatchSize = maxBatchSize;
+    myWriterThread = new Thread(this::writeLoop, "UnifiedEventsBatchWriter-" + streamId);
+    myWriterThread.setDaemon(true);
+    myWriterThread.start();
+  }
+
+  /**
+   * Queues the event to be written. Blocks while the queue is full.
+   *
+   * @throws IllegalStateException if the writer was closed, or if its thread stopped while waiting for room in the queue
+   */
+  public void enqueue(@NotNull Event event) throws InterruptedException {
+    if (myIsClosed) {
+      throw new IllegalStateException("Writer for stream " + myStreamId + " is closed");
+    }
+    while (!myQueue.offer(event, POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+      if (!myWriterThread.isAlive()) {
+        throw new IllegalStateException("Writer for stream " + myStreamId + " has stopped");
+      }
+    }
+    synchronized (myProgressLock) {
+      myEnqueuedCount++;
+    }
+  }
+
+  /**
+   * Blocks until all the events enqueued before this call have been written.
+   */
+  public void flush() throws InterruptedException {
+    synchronized (myProgressLock) {
+      long target = myEnqueuedCount;
+      while (myWrittenCount < target && myWriterThread.isAlive()) {
+        myProgressLock.wait(POLL_TIMEOUT_MS);
+      }
+    }
+  }
+
+  /**
+   * Writes the remaining events and stops the writer thread. Events can no longer be enqueued afterwards.
+   */
+  public void close() throws InterruptedException {
+    myIsClosed = true;
+    myWriterThread.join();
+  }
+
+  /**
+   * @return the number of events waiting to be written.
+   */
+  public int getQueueDepth() {
+    return myQueue.size();
+  }
+
+  /**
+   * @return the number of batches written so far.
+   */
+  public long getFlushCount() {
+    return myFlushCount.get();
+  }
+
+  /**
+   * @return the number of events written so far, including the events of batches that failed to be written.
+   */
+  public long getWrittenEventCount() {
+    synchronized (myProgressLock) {
+      return myWrittenCount;
+    }
+  }
+
+  /**
+   * @return the time it took to serialize and insert the last batch, in nanoseconds.
+   */
+  public long getLastFlushLatencyNs() {
+    return myLastFlushLatencyNs.get();
+  }
+
+  /**
+   * @return the longest time it took to serialize and insert a batch, in nanoseconds.
+   */
+  public long getMaxFlushLatencyNs() {
+    return myMaxFlushLatencyNs.get();
+  }
+
+  /**
+   * @return the average time it took to serialize and insert a batch, in nanoseconds.
+   */
+  public long getAverageFlushLatencyNs() {
+    long count = myFlushCount.get();
+    return count == 0 ? 0 : myTotalFlushLatencyNs.get() / count;
+  }
+
+  private void writeLoop() {
+    try {
+      drainQueue();
+    }
+    finally {
+      // Make sure enqueue fails and flush returns if the thread stops unexpectedly.
+      myIsClosed = true;
+      synchronized (myProgressLock) {
+        myProgressLock.notifyAll();
+      }
+    }
+  }
+
+  private void drainQueue() {
+    List<Event> batch = new ArrayList<>(myMaxBatchSize);
+    while (true) {
+      Event first;
+      try {
+        first = myQueue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+      }
+      catch (InterruptedException e) {
+        // Write whatever is left before exiting.
+        first = myQueue.poll();
+        myIsClosed = true;
+      }
+      if (first == null) {
+        if (myIsClosed && myQueue.isEmpty()) {
+          break;
+        }
+        continue;
+      }
+
+      batch.add(first);
+      myQueue.drainTo(batch, myMaxBatchSize - 1);
+      writeBatch(batch);
+      batch.clear();
+    }
+  }
+
+  private void writeBatch(@NotNull List<Event> batch) {
+    long startNs = System.nanoTime();
+    try {
+      myTable.insertUnifiedEvents(myStreamId, batch);
+      long latencyNs = System.nanoTime() - startNs;
+
+      myFlushCount.incrementAndGet();
+      myTotalFlushLatencyNs.addAndGet(latencyNs);
+      myLastFlushLatencyNs.set(latencyNs);
+      myMaxFlushLatencyNs.accumulateAndGet(latencyNs, Math::max);
+    }
+    catch (RuntimeException e) {
+      // The batch is lost, but the writer keeps draining the queue so that the producer and flush() don't block forever.
+      // The error callbacks log the error and disconnect the stream if needed.
+      DataStoreTable.onError(e);
+    }
+    finally {
+      synchronized (myProgressLock) {
+        myWrittenCount += batch.size();
+        myProgressLock.notifyAll();
+      }
+    }
+  }
+}
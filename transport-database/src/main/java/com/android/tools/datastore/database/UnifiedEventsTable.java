@@ -22,19 +22,34 @@ import com.android.tools.profiler.proto.Transport.BytesResponse;
 import com.android.tools.profiler.proto.Transport.EventGroup;
 import com.android.tools.profiler.proto.Transport.GetEventGroupsRequest;
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.base.Predicates;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.function.Predicate;
+import java.util.Map;
 import java.util.stream.Collectors;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 public class UnifiedEventsTable extends DataStoreTable<UnifiedEventsTable.Statements> {
+  /**
+   * Which parts of the events {@link #queryUnifiedEventGroups(GetEventGroupsRequest, EventProjection)} should return.
+   */
+  public enum EventProjection {
+    /**
+     * The complete events, parsed from the stored payloads.
+     */
+    FULL,
+    /**
+     * Only the event headers (kind, pid, group id, command id, timestamp and is-ended), read from the table columns. The payloads are not
+     * read nor parsed.
+     */
+    HEADERS_ONLY
+  }
+
   public enum Statements {
     // Since no data should be updated after it has been inserted we drop any duplicated request from the poller.
     INSERT_EVENT(
@@ -106,6 +121,23 @@ public class UnifiedEventsTable extends DataStoreTable<UnifiedEventsTable.Statem
             event.toByteArray());
   }
 
+  /**
+   * Inserts the given events with a single JDBC batch. The events are serialized on the calling thread.
+   *
+   * @see UnifiedEventsBatchWriter
+   */
+  public void insertUnifiedEvents(long streamId, @NotNull List<Event> events) {
+    executeBatch(Statements.INSERT_EVENT, events, event -> new Object[]{
+      streamId,
+      event.getPid(),
+      event.getGroupId(),
+      event.getKind().getNumber(),
+      event.getCommandId(),
+      event.getTimestamp(),
+      event.getIsEnded() ? 1 : 0,
+      event.toByteArray()});
+  }
+
   public void deleteEvents(long streamId, int pid, long groupId, Event.Kind kind, long fromTimestamp, long toTimestamp) {
     execute(Statements.DELETE_EVENTS, streamId, pid, groupId, kind.getNumber(), fromTimestamp, toTimestamp);
   }
@@ -154,87 +186,61 @@ public class UnifiedEventsTable extends DataStoreTable<UnifiedEventsTable.Statem
    * @param request
    */
   public List<EventGroup> queryUnifiedEventGroups(@NotNull GetEventGroupsRequest request) {
-    ArrayList<Object> baseParams = new ArrayList<>();
-    List<Object> beforeRangeParams = null;
-    List<Object> afterRangeParams = null;
-
-    HashMap<Long, EventGroup.Builder> builderGroups = new HashMap<>();
-    // The string format allows for altering the group by results for +1 and -1 queries.
-    String sql = "SELECT Data, GroupId%s From [UnifiedEventsTable] WHERE Kind = ? %s";
-    StringBuilder filter = new StringBuilder();
-    baseParams.add(request.getKind().getNumber());
-
-    if (request.getStreamId() != 0) {
-      filter.append(" AND StreamId = ?");
-      baseParams.add(request.getStreamId());
-    }
-
-    if (request.getPid() != 0) {
-      filter.append(" AND ProcessId = ?");
-      baseParams.add(request.getPid());
-    }
-
-    if (request.getGroupId() != 0) {
-      filter.append(" AND GroupId = ?");
-      baseParams.add(request.getGroupId());
-    }
-
-    if (request.getCommandId() != 0) {
-      filter.append(" AND CommandId = ?");
-      baseParams.add(request.getCommandId());
-    }
-
-    String sqlBefore = String.format(sql, ", IsEnded, MAX(Timestamp), MAX(ROWID)", filter + " AND Timestamp < ? GROUP BY GroupId");
-    String sqlAfter = String.format(sql, ", MIN(Timestamp), MIN(ROWID)", filter + " AND Timestamp > ? GROUP BY GroupId");
-    ArrayList<Object> inRangeQueryParams = new ArrayList<>(baseParams);
-    if (request.getFromTimestamp() > 0) {
-      beforeRangeParams = new ArrayList<>(baseParams);
-      beforeRangeParams.add(request.getFromTimestamp());
-      filter.append(" AND Timestamp >= ?");
-      inRangeQueryParams.add(request.getFromTimestamp());
-    }
+    return queryUnifiedEventGroups(request, EventProjection.FULL);
+  }
 
-    if (request.getToTimestamp() > 0 && request.getToTimestamp() != Long.MAX_VALUE) {
-      afterRangeParams = new ArrayList<>(baseParams);
-      afterRangeParams.add(request.getToTimestamp());
-      filter.append(" AND Timestamp <= ?");
-      inRangeQueryParams.add(request.getToTimestamp());
-    }
+  /**
+   * Same as {@link #queryUnifiedEventGroups(GetEventGroupsRequest)}, but lets the caller skip the parsing of the event payloads.
+   * <p>
+   * The before-range, in-range and after-range events are all fetched by a single statement. The statement only depends on which filters
+   * are set in the request, so it is built once per filter shape and the prepared statement is reused by subsequent queries.
+   */
+  public List<EventGroup> queryUnifiedEventGroups(@NotNull GetEventGroupsRequest request, @NotNull EventProjection projection) {
+    EventGroupsQueryShape shape = EventGroupsQueryShape.of(request, projection);
+    List<Object> params = shape.bindParams(request);
 
-    // Gather before range events if needed.
-    // Query before example:
-    // SELECT [Data], [GroupId], [IsEnded], MAX(Timestamp), MAX(ROWID) From [UnifiedEventsTable] WHERE Kind = ? AND Timestamp < ?
-    // GROUP BY GroupId;
-    if (beforeRangeParams != null) {
-      gatherEvents(sqlBefore, beforeRangeParams, builderGroups, resultSet -> {
-        try {
-          return !resultSet.getBoolean("IsEnded");
-        }
-        catch (SQLException e) {
-          onError(e);
+    Map<Long, EventGroup.Builder> builderGroups = new LinkedHashMap<>();
+    // At most one before-range and one after-range event per group, they are added to their groups once all the in-range events are
+    // known.
+    Map<Long, Event> beforeRangeEvents = new HashMap<>();
+    List<Event> afterRangeEvents = new ArrayList<>();
+    try {
+      ResultSet results = executeOneTimeQuery(shape.getSql(), params.toArray());
+      while (results.next()) {
+        int part = results.getInt(EventGroupsQueryShape.PART_COLUMN);
+        long groupId = results.getLong(EventGroupsQueryShape.GROUP_ID_COLUMN);
+        switch (part) {
+          case EventGroupsQueryShape.PART_BEFORE_RANGE:
+            // Ended groups before the range are not returned.
+            if (!results.getBoolean(EventGroupsQueryShape.IS_ENDED_COLUMN)) {
+              beforeRangeEvents.put(groupId, readEvent(results, request, projection));
+            }
+            break;
+          case EventGroupsQueryShape.PART_IN_RANGE:
+            builderGroups.computeIfAbsent(groupId, EventGroup.newBuilder()::setGroupId).addEvents(readEvent(results, request, projection));
+            break;
+          case EventGroupsQueryShape.PART_AFTER_RANGE:
+            afterRangeEvents.add(readEvent(results, request, projection));
+            break;
+          default:
+            throw new SQLException("Unexpected query part " + part);
         }
-        return false;
-      });
+      }
+    }
+    catch (SQLException | InvalidProtocolBufferException ex) {
+      onError(ex);
     }
 
-    // Query example:
-    // SELECT [Data], [GroupId] From [UnifiedEventsTable] WHERE Kind = ? AND Timestamp >= ? AND Timestamp <= ?;
-    String query = String.format(sql, "", filter);
-    gatherEvents(query, inRangeQueryParams, builderGroups, Predicates.alwaysTrue());
-
-    // Gather after range events if needed.
-    // Query after example:
-    // SELECT [Data], [GroupId], MIN(Timestamp), MIN(ROWID) From [UnifiedEventsTable] WHERE Kind = ? AND Timestamp > ? GROUP BY GroupId;
-    if (afterRangeParams != null) {
-      gatherEvents(sqlAfter, afterRangeParams, builderGroups, resultSet -> {
-        try {
-          return builderGroups.containsKey(resultSet.getLong("GroupId"));
-        }
-        catch (SQLException e) {
-          onError(e);
-        }
-        return false;
-      });
+    beforeRangeEvents.forEach((groupId, event) -> {
+      EventGroup.Builder group = builderGroups.computeIfAbsent(groupId, EventGroup.newBuilder()::setGroupId);
+      group.addEvents(0, event);
+    });
+    // Events after the range are only returned for groups that already have events.
+    for (Event event : afterRangeEvents) {
+      EventGroup.Builder group = builderGroups.get(event.getGroupId());
+      if (group != null) {
+        group.addEvents(event);
+      }
     }
 
     return builderGroups.values().stream().map(EventGroup.Builder::build).collect(Collectors.toList());
@@ -259,33 +265,21 @@ public class UnifiedEventsTable extends DataStoreTable<UnifiedEventsTable.Statem
     return null;
   }
 
-  /**
-   * Executes the sql statement and passes each event through the filter. If the filter returns true, the event is added
-   * to the hashmap. Otherwise it is ignored.
-   *
-   * @param sql           Statement to execute and gather a list of events
-   * @param params        List of params to pass to the sql statement.
-   * @param builderGroups map of event group ids to event groups used to collect events into respective groups.
-   * @param filter        predicate to determine which events are included in the event group.
-   */
-  private void gatherEvents(String sql,
-                            List<Object> params,
-                            HashMap<Long, EventGroup.Builder> builderGroups,
-                            Predicate<ResultSet> filter) {
-    try {
-      ResultSet results = executeOneTimeQuery(sql, params.toArray());
-      while (results.next()) {
-        Long groupId = results.getLong("GroupId");
-        if (filter.test(results)) {
-          EventGroup.Builder group =
-            builderGroups.computeIfAbsent(groupId, EventGroup.newBuilder()::setGroupId);
-          group.addEvents(Event.parser().parseFrom(results.getBytes("Data")));
-        }
-      }
-    }
-    catch (SQLException | InvalidProtocolBufferException ex) {
-      onError(ex);
+  @NotNull
+  private static Event readEvent(@NotNull ResultSet results, @NotNull GetEventGroupsRequest request, @NotNull EventProjection projection)
+    throws SQLException, InvalidProtocolBufferException {
+    if (projection == EventProjection.FULL) {
+      return Event.parser().parseFrom(results.getBytes(EventGroupsQueryShape.DATA_COLUMN));
     }
+    // Rebuild the event header from the indexed columns, without touching the payload.
+    return Event.newBuilder()
+      .setKind(request.getKind())
+      .setPid(results.getInt(EventGroupsQueryShape.PROCESS_ID_COLUMN))
+      .setGroupId(results.getLong(EventGroupsQueryShape.GROUP_ID_COLUMN))
+      .setCommandId(results.getInt(EventGroupsQueryShape.COMMAND_ID_COLUMN))
+      .setTimestamp(results.getLong(EventGroupsQueryShape.TIMESTAMP_COLUMN))
+      .setIsEnded(results.getBoolean(EventGroupsQueryShape.IS_ENDED_COLUMN))
+      .build();
   }
 
   private List<Event> queryUnifiedEvents(Statements stmt, Object... args) {
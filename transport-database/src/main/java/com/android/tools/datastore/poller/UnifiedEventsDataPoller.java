@@ -17,6 +17,7 @@ package com.android.tools.datastore.poller;
 
 import com.android.tools.datastore.DataStoreService;
 import com.android.tools.datastore.database.DataStoreTable;
+import com.android.tools.datastore.database.UnifiedEventsBatchWriter;
 import com.android.tools.datastore.database.UnifiedEventsTable;
 import com.android.tools.profiler.proto.Common.Event;
 import com.android.tools.profiler.proto.Transport.GetEventsRequest;
@@ -69,19 +70,33 @@ public class UnifiedEventsDataPoller implements Runnable, DataStoreTable.DataSto
   @Override
   public void run() {
     myIsRunning.set(true);
+    // Events are written in batches from the writer thread. Once its queue is full, enqueue blocks and we stop pulling from the stream.
+    UnifiedEventsBatchWriter writer = new UnifiedEventsBatchWriter(myStreamId, myTable);
     try {
       // The iterator returned will block on next calls, only returning when data is received or the server disconnects.
       Iterator<Event> events = myEventPollingService.getEvents(GetEventsRequest.getDefaultInstance());
       while (events.hasNext()) {
         Event event = events.next();
         if (event != null) {
-          myTable.insertUnifiedEvent(myStreamId, event);
+          writer.enqueue(event);
         }
       }
     }
     catch (StatusRuntimeException exception) {
       // device disconnect logic handle via TransportDeviceManager
     }
+    catch (InterruptedException exception) {
+      Thread.currentThread().interrupt();
+    }
+    finally {
+      try {
+        // Write the remaining events before signaling the end of run.
+        writer.close();
+      }
+      catch (InterruptedException exception) {
+        Thread.currentThread().interrupt();
+      }
+    }
     // Signal end of run.
     myRunningLatch.countDown();
   }
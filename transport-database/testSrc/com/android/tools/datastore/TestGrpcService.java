@@ -82,7 +82,8 @@ public final class TestGrpcService extends ExternalResource {
     myTestFile.deleteOnExit();
     myDatabase = new DataStoreDatabase(myTestFile.getAbsolutePath(), DataStoreDatabase.Characteristic.DURABLE, new FakeLogService());
     myDataStoreService.getBackingNamespaces()
-                      .forEach(namespace -> myDataStoreService.setBackingStore(namespace, myDatabase.getConnection()));
+                      .forEach(namespace -> myDataStoreService.setBackingStore(namespace, myDatabase.getConnection(),
+                                                                                    myDatabase::getReadConnection));
   }
 
   @Override
@@ -20,6 +20,8 @@ import org.junit.Test
 import java.io.BufferedOutputStream
 import java.io.File
 import java.io.FileOutputStream
+import java.sql.SQLException
+import java.util.concurrent.TimeUnit
 
 class DataStoreDatabaseTest {
 
@@ -63,4 +65,54 @@ class DataStoreDatabaseTest {
     db.disconnect()
     assertThat(db.connection.isClosed).isTrue()
   }
+
+  @Test
+  fun testDurableDatabaseWithReadConnectionsUsesWal() {
+    val db = DataStoreDatabase(myDatabaseFile.absolutePath, DataStoreDatabase.Characteristic.DURABLE, FakeLogService(), { _ -> }, 1)
+    db.connection.createStatement().use { statement ->
+      statement.executeQuery("PRAGMA journal_mode").use { result ->
+        assertThat(result.getString(1)).isEqualTo("wal")
+      }
+    }
+    db.disconnect()
+  }
+
+  @Test
+  fun testGroupCommitPublishesToReadConnections() {
+    val db = DataStoreDatabase(myDatabaseFile.absolutePath, DataStoreDatabase.Characteristic.DURABLE, FakeLogService(), { _ -> }, 2)
+    assertThat(db.readConnection).isNotSameAs(db.connection)
+    assertThat(db.readConnection.isReadOnly).isTrue()
+    db.connection.createStatement().use { it.execute("CREATE TABLE Test (Value INTEGER)") }
+    db.commit()
+    db.connection.createStatement().use { it.execute("INSERT INTO Test (Value) VALUES (1)") }
+    db.commit()
+    assertThat(countRows(db)).isEqualTo(1)
+    db.disconnect()
+  }
+
+  @Test
+  fun testPendingChangesAreCommittedPeriodically() {
+    val db = DataStoreDatabase(myDatabaseFile.absolutePath, DataStoreDatabase.Characteristic.DURABLE, FakeLogService(), { _ -> }, 1)
+    db.connection.createStatement().use { it.execute("CREATE TABLE Test (Value INTEGER)") }
+    db.connection.createStatement().use { it.execute("INSERT INTO Test (Value) VALUES (1)") }
+
+    val deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5)
+    while (countRows(db) == 0 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(50)
+    }
+    assertThat(countRows(db)).isEqualTo(1)
+    db.disconnect()
+  }
+
+  private fun countRows(db: DataStoreDatabase): Int {
+    return try {
+      db.readConnection.createStatement().use { statement ->
+        statement.executeQuery("SELECT COUNT(*) FROM Test").use { it.getInt(1) }
+      }
+    }
+    catch (e: SQLException) {
+      // The table itself is not committed yet.
+      0
+    }
+  }
 }
@@ -230,6 +230,34 @@ public class MemoryLiveAllocationTableTest extends DatabaseTest<MemoryLiveAlloca
     assertThat(querySample.get(0)).isEqualTo(insertSample);
   }
 
+  @Test
+  public void testQueryOnlyReturnsEventsInRange() {
+    AllocationEvent alloc1 = AllocationEvent
+      .newBuilder().setAllocData(AllocationEvent.Allocation.newBuilder().setTag(KLASS1_INSTANCE1_TAG).setClassTag(CLASS1).setSize(16))
+      .setTimestamp(2).build();
+    AllocationEvent alloc2 = AllocationEvent
+      .newBuilder().setAllocData(AllocationEvent.Allocation.newBuilder().setTag(KLASS1_INSTANCE2_TAG).setClassTag(CLASS1).setSize(16))
+      .setTimestamp(5).build();
+    AllocationEvent dealloc1 = AllocationEvent
+      .newBuilder().setFreeData(AllocationEvent.Deallocation.newBuilder().setTag(KLASS1_INSTANCE1_TAG))
+      .setTimestamp(8).build();
+    getTable().insertAllocationEvents(VALID_SESSION, BatchAllocationEvents.newBuilder().setTimestamp(4).addEvents(alloc1).build());
+    getTable().insertAllocationEvents(VALID_SESSION, BatchAllocationEvents.newBuilder()
+      .setTimestamp(9).addEvents(alloc2).addEvents(dealloc1).build());
+
+    // Samples are returned by their timestamps, with only the events in range.
+    List<BatchAllocationEvents> querySample = getTable().getAllocationEvents(VALID_SESSION, 3, 9);
+    assertThat(querySample).containsExactly(BatchAllocationEvents.newBuilder().setTimestamp(4).build(),
+                                            BatchAllocationEvents.newBuilder().setTimestamp(9).addEvents(alloc2).addEvents(dealloc1).build())
+      .inOrder();
+    querySample = getTable().getAllocationEvents(VALID_SESSION, 3, 7);
+    assertThat(querySample).containsExactly(BatchAllocationEvents.newBuilder().setTimestamp(4).build());
+    querySample = getTable().getAllocationEvents(VALID_SESSION, 1, 10);
+    assertThat(querySample).hasSize(2);
+    assertThat(querySample.get(0).getEventsList()).containsExactly(alloc1);
+    assertThat(querySample.get(1).getEventsList()).containsExactly(alloc2, dealloc1).inOrder();
+  }
+
   @Test
   public void testIgnoreDuplicatedAllocationContext() {
     AllocatedClass class1 = AllocatedClass.newBuilder().setClassId(CLASS1).setClassName(JNI_KLASS1_NAME).build();
@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.database;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.android.tools.profiler.proto.Memory.AllocatedClass;
+import com.android.tools.profiler.proto.Memory.AllocationEvent;
+import com.android.tools.profiler.proto.Memory.BatchAllocationEvents;
+import org.junit.Test;
+
+public class PackedAllocationEventsTest {
+  private static final AllocationEvent ALLOCATION = AllocationEvent.newBuilder()
+    .setAllocData(AllocationEvent.Allocation.newBuilder()
+                    .setTag(1).setClassTag(2).setStackId(3).setThreadId(4).setHeapId(5).setLength(6).setSize(Long.MAX_VALUE))
+    .setTimestamp(1000).build();
+  private static final AllocationEvent ALLOCATION_WITH_METHODS = AllocationEvent.newBuilder()
+    .setAllocData(AllocationEvent.Allocation.newBuilder().setTag(7).addMethodIds(8).addLocationIds(9))
+    .setTimestamp(900).build();
+  private static final AllocationEvent DEALLOCATION = AllocationEvent.newBuilder()
+    .setFreeData(AllocationEvent.Deallocation.newBuilder().setTag(1))
+    .setTimestamp(2000).build();
+  private static final AllocationEvent CLASS = AllocationEvent.newBuilder()
+    .setClassData(AllocatedClass.newBuilder().setClassId(10).setClassName("Foo"))
+    .setTimestamp(0).build();
+
+  @Test
+  public void testEventsAreDecodedAsEncoded() throws Exception {
+    BatchAllocationEvents batch = BatchAllocationEvents.newBuilder()
+      .setTimestamp(1500)
+      .addEvents(ALLOCATION).addEvents(ALLOCATION_WITH_METHODS).addEvents(DEALLOCATION).addEvents(CLASS)
+      .build();
+    byte[] data = PackedAllocationEvents.encode(batch);
+    assertThat(PackedAllocationEvents.decode(data, 1500, Long.MIN_VALUE, Long.MAX_VALUE)).isEqualTo(batch);
+  }
+
+  @Test
+  public void testOnlyEventsInRangeAreDecoded() throws Exception {
+    BatchAllocationEvents batch = BatchAllocationEvents.newBuilder()
+      .setTimestamp(1500)
+      .addEvents(ALLOCATION).addEvents(ALLOCATION_WITH_METHODS).addEvents(DEALLOCATION).addEvents(CLASS)
+      .build();
+    byte[] data = PackedAllocationEvents.encode(batch);
+    assertThat(PackedAllocationEvents.decode(data, 1500, 900, 1000).getEventsList())
+      .containsExactly(ALLOCATION, ALLOCATION_WITH_METHODS).inOrder();
+    assertThat(PackedAllocationEvents.decode(data, 1500, 3000, 4000))
+      .isEqualTo(BatchAllocationEvents.newBuilder().setTimestamp(1500).build());
+  }
+
+  @Test
+  public void testEmptyBatch() throws Exception {
+    BatchAllocationEvents batch = BatchAllocationEvents.newBuilder().setTimestamp(1).build();
+    assertThat(PackedAllocationEvents.decode(PackedAllocationEvents.encode(batch), 1, Long.MIN_VALUE, Long.MAX_VALUE)).isEqualTo(batch);
+  }
+}
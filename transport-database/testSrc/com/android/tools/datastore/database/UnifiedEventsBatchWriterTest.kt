@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.database
+
+import com.android.tools.datastore.DataStoreDatabase
+import com.android.tools.datastore.FakeLogService
+import com.android.tools.profiler.proto.Common
+import com.google.common.truth.Truth.assertThat
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import java.io.File
+
+class UnifiedEventsBatchWriterTest {
+  private lateinit var dbFile: File
+  private lateinit var database: DataStoreDatabase
+  private lateinit var table: UnifiedEventsTable
+
+  @Before
+  fun before() {
+    dbFile = File.createTempFile("UnifiedEventsBatchWriterTest", "mysql")
+    dbFile.deleteOnExit()
+    database = DataStoreDatabase(dbFile.absolutePath, DataStoreDatabase.Characteristic.DURABLE, FakeLogService())
+    table = UnifiedEventsTable()
+    table.initialize(database.connection)
+  }
+
+  @After
+  fun after() {
+    database.disconnect()
+  }
+
+  @Test
+  fun eventsAreWrittenInBatches() {
+    val writer = UnifiedEventsBatchWriter(1, table, 64, 16)
+    val events = (1..100L).map { createEvent(it) }
+    events.forEach { writer.enqueue(it) }
+    writer.flush()
+
+    assertThat(writer.queueDepth).isEqualTo(0)
+    assertThat(writer.writtenEventCount).isEqualTo(100)
+    // At most 16 events per batch.
+    assertThat(writer.flushCount).isAtLeast(7L)
+    assertThat(writer.maxFlushLatencyNs).isAtLeast(writer.averageFlushLatencyNs)
+    assertThat(table.queryUnifiedEvents()).containsExactlyElementsIn(events)
+    writer.close()
+  }
+
+  @Test
+  fun closeWritesPendingEvents() {
+    val writer = UnifiedEventsBatchWriter(1, table)
+    val events = (1..10L).map { createEvent(it) }
+    events.forEach { writer.enqueue(it) }
+    writer.close()
+
+    assertThat(table.queryUnifiedEvents()).containsExactlyElementsIn(events)
+  }
+
+  @Test(expected = IllegalStateException::class)
+  fun enqueueAfterCloseFails() {
+    val writer = UnifiedEventsBatchWriter(1, table)
+    writer.close()
+    writer.enqueue(createEvent(1))
+  }
+
+  @Test
+  fun writerKeepsDrainingAfterFailedBatch() {
+    val errors = mutableListOf<Throwable>()
+    val callback = DataStoreTable.DataStoreTableErrorCallback { synchronized(errors) { errors.add(it) } }
+    DataStoreTable.addDataStoreErrorCallback(callback)
+    try {
+      var failedOnce = false
+      val failingTable = object : UnifiedEventsTable() {
+        override fun insertUnifiedEvents(streamId: Long, events: List<Common.Event>) {
+          if (!failedOnce) {
+            failedOnce = true
+            throw IllegalStateException("insert failed")
+          }
+          table.insertUnifiedEvents(streamId, events)
+        }
+      }
+      val writer = UnifiedEventsBatchWriter(1, failingTable, 4, 4)
+      // More events than the queue can hold, so enqueue would block forever if the writer thread had died.
+      val events = (1..20L).map { createEvent(it) }
+      events.forEach { writer.enqueue(it) }
+      writer.flush()
+      writer.close()
+
+      assertThat(writer.writtenEventCount).isEqualTo(20)
+      assertThat(table.queryUnifiedEvents()).isNotEmpty()
+      assertThat(events).containsAllIn(table.queryUnifiedEvents())
+      synchronized(errors) {
+        assertThat(errors).hasSize(1)
+      }
+    }
+    finally {
+      DataStoreTable.removeDataStoreErrorCallback(callback)
+    }
+  }
+
+  private fun createEvent(timestamp: Long): Common.Event {
+    return Common.Event.newBuilder()
+      .setKind(Common.Event.Kind.SESSION)
+      .setPid(1)
+      .setGroupId(timestamp)
+      .setTimestamp(timestamp)
+      .build()
+  }
+}
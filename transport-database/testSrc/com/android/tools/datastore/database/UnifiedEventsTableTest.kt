@@ -61,12 +61,18 @@ class UnifiedEventsTableTest : DatabaseTest<UnifiedEventsTable>() {
     val events = mutableListOf(Common.Event.newBuilder().build())
     return mutableListOf(
       (Consumer { it.insertUnifiedEvent(1, events[0]) }),
+      (Consumer { it.insertUnifiedEvents(1, events) }),
       (Consumer { it.deleteEvents(1, 1, 1, Common.Event.Kind.SESSION, 1, 1) }),
       (Consumer {
         it.queryUnifiedEventGroups(
           GetEventGroupsRequest.newBuilder().setKind(Common.Event.Kind.SESSION).setStreamId(1).setPid(1).setToTimestamp(
             10).build())
       }),
+      (Consumer {
+        it.queryUnifiedEventGroups(
+          GetEventGroupsRequest.newBuilder().setKind(Common.Event.Kind.SESSION).setStreamId(1).setFromTimestamp(1).setToTimestamp(
+            10).build(), UnifiedEventsTable.EventProjection.HEADERS_ONLY)
+      }),
       (Consumer { it.queryUnifiedEvents() }),
       (Consumer { assertThat(it.getBytes(BytesRequest.getDefaultInstance())).isEqualTo(null) }),
       (Consumer { it.insertBytes(0, "id", BytesResponse.getDefaultInstance()) }))
@@ -282,6 +288,47 @@ class UnifiedEventsTableTest : DatabaseTest<UnifiedEventsTable>() {
                    SESSION_1_1_4)
   }
 
+  @Test
+  fun headersOnlyProjectionMatchesFullProjection() {
+    for (event in events) {
+      table.insertUnifiedEvent(1, event)
+    }
+    val request = GetEventGroupsRequest.newBuilder().setKind(Common.Event.Kind.SESSION).setFromTimestamp(3).setToTimestamp(6).build()
+    val full = table.queryUnifiedEventGroups(request)
+    val headers = table.queryUnifiedEventGroups(request, UnifiedEventsTable.EventProjection.HEADERS_ONLY)
+    // The test events have no payload, so both projections return the same events in the same order.
+    assertThat(headers).containsExactlyElementsIn(full)
+  }
+
+  @Test
+  fun headersOnlyProjectionSkipsPayload() {
+    val event = Common.Event.newBuilder().apply {
+      kind = Common.Event.Kind.SESSION
+      pid = 1
+      groupId = 1
+      timestamp = 5
+      session = Common.SessionData.newBuilder().setSessionStarted(Common.SessionData.SessionStarted.newBuilder().setPid(1)).build()
+    }.build()
+    table.insertUnifiedEvent(1, event)
+
+    val result = table.queryUnifiedEventGroups(GetEventGroupsRequest.newBuilder().setKind(Common.Event.Kind.SESSION).build(),
+                                               UnifiedEventsTable.EventProjection.HEADERS_ONLY)
+    assertThat(result).hasSize(1)
+    assertThat(result[0].eventsList).containsExactly(event.toBuilder().clearSession().build())
+  }
+
+  @Test
+  fun beforeRangeEventIsFirstInGroup() {
+    for (event in events) {
+      table.insertUnifiedEvent(1, event)
+    }
+    val result = table.queryUnifiedEventGroups(
+      GetEventGroupsRequest.newBuilder().setKind(Common.Event.Kind.SESSION).setPid(1).setGroupId(1).setFromTimestamp(3).setToTimestamp(
+        3).build())
+    assertThat(result).hasSize(1)
+    assertThat(result[0].eventsList).containsExactly(events[SESSION_1_1_2], events[SESSION_1_1_3], events[SESSION_1_1_4]).inOrder()
+  }
+
   @Test
   fun queryReturnsSameStatement() {
     val results = table.executeOneTimeQuery("SELECT * FROM [UnifiedEventsTable]", arrayOf())